@@ -73,6 +73,13 @@ CREATE TABLE mh_capture_agent_role (
 
 CREATE INDEX IX_mh_capture_agent_role_pk ON mh_capture_agent_role (id, organization);
 
+CREATE TABLE mh_capture_agent_recording (
+  id VARCHAR(128) NOT NULL,
+  state VARCHAR(128) NOT NULL,
+  last_heard_from BIGINT NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
 CREATE TABLE mh_capture_agent_state (
   id VARCHAR(128) NOT NULL,
   organization VARCHAR(128) NOT NULL,
@@ -70,6 +70,13 @@ CREATE TABLE "mh_capture_agent_role" (
 
 CREATE INDEX "IX_mh_capture_agent_role" ON "mh_capture_agent_role" ("id", "organization");
 
+CREATE TABLE "mh_capture_agent_recording" (
+  "id" character varying(128) NOT NULL,
+  "state" character varying(128) NOT NULL,
+  "last_heard_from" bigint NOT NULL,
+  PRIMARY KEY ("id")
+);
+
 CREATE TABLE "mh_capture_agent_state" (
   "id" character varying(128) NOT NULL,
   "organization" character varying(128) NOT NULL,
@@ -0,0 +1,6 @@
+CREATE TABLE mh_capture_agent_recording (
+  id VARCHAR(128) NOT NULL,
+  state VARCHAR(128) NOT NULL,
+  last_heard_from BIGINT NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB;
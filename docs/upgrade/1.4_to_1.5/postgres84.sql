@@ -0,0 +1,6 @@
+CREATE TABLE "mh_capture_agent_recording" (
+  "id" character varying(128) NOT NULL,
+  "state" character varying(128) NOT NULL,
+  "last_heard_from" bigint NOT NULL,
+  PRIMARY KEY ("id")
+);
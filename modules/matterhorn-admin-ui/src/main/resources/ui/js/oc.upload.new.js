@@ -17,6 +17,7 @@ var ocUpload = (function() {
   this.UPLOAD_MEDIAPACKAGE = '/upload/mediapackage/';
   this.UPLOAD_PROGRESS_INTERVAL = 2000;
   this.CHUNKSIZE = 1024 * 1024 * 100;
+  this.PARALLEL_CHUNKS = 4;
   this.INFO_URL = "/info/me.json";
   this.KILOBYTE = 1024;
   this.MEGABYTE = 1024 * 1024;
@@ -327,7 +328,7 @@ ocUpload.UI = (function() {
       $progress.find('.progress-label-top').text('Uploading ' + filename.replace("C:\\fakepath\\", ""));
       
       if(message.payload.totalsize !== -1) {
-        received = message['current-chunk']['bytes-recieved'] + message['current-chunk'].number * message.chunksize;
+        received = message.payload.currentsize;
         percentage = ((received / total) * 100).toFixed(1) + '%';
         total = (total / ocUpload.MEGABYTE).toFixed(2) + ' MB';
         received = (received / ocUpload.MEGABYTE).toFixed(2) + ' MB';
@@ -632,7 +633,7 @@ ocUpload.Ingest = (function() {
     	if(ocUtils.isChunkedUploadCompliable()) {
     		ocUtils.log("Uploading via Chunked upload")
     		var file = $uploader.contents().find('.file-selector')[0].files[0];
-    		nextPart(file, 0, track.id, 0, ocUpload.CHUNKSIZE);
+    		uploadChunks(file, track.id);
     	} else {
     		ocUtils.log("Uploading via submitting form")
     		$uploader.contents().find('#uploadForm').submit();
@@ -679,8 +680,18 @@ ocUpload.Ingest = (function() {
     return track_id;
   }
   
-  function nextPart(file, chunk, jobId, start, end) {
-    if(start < file.size) {
+  function uploadChunks(file, jobId) {
+    var chunks = Math.ceil(file.size / ocUpload.CHUNKSIZE);
+    var next = 0;
+    var failed = false;
+    // the server accepts the chunks in any order, so several of them are sent at the same time
+    function nextPart() {
+      if (failed || next >= chunks) {
+        return;
+      }
+      var chunk = next++;
+      var start = chunk * ocUpload.CHUNKSIZE;
+      var end = Math.min(start + ocUpload.CHUNKSIZE, file.size);
       ocUtils.log("uploading chunk #" + chunk);
       var blob;
       if ('mozSlice' in file) { //Mozilla
@@ -690,11 +701,16 @@ ocUpload.Ingest = (function() {
       } else { //Opera
         blob = file.slice(start, end);
       }
-      upload(blob, file, chunk, jobId, start, end);
+      upload(blob, chunk, jobId, nextPart, function() {
+        failed = true;
+      });
+    }
+    for (var i = 0; i < ocUpload.PARALLEL_CHUNKS; i++) {
+      nextPart();
     }
   }
   
-  function upload(blob, file, chunk, jobId, start, end) {
+  function upload(blob, chunk, jobId, done, fail) {
     var formData = new FormData();
     formData.append("chunknumber", chunk);
     formData.append("jobID", jobId);
@@ -709,12 +725,18 @@ ocUpload.Ingest = (function() {
       contentType: false,
       success: function (e, status, jqHBX) {
         if(jqHBX.status == 404) {
+          fail();
           ocUpload.UI.showFailure("Could not upload chunk #" + chunk + " to UploadJob because job wasn't found");
         } else if(jqHBX.status == 400) {
+          fail();
           ocUpload.UI.showFailure("Could not upload chunk #" + chunk + " to UploadJob because a malformed uploadrequest");
         } else {
-          nextPart(file, ++chunk, jobId, start + ocUpload.CHUNKSIZE, end + ocUpload.CHUNKSIZE);
+          done();
         }
+      },
+      error: function (jqHBX) {
+        fail();
+        ocUpload.UI.showFailure("Could not upload chunk #" + chunk + " to UploadJob (status " + jqHBX.status + ")");
       }
     });
   }
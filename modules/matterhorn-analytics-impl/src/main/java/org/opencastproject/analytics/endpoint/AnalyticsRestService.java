@@ -325,6 +325,43 @@ public class AnalyticsRestService {
 	public ViewCollection getViewsAsJson(@FormParam("episodeID") String episodeID, @FormParam("start") String start, @FormParam("end") String end, @FormParam("interval") String interval) {
 		return getViewsAsXml(episodeID, start, end, interval);
 	}
+
+  @GET
+  @Produces(MediaType.TEXT_XML)
+  @Path("seriesViews.xml")
+  @RestQuery(name = "seriesViews", description = "Returns the statistics for all of the intervals between two dates for every episode of a given series.", pathParameters = { }, restParameters = {
+      @RestParameter(description = "The id of the series.", isRequired = false, name = "seriesID", type = Type.STRING),
+      @RestParameter(description = "The start time of the range that the user is interested in in format YYYYMMDDHHMM e.g. 201202250830 which would be February 25, 2012 at 8:30 am.", isRequired = false, name = "start", type = Type.STRING),
+      @RestParameter(description = "The end time of the range that the user is interested in in format YYYYMMDDHHMM e.g. 201210252330 which would be October 25, 2012 at 11:30 pm.", isRequired = false, name = "end", type = Type.STRING),
+      @RestParameter(description = "The interval time in seconds e.g. 631 is 10 minutes, 31 seconds per interval.", isRequired = false, name = "interval", type = Type.STRING) }, reponses = {
+          @RestResponse(description = "the user based data is returned", responseCode = HttpServletResponse.SC_OK),
+          @RestResponse(description = "the user based data could not be retrieved", responseCode = HttpServletResponse.SC_INTERNAL_SERVER_ERROR),
+          @RestResponse(description = "Analytics information is not available", responseCode = HttpServletResponse.SC_SERVICE_UNAVAILABLE) }, returnDescription = "")
+  public ViewCollection getSeriesViewsAsXml(@FormParam("seriesID") String seriesID, @FormParam("start") String start, @FormParam("end") String end, @FormParam("interval") String interval) {
+    if (analyticsServiceImpl == null) {
+      throw new WebApplicationException(Status.SERVICE_UNAVAILABLE);
+    }
+    try {
+      return analyticsServiceImpl.getSeriesViews(seriesID, start, end, interval);
+    } catch (Exception e) {
+      throw new WebApplicationException(e);
+    }
+  }
+
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("seriesViews.json")
+  @RestQuery(name = "seriesViews", description = "Returns the statistics for all of the intervals between two dates for every episode of a given series.", pathParameters = { }, restParameters = {
+      @RestParameter(description = "The id of the series.", isRequired = false, name = "seriesID", type = Type.STRING),
+      @RestParameter(description = "The start time of the range that the user is interested in in format YYYYMMDDHHMM e.g. 201202250830 which would be February 25, 2012 at 8:30 am.", isRequired = false, name = "start", type = Type.STRING),
+      @RestParameter(description = "The end time of the range that the user is interested in in format YYYYMMDDHHMM e.g. 201210252330 which would be October 25, 2012 at 11:30 pm.", isRequired = false, name = "end", type = Type.STRING),
+      @RestParameter(description = "The interval time in seconds e.g. 631 is 10 minutes, 31 seconds per interval.", isRequired = false, name = "interval", type = Type.STRING) }, reponses = {
+          @RestResponse(description = "the user based data is returned", responseCode = HttpServletResponse.SC_OK),
+          @RestResponse(description = "the user based data could not be retrieved", responseCode = HttpServletResponse.SC_INTERNAL_SERVER_ERROR),
+          @RestResponse(description = "Analytics information is not available", responseCode = HttpServletResponse.SC_SERVICE_UNAVAILABLE) }, returnDescription = "")
+  public ViewCollection getSeriesViewsAsJson(@FormParam("seriesID") String seriesID, @FormParam("start") String start, @FormParam("end") String end, @FormParam("interval") String interval) {
+    return getSeriesViewsAsXml(seriesID, start, end, interval);
+  }
   
   @GET
   @Produces(MediaType.TEXT_XML)
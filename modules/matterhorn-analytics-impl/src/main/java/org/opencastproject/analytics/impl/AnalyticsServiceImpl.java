@@ -20,20 +20,18 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpGet;
 import org.opencastproject.metadata.dublincore.DublinCoreCatalog;
 import org.opencastproject.metadata.dublincore.DublinCoreCatalogList;
 import org.opencastproject.search.api.SearchQuery;
@@ -50,6 +48,8 @@ import org.opencastproject.security.api.UnauthorizedException;
 import org.opencastproject.security.api.User;
 import org.opencastproject.series.api.SeriesException;
 import org.opencastproject.series.api.SeriesService;
+import org.opencastproject.usertracking.api.Report;
+import org.opencastproject.usertracking.api.ReportItem;
 import org.opencastproject.usertracking.api.UserAction;
 import org.opencastproject.usertracking.api.UserActionList;
 import org.opencastproject.usertracking.api.UserSummaryList;
@@ -58,16 +58,10 @@ import org.opencastproject.usertracking.api.UserTrackingService;
 import org.opencastproject.usertracking.impl.UserActionListImpl;
 import org.opencastproject.usertracking.impl.UserSummaryListImpl;
 import org.opencastproject.util.NotFoundException;
-import org.opencastproject.util.UrlSupport;
 import org.osgi.framework.ServiceException;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 /**
  * This is a class that handles rest calls to the visualization endpoints mostly
  * by collecting data from other endpoints and stitching it together in a more
@@ -80,18 +74,10 @@ public class AnalyticsServiceImpl {
 	private static final String ENGAGE_URL_KEY = "org.opencastproject.engage.ui.url";
 	//The key to retrieve the url of the current server node so that we can use rest calls on it.
 	private static final String SERVER_URL_KEY = "org.opencastproject.server.url";
-	// The XML tag for the amount of time a video has been played.
-	private static final String PLAYED_XML_TAG = "played";
-	// The XML tag for the amount of views a video has been watched
-	private static final String VIEWS_XML_TAG = "views";
-	// The XML tag for the id of the episode that this xml represents.
-	private static final String EPISODE_ID_TAG_NAME = "episode-id";
 	// The default limit of episodes to retrieve from a usertracking report. 
 	private static final int DEFAULT_LIMIT = 1000000;
 	// The default offset to use
 	private static final int DEFAULT_OFFSET = 0;
-	// The number of milliseconds in a second. 
-	private static final long secondsToMilliseconds = 1000;
 	// The trusted http client to make rest calls on the admin or engage node. 
 	private TrustedHttpClient client;
 	// The logger
@@ -513,110 +499,110 @@ public class AnalyticsServiceImpl {
 	 *            from start time to end time.
 	 * @return An xml representation of all of these intervals between start and
 	 *         end.
-	 * @throws TrustedHttpClientException
-	 *             Thrown if rest calls cannot be made. Thrown if it cannot
-	 *             query a rest endpoint.
+	 * @throws UserTrackingException
+	 *             Thrown if the views cannot be retrieved from the user
+	 *             tracking service.
 	 */
   public ViewCollection getViews(String id, String start, String end, String intervalString)
-          throws TrustedHttpClientException {
+          throws UserTrackingException {
     if (canAnalyzeEpisode(id)) {
+      return getViewsOfEpisodes(Collections.singletonList(id), start, end, intervalString);
+    } else {
+      return new ViewCollection();
+    }
+  }
 
-      long limit = DEFAULT_LIMIT;
-      long interval = Long.parseLong(intervalString);
-
-      SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmm");
-      Date startDate = new Date();
-      Date endDate = new Date();
-      try {
-        startDate = dateFormat.parse(start);
-        endDate = dateFormat.parse(end);
-      } catch (ParseException e) {
-        e.printStackTrace();
-      }
+  /**
+   * Gets the number of times each episode of a series was watched and for how long in intervals over a time range.
+   * 
+   * @param seriesID
+   *          The series to get the statistics for.
+   * @param start
+   *          The start of the period to investigate in the form YYYYMMDDHHMM e.g. 201212312359.
+   * @param end
+   *          The end of the period to investigate in the form YYYYMMDDHHMM e.g. 201212312359.
+   * @param intervalString
+   *          The number of seconds to break up the views and durations into from start time to end time.
+   * @return The views of all episodes of the series, interval by interval.
+   * @throws UserTrackingException
+   *           Thrown if the views cannot be retrieved from the user tracking service.
+   */
+  public ViewCollection getSeriesViews(String seriesID, String start, String end, String intervalString)
+          throws UserTrackingException {
+    List<String> episodeIDs = new ArrayList<String>();
+    for (SearchResultItem episode : getEpisodesBySeries(seriesID).getItems()) {
+      episodeIDs.add(episode.getId());
+    }
+    if (episodeIDs.isEmpty()) {
+      return new ViewCollection();
+    }
+    return getViewsOfEpisodes(episodeIDs, start, end, intervalString);
+  }
 
-      ViewCollection viewCollection = new ViewCollection();
-      viewCollection.setLimit(limit);
-      viewCollection.setFrom(startDate);
-      viewCollection.setTo(endDate);
-      viewCollection.setInterval(interval);
+  /**
+   * Gets the views of a number of episodes in intervals over a time range, using a single call to the user tracking
+   * service for all episodes and intervals.
+   * 
+   * @param episodeIDs
+   *          The episodes to get the statistics for.
+   * @param start
+   *          The start of the period in the form YYYYMMDDHHMM.
+   * @param end
+   *          The end of the period in the form YYYYMMDDHHMM.
+   * @param intervalString
+   *          The length of an interval in seconds.
+   * @return A view item for each episode in every interval.
+   * @throws UserTrackingException
+   *           Thrown if the views cannot be retrieved from the user tracking service.
+   */
+  private ViewCollection getViewsOfEpisodes(List<String> episodeIDs, String start, String end, String intervalString)
+          throws UserTrackingException {
+    long interval = Long.parseLong(intervalString);
 
-      long intervalCount = 0;
-      Date intervalStart;
-      Date intervalEnd;
-      HttpGet getInterval;
-      HttpResponse response;
-      Boolean foundViews = false;
-      
-      do {
-        foundViews = false;
-        // Get the start and end of the interval
-        intervalStart = new Date(startDate.getTime() + interval * secondsToMilliseconds * intervalCount);
-        intervalEnd = new Date(startDate.getTime() + interval * secondsToMilliseconds * (intervalCount + 1));
-        String uri = UrlSupport.concat(engageURL, "/usertracking/report.xml");
-        uri += "?from=" + dateFormat.format(intervalStart);
-        uri += "&to=" + dateFormat.format(intervalEnd);
-        uri += "&limit=" + limit;
-        getInterval = new HttpGet(uri);
-        response = client.execute(getInterval);
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmm");
+    Date startDate = new Date();
+    Date endDate = new Date();
+    try {
+      startDate = dateFormat.parse(start);
+      endDate = dateFormat.parse(end);
+    } catch (ParseException e) {
+      logger.warn("Unable to parse the period from " + start + " to " + end, e);
+    }
 
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder;
-        try {
-          dBuilder = dbFactory.newDocumentBuilder();
-          Document document = dBuilder.parse(response.getEntity().getContent());
-          document.getDocumentElement().normalize();
-          NodeList reports = document.getChildNodes();
-          ViewItem viewItem = new ViewItem();
-          for (int i = 0; i < reports.getLength(); i++) {
-            Node report = reports.item(i);
-            NodeList reportItems = report.getChildNodes();
-            for (int j = 0; j < reportItems.getLength(); j++) {
-              Node reportItem = reportItems.item(j);
-              if (reportItem.getNodeType() == Node.ELEMENT_NODE) {
-                Element eElement = (Element) reportItem;
-                String tagID = getTagValue(EPISODE_ID_TAG_NAME, eElement);
-                if (id.equals(tagID)) {
-                  viewItem.setId(getTagValue(EPISODE_ID_TAG_NAME, eElement));
-                  viewItem.setViews(getTagValue(VIEWS_XML_TAG, eElement));
-                  viewItem.setPlayed(getTagValue(PLAYED_XML_TAG, eElement));
-                  viewItem.setStart(dateFormat.format(intervalStart));
-                  viewItem.setEnd(dateFormat.format(intervalEnd));
-                  viewCollection.add(viewItem);
-                  viewCollection.setViews(viewCollection.getViews()
-                          + Integer.parseInt(getTagValue(VIEWS_XML_TAG, eElement)));
-                  viewCollection.setPlayed(viewCollection.getPlayed()
-                          + Integer.parseInt(getTagValue(PLAYED_XML_TAG, eElement)));
-                  viewCollection.setTotal(viewCollection.getTotal() + 1);
-                  foundViews = true;
-                }
+    ViewCollection viewCollection = new ViewCollection();
+    viewCollection.setLimit(DEFAULT_LIMIT);
+    viewCollection.setFrom(startDate);
+    viewCollection.setTo(endDate);
+    viewCollection.setInterval(interval);
 
-              }
-            }
-          }
-          // Handle the case where there is no data for this episode during this interval. 
-          if (!foundViews) {
-            viewItem.setId(id);
-            viewItem.setViews("0");
-            viewItem.setPlayed("0");
-            viewItem.setStart(dateFormat.format(intervalStart));
-            viewItem.setEnd(dateFormat.format(intervalEnd));
-            viewCollection.add(viewItem);
-          }
-        } catch (IllegalStateException e) {
-          e.printStackTrace();
-        } catch (SAXException e) {
-          e.printStackTrace();
-        } catch (IOException e) {
-          e.printStackTrace();
-        } catch (ParserConfigurationException e1) {
-          e1.printStackTrace();
+    for (Report report : userTrackingService.getReports(episodeIDs, startDate, endDate, interval)) {
+      String intervalStart = dateFormat.format(report.getFrom().getTime());
+      String intervalEnd = dateFormat.format(report.getTo().getTime());
+      Map<String, ReportItem> reportItems = new HashMap<String, ReportItem>();
+      for (ReportItem reportItem : report.getReportItems()) {
+        reportItems.put(reportItem.getEpisodeId(), reportItem);
+      }
+      for (String episodeID : episodeIDs) {
+        ViewItem viewItem = new ViewItem();
+        viewItem.setId(episodeID);
+        viewItem.setStart(intervalStart);
+        viewItem.setEnd(intervalEnd);
+        ReportItem reportItem = reportItems.get(episodeID);
+        if (reportItem != null) {
+          viewItem.setViews(Long.toString(reportItem.getViews()));
+          viewItem.setPlayed(Long.toString(reportItem.getPlayed()));
+          viewCollection.setViews(viewCollection.getViews() + (int) reportItem.getViews());
+          viewCollection.setPlayed(viewCollection.getPlayed() + reportItem.getPlayed());
+          viewCollection.setTotal(viewCollection.getTotal() + 1);
+        } else {
+          // There is no data for this episode during this interval.
+          viewItem.setViews("0");
+          viewItem.setPlayed("0");
         }
-        intervalCount++;
-      } while (intervalStart.before(endDate) && intervalEnd.before(endDate));
-      return viewCollection;
-    } else {
-      return new ViewCollection();
+        viewCollection.add(viewItem);
+      }
     }
+    return viewCollection;
   }
 
   public Response getUserActionsAsXml(String type, String day, String limit, String offset) {
@@ -872,18 +858,4 @@ public class AnalyticsServiceImpl {
     }
     return Response.ok(result).type(mediaType).build();
   }
-  
-  /**
-   * Get the value of an xml tag. 
-   * 
-   * @param sTag
-   *          The xml tag to look for and get the first result.
-   * @param eElement
-   *          The element to check for the tag.
-   * @return The value associated with the xml tag.
-   */
-  private static String getTagValue(String sTag, Element eElement) {
-    Node nodeValue = eElement.getElementsByTagName(sTag).item(0);
-    return nodeValue.getFirstChild().getNodeValue();
-	}
 }
@@ -0,0 +1,98 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.job.api;
+
+import org.opencastproject.mediapackage.MediaPackage;
+import org.opencastproject.mediapackage.MediaPackageElementParser;
+import org.opencastproject.mediapackage.MediaPackageFixture;
+import org.opencastproject.mediapackage.MediaPackageParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the serialization of jobs, which happens on every dispatch and every job update sent between the nodes.
+ * The job carries the media package as its argument and a track as its payload, like the encoding jobs do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JobParserBenchmark {
+
+  /** The media package fixture */
+  @Param({ "SMALL", "LARGE", "CAPTIONS" })
+  public MediaPackageFixture fixture;
+
+  /** The job */
+  private Job job;
+
+  /** The job as xml */
+  private String xml;
+
+  @Setup
+  public void setUp() throws Exception {
+    MediaPackage mediaPackage = fixture.create();
+    JaxbJob jaxbJob = new JaxbJob(4711L);
+    jaxbJob.setJobType("org.opencastproject.composer");
+    jaxbJob.setOperation("Encode");
+    List<String> arguments = new ArrayList<String>();
+    arguments.add(MediaPackageParser.getAsXml(mediaPackage));
+    arguments.add("flash.http");
+    jaxbJob.setArguments(arguments);
+    jaxbJob.setPayload(MediaPackageElementParser.getAsXml(mediaPackage.getTracks()[0]));
+    jaxbJob.setStatus(Job.Status.FINISHED);
+    jaxbJob.setCreator("admin");
+    jaxbJob.setOrganization("mh_default_org");
+    jaxbJob.setCreatedHost("http://localhost:8080");
+    jaxbJob.setProcessingHost("http://localhost:8080");
+    jaxbJob.setDateCreated(new Date(1300000000000L));
+    jaxbJob.setDateStarted(new Date(1300000001000L));
+    jaxbJob.setDateCompleted(new Date(1300000061000L));
+    jaxbJob.setParentJobId(4710L);
+    jaxbJob.setRootJobId(4700L);
+    jaxbJob.setDispatchable(true);
+    job = jaxbJob;
+    xml = JobParser.toXml(job);
+  }
+
+  @Benchmark
+  public String toXml() throws Exception {
+    return JobParser.toXml(job);
+  }
+
+  @Benchmark
+  public Job parseJob() throws Exception {
+    return JobParser.parseJob(xml);
+  }
+
+}
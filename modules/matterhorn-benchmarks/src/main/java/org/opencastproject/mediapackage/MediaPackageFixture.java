@@ -0,0 +1,128 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.mediapackage;
+
+import org.opencastproject.mediapackage.track.AudioStreamImpl;
+import org.opencastproject.mediapackage.track.ScanType;
+import org.opencastproject.mediapackage.track.TrackImpl;
+import org.opencastproject.mediapackage.track.VideoStreamImpl;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.ChecksumType;
+import org.opencastproject.util.MimeTypes;
+
+import java.net.URI;
+
+/**
+ * The media packages used by the benchmarks. Use the constant names as values of the <code>fixture</code> parameter,
+ * e.g. <code>-p fixture=LARGE</code>.
+ */
+public enum MediaPackageFixture {
+
+  /** A freshly ingested recording: one track, the episode and series catalogs and a cover */
+  SMALL(1, 0),
+
+  /** A media package late in a workflow, with the source tracks and all of their encoded derivatives */
+  LARGE(50, 0),
+
+  /** A recording with captions and text analysis results in many languages */
+  CAPTIONS(2, 40);
+
+  /** The languages of the captions */
+  private static final String[] LANGUAGES = { "en", "de", "fr", "es", "it", "nl", "sv", "pt", "ja", "zh" };
+
+  /** The number of tracks */
+  private final int tracks;
+
+  /** The number of caption catalogs */
+  private final int captions;
+
+  private MediaPackageFixture(int tracks, int captions) {
+    this.tracks = tracks;
+    this.captions = captions;
+  }
+
+  /**
+   * Creates a new instance of the media package.
+   *
+   * @return the media package
+   * @throws Exception
+   *           if the media package can't be created
+   */
+  public MediaPackage create() throws Exception {
+    MediaPackage mp = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().createNew();
+    mp.setTitle("Introduction to media package serialization");
+    mp.setSeries("10.0000/1");
+    mp.setSeriesTitle("Benchmarks");
+    mp.addCreator("Jane Doe");
+    mp.addContributor("John Doe");
+    mp.addSubject("Performance");
+    mp.setLanguage("en");
+    mp.setLicense("Creative Commons 3.0: Attribution-NonCommercial-NoDerivs");
+
+    MediaPackageElementBuilder elementBuilder = MediaPackageElementBuilderFactory.newInstance().newElementBuilder();
+    for (int i = 0; i < tracks; i++) {
+      TrackImpl track = (TrackImpl) elementBuilder.elementFromURI(
+              new URI("http://localhost/files/mediapackage/track-" + i + ".mp4"), Track.TYPE,
+              i % 2 == 0 ? MediaPackageElements.PRESENTER_SOURCE : MediaPackageElements.PRESENTATION_SOURCE);
+      track.setMimeType(MimeTypes.MPEG4);
+      track.setDuration(3600000L);
+      track.setChecksum(Checksum.create(ChecksumType.DEFAULT_TYPE, "43b7d843b02c4a429b2f547a4f230d31"));
+      track.addTag("engage");
+      track.addTag("archive");
+      AudioStreamImpl audio = new AudioStreamImpl("audio-" + i);
+      audio.setFormat("AAC");
+      audio.setChannels(2);
+      audio.setSamplingRate(44100);
+      audio.setBitRate(128000.0f);
+      track.addStream(audio);
+      VideoStreamImpl video = new VideoStreamImpl("video-" + i);
+      video.setFormat("H.264");
+      video.setFrameWidth(1280);
+      video.setFrameHeight(720);
+      video.setFrameRate(25.0f);
+      video.setBitRate(1500000.0f);
+      video.setScanType(ScanType.Progressive);
+      track.addStream(video);
+      mp.add(track);
+    }
+
+    for (int i = 0; i < captions; i++) {
+      String language = LANGUAGES[i % LANGUAGES.length];
+      Catalog caption = (Catalog) elementBuilder.elementFromURI(
+              new URI("http://localhost/files/mediapackage/captions-" + i + ".dfxp.xml"), Catalog.TYPE,
+              i % 2 == 0 ? MediaPackageElements.CAPTION_DFXP_FLAVOR : MediaPackageElements.TEXTS);
+      caption.setMimeType(MimeTypes.XML);
+      caption.setChecksum(Checksum.create(ChecksumType.DEFAULT_TYPE, "9d6ba4e1b1e4bd4d2c7f3b7e6b8e2c1a"));
+      caption.addTag("engage");
+      caption.addTag("lang:" + language);
+      mp.add(caption);
+    }
+
+    Catalog episode = (Catalog) elementBuilder.elementFromURI(new URI("http://localhost/files/episode.xml"),
+            Catalog.TYPE, MediaPackageElements.EPISODE);
+    mp.add(episode);
+    Catalog series = (Catalog) elementBuilder.elementFromURI(new URI("http://localhost/files/series.xml"),
+            Catalog.TYPE, MediaPackageElements.SERIES);
+    mp.add(series);
+    Attachment cover = (Attachment) elementBuilder.elementFromURI(new URI("http://localhost/files/cover.png"),
+            Attachment.TYPE, MediaPackageElements.MEDIAPACKAGE_COVER_FLAVOR);
+    mp.add(cover);
+    mp.add(PublicationImpl.publication("engage", "engage-player", new URI("http://localhost/engage/ui/watch.html"),
+            MimeTypes.parseMimeType("text/html")));
+    return mp;
+  }
+
+}
@@ -0,0 +1,91 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.mediapackage;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.Marshaller;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Compares the JAXB mapping of media packages with the streaming reader and writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MediaPackageXmlBenchmark {
+
+  /** The media package fixture */
+  @Param({ "SMALL", "LARGE", "CAPTIONS" })
+  public MediaPackageFixture fixture;
+
+  /** The media package */
+  private MediaPackage mediaPackage;
+
+  /** The serialized media package */
+  private String xml;
+
+  @Setup
+  public void setUp() throws Exception {
+    mediaPackage = fixture.create();
+    xml = MediaPackageParser.getAsXml(mediaPackage);
+  }
+
+  @Benchmark
+  public MediaPackage parseJaxb() throws Exception {
+    return MediaPackageImpl.context.createUnmarshaller()
+            .unmarshal(new StreamSource(IOUtils.toInputStream(xml, "UTF-8")), MediaPackageImpl.class).getValue();
+  }
+
+  @Benchmark
+  public MediaPackage parseStax() throws Exception {
+    return MediaPackageStaxReader.read(IOUtils.toInputStream(xml, "UTF-8"), null);
+  }
+
+  @Benchmark
+  public String serializeJaxb() throws Exception {
+    Marshaller marshaller = MediaPackageImpl.context.createMarshaller();
+    marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+    StringWriter writer = new StringWriter();
+    marshaller.marshal(mediaPackage, writer);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public String serializeStax() throws Exception {
+    StringWriter writer = new StringWriter();
+    MediaPackageStaxWriter.write(mediaPackage, writer);
+    return writer.toString();
+  }
+
+}
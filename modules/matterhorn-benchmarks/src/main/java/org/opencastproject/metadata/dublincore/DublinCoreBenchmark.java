@@ -0,0 +1,124 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.metadata.dublincore;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading and serializing of dublin core catalogs, which includes the dom based serialization of
+ * {@link org.opencastproject.mediapackage.XMLCatalogImpl}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DublinCoreBenchmark {
+
+  /** The languages of the translated values */
+  private static final String[] LANGUAGES = { "en", "de", "fr", "es", "it", "nl", "sv", "pt", "ja", "zh" };
+
+  /** The number of languages the title, description and subjects are available in */
+  @Param({ "1", "10" })
+  public int languages;
+
+  /** The episode catalog */
+  private DublinCoreCatalog catalog;
+
+  /** The episode catalog as xml */
+  private String xml;
+
+  /** The episode catalog as json */
+  private String json;
+
+  @Setup
+  public void setUp() throws Exception {
+    catalog = createEpisodeCatalog(languages);
+    xml = catalog.toXmlString();
+    json = catalog.toJson();
+  }
+
+  @Benchmark
+  public DublinCoreCatalog loadXml() throws Exception {
+    return new DublinCoreCatalogImpl(IOUtils.toInputStream(xml, "UTF-8"));
+  }
+
+  @Benchmark
+  public DublinCoreCatalog loadJson() throws Exception {
+    return new DublinCoreCatalogImpl(IOUtils.toInputStream(json, "UTF-8"));
+  }
+
+  @Benchmark
+  public Document toXml() throws Exception {
+    return catalog.toXml();
+  }
+
+  @Benchmark
+  public String toXmlString() throws Exception {
+    return catalog.toXmlString();
+  }
+
+  @Benchmark
+  public String toJson() throws Exception {
+    return catalog.toJson();
+  }
+
+  /**
+   * Creates an episode catalog as created by the capture agents and the admin ui, with the translatable values in the
+   * given number of languages.
+   */
+  static DublinCoreCatalog createEpisodeCatalog(int languages) {
+    DublinCoreCatalog dc = DublinCoreCatalogImpl.newInstance();
+    dc.set(DublinCore.PROPERTY_IDENTIFIER, "10.0000/5819");
+    dc.set(DublinCore.PROPERTY_IS_PART_OF, "10.0000/1");
+    dc.set(DublinCore.PROPERTY_CREATOR, "Jane Doe");
+    dc.add(DublinCore.PROPERTY_CONTRIBUTOR, "John Doe");
+    dc.add(DublinCore.PROPERTY_CONTRIBUTOR, "Richard Roe");
+    dc.set(DublinCore.PROPERTY_PUBLISHER, "University of California, Berkeley");
+    dc.set(DublinCore.PROPERTY_LANGUAGE, "en");
+    dc.set(DublinCore.PROPERTY_LICENSE, "Creative Commons 3.0: Attribution-NonCommercial-NoDerivs");
+    dc.set(DublinCore.PROPERTY_SPATIAL, "Room 2040, Valley Life Sciences Building");
+    dc.set(DublinCore.PROPERTY_CREATED, EncodingSchemeUtils.encodeDate(new Date(1300000000000L), Precision.Second));
+    dc.set(DublinCore.PROPERTY_EXTENT, EncodingSchemeUtils.encodeDuration(3600000L));
+    dc.set(DublinCoreCatalogImpl.PROPERTY_PROMOTED, "false");
+    for (int i = 0; i < languages; i++) {
+      String language = LANGUAGES[i % LANGUAGES.length];
+      dc.add(DublinCore.PROPERTY_TITLE, "Introduction to media package serialization (" + language + ")", language);
+      dc.add(DublinCore.PROPERTY_DESCRIPTION, "A lecture about the serialization of media packages, catalogs and "
+              + "jobs, and about how to measure it. (" + language + ")", language);
+      dc.add(DublinCore.PROPERTY_SUBJECT, "Performance (" + language + ")", language);
+      dc.add(DublinCore.PROPERTY_SUBJECT, "Serialization (" + language + ")", language);
+    }
+    return dc;
+  }
+
+}
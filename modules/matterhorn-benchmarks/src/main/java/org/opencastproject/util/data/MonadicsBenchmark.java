@@ -0,0 +1,112 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.util.data;
+
+import static org.opencastproject.util.data.Monadics.mlazy;
+import static org.opencastproject.util.data.Monadics.mlist;
+
+import org.opencastproject.mediapackage.MediaPackageElement;
+import org.opencastproject.mediapackage.MediaPackageFixture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the functional helpers in {@link Monadics} and {@link Collections} with a plain loop, using the typical
+ * "select the elements with a tag and get their urls" pattern found in the workflow operation handlers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MonadicsBenchmark {
+
+  /** The tag to select */
+  private static final String TAG = "engage";
+
+  /** Selects the elements with the tag */
+  private static final Predicate<MediaPackageElement> hasTag = new Predicate<MediaPackageElement>() {
+    @Override
+    public Boolean apply(MediaPackageElement element) {
+      return element.containsTag(TAG);
+    }
+  };
+
+  /** Gets the url of an element */
+  private static final Function<MediaPackageElement, URI> getUri = new Function<MediaPackageElement, URI>() {
+    @Override
+    public URI apply(MediaPackageElement element) {
+      return element.getURI();
+    }
+  };
+
+  /** The media package fixture */
+  @Param({ "SMALL", "LARGE", "CAPTIONS" })
+  public MediaPackageFixture fixture;
+
+  /** The elements of the media package */
+  private List<MediaPackageElement> elements;
+
+  @Setup
+  public void setUp() throws Exception {
+    elements = Arrays.asList(fixture.create().getElements());
+  }
+
+  @Benchmark
+  public List<URI> loop() {
+    List<URI> uris = new ArrayList<URI>();
+    for (MediaPackageElement element : elements) {
+      if (element.containsTag(TAG))
+        uris.add(element.getURI());
+    }
+    return uris;
+  }
+
+  @Benchmark
+  public List<URI> mlistFilterMap() {
+    return mlist(elements).filter(hasTag).map(getUri).value();
+  }
+
+  @Benchmark
+  public List<URI> mlazyFilterMap() {
+    return Collections.toList(mlazy(elements).filter(hasTag).map(getUri).value());
+  }
+
+  @Benchmark
+  @SuppressWarnings("deprecation")
+  public List<URI> collectionsFilterMap() {
+    return Collections.map(Collections.filter(new ArrayList<MediaPackageElement>(elements), hasTag),
+            new ArrayList<URI>(), getUri);
+  }
+
+}
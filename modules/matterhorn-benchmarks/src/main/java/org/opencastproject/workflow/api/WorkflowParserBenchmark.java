@@ -0,0 +1,108 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.workflow.api;
+
+import org.opencastproject.mediapackage.MediaPackageFixture;
+import org.opencastproject.security.api.DefaultOrganization;
+import org.opencastproject.security.api.User;
+import org.opencastproject.workflow.api.WorkflowInstance.WorkflowState;
+import org.opencastproject.workflow.api.WorkflowOperationInstance.OperationState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the serialization of workflow instances, which happens on every update of a running workflow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class WorkflowParserBenchmark {
+
+  /** The operations of the workflow, modeled after the compose-distribute-publish workflow */
+  private static final String[] OPERATIONS = { "inspect", "prepare-av", "compose", "image", "segment-video",
+          "extract-text", "distribute-download", "distribute-streaming", "publish", "cleanup" };
+
+  /** The media package fixture */
+  @Param({ "SMALL", "LARGE", "CAPTIONS" })
+  public MediaPackageFixture fixture;
+
+  /** The workflow instance */
+  private WorkflowInstance workflow;
+
+  /** The workflow instance as xml */
+  private String xml;
+
+  @Setup
+  public void setUp() throws Exception {
+    WorkflowDefinitionImpl definition = new WorkflowDefinitionImpl();
+    definition.setId("compose-distribute-publish");
+    definition.setTitle("Encode, Analyze, and Distribute");
+    for (String operation : OPERATIONS) {
+      WorkflowOperationDefinitionImpl operationDefinition = new WorkflowOperationDefinitionImpl(operation,
+              "The " + operation + " operation", "error", true);
+      operationDefinition.setConfiguration("source-flavors", "presenter/source,presentation/source");
+      operationDefinition.setConfiguration("target-tags", "engage,archive");
+      definition.add(operationDefinition);
+    }
+
+    Map<String, String> properties = new HashMap<String, String>();
+    properties.put("archiveOp", "true");
+    properties.put("distribution", "Matterhorn Media Module");
+    DefaultOrganization organization = new DefaultOrganization();
+    User creator = new User("admin", organization.getId(),
+            new String[] { DefaultOrganization.DEFAULT_ORGANIZATION_ADMIN });
+    WorkflowInstanceImpl instance = new WorkflowInstanceImpl(definition, fixture.create(), null, creator,
+            organization, properties);
+    instance.setId(4711L);
+    instance.setState(WorkflowState.RUNNING);
+    List<WorkflowOperationInstance> operations = instance.getOperations();
+    for (int i = 0; i < operations.size() / 2; i++) {
+      operations.get(i).setState(OperationState.SUCCEEDED);
+    }
+    operations.get(operations.size() / 2).setState(OperationState.RUNNING);
+    workflow = instance;
+    xml = WorkflowParser.toXml(workflow);
+  }
+
+  @Benchmark
+  public String toXml() throws Exception {
+    return WorkflowParser.toXml(workflow);
+  }
+
+  @Benchmark
+  public WorkflowInstance parseWorkflowInstance() throws Exception {
+    return WorkflowParser.parseWorkflowInstance(xml);
+  }
+
+}
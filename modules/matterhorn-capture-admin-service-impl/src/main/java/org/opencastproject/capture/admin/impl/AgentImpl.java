@@ -49,7 +49,8 @@ import javax.persistence.Transient;
 @Table(name = "mh_capture_agent_state")
 @NamedQueries({
   @NamedQuery(name = "Agent.get", query = "select a from AgentImpl a where a.name = :id and a.organization = :org"),
-  @NamedQuery(name = "Agent.byOrganization", query = "SELECT a FROM AgentImpl a where a.organization = :org")
+  @NamedQuery(name = "Agent.byOrganization", query = "SELECT a FROM AgentImpl a where a.organization = :org"),
+  @NamedQuery(name = "Agent.findAll", query = "SELECT a FROM AgentImpl a")
 })
 public class AgentImpl implements Agent {
 
@@ -137,6 +138,25 @@ public class AgentImpl implements Agent {
     setConfiguration(configuration);
   }
 
+  /**
+   * Creates a copy of the agent, which can be modified without affecting the original.
+   * 
+   * @param agent
+   *          the agent to copy
+   */
+  AgentImpl(AgentImpl agent) {
+    name = agent.name;
+    state = agent.state;
+    url = agent.url;
+    organization = agent.organization;
+    lastHeardFrom = agent.lastHeardFrom;
+    if (agent.schedulerRoles != null)
+      schedulerRoles = new HashSet<String>(agent.schedulerRoles);
+    configurationString = agent.configurationString;
+    capabilitiesProperties = agent.capabilitiesProperties;
+    configurationProperties = agent.configurationProperties;
+  }
+
   /**
    * {@inheritDoc}
    * 
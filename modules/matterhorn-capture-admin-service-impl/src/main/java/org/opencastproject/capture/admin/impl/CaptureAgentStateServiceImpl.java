@@ -29,16 +29,12 @@ import org.opencastproject.security.api.SecurityService;
 import org.opencastproject.security.api.UnauthorizedException;
 import org.opencastproject.security.api.User;
 import org.opencastproject.util.NotFoundException;
-import org.opencastproject.util.data.Tuple;
 import org.opencastproject.workflow.api.WorkflowDatabaseException;
 import org.opencastproject.workflow.api.WorkflowInstance;
 import org.opencastproject.workflow.api.WorkflowInstance.WorkflowState;
 import org.opencastproject.workflow.api.WorkflowOperationInstance;
 import org.opencastproject.workflow.api.WorkflowService;
 
-import com.google.common.base.Function;
-import com.google.common.collect.MapMaker;
-
 import org.apache.commons.lang.StringUtils;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedServiceFactory;
@@ -46,9 +42,8 @@ import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -58,18 +53,27 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
+import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 import javax.persistence.RollbackException;
 import javax.persistence.spi.PersistenceProvider;
 
 /**
  * IMPL for the capture-admin service (MH-1336, MH-1394, MH-1457, MH-1475 and MH-1476).
+ * <p>
+ * The state of the agents and recordings is held in memory, so that the regular check-ins of the capture agents don't
+ * hit the database. Changes to the state, configuration, url or scheduler roles of an agent are written to the database
+ * right away. Check-ins that change nothing but the time an agent or recording was last heard from, as well as all
+ * recording states, are written back by a periodic snapshot and when the service is deactivated.
  */
 public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, ManagedServiceFactory {
 
@@ -81,6 +85,12 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
   /** The delimiter for the CA configuration cache */
   private static final String DELIMITER = ";==;";
 
+  /** Configuration key for the number of seconds between two snapshots of the in-memory state */
+  public static final String SNAPSHOT_INTERVAL_KEY = "org.opencastproject.capture.admin.snapshot.interval";
+
+  /** The default number of seconds between two snapshots of the in-memory state */
+  public static final int DEFAULT_SNAPSHOT_INTERVAL = 60;
+
   /** The JPA provider */
   protected PersistenceProvider persistenceProvider;
 
@@ -96,17 +106,23 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
   /** The security service */
   protected SecurityService securityService;
 
-  // TODO: Remove the in-memory recordings map, and use the database instead
-  private HashMap<String, Recording> recordings;
+  /** The recordings by identifier */
+  private ConcurrentMap<String, Recording> recordings;
 
   /** Maps the configuration PID to the agent ID, so agents can be updated via the configuration factory pattern */
   protected Map<String, String> pidMap = new ConcurrentHashMap<String, String>();
 
-  /** A cache of CA properties, which lightens the load on the SQL server */
-  private ConcurrentMap<String, Object> agentCache = null;
+  /** The agents by name and organization. Agents in this map are never modified, they are replaced by copies */
+  private ConcurrentMap<String, AgentImpl> agents = new ConcurrentHashMap<String, AgentImpl>();
 
-  /** A token to store in the miss cache */
-  protected Object nullToken = new Object();
+  /** The agents that have checked in since the last snapshot */
+  private Set<String> dirtyAgents = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /** The recordings that have been modified or removed since the last snapshot */
+  private Set<String> dirtyRecordings = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /** Writes snapshots of the in-memory state to the database */
+  private ScheduledExecutorService snapshotExecutor;
 
   /**
    * @param persistenceProvider
@@ -144,34 +160,160 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
 
   public CaptureAgentStateServiceImpl() {
     logger.info("CaptureAgentStateServiceImpl starting.");
-    recordings = new HashMap<String, Recording>();
+    recordings = new ConcurrentHashMap<String, Recording>();
   }
 
+  @SuppressWarnings("unchecked")
   public void activate(ComponentContext cc) {
     emf = persistenceProvider.createEntityManagerFactory(
             "org.opencastproject.capture.admin.impl.CaptureAgentStateServiceImpl", persistenceProperties);
 
-    // Setup the agent cache
-    agentCache = new MapMaker().expireAfterWrite(1, TimeUnit.HOURS).makeComputingMap(new Function<String, Object>() {
-      public Object apply(String id) {
-        String[] key = id.split(DELIMITER);
-        AgentImpl agent;
-        try {
-          agent = getAgent(key[0], key[1]);
-        } catch (NotFoundException e) {
-          return nullToken;
+    // Load the agents and recordings into memory
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      for (AgentImpl agent : (List<AgentImpl>) em.createNamedQuery("Agent.findAll").getResultList()) {
+        agents.put(getKey(agent.getName(), agent.getOrganization()), agent);
+      }
+      try {
+        for (RecordingImpl recording : (List<RecordingImpl>) em.createNamedQuery("Recording.findAll").getResultList()) {
+          recordings.put(recording.getID(), recording);
         }
-        return agent == null ? nullToken : Tuple.tuple(agent.getState(), agent.getConfiguration());
+      } catch (PersistenceException e) {
+        // Don't keep the agents from being served if the database has not been upgraded yet
+        logger.error("Unable to load the recording states, make sure that the database schema has been upgraded "
+                + "(see docs/upgrade)", e);
+      }
+    } finally {
+      if (em != null)
+        em.close();
+    }
+    logger.info("Loaded {} capture agents and {} recordings", agents.size(), recordings.size());
+
+    int interval = DEFAULT_SNAPSHOT_INTERVAL;
+    String intervalConfig = cc == null ? null : StringUtils.trimToNull(cc.getBundleContext().getProperty(
+            SNAPSHOT_INTERVAL_KEY));
+    if (intervalConfig != null) {
+      try {
+        interval = Integer.parseInt(intervalConfig);
+      } catch (NumberFormatException e) {
+        logger.warn("Invalid snapshot interval '{}', using {} seconds", intervalConfig, DEFAULT_SNAPSHOT_INTERVAL);
+      }
+    }
+    snapshotExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "capture-admin-snapshot");
+        thread.setDaemon(true);
+        return thread;
       }
     });
+    snapshotExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          snapshot();
+        } catch (Exception e) {
+          logger.error("Error writing the capture agent state snapshot", e);
+        }
+      }
+    }, interval, interval, TimeUnit.SECONDS);
   }
 
   public void deactivate() {
-    agentCache.clear();
+    if (snapshotExecutor != null) {
+      snapshotExecutor.shutdown();
+      try {
+        snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      snapshot();
+    } catch (Exception e) {
+      logger.error("Error writing the capture agent state snapshot", e);
+    }
+    agents.clear();
+    recordings.clear();
     if (emf != null)
       emf.close();
   }
 
+  /**
+   * Writes the agents and recordings that have checked in or changed since the last snapshot to the database.
+   */
+  protected void snapshot() {
+    if (dirtyAgents.isEmpty() && dirtyRecordings.isEmpty())
+      return;
+    List<String> agentKeys = new LinkedList<String>();
+    List<String> recordingIds = new LinkedList<String>();
+    boolean committed = false;
+    EntityManager em = null;
+    EntityTransaction tx = null;
+    try {
+      em = emf.createEntityManager();
+      tx = em.getTransaction();
+      tx.begin();
+      for (String key : dirtyAgents) {
+        dirtyAgents.remove(key);
+        agentKeys.add(key);
+        AgentImpl agent = agents.get(key);
+        if (agent == null)
+          continue;
+        AgentImpl existing = getAgentEntity(agent.getName(), agent.getOrganization(), em);
+        if (existing != null) {
+          existing.setLastHeardFrom(agent.getLastHeardFrom());
+          em.merge(existing);
+        }
+      }
+      for (String id : dirtyRecordings) {
+        dirtyRecordings.remove(id);
+        recordingIds.add(id);
+        Recording recording = recordings.get(id);
+        RecordingImpl existing = em.find(RecordingImpl.class, id);
+        if (recording == null) {
+          if (existing != null)
+            em.remove(existing);
+        } else if (existing == null) {
+          em.persist(recording);
+        } else {
+          existing.setState(recording.getState());
+          existing.setLastCheckinTime(recording.getLastCheckinTime());
+          em.merge(existing);
+        }
+      }
+      tx.commit();
+      committed = true;
+      logger.debug("Wrote snapshot of {} agents and {} recordings", agentKeys.size(), recordingIds.size());
+    } catch (RollbackException e) {
+      logger.warn("Unable to commit the capture agent state snapshot: {}", e.getMessage());
+    } finally {
+      if (tx != null && tx.isActive())
+        tx.rollback();
+      if (em != null)
+        em.close();
+      // Retry with the next snapshot if this one has failed
+      if (!committed) {
+        dirtyAgents.addAll(agentKeys);
+        dirtyRecordings.addAll(recordingIds);
+      }
+    }
+  }
+
+  /**
+   * Returns the key of an agent in the in-memory state.
+   * 
+   * @param name
+   *          the agent name
+   * @param organization
+   *          the organization identifier
+   * @return the key
+   */
+  private static String getKey(String name, String organization) {
+    return name.concat(DELIMITER).concat(organization);
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -202,17 +344,10 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
    * @return the agent
    */
   protected AgentImpl getAgent(String name, String org) throws NotFoundException {
-    EntityManager em = null;
-    try {
-      em = emf.createEntityManager();
-      AgentImpl agent = getAgentEntity(name, org, em);
-      if (agent == null)
-        throw new NotFoundException();
-      return agent;
-    } finally {
-      if (em != null)
-        em.close();
-    }
+    AgentImpl agent = agents.get(getKey(name, org));
+    if (agent == null)
+      throw new NotFoundException();
+    return new AgentImpl(agent);
   }
 
   /**
@@ -244,8 +379,7 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
    */
   public String getAgentState(String agentName) throws NotFoundException {
     String orgId = securityService.getOrganization().getId();
-    Tuple<String, Properties> agent = getAgentFromCache(agentName, orgId);
-    return agent.getA();
+    return getAgentFromMemory(agentName, orgId).getState();
   }
 
   /**
@@ -263,19 +397,23 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
       throw new IllegalArgumentException("Can not set agent to an invalid state: ".concat(state));
 
     logger.debug("Agent '{}' state set to '{}'", agentName, state);
-    AgentImpl agent;
     String orgId = securityService.getOrganization().getId();
-    try {
-      String agentState = getAgentFromCache(agentName, orgId).getA();
-      if (agentState.equals(state))
-        return false;
-
-      agent = (AgentImpl) getAgent(agentName);
-
+    String key = getKey(agentName, orgId);
+    AgentImpl current = agents.get(key);
+    AgentImpl agent;
+    if (current != null && current.getState().equals(state)) {
+      // Only remember when the agent has been heard from, the next snapshot will write it to the database
+      agent = new AgentImpl(current);
+      agent.setLastHeardFrom(System.currentTimeMillis());
+      if (agents.replace(key, current, agent))
+        dirtyAgents.add(key);
+      return false;
+    } else if (current != null) {
       // the agent is known, so set the state
       logger.debug("Setting Agent {} to state {}.", agentName, state);
+      agent = new AgentImpl(current);
       agent.setState(state);
-    } catch (NotFoundException e) {
+    } else {
       // If the agent doesn't exists, but the name is not null nor empty, create a new one.
       logger.debug("Creating Agent {} with state {}.", agentName, state);
       agent = new AgentImpl(agentName, orgId, state, "", new Properties());
@@ -313,50 +451,36 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
    * @see org.opencastproject.capture.admin.api.CaptureAgentStateService#getKnownAgents()
    */
   public Map<String, Agent> getKnownAgents() {
-    EntityManager em = null;
     User user = securityService.getUser();
     Organization org = securityService.getOrganization();
     String orgAdmin = org.getAdminRole();
     String[] roles = user.getRoles();
-    try {
-      em = emf.createEntityManager();
-      Query q = em.createNamedQuery("Agent.byOrganization");
-      q.setParameter("org", securityService.getOrganization().getId());
-
-      // Filter the results in memory if this user is not an administrator
-      List<AgentImpl> agents = q.getResultList();
-      if (!user.hasRole(SecurityConstants.GLOBAL_ADMIN_ROLE) && !user.hasRole(orgAdmin)) {
-        for (Iterator<AgentImpl> iter = agents.iterator(); iter.hasNext();) {
-          AgentImpl agent = iter.next();
-          Set<String> schedulerRoles = agent.getSchedulerRoles();
-          // If there are no roles associated with this capture agent, it is available to anyone who can pass the
-          // coarse-grained web layer security
-          if (schedulerRoles == null || schedulerRoles.isEmpty()) {
-            continue;
-          }
-          boolean hasSchedulerRole = false;
-          for (String role : roles) {
-            if (schedulerRoles.contains(role)) {
-              hasSchedulerRole = true;
-              break;
-            }
-          }
-          if (!hasSchedulerRole) {
-            iter.remove();
+    boolean admin = user.hasRole(SecurityConstants.GLOBAL_ADMIN_ROLE) || user.hasRole(orgAdmin);
+
+    // Build the map that the API defines as agent name->agent
+    Map<String, Agent> map = new TreeMap<String, Agent>();
+    for (AgentImpl agent : agents.values()) {
+      if (!org.getId().equals(agent.getOrganization()))
+        continue;
+
+      // Filter the results if this user is not an administrator
+      Set<String> schedulerRoles = agent.getSchedulerRoles();
+      // If there are no roles associated with this capture agent, it is available to anyone who can pass the
+      // coarse-grained web layer security
+      if (!admin && schedulerRoles != null && !schedulerRoles.isEmpty()) {
+        boolean hasSchedulerRole = false;
+        for (String role : roles) {
+          if (schedulerRoles.contains(role)) {
+            hasSchedulerRole = true;
+            break;
           }
         }
+        if (!hasSchedulerRole)
+          continue;
       }
-
-      // Build the map that the API defines as agent name->agent
-      Map<String, Agent> map = new TreeMap<String, Agent>();
-      for (AgentImpl agent : agents) {
-        map.put(agent.getName(), agent);
-      }
-      return map;
-    } finally {
-      if (em != null)
-        em.close();
+      map.put(agent.getName(), new AgentImpl(agent));
     }
+    return map;
   }
 
   /**
@@ -375,18 +499,17 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
    */
   public Properties getAgentConfiguration(String agentName) throws NotFoundException {
     String orgId = securityService.getOrganization().getId();
-    Tuple<String, Properties> agent = getAgentFromCache(agentName, orgId);
-    return agent.getB();
+    return getAgentFromMemory(agentName, orgId).getConfiguration();
   }
 
-  @SuppressWarnings("unchecked")
-  private Tuple<String, Properties> getAgentFromCache(String agentName, String orgId) throws NotFoundException {
-    Object agent = agentCache.get(agentName.concat(DELIMITER).concat(orgId));
-    if (agent == nullToken) {
+  /**
+   * Gets an agent by name and organization without copying it. The agent must not be modified.
+   */
+  private AgentImpl getAgentFromMemory(String agentName, String orgId) throws NotFoundException {
+    AgentImpl agent = agents.get(getKey(agentName, orgId));
+    if (agent == null)
       throw new NotFoundException();
-    } else {
-      return (Tuple<String, Properties>) agent;
-    }
+    return agent;
   }
 
   /**
@@ -401,11 +524,10 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
     String orgId = securityService.getOrganization().getId();
     AgentImpl agent;
     try {
-      Properties agentConfig = getAgentFromCache(agentName, orgId).getB();
-      if (agentConfig.equals(configuration))
+      agent = getAgent(agentName, orgId);
+      if (agent.getConfiguration().equals(configuration))
         return false;
 
-      agent = (AgentImpl) getAgent(agentName);
       logger.debug("Setting Agent {}'s capabilities", agentName);
       agent.setConfiguration(configuration);
     } catch (NotFoundException e) {
@@ -418,12 +540,15 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
   }
 
   /**
-   * Updates or adds an agent to the database.
+   * Updates or adds an agent to the database and to the in-memory state.
    * 
    * @param agent
    *          The Agent you wish to modify or add in the database.
    */
   protected void updateAgentInDatabase(AgentImpl agent) {
+    String key = getKey(agent.getName(), agent.getOrganization());
+    // The agent is written as a whole, including the time it has last been heard from
+    dirtyAgents.remove(key);
     EntityManager em = null;
     EntityTransaction tx = null;
     try {
@@ -442,8 +567,7 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
         em.merge(existing);
       }
       tx.commit();
-      agentCache.put(agent.getName().concat(DELIMITER).concat(agent.getOrganization()),
-              Tuple.tuple(agent.getState(), agent.getConfiguration()));
+      agents.put(key, new AgentImpl(agent));
     } catch (RollbackException e) {
       logger.warn("Unable to commit to DB in updateAgent.");
       throw e;
@@ -472,7 +596,8 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
         throw new NotFoundException();
       em.remove(existing);
       tx.commit();
-      agentCache.remove(agentName.concat(DELIMITER).concat(org));
+      agents.remove(getKey(agentName, org));
+      dirtyAgents.remove(getKey(agentName, org));
     } catch (RollbackException e) {
       logger.warn("Unable to commit to DB in deleteAgent.");
     } finally {
@@ -514,16 +639,16 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
       logger.warn("Invalid recording state: {}.", state);
       return false;
     }
-    Recording req = recordings.get(id);
+    // Replace the recording rather than updating it, so that concurrent check-ins each see a consistent previous state
+    Recording req = recordings.put(id, new RecordingImpl(id, state));
+    dirtyRecordings.add(id);
     if (req != null) {
       if (state.equals(req.getState())) {
+        // The new recording carries the correct last-heard-from time
         logger.debug("Recording state not changed");
-        // Reset the state anyway so that the last-heard-from time is correct...
-        req.setState(state);
         return true;
       } else {
         logger.debug("Setting Recording {} to state {}.", id, state);
-        req.setState(state);
         if (!RecordingState.WORKFLOW_IGNORE_STATES.contains(state)) {
           updateWorkflow(id, state);
         }
@@ -531,8 +656,6 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
       }
     } else {
       logger.debug("Creating Recording {} with state {}.", id, state);
-      Recording r = new RecordingImpl(id, state);
-      recordings.put(id, r);
       updateWorkflow(id, state);
       return true;
     }
@@ -613,6 +736,7 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
     Recording removed = recordings.remove(id);
     if (removed == null)
       throw new NotFoundException();
+    dirtyRecordings.add(id);
   }
 
   /**
@@ -621,7 +745,7 @@ public class CaptureAgentStateServiceImpl implements CaptureAgentStateService, M
    * @see org.opencastproject.capture.admin.api.CaptureAgentStateService#getKnownRecordings()
    */
   public Map<String, Recording> getKnownRecordings() {
-    return recordings;
+    return Collections.unmodifiableMap(recordings);
   }
 
   public List<String> getKnownRecordingsIds() {
@@ -17,27 +17,47 @@ package org.opencastproject.capture.admin.impl;
 
 import org.opencastproject.capture.admin.api.Recording;
 
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
 /**
  * An in-memory construct to represent the state of a recording, and when it was last heard from.
  */
+@Entity
+@Table(name = "mh_capture_agent_recording")
+@NamedQueries({ @NamedQuery(name = "Recording.findAll", query = "SELECT r FROM RecordingImpl r") })
 public class RecordingImpl implements Recording {
 
   /**
    * The ID of the recording.
    */
+  @Id
+  @Column(name = "id", length = 128)
   private String id;
 
   /**
    * The state of the recording. This should be defined from RecordingState.
    */
+  @Column(name = "state", nullable = false, length = 128)
   private String state;
 
   /**
    * The time at which the recording last checked in with this service. Note that this is an absolute timestamp (ie,
    * milliseconds since 1970) rather than a relative timestamp (ie, it's been 3000 ms since it last checked in).
    */
+  @Column(name = "last_heard_from", nullable = false)
   private Long lastHeardFrom;
 
+  /**
+   * Required 0-arg constructor for JPA, creates a blank recording.
+   */
+  public RecordingImpl() {
+  }
+
   /**
    * Builds a representation of the recording.
    * 
@@ -87,4 +107,14 @@ public class RecordingImpl implements Recording {
   public Long getLastCheckinTime() {
     return lastHeardFrom;
   }
+
+  /**
+   * Sets the time at which the recording last checked in with this service.
+   * 
+   * @param lastHeardFrom
+   *          the time in milliseconds since 1970
+   */
+  public void setLastCheckinTime(Long lastHeardFrom) {
+    this.lastHeardFrom = lastHeardFrom;
+  }
 }
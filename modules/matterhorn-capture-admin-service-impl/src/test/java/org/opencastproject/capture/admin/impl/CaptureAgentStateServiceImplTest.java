@@ -364,6 +364,43 @@ public class CaptureAgentStateServiceImplTest {
     }
   }
 
+  @Test
+  public void agentHeartbeat() throws Exception {
+    Assert.assertTrue(service.setAgentState("agent1", IDLE));
+    Long lastHeardFrom = service.getAgent("agent1").getLastHeardFrom();
+    Thread.sleep(10);
+
+    // Checking in with the same state is not a change, but the agent has been heard from
+    Assert.assertFalse(service.setAgentState("agent1", IDLE));
+    Long heartbeat = service.getAgent("agent1").getLastHeardFrom();
+    Assert.assertTrue(heartbeat > lastHeardFrom);
+
+    // The time of the last check in is written to the database with the next snapshot
+    service.deactivate();
+    service = null;
+    setupService();
+    Assert.assertEquals(IDLE, service.getAgent("agent1").getState());
+    Assert.assertEquals(heartbeat, service.getAgent("agent1").getLastHeardFrom());
+  }
+
+  @Test
+  public void stickyRecordings() throws Exception {
+    service.setRecordingState("Recording1", CAPTURING);
+    service.setRecordingState("Recording2", UPLOADING);
+    service.setRecordingState("Recording3", UPLOADING);
+    service.removeRecording("Recording3");
+
+    // Restart the service with the same configuration as before
+    service.deactivate();
+    service = null;
+    setupService();
+
+    Assert.assertEquals(2, service.getKnownRecordings().size());
+    verifyRecording("Recording1", CAPTURING);
+    verifyRecording("Recording2", UPLOADING);
+    verifyRecording("Recording3", null);
+  }
+
   @Test
   public void nonExistantRecording() {
     try {
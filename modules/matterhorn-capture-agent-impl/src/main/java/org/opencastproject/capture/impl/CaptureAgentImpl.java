@@ -52,7 +52,6 @@ import org.opencastproject.util.Checksum;
 import org.opencastproject.util.ChecksumType;
 import org.opencastproject.util.UrlSupport;
 import org.opencastproject.util.XProperties;
-import org.opencastproject.util.ZipUtil;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -60,7 +59,6 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.mime.MultipartEntity;
-import org.apache.http.entity.mime.content.InputStreamBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
@@ -78,6 +76,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.UnsupportedEncodingException;
@@ -87,7 +86,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Dictionary;
@@ -98,8 +99,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
 import javax.activation.MimetypesFileTypeMap;
 
@@ -126,6 +127,9 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
   /** Keeps the recordings which have been successfully ingested. */
   private Map<String, AgentRecording> completedRecordings = new ConcurrentHashMap<String, AgentRecording>();
 
+  /** The CRC-32 checksums of the recorded files, computed along with their md5 checksums, by absolute file */
+  private Map<File, Long> fileCrcs = new ConcurrentHashMap<File, Long>();
+
   /** The agent's name. */
   private String agentName = null;
 
@@ -598,7 +602,7 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
           t.setSize(outputFile.length());
           String[] detectedMimeType = new MimetypesFileTypeMap().getContentType(outputFile).split("/");
           t.setMimeType(mimeType(detectedMimeType[0], detectedMimeType[1]));
-          t.setChecksum(Checksum.create(ChecksumType.DEFAULT_TYPE, outputFile));
+          t.setChecksum(createChecksum(outputFile));
           if (recording.getProperty(CaptureParameters.RECORDING_DURATION) != null) {
             t.setDuration(Long.parseLong(recording.getProperty(CaptureParameters.RECORDING_DURATION)));
           }
@@ -670,29 +674,50 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
   }
 
   /**
-   * Compresses the files contained in the output directory
+   * Creates the md5 checksum of a recorded file. The CRC-32 checksum that is needed to send the file as part of a zip
+   * is computed in the same pass and kept until the recording has been ingested.
    * 
-   * @param recID
-   *          The ID for the recording whose files are going to be zipped
-   * @return A File reference to the file zip created
+   * @param file
+   *          the recorded file
+   * @return the md5 checksum
+   * @throws IOException
+   *           if the file cannot be read
+   * @throws NoSuchAlgorithmException
+   *           if md5 is not supported
    */
-  public File zipFiles(String recID) {
-
-    logger.debug("Compressing files...");
-    AgentRecording recording = pendingRecordings.get(recID);
-    if (recording == null) {
-      logger.error("[zipFiles] Recording {} not found!", recID);
-      setRecordingState(recID, RecordingState.COMPRESSING_ERROR);
-      return null;
-    } else {
-      setRecordingState(recording.getID(), RecordingState.COMPRESSING);
+  private Checksum createChecksum(File file) throws IOException, NoSuchAlgorithmException {
+    MessageDigest md5 = MessageDigest.getInstance(ChecksumType.DEFAULT_TYPE.getName());
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[ZippedMediaPackageBody.BUFFER_SIZE];
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        md5.update(buffer, 0, n);
+        crc.update(buffer, 0, n);
+      }
+    } finally {
+      IOUtils.closeQuietly(in);
     }
+    fileCrcs.put(file.getAbsoluteFile(), crc.getValue());
+    return Checksum.create(ChecksumType.DEFAULT_TYPE, Checksum.convertToHex(md5.digest()));
+  }
 
-    Iterable<MediaPackageElement> mpElements = recording.getMediaPackage().elements();
-    Vector<File> filesToZip = new Vector<File>();
+  /**
+   * Returns the files that make up the zipped mediapackage of a recording: the manifest, followed by the files of the
+   * mediapackage elements. The manifest goes first, so that the ingest service can store the following entries in
+   * their final location.
+   * 
+   * @param recording
+   *          the recording
+   * @return the files
+   */
+  private List<File> getMediaPackageFiles(AgentRecording recording) {
+    List<File> files = new ArrayList<File>();
+    files.add(new File(recording.getBaseDir(), CaptureParameters.MANIFEST_NAME).getAbsoluteFile());
 
-    // Now adds the files from the MediaPackage
-    for (MediaPackageElement item : mpElements) {
+    for (MediaPackageElement item : recording.getMediaPackage().elements()) {
       File tmpFile = null;
       String elementPath = item.getURI().getPath();
 
@@ -707,30 +732,9 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
         // TODO: Is this really a warning or should we fail completely and return an error?
         logger.warn("Required file {} doesn't exist!", tmpFile.getAbsolutePath());
       }
-      filesToZip.add(tmpFile);
-    }
-    filesToZip.add(new File(recording.getBaseDir(), CaptureParameters.MANIFEST_NAME));
-
-    logger.info("Zipping {} files:", filesToZip.size());
-    for (File f : filesToZip) {
-      logger.debug("--> {}", f.getName());
+      files.add(tmpFile.getAbsoluteFile());
     }
-
-    // Nuke any existing zipfile, we want to recreate it if it already exists.
-    removeZipFile(recording);
-
-    // Return a pointer to the zipped file
-    File returnZip;
-    try {
-      File outputZip = new File(recording.getBaseDir(), CaptureParameters.ZIP_NAME);
-      returnZip = ZipUtil.zip(filesToZip.toArray(new File[filesToZip.size()]), outputZip, ZipUtil.NO_COMPRESSION);
-    } catch (IOException e) {
-      logger.error("An IOException has occurred while zipping the files for recording {}: {}", recID, e);
-      return null;
-    }
-
-    return returnZip;
-
+    return files;
   }
 
   /** 
@@ -747,7 +751,8 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
   // See the ComposerServiceRemoteImpl to get an idea of the approach
   // The idea is to get the details of the HTTP interaction out of the client code
   /**
-   * Sends a file to the REST ingest service.
+   * Sends the manifest and the files of a recording as a zip to the REST ingest service. The zip is written straight
+   * into the request, without creating a zip file first.
    * 
    * @param recID
    *          The ID for the recording to be ingested.
@@ -785,9 +790,14 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
       return -3;
     }
 
-    File fileDesc = new File(recording.getBaseDir(), CaptureParameters.ZIP_NAME);
+    File manifest = new File(recording.getBaseDir(), CaptureParameters.MANIFEST_NAME);
+    if (!manifest.isFile()) {
+      logger.error("Could not find manifest " + manifest.getAbsolutePath());
+      return -5;
+    }
+    List<File> files = getMediaPackageFiles(recording);
 
-    // Set the file as the body of the request
+    // Zip the files straight into the body of the request
     MultipartEntity entities = new MultipartEntity();
     // Check to see if the properties have an alternate workflow definition attached
     String workflowDefinitionId = recording.getProperty(CaptureParameters.INGEST_WORKFLOW_DEFINITION);
@@ -813,10 +823,8 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
       if (workflowInstance != null) {
         entities.addPart("workflowInstanceId", new StringBody(workflowInstance, Charset.forName("UTF-8")));
       }
-      entities.addPart(fileDesc.getName(), new InputStreamBody(new FileInputStream(fileDesc), fileDesc.getName()));
-    } catch (FileNotFoundException ex) {
-      logger.error("Could not find zipped mediapackage " + fileDesc.getAbsolutePath());
-      return -5;
+      entities.addPart(CaptureParameters.ZIP_NAME, new ZippedMediaPackageBody(CaptureParameters.ZIP_NAME, files,
+              fileCrcs));
     } catch (UnsupportedEncodingException e) {
       throw new IllegalStateException("This system does not support UTF-8", e);
     }
@@ -831,7 +839,7 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
     HttpResponse response = null;
     int retValue = -1;
     try {
-      logger.debug("Sending the file " + fileDesc.getAbsolutePath() + " with a size of " + fileDesc.length());
+      logger.debug("Sending the {} files of recording {}", files.size(), recID);
       response = client.execute(postMethod);
     } catch (TrustedHttpClientException e) {
       logger.error("Unable to ingest recording {}, message reads: {}.", recID, e.getMessage());
@@ -855,6 +863,9 @@ public class CaptureAgentImpl implements CaptureAgent, StateService, ManagedServ
     serializeRecording(recID);
     if (retValue == HttpURLConnection.HTTP_OK) {
       removeZipFile(recording);
+      for (File file : files) {
+        fileCrcs.remove(file);
+      }
       completedRecordings.put(recID, recording);
       pendingRecordings.remove(recID);
     }
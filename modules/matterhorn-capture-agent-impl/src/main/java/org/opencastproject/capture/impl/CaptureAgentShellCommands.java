@@ -17,7 +17,6 @@ package org.opencastproject.capture.impl;
 
 import org.opencastproject.capture.admin.api.AgentState;
 
-import java.io.File;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 
@@ -93,13 +92,6 @@ public class CaptureAgentShellCommands {
       return;
     }
 
-    System.out.println("Zipping recording (" + recordingId + ")");
-    File zip = agent.zipFiles(recordingId);
-    if (zip == null) {
-      System.out.println("Error zipping files, aborting!");
-      return;
-    }
-
     System.out.println("Ingesting recording (" + recordingId + ")");
     int httpCode = agent.ingest(recordingId);
     if (httpCode != 200) {
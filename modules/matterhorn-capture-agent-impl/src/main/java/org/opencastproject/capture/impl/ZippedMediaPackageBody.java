@@ -0,0 +1,182 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.capture.impl;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A multipart body that writes the files of a recording as an uncompressed zip straight into the request, so that no
+ * zip file has to be created on disk before the recording is ingested.
+ * <p>
+ * Entries are stored rather than deflated. This requires the CRC-32 of each file up front, which is taken from the
+ * given map if it has been computed already, e.g. while the manifest was created, and computed otherwise. Files of 4 GB
+ * and more are written with ZIP64 extensions.
+ */
+public class ZippedMediaPackageBody extends AbstractContentBody {
+
+  /** The logger */
+  private static final Logger logger = LoggerFactory.getLogger(ZippedMediaPackageBody.class);
+
+  /** The size of the buffer used to read the files */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The file name of the zip */
+  private final String filename;
+
+  /** The files to put into the zip, in order */
+  private final List<File> files;
+
+  /** The CRC-32 checksums of the files that are known already */
+  private final Map<File, Long> checksums;
+
+  /**
+   * Creates a body that zips the given files.
+   * 
+   * @param filename
+   *          the file name of the zip
+   * @param files
+   *          the files to put into the zip, in order
+   * @param checksums
+   *          the CRC-32 checksums of the files that are known already, by absolute file
+   */
+  public ZippedMediaPackageBody(String filename, List<File> files, Map<File, Long> checksums) {
+    super("application/zip");
+    this.filename = filename;
+    this.files = files;
+    this.checksums = checksums;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.apache.http.entity.mime.content.ContentBody#writeTo(java.io.OutputStream)
+   */
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    // The zip stream is not closed, since that would close the request as well
+    ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out);
+    zip.setMethod(ZipArchiveOutputStream.STORED);
+    zip.setUseZip64(Zip64Mode.AsNeeded);
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long start = System.currentTimeMillis();
+    long bytes = 0;
+    for (File file : files) {
+      ZipArchiveEntry entry = new ZipArchiveEntry(file.getName());
+      entry.setMethod(ZipArchiveEntry.STORED);
+      entry.setSize(file.length());
+      entry.setCompressedSize(file.length());
+      entry.setCrc(getChecksum(file, buffer));
+      entry.setTime(file.lastModified());
+      zip.putArchiveEntry(entry);
+      InputStream in = null;
+      try {
+        in = new FileInputStream(file);
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+          zip.write(buffer, 0, n);
+          bytes += n;
+        }
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+      zip.closeArchiveEntry();
+    }
+    zip.finish();
+    zip.flush();
+    long millis = Math.max(1, System.currentTimeMillis() - start);
+    logger.info("Sent {} files with {} bytes in {} ms ({} KB/s)", new Object[] { files.size(), bytes, millis,
+            bytes * 1000 / millis / 1024 });
+  }
+
+  /**
+   * Returns the CRC-32 of a file, either from the known checksums or by reading the file.
+   */
+  private long getChecksum(File file, byte[] buffer) throws IOException {
+    Long checksum = checksums.get(file.getAbsoluteFile());
+    if (checksum != null)
+      return checksum;
+    logger.debug("Computing the CRC-32 of {}", file);
+    CRC32 crc = new CRC32();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        crc.update(buffer, 0, n);
+      }
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.apache.http.entity.mime.content.ContentBody#getFilename()
+   */
+  @Override
+  public String getFilename() {
+    return filename;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.apache.http.entity.mime.content.ContentDescriptor#getCharset()
+   */
+  @Override
+  public String getCharset() {
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.apache.http.entity.mime.content.ContentDescriptor#getTransferEncoding()
+   */
+  @Override
+  public String getTransferEncoding() {
+    return MIME.ENC_BINARY;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.apache.http.entity.mime.content.ContentDescriptor#getContentLength()
+   */
+  @Override
+  public long getContentLength() {
+    return -1;
+  }
+
+}
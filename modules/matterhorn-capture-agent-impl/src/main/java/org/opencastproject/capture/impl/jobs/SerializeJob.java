@@ -44,7 +44,7 @@ public class SerializeJob implements Job {
   private static final Logger logger = LoggerFactory.getLogger(SerializeJob.class);
 
   /**
-   * Generates a manifest file then zips everything up so it can be ingested. Also schedules a IngestJob. {@inheritDoc}
+   * Generates a manifest file so the recording can be ingested. Also schedules a IngestJob. {@inheritDoc}
    * 
    * @see org.quartz.Job#execute(JobExecutionContext)
    * @throws JobExecutionException
@@ -81,11 +81,6 @@ public class SerializeJob implements Job {
 
     logger.info("Manifest created");
 
-    // Zips files
-    ca.zipFiles(recordingID);
-
-    logger.info("Files zipped");
-
     String postfix = ctx.getMergedJobDataMap().getString(JobParameters.JOB_POSTFIX);
 
     scheduleIngest(recordingID, ca, sched, postfix);
@@ -65,8 +65,6 @@ public class CaptureAgentImplTest {
 
   private File manifestFile;
 
-  private File zippedMedia;
-
   @BeforeClass
   public static void testGst() {
     try {
@@ -186,22 +184,6 @@ public class CaptureAgentImplTest {
       }
     });
     Assert.assertTrue("Manifest file does not exist!", manifestFile.exists());
-    
-    // Test to make sure that the zipped media is created. 
-    zippedMedia = new File(outputdir.getAbsolutePath(), CaptureParameters.ZIP_NAME);
-    // Wait and see if the zipped media file is actually there.
-    waiter = new WaitForState();
-    waiter.sleepWait(new CheckState() {
-      @Override
-      public boolean check() {
-        if (zippedMedia != null) {
-          return zippedMedia.exists();
-        } else {
-          return false;
-        }
-      }
-    });
-    Assert.assertTrue("Zipped media file does not exist!", zippedMedia.exists());
   }
 
   private void buildRecordingState(String id, String state) throws IOException {
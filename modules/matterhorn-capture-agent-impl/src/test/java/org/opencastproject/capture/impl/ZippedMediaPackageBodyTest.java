@@ -0,0 +1,161 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.capture.impl;
+
+import junit.framework.Assert;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class ZippedMediaPackageBodyTest {
+
+  /** A size that does not fit into the 32 bit size fields of a zip without ZIP64 extensions */
+  private static final long LARGE_FILE_SIZE = 4L * 1024 * 1024 * 1024 + 1;
+
+  private File testDir = null;
+
+  @Before
+  public void setUp() throws Exception {
+    testDir = new File("./target", "zip-body-test");
+    FileUtils.forceMkdir(testDir);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.deleteQuietly(testDir);
+  }
+
+  @Test
+  public void testWriteTo() throws Exception {
+    File manifest = new File(testDir, "manifest.xml");
+    FileUtils.writeStringToFile(manifest, "<mediapackage/>");
+    File track = new File(testDir, "screen.mpg");
+    byte[] media = new byte[3 * ZippedMediaPackageBody.BUFFER_SIZE + 17];
+    for (int i = 0; i < media.length; i++) {
+      media[i] = (byte) i;
+    }
+    FileUtils.writeByteArrayToFile(track, media);
+
+    List<File> files = new ArrayList<File>();
+    files.add(manifest);
+    files.add(track);
+
+    // The checksum of the track is known, the one of the manifest is not
+    CRC32 crc = new CRC32();
+    crc.update(media);
+    Map<File, Long> checksums = new HashMap<File, Long>();
+    checksums.put(track.getAbsoluteFile(), crc.getValue());
+
+    ZippedMediaPackageBody body = new ZippedMediaPackageBody("media.zip", files, checksums);
+    Assert.assertEquals("media.zip", body.getFilename());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    body.writeTo(out);
+
+    ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+    try {
+      ZipEntry entry = zip.getNextEntry();
+      Assert.assertEquals("manifest.xml", entry.getName());
+      Assert.assertEquals(ZipEntry.STORED, entry.getMethod());
+      Assert.assertEquals("<mediapackage/>", IOUtils.toString(zip));
+      entry = zip.getNextEntry();
+      Assert.assertEquals("screen.mpg", entry.getName());
+      Assert.assertEquals(media.length, entry.getSize());
+      Assert.assertTrue(Arrays.equals(media, IOUtils.toByteArray(zip)));
+      Assert.assertNull(zip.getNextEntry());
+    } finally {
+      IOUtils.closeQuietly(zip);
+    }
+  }
+
+  @Test
+  public void testWriteLargeFile() throws Exception {
+    // A sparse file, so that the test does not need 4 GB of disk space
+    File track = new File(testDir, "presenter.mpg");
+    RandomAccessFile raf = new RandomAccessFile(track, "rw");
+    try {
+      raf.setLength(LARGE_FILE_SIZE);
+    } finally {
+      raf.close();
+    }
+
+    // The file only contains zeros, so the checksum is known without reading it
+    byte[] zeros = new byte[ZippedMediaPackageBody.BUFFER_SIZE];
+    CRC32 crc = new CRC32();
+    for (long left = LARGE_FILE_SIZE; left > 0; left -= zeros.length) {
+      crc.update(zeros, 0, (int) Math.min(zeros.length, left));
+    }
+    Map<File, Long> checksums = new HashMap<File, Long>();
+    checksums.put(track.getAbsoluteFile(), crc.getValue());
+
+    final ZippedMediaPackageBody body = new ZippedMediaPackageBody("media.zip", Arrays.asList(track), checksums);
+    final PipedOutputStream out = new PipedOutputStream();
+    PipedInputStream in = new PipedInputStream(out, ZippedMediaPackageBody.BUFFER_SIZE);
+    final IOException[] failure = new IOException[1];
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          body.writeTo(out);
+        } catch (IOException e) {
+          failure[0] = e;
+        } finally {
+          IOUtils.closeQuietly(out);
+        }
+      }
+    };
+    writer.start();
+
+    ZipArchiveInputStream zip = new ZipArchiveInputStream(in);
+    try {
+      ZipArchiveEntry entry = zip.getNextZipEntry();
+      Assert.assertEquals("presenter.mpg", entry.getName());
+      Assert.assertEquals(LARGE_FILE_SIZE, entry.getSize());
+      long read = 0;
+      int n;
+      while ((n = zip.read(zeros)) != -1) {
+        read += n;
+      }
+      Assert.assertEquals(LARGE_FILE_SIZE, read);
+      Assert.assertNull(zip.getNextZipEntry());
+    } finally {
+      IOUtils.closeQuietly(zip);
+      writer.join();
+    }
+    Assert.assertNull(failure[0]);
+  }
+
+}
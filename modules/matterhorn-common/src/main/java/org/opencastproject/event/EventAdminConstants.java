@@ -32,4 +32,7 @@ public interface EventAdminConstants {
   /** The event admin topic for series ACL updates */
   String SERIES_ACL_TOPIC = "org/opencastproject/series/acl";
 
+  /** The event admin topic for search index updates, with the identifier of the affected series if there is one */
+  String SEARCH_TOPIC = "org/opencastproject/search/index";
+
 }
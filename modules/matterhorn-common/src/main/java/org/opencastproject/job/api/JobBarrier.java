@@ -37,6 +37,9 @@ import java.util.Map;
  * <li>{@link Job.Status#FAILED}</li>
  * <li>{@link Job.Status#DELETED}</li>
  * </ul>
+ * The barrier relies on {@link ServiceRegistry#waitForJobs(List, long)} to be woken up as soon as one of the jobs has
+ * terminated. Registries that are unable to wait for jobs are polled every <code>pollingInterval</code> milliseconds
+ * instead.
  */
 public final class JobBarrier {
   /** The logging facility */
@@ -45,6 +48,9 @@ public final class JobBarrier {
   /** Default polling interval is 5 seconds */
   public static final long DEFAULT_POLLING_INTERVAL = 5000L;
 
+  /** Maximum time a single call to {@link ServiceRegistry#waitForJobs(List, long)} may block, in milliseconds */
+  public static final long MAX_WAIT_INTERVAL = 30000L;
+
   /** The service registry used to do the polling */
   private final ServiceRegistry serviceRegistry;
 
@@ -188,7 +194,10 @@ public final class JobBarrier {
     return status;
   }
 
-  /** Thread that keeps polling for status changes. */
+  /**
+   * Thread that waits for status changes. The thread asks the service registry to block until one of the jobs has
+   * terminated and falls back to polling if the registry is unable to do so.
+   */
   class JobStatusUpdater extends Thread {
     /** Maximum wait in milliseconds or 0 for unlimited waiting */
     private final long workTime;
@@ -208,70 +217,91 @@ public final class JobBarrier {
     public void run() {
       final long endTime = workTime > 0 ? System.currentTimeMillis() + workTime : 0;
       final Map<Job, Job.Status> finishedJobs = new HashMap<Job, Job.Status>();
-      while (true) {
-        final long time = System.currentTimeMillis();
-        // Wait a little..
-        try {
-          final long timeToSleep = Math.min(pollingInterval, Math.abs(endTime - time));
-          Thread.sleep(timeToSleep);
-        } catch (InterruptedException e) {
-          logger.debug("Job polling thread was interrupted");
-          return;
-        }
-        // Look at all jobs and make sure all of them have reached the expected status
-        for (final Job job : jobs) {
-          // Don't ask if we already know
-          if (!finishedJobs.containsKey(job)) {
-            boolean jobFinished = false;
-            // Get the job status from the service registry
-            try {
-              final Job processedJob = serviceRegistry.getJob(job.getId());
-              final Job.Status jobStatus = processedJob.getStatus();
-              switch (jobStatus) {
-                case CANCELED:
-                  throw new JobCanceledException(processedJob);
-                case DELETED:
-                case FAILED:
-                case FINISHED:
-                  job.setStatus(jobStatus);
-                  job.setPayload(processedJob.getPayload());
-                  finishedJobs.put(job, jobStatus);
-                  break;
-                case PAUSED:
-                case QUEUED:
-                case RESTART:
-                case DISPATCHING:
-                case INSTANTIATED:
-                case RUNNING:
-                  logger.trace("{} is still in the works", job);
-                  break;
-                default:
-                  logger.error("Unhandled job status '{}' found", jobStatus);
-                  break;
-              }
-            } catch (NotFoundException e) {
-              pollingException = e;
-              break;
-            } catch (ServiceRegistryException e) {
-              logger.warn("Error polling service registry for the status of {}: {}", job, e.getMessage());
-            } catch (Throwable t) {
-              logger.error("An unexpected error occured while waiting for jobs", t);
-              pollingException = t;
-              updateAndNotify(finishedJobs);
-              return;
-            }
-          }
-
+      boolean polling = false;
+      try {
+        while (true) {
           // Are we done already?
-          if (finishedJobs.size() == jobs.size()) {
+          final Map<Long, Job> pendingJobs = new HashMap<Long, Job>();
+          for (final Job job : jobs) {
+            if (!finishedJobs.containsKey(job))
+              pendingJobs.put(job.getId(), job);
+          }
+          if (pendingJobs.isEmpty()) {
             updateAndNotify(finishedJobs);
             return;
-          } else if (workTime > 0 && endTime >= time) {
+          }
+          final long timeLeft = endTime > 0 ? endTime - System.currentTimeMillis() : MAX_WAIT_INTERVAL;
+          if (timeLeft <= 0) {
             pollingException = new InterruptedException("Timeout waiting for job processing");
             updateAndNotify(finishedJobs);
             return;
           }
+
+          // Wait for the service registry to report terminated jobs
+          List<Job> processedJobs = null;
+          if (!polling) {
+            try {
+              processedJobs = serviceRegistry.waitForJobs(new ArrayList<Long>(pendingJobs.keySet()),
+                      Math.min(timeLeft, MAX_WAIT_INTERVAL));
+            } catch (ServiceRegistryException e) {
+              logger.info("Service registry is unable to wait for jobs, falling back to polling: {}", e.getMessage());
+            }
+            polling = processedJobs == null;
+          }
+
+          // .. or look at the jobs once in a while
+          if (polling) {
+            Thread.sleep(Math.min(pollingInterval, timeLeft));
+            processedJobs = new ArrayList<Job>();
+            for (final Job job : pendingJobs.values()) {
+              try {
+                processedJobs.add(serviceRegistry.getJob(job.getId()));
+              } catch (ServiceRegistryException e) {
+                logger.warn("Error polling service registry for the status of {}: {}", job, e.getMessage());
+              }
+            }
+          }
+
+          for (final Job processedJob : processedJobs) {
+            final Job job = pendingJobs.get(processedJob.getId());
+            if (job == null)
+              continue;
+            final Job.Status jobStatus = processedJob.getStatus();
+            switch (jobStatus) {
+              case CANCELED:
+                throw new JobCanceledException(processedJob);
+              case DELETED:
+              case FAILED:
+              case FINISHED:
+                job.setStatus(jobStatus);
+                job.setPayload(processedJob.getPayload());
+                finishedJobs.put(job, jobStatus);
+                break;
+              case PAUSED:
+              case QUEUED:
+              case RESTART:
+              case DISPATCHING:
+              case INSTANTIATED:
+              case RUNNING:
+                logger.trace("{} is still in the works", job);
+                break;
+              default:
+                logger.error("Unhandled job status '{}' found", jobStatus);
+                break;
+            }
+          }
         }
+      } catch (InterruptedException e) {
+        logger.debug("Job status thread was interrupted");
+        pollingException = e;
+        updateAndNotify(finishedJobs);
+      } catch (NotFoundException e) {
+        pollingException = e;
+        updateAndNotify(finishedJobs);
+      } catch (Throwable t) {
+        logger.error("An unexpected error occured while waiting for jobs", t);
+        pollingException = t;
+        updateAndNotify(finishedJobs);
       }
     }
 
@@ -19,7 +19,6 @@ package org.opencastproject.mediapackage;
 import org.opencastproject.mediapackage.identifier.Id;
 
 import org.apache.commons.io.IOUtils;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -27,7 +26,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -92,13 +90,8 @@ public class MediaPackageBuilderImpl implements MediaPackageBuilder {
   public MediaPackage loadFromXml(InputStream is) throws MediaPackageException {
     if (serializer != null) {
       // FIXME This code runs if *any* serializer is present, regardless of the serializer implementation
-      try {
-        Document xml = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(is);
-        rewriteUrls(xml, serializer);
-        return MediaPackageImpl.valueOf(xml);
-      } catch (Exception e) {
-        throw new MediaPackageException("Error deserializing paths in media package", e);
-      }
+      // The urls are resolved while the manifest is being read
+      return MediaPackageStaxReader.read(is, serializer);
     } else {
       return MediaPackageImpl.valueOf(is);
     }
@@ -1419,7 +1419,7 @@ public final class MediaPackageImpl implements MediaPackage {
   }
 
   /**
-   * Unmarshals XML representation of a MediaPackage via JAXB.
+   * Unmarshals XML representation of a MediaPackage.
    * 
    * @param xml
    *          the serialized xml string
@@ -1495,7 +1495,7 @@ public final class MediaPackageImpl implements MediaPackage {
   }
 
   /**
-   * Reads the media package from the input stream.
+   * Reads the media package from the input stream. The document is read by a streaming parser without building a DOM.
    * 
    * @param xml
    *          the input stream
@@ -1503,10 +1503,7 @@ public final class MediaPackageImpl implements MediaPackage {
    */
   public static MediaPackageImpl valueOf(InputStream xml) throws MediaPackageException {
     try {
-      Unmarshaller unmarshaller = context.createUnmarshaller();
-      return unmarshaller.unmarshal(new StreamSource(xml), MediaPackageImpl.class).getValue();
-    } catch (JAXBException e) {
-      throw new MediaPackageException(e.getLinkedException() != null ? e.getLinkedException() : e);
+      return MediaPackageStaxReader.read(xml, null);
     } finally {
       IoSupport.closeQuietly(xml);
     }
@@ -1707,6 +1704,49 @@ public final class MediaPackageImpl implements MediaPackage {
       subjects.remove(subject);
   }
 
+  /**
+   * Returns the creators as they are mapped to xml. The set is <code>null</code> rather than empty as long as no creator
+   * has been added, in which case the creators element is omitted.
+   */
+  Set<String> getCreatorSet() {
+    return creators;
+  }
+
+  /**
+   * Sets the creators as read from xml, where an empty creators element yields an empty set.
+   */
+  void setCreatorSet(Set<String> creators) {
+    this.creators = creators;
+  }
+
+  /**
+   * Returns the contributors as they are mapped to xml, see {@link #getCreatorSet()}.
+   */
+  Set<String> getContributorSet() {
+    return contributors;
+  }
+
+  /**
+   * Sets the contributors as read from xml, see {@link #setCreatorSet(Set)}.
+   */
+  void setContributorSet(Set<String> contributors) {
+    this.contributors = contributors;
+  }
+
+  /**
+   * Returns the subjects as they are mapped to xml, see {@link #getCreatorSet()}.
+   */
+  Set<String> getSubjectSet() {
+    return subjects;
+  }
+
+  /**
+   * Sets the subjects as read from xml, see {@link #setCreatorSet(Set)}.
+   */
+  void setSubjectSet(Set<String> subjects) {
+    this.subjects = subjects;
+  }
+
   /**
    * {@inheritDoc}
    * 
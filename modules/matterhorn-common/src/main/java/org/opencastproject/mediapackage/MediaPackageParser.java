@@ -24,8 +24,11 @@ import javax.xml.bind.Marshaller;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -55,13 +58,11 @@ public final class MediaPackageParser {
     if (mediaPackage == null)
       throw new IllegalArgumentException("Mediapackage must not be null");
     try {
-      Marshaller marshaller = MediaPackageImpl.context.createMarshaller();
-      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
       StringWriter writer = new StringWriter();
-      marshaller.marshal(mediaPackage, writer);
+      MediaPackageStaxWriter.write(mediaPackage, writer);
       return writer.toString();
-    } catch (JAXBException e) {
-      throw new IllegalStateException(e.getLinkedException() != null ? e.getLinkedException() : e);
+    } catch (IOException e) {
+      throw new IllegalStateException(e.getCause() != null ? e.getCause() : e);
     }
   }
 
@@ -221,6 +222,16 @@ public final class MediaPackageParser {
    *           if serializing or reading from a serialized media package fails
    */
   public static void getAsXml(MediaPackage mediaPackage, OutputStream out, boolean format) throws MediaPackageException {
+    if (!format) {
+      try {
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        MediaPackageStaxWriter.write(mediaPackage, writer);
+        writer.flush();
+      } catch (IOException e) {
+        throw new MediaPackageException(e.getCause() != null ? e.getCause() : e);
+      }
+      return;
+    }
     try {
       Marshaller marshaller = MediaPackageImpl.context.createMarshaller();
       marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, format);
@@ -0,0 +1,377 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.mediapackage;
+
+import org.opencastproject.mediapackage.attachment.AttachmentImpl;
+import org.opencastproject.mediapackage.identifier.IdImpl;
+import org.opencastproject.mediapackage.track.AudioStreamImpl;
+import org.opencastproject.mediapackage.track.ScanOrder;
+import org.opencastproject.mediapackage.track.ScanType;
+import org.opencastproject.mediapackage.track.TrackImpl;
+import org.opencastproject.mediapackage.track.VideoStreamImpl;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.MimeType;
+import org.opencastproject.util.MimeTypes;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads media packages from their xml representation using a streaming pull parser.
+ * <p>
+ * The reader understands the same document as the JAXB mapping of {@link MediaPackageImpl} and builds the media package
+ * while the document is being read, without creating an intermediate DOM. Like JAXB, it ignores elements and attributes
+ * it does not know about.
+ */
+final class MediaPackageStaxReader {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(MediaPackageStaxReader.class);
+
+  /** The media package namespace */
+  static final String NAMESPACE = "http://mediapackage.opencastproject.org";
+
+  /** The factory creating the stream readers, which is thread safe once configured */
+  private static final XMLInputFactory inputFactory;
+
+  static {
+    inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  /**
+   * Private constructor to prohibit instances of this static utility class.
+   */
+  private MediaPackageStaxReader() {
+    // Nothing to do
+  }
+
+  /**
+   * Reads a media package from the input stream. The stream is not closed.
+   * 
+   * @param xml
+   *          the serialized media package
+   * @param serializer
+   *          the serializer used to resolve the element urls, may be <code>null</code>
+   * @return the media package
+   * @throws MediaPackageException
+   *           if the media package cannot be read
+   */
+  static MediaPackageImpl read(InputStream xml, MediaPackageSerializer serializer) throws MediaPackageException {
+    XMLStreamReader reader = null;
+    try {
+      reader = inputFactory.createXMLStreamReader(xml);
+      reader.nextTag();
+      return readMediaPackage(reader, serializer);
+    } catch (MediaPackageException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new MediaPackageException("Error deserializing media package", e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          logger.debug("Error closing the xml stream reader: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  private static MediaPackageImpl readMediaPackage(XMLStreamReader reader, MediaPackageSerializer serializer)
+          throws Exception {
+    MediaPackageImpl mediaPackage = new MediaPackageImpl();
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String name = reader.getAttributeLocalName(i);
+      String value = reader.getAttributeValue(i);
+      if ("id".equals(name))
+        mediaPackage.setIdentifier(new IdImpl(value));
+      else if ("duration".equals(name))
+        mediaPackage.setDuration(Long.valueOf(value.trim()));
+      else if ("start".equals(name))
+        mediaPackage.setStartDateAsString(value);
+    }
+
+    while (nextElement(reader)) {
+      String name = reader.getLocalName();
+      if (!NAMESPACE.equals(reader.getNamespaceURI())) {
+        skipElement(reader);
+      } else if ("title".equals(name)) {
+        mediaPackage.setTitle(reader.getElementText());
+      } else if ("series".equals(name)) {
+        mediaPackage.setSeries(reader.getElementText());
+      } else if ("seriestitle".equals(name)) {
+        mediaPackage.setSeriesTitle(reader.getElementText());
+      } else if ("license".equals(name)) {
+        mediaPackage.setLicense(reader.getElementText());
+      } else if ("language".equals(name)) {
+        mediaPackage.setLanguage(reader.getElementText());
+      } else if ("creators".equals(name)) {
+        mediaPackage.setCreatorSet(readList(reader, "creator"));
+      } else if ("contributors".equals(name)) {
+        mediaPackage.setContributorSet(readList(reader, "contributor"));
+      } else if ("subjects".equals(name)) {
+        mediaPackage.setSubjectSet(readList(reader, "subject"));
+      } else if ("media".equals(name)) {
+        while (nextElement(reader, "track")) {
+          Track track = (Track) readElement(reader, serializer);
+          mediaPackage.add(track);
+        }
+      } else if ("metadata".equals(name)) {
+        while (nextElement(reader, "catalog")) {
+          Catalog catalog = (Catalog) readElement(reader, serializer);
+          mediaPackage.add(catalog);
+        }
+      } else if ("attachments".equals(name)) {
+        while (nextElement(reader, "attachment")) {
+          Attachment attachment = (Attachment) readElement(reader, serializer);
+          mediaPackage.add(attachment);
+        }
+      } else if ("publications".equals(name)) {
+        while (nextElement(reader, "publication")) {
+          Publication publication = (Publication) readElement(reader, serializer);
+          mediaPackage.add(publication);
+        }
+      } else {
+        skipElement(reader);
+      }
+    }
+    return mediaPackage;
+  }
+
+  /**
+   * Reads the media package element the reader is positioned at. The kind of element is determined by the element's
+   * name.
+   */
+  private static AbstractMediaPackageElement readElement(XMLStreamReader reader, MediaPackageSerializer serializer)
+          throws Exception {
+    String id = null;
+    String flavor = null;
+    String reference = null;
+    String channel = null;
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String name = reader.getAttributeLocalName(i);
+      if ("id".equals(name))
+        id = reader.getAttributeValue(i);
+      else if ("type".equals(name))
+        flavor = reader.getAttributeValue(i);
+      else if ("ref".equals(name))
+        reference = reader.getAttributeValue(i);
+      else if ("channel".equals(name))
+        channel = reader.getAttributeValue(i);
+    }
+
+    AbstractMediaPackageElement element;
+    String elementName = reader.getLocalName();
+    if ("track".equals(elementName))
+      element = new TrackImpl();
+    else if ("catalog".equals(elementName))
+      element = new CatalogImpl();
+    else if ("attachment".equals(elementName))
+      element = new AttachmentImpl();
+    else
+      element = new PublicationImpl(null, channel, null, null);
+
+    element.setIdentifier(id);
+    if (flavor != null)
+      element.setFlavor(MediaPackageElementFlavor.parseFlavor(flavor));
+    if (reference != null)
+      element.setReference(MediaPackageReferenceImpl.fromString(reference));
+
+    while (nextElement(reader)) {
+      String name = reader.getLocalName();
+      if (!NAMESPACE.equals(reader.getNamespaceURI())) {
+        skipElement(reader);
+      } else if ("mimetype".equals(name)) {
+        element.setMimeType(parseMimeType(reader.getElementText()));
+      } else if ("tags".equals(name)) {
+        while (nextElement(reader, "tag"))
+          element.addTag(reader.getElementText());
+      } else if ("url".equals(name)) {
+        String url = reader.getElementText();
+        element.setURI(serializer != null ? serializer.resolvePath(url) : new URI(url));
+      } else if ("checksum".equals(name)) {
+        String type = reader.getAttributeValue(null, "type");
+        String value = reader.getElementText();
+        if (type != null)
+          element.setChecksum(Checksum.create(type, value));
+      } else if (element instanceof TrackImpl && "duration".equals(name)) {
+        ((TrackImpl) element).setDuration(Long.valueOf(reader.getElementText().trim()));
+      } else if (element instanceof TrackImpl && "audio".equals(name)) {
+        ((TrackImpl) element).addStream(readAudioStream(reader));
+      } else if (element instanceof TrackImpl && "video".equals(name)) {
+        ((TrackImpl) element).addStream(readVideoStream(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return element;
+  }
+
+  private static AudioStreamImpl readAudioStream(XMLStreamReader reader) throws XMLStreamException {
+    AudioStreamImpl stream = new AudioStreamImpl();
+    String id = reader.getAttributeValue(null, "id");
+    if (id != null)
+      stream.setIdentifier(id);
+    while (nextElement(reader)) {
+      String name = reader.getLocalName();
+      if (!NAMESPACE.equals(reader.getNamespaceURI())) {
+        skipElement(reader);
+      } else if ("device".equals(name)) {
+        stream.setCaptureDevice(reader.getAttributeValue(null, "type"));
+        stream.setCaptureDeviceVersion(reader.getAttributeValue(null, "version"));
+        stream.setCaptureDeviceVendor(reader.getAttributeValue(null, "vendor"));
+        skipElement(reader);
+      } else if ("encoder".equals(name)) {
+        stream.setFormat(reader.getAttributeValue(null, "type"));
+        stream.setFormatVersion(reader.getAttributeValue(null, "version"));
+        stream.setEncoderLibraryVendor(reader.getAttributeValue(null, "vendor"));
+        skipElement(reader);
+      } else if ("bitdepth".equals(name)) {
+        stream.setBitDepth(Integer.valueOf(reader.getElementText().trim()));
+      } else if ("channels".equals(name)) {
+        stream.setChannels(Integer.valueOf(reader.getElementText().trim()));
+      } else if ("samplingrate".equals(name)) {
+        stream.setSamplingRate(Integer.valueOf(reader.getElementText().trim()));
+      } else if ("bitrate".equals(name)) {
+        stream.setBitRate(Float.valueOf(reader.getElementText().trim()));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return stream;
+  }
+
+  private static VideoStreamImpl readVideoStream(XMLStreamReader reader) throws XMLStreamException {
+    VideoStreamImpl stream = new VideoStreamImpl();
+    String id = reader.getAttributeValue(null, "id");
+    if (id != null)
+      stream.setIdentifier(id);
+    while (nextElement(reader)) {
+      String name = reader.getLocalName();
+      if (!NAMESPACE.equals(reader.getNamespaceURI())) {
+        skipElement(reader);
+      } else if ("device".equals(name)) {
+        stream.setCaptureDevice(reader.getAttributeValue(null, "type"));
+        stream.setCaptureDeviceVersion(reader.getAttributeValue(null, "version"));
+        stream.setCaptureDeviceVendor(reader.getAttributeValue(null, "vendor"));
+        skipElement(reader);
+      } else if ("encoder".equals(name)) {
+        stream.setFormat(reader.getAttributeValue(null, "type"));
+        stream.setFormatVersion(reader.getAttributeValue(null, "version"));
+        stream.setEncoderLibraryVendor(reader.getAttributeValue(null, "vendor"));
+        skipElement(reader);
+      } else if ("bitrate".equals(name)) {
+        stream.setBitRate(Float.valueOf(reader.getElementText().trim()));
+      } else if ("framerate".equals(name)) {
+        stream.setFrameRate(Float.valueOf(reader.getElementText().trim()));
+      } else if ("resolution".equals(name)) {
+        stream.setResolution(reader.getElementText());
+      } else if ("scantype".equals(name)) {
+        String type = reader.getAttributeValue(null, "type");
+        String order = reader.getAttributeValue(null, "order");
+        if (type != null)
+          stream.setScanType(ScanType.fromString(type));
+        if (order != null)
+          stream.setScanOrder(ScanOrder.fromString(order));
+        skipElement(reader);
+      } else {
+        skipElement(reader);
+      }
+    }
+    return stream;
+  }
+
+  /**
+   * Parses the mime type the same way the JAXB adapter does, which is to drop mime types that cannot be parsed.
+   */
+  private static MimeType parseMimeType(String mimeType) {
+    try {
+      return MimeTypes.parseMimeType(mimeType);
+    } catch (Exception e) {
+      logger.info("unable to parse mimetype {}", mimeType);
+      return null;
+    }
+  }
+
+  /**
+   * Reads the values of a creators, contributors or subjects element. Like JAXB, an empty element yields an empty set.
+   */
+  private static Set<String> readList(XMLStreamReader reader, String name) throws XMLStreamException {
+    Set<String> values = new TreeSet<String>();
+    while (nextElement(reader, name))
+      values.add(reader.getElementText());
+    return values;
+  }
+
+  /**
+   * Moves the reader to the next child element of the current element.
+   * 
+   * @return <code>true</code> if the reader is positioned at the start of a child element, <code>false</code> if it
+   *         reached the end of the current element
+   */
+  private static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT)
+        return true;
+      if (event == XMLStreamConstants.END_ELEMENT)
+        return false;
+    }
+    return false;
+  }
+
+  /**
+   * Moves the reader to the next child element with the given name in the media package namespace, skipping any other
+   * child elements.
+   */
+  private static boolean nextElement(XMLStreamReader reader, String name) throws XMLStreamException {
+    while (nextElement(reader)) {
+      if (name.equals(reader.getLocalName()) && NAMESPACE.equals(reader.getNamespaceURI()))
+        return true;
+      skipElement(reader);
+    }
+    return false;
+  }
+
+  /**
+   * Skips the element the reader is positioned at, including all of its children.
+   */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT)
+        depth++;
+      else if (event == XMLStreamConstants.END_ELEMENT)
+        depth--;
+    }
+  }
+
+}
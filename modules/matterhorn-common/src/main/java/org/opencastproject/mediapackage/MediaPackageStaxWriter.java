@@ -0,0 +1,271 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.mediapackage;
+
+import static org.opencastproject.mediapackage.MediaPackageStaxReader.NAMESPACE;
+
+import org.opencastproject.mediapackage.track.TrackImpl;
+import org.opencastproject.mediapackage.track.VideoStreamImpl;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.DateTimeSupport;
+import org.opencastproject.util.MimeType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes the xml representation of media packages using a streaming writer.
+ * <p>
+ * The document is identical to the one written by the JAXB mapping of {@link MediaPackageImpl}: same elements and
+ * wrappers, same formatting of values and the attributes in the order the JAXB reference implementation writes them,
+ * which is the reverse of the mapped properties' order.
+ */
+final class MediaPackageStaxWriter {
+
+  /** The xml declaration as written by JAXB */
+  private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+  /** The factory creating the stream writers, which is thread safe once configured */
+  private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+  /**
+   * Private constructor to prohibit instances of this static utility class.
+   */
+  private MediaPackageStaxWriter() {
+    // Nothing to do
+  }
+
+  /**
+   * Writes the media package to the writer. The writer is flushed but not closed.
+   * 
+   * @param mediaPackage
+   *          the media package
+   * @param out
+   *          the writer
+   * @throws IOException
+   *           if writing fails
+   */
+  static void write(MediaPackage mediaPackage, Writer out) throws IOException {
+    out.write(XML_DECLARATION);
+    XMLStreamWriter writer = null;
+    try {
+      writer = outputFactory.createXMLStreamWriter(out);
+      writeMediaPackage(writer, mediaPackage);
+      writer.flush();
+    } catch (XMLStreamException e) {
+      throw new IOException("Error serializing media package " + mediaPackage, e);
+    } finally {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (XMLStreamException e) {
+          // The underlying writer is left open anyway
+        }
+      }
+    }
+  }
+
+  private static void writeMediaPackage(XMLStreamWriter writer, MediaPackage mediaPackage)
+          throws XMLStreamException {
+    writer.setDefaultNamespace(NAMESPACE);
+    writer.writeStartElement(NAMESPACE, "mediapackage");
+    writer.writeDefaultNamespace(NAMESPACE);
+    long start = mediaPackage.getDate().getTime();
+    if (start != 0)
+      writer.writeAttribute("start", DateTimeSupport.toUTC(start));
+    if (mediaPackage.getIdentifier() != null)
+      writer.writeAttribute("id", mediaPackage.getIdentifier().toString());
+    if (mediaPackage.getDuration() != null)
+      writer.writeAttribute("duration", mediaPackage.getDuration().toString());
+
+    writeText(writer, "title", mediaPackage.getTitle());
+    writeText(writer, "series", mediaPackage.getSeries());
+    writeText(writer, "seriestitle", mediaPackage.getSeriesTitle());
+    if (mediaPackage instanceof MediaPackageImpl) {
+      MediaPackageImpl mp = (MediaPackageImpl) mediaPackage;
+      writeList(writer, "creators", "creator", mp.getCreatorSet());
+      writeList(writer, "contributors", "contributor", mp.getContributorSet());
+      writeList(writer, "subjects", "subject", mp.getSubjectSet());
+    } else {
+      writeList(writer, "creators", "creator", toList(mediaPackage.getCreators()));
+      writeList(writer, "contributors", "contributor", toList(mediaPackage.getContributors()));
+      writeList(writer, "subjects", "subject", toList(mediaPackage.getSubjects()));
+    }
+    writeText(writer, "license", mediaPackage.getLicense());
+    writeText(writer, "language", mediaPackage.getLanguage());
+    writeElements(writer, "media", "track", mediaPackage.getTracks());
+    writeElements(writer, "metadata", "catalog", mediaPackage.getCatalogs());
+    writeElements(writer, "attachments", "attachment", mediaPackage.getAttachments());
+    writeElements(writer, "publications", "publication", mediaPackage.getPublications());
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes the elements inside of a wrapper element, which is written even if there are no elements.
+   */
+  private static void writeElements(XMLStreamWriter writer, String wrapper, String name,
+          MediaPackageElement[] elements) throws XMLStreamException {
+    if (elements.length == 0) {
+      writer.writeEmptyElement(NAMESPACE, wrapper);
+      return;
+    }
+    writer.writeStartElement(NAMESPACE, wrapper);
+    for (MediaPackageElement element : elements)
+      writeElement(writer, name, element);
+    writer.writeEndElement();
+  }
+
+  private static void writeElement(XMLStreamWriter writer, String name, MediaPackageElement element)
+          throws XMLStreamException {
+    writer.writeStartElement(NAMESPACE, name);
+    if (element instanceof Publication && ((Publication) element).getChannel() != null)
+      writer.writeAttribute("channel", ((Publication) element).getChannel());
+    if (element.getReference() != null)
+      writer.writeAttribute("ref", element.getReference().toString());
+    if (element.getFlavor() != null)
+      writer.writeAttribute("type", element.getFlavor().toString());
+    if (element.getIdentifier() != null)
+      writer.writeAttribute("id", element.getIdentifier());
+
+    MimeType mimeType = element.getMimeType();
+    if (mimeType != null)
+      writeText(writer, "mimetype", mimeType.getType() + "/" + mimeType.getSubtype());
+    String[] tags = element.getTags();
+    if (tags.length == 0) {
+      writer.writeEmptyElement(NAMESPACE, "tags");
+    } else {
+      writer.writeStartElement(NAMESPACE, "tags");
+      for (String tag : tags)
+        writeText(writer, "tag", tag);
+      writer.writeEndElement();
+    }
+    if (element.getURI() != null)
+      writeText(writer, "url", element.getURI().toString());
+    Checksum checksum = element.getChecksum();
+    if (checksum != null) {
+      writer.writeStartElement(NAMESPACE, "checksum");
+      if (checksum.getType() != null)
+        writer.writeAttribute("type", checksum.getType().getName());
+      if (checksum.getValue() != null)
+        writer.writeCharacters(checksum.getValue());
+      writer.writeEndElement();
+    }
+
+    if (element instanceof TrackImpl) {
+      TrackImpl track = (TrackImpl) element;
+      if (track.getDuration() != null)
+        writeText(writer, "duration", track.getDuration().toString());
+      for (AudioStream audio : track.getAudio()) {
+        writer.writeStartElement(NAMESPACE, "audio");
+        if (audio.getIdentifier() != null)
+          writer.writeAttribute("id", audio.getIdentifier());
+        writeDevice(writer, "device", audio.getCaptureDevice(), audio.getCaptureDeviceVersion(),
+                audio.getCaptureDeviceVendor());
+        writeDevice(writer, "encoder", audio.getFormat(), audio.getFormatVersion(), audio.getEncoderLibraryVendor());
+        writeText(writer, "bitdepth", audio.getBitDepth());
+        writeText(writer, "channels", audio.getChannels());
+        writeText(writer, "samplingrate", audio.getSamplingRate());
+        writeText(writer, "bitrate", audio.getBitRate());
+        writer.writeEndElement();
+      }
+      for (VideoStream video : track.getVideo()) {
+        writer.writeStartElement(NAMESPACE, "video");
+        if (video.getIdentifier() != null)
+          writer.writeAttribute("id", video.getIdentifier());
+        writeDevice(writer, "device", video.getCaptureDevice(), video.getCaptureDeviceVersion(),
+                video.getCaptureDeviceVendor());
+        writeDevice(writer, "encoder", video.getFormat(), video.getFormatVersion(), video.getEncoderLibraryVendor());
+        writeText(writer, "bitrate", video.getBitRate());
+        writeText(writer, "framerate", video.getFrameRate());
+        if (video instanceof VideoStreamImpl)
+          writeText(writer, "resolution", ((VideoStreamImpl) video).getResolution());
+        if (video.getScanType() != null || video.getScanOrder() != null) {
+          writer.writeEmptyElement(NAMESPACE, "scantype");
+          if (video.getScanOrder() != null)
+            writer.writeAttribute("order", video.getScanOrder().name());
+          if (video.getScanType() != null)
+            writer.writeAttribute("type", video.getScanType().name());
+        }
+        writer.writeEndElement();
+      }
+    }
+    writer.writeEndElement();
+  }
+
+  /**
+   * Writes the device or encoder element of a stream. The element is always present, even if none of its attributes
+   * are set.
+   */
+  private static void writeDevice(XMLStreamWriter writer, String name, String type, String version, String vendor)
+          throws XMLStreamException {
+    writer.writeEmptyElement(NAMESPACE, name);
+    if (vendor != null)
+      writer.writeAttribute("vendor", vendor);
+    if (version != null)
+      writer.writeAttribute("version", version);
+    if (type != null)
+      writer.writeAttribute("type", type);
+  }
+
+  /**
+   * Writes the values inside of a wrapper element. As with JAXB, the wrapper is omitted if the values are
+   * <code>null</code> and written as an empty element if there are no values.
+   */
+  private static void writeList(XMLStreamWriter writer, String wrapper, String name, Collection<String> values)
+          throws XMLStreamException {
+    if (values == null)
+      return;
+    if (values.isEmpty()) {
+      writer.writeEmptyElement(NAMESPACE, wrapper);
+      return;
+    }
+    writer.writeStartElement(NAMESPACE, wrapper);
+    for (String value : values)
+      writeText(writer, name, value);
+    writer.writeEndElement();
+  }
+
+  /**
+   * Returns the values of a media package that is not a {@link MediaPackageImpl}, where an empty list can't be told
+   * from one that has never been set, or <code>null</code> if there are none.
+   */
+  private static Collection<String> toList(String[] values) {
+    return values == null || values.length == 0 ? null : Arrays.asList(values);
+  }
+
+  /**
+   * Writes a simple text element unless the value is <code>null</code>.
+   */
+  private static void writeText(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+    if (value == null)
+      return;
+    String text = value.toString();
+    if (text.length() == 0) {
+      writer.writeEmptyElement(NAMESPACE, name);
+    } else {
+      writer.writeStartElement(NAMESPACE, name);
+      writer.writeCharacters(text);
+      writer.writeEndElement();
+    }
+  }
+
+}
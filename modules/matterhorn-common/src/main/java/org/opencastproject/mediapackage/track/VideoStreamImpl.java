@@ -297,11 +297,20 @@ public class VideoStreamImpl extends AbstractStreamImpl implements VideoStream {
   }
 
   public ScanType getScanType() {
-    return scanType.type;
+    return scanType != null ? scanType.type : null;
   }
 
   public ScanOrder getScanOrder() {
-    return scanType.order;
+    return scanType != null ? scanType.order : null;
+  }
+
+  /**
+   * Returns the resolution as found in the manifest, e.g. <code>640x480</code>.
+   * 
+   * @return the resolution
+   */
+  public String getResolution() {
+    return resolution;
   }
 
   // Setter
@@ -326,6 +335,16 @@ public class VideoStreamImpl extends AbstractStreamImpl implements VideoStream {
       updateResolution();
   }
 
+  /**
+   * Sets the resolution in the form <code>&lt;width&gt;x&lt;height&gt;</code>.
+   * 
+   * @param resolution
+   *          the resolution
+   */
+  public void setResolution(String resolution) {
+    this.resolution = resolution;
+  }
+
   private void updateResolution() {
     resolution = frameWidth.toString() + "x" + frameHeight.toString();
   }
@@ -0,0 +1,180 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.serviceregistry.api;
+
+import org.opencastproject.job.api.Job;
+import org.opencastproject.util.NotFoundException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process registry of threads waiting for jobs to terminate. Service registry implementations call
+ * {@link #jobTerminated(long)} whenever they have stored a job in one of the terminal states, which wakes up all
+ * threads waiting in {@link #waitForJobs(ServiceRegistry, List, long)} for that job.
+ * <p>
+ * Jobs that are updated by other processes (e.g. by another node sharing the same database) are not announced, which
+ * is why waiting threads still look at the jobs every <code>recheckInterval</code> milliseconds.
+ */
+public class JobCompletionNotifier {
+
+  /** The subscriptions by job identifier */
+  private final Map<Long, Set<Subscription>> subscriptions = new HashMap<Long, Set<Subscription>>();
+
+  /** Time in milliseconds after which waiting threads look at the jobs even if they have not been notified */
+  private final long recheckInterval;
+
+  /**
+   * Creates a new notifier.
+   * 
+   * @param recheckInterval
+   *          time in milliseconds after which waiting threads look at the jobs even if they have not been notified
+   */
+  public JobCompletionNotifier(long recheckInterval) {
+    if (recheckInterval <= 0)
+      throw new IllegalArgumentException("Recheck interval must be a positive number");
+    this.recheckInterval = recheckInterval;
+  }
+
+  /**
+   * Wakes up all threads that are waiting for the job. To be called once the job's terminal status has been stored.
+   * 
+   * @param id
+   *          the job identifier
+   */
+  public void jobTerminated(long id) {
+    Set<Subscription> waiting;
+    synchronized (subscriptions) {
+      waiting = subscriptions.get(id);
+      if (waiting == null)
+        return;
+      waiting = new HashSet<Subscription>(waiting);
+    }
+    for (Subscription subscription : waiting) {
+      subscription.signal();
+    }
+  }
+
+  /**
+   * Blocks until at least one of the jobs has terminated or the timeout has elapsed, as described in
+   * {@link ServiceRegistry#waitForJobs(List, long)}. The jobs are looked up using <code>registry</code>.
+   * 
+   * @param registry
+   *          the service registry holding the jobs
+   * @param ids
+   *          the job identifiers
+   * @param timeout
+   *          the maximum amount of time to wait in milliseconds
+   * @return the jobs that have terminated, or an empty list if none did before the timeout
+   * @throws NotFoundException
+   *           if one of the jobs does not exist
+   * @throws ServiceRegistryException
+   *           if the jobs cannot be looked up
+   */
+  public List<Job> waitForJobs(ServiceRegistry registry, List<Long> ids, long timeout) throws NotFoundException,
+          ServiceRegistryException {
+    final long endTime = System.currentTimeMillis() + Math.max(0, timeout);
+    // Subscribe first, so that jobs terminating while we look at them are not missed
+    Subscription subscription = subscribe(ids);
+    try {
+      while (true) {
+        List<Job> terminated = new ArrayList<Job>();
+        for (Long id : ids) {
+          Job job = registry.getJob(id);
+          if (job.getStatus().isTerminated())
+            terminated.add(job);
+        }
+        long timeLeft = endTime - System.currentTimeMillis();
+        if (!terminated.isEmpty() || timeLeft <= 0)
+          return terminated;
+        subscription.await(Math.min(timeLeft, recheckInterval));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ArrayList<Job>();
+    } finally {
+      unsubscribe(subscription);
+    }
+  }
+
+  /**
+   * Registers a new subscription for the jobs.
+   */
+  private Subscription subscribe(List<Long> ids) {
+    Subscription subscription = new Subscription(ids);
+    synchronized (subscriptions) {
+      for (Long id : ids) {
+        Set<Subscription> waiting = subscriptions.get(id);
+        if (waiting == null) {
+          waiting = new HashSet<Subscription>();
+          subscriptions.put(id, waiting);
+        }
+        waiting.add(subscription);
+      }
+    }
+    return subscription;
+  }
+
+  /**
+   * Removes the subscription.
+   */
+  private void unsubscribe(Subscription subscription) {
+    synchronized (subscriptions) {
+      for (Long id : subscription.ids) {
+        Set<Subscription> waiting = subscriptions.get(id);
+        if (waiting == null)
+          continue;
+        waiting.remove(subscription);
+        if (waiting.isEmpty())
+          subscriptions.remove(id);
+      }
+    }
+  }
+
+  /** A thread waiting for a set of jobs. */
+  private static final class Subscription {
+
+    /** The jobs */
+    private final List<Long> ids;
+
+    /** Whether one of the jobs has terminated since the last call to {@link #await(long)} */
+    private boolean signaled = false;
+
+    private Subscription(List<Long> ids) {
+      this.ids = new ArrayList<Long>(ids);
+    }
+
+    private synchronized void signal() {
+      signaled = true;
+      notifyAll();
+    }
+
+    /**
+     * Waits until the subscription is signaled or the timeout has elapsed, and resets the signal.
+     */
+    private synchronized void await(long timeout) throws InterruptedException {
+      if (!signaled)
+        wait(timeout);
+      signaled = false;
+    }
+
+  }
+
+}
@@ -278,6 +278,36 @@ public interface ServiceRegistry {
    */
   Job getJob(long id) throws NotFoundException, ServiceRegistryException;
 
+  /**
+   * Gets the jobs with the given identifiers at once. Callers that need a number of jobs should prefer this method over
+   * calling {@link #getJob(long)} for each of them.
+   * 
+   * @param ids
+   *          the job identifiers
+   * @return the jobs that exist, in no particular order
+   * @throws ServiceRegistryException
+   *           if there is a problem accessing the service registry
+   */
+  List<Job> getJobs(List<Long> ids) throws ServiceRegistryException;
+
+  /**
+   * Blocks until at least one of the jobs has terminated, i.e. reached one of the states
+   * {@link Job.Status#isTerminated()} is <code>true</code> for, or the timeout has elapsed. Callers waiting for job
+   * outcomes should prefer this method over repeatedly calling {@link #getJob(long)}, since the registry wakes them up
+   * as soon as a job terminates.
+   * 
+   * @param ids
+   *          the job identifiers
+   * @param timeout
+   *          the maximum amount of time to wait in milliseconds. Implementations may return earlier.
+   * @return the jobs that have terminated, or an empty list if none did before the timeout
+   * @throws NotFoundException
+   *           if one of the jobs does not exist
+   * @throws ServiceRegistryException
+   *           if there is a problem accessing the service registry
+   */
+  List<Job> waitForJobs(List<Long> ids, long timeout) throws NotFoundException, ServiceRegistryException;
+
   /**
    * Gets the current running job
    * 
@@ -306,6 +336,24 @@ public interface ServiceRegistry {
    */
   List<Job> getJobs(String serviceType, Status status) throws ServiceRegistryException;
 
+  /**
+   * Gets a page of the jobs of a service type and operation, ordered by their identifier. Callers going through all of
+   * these jobs should page through them rather than load them at once using {@link #getJobs(String, Status)}.
+   * 
+   * @param serviceType
+   *          The jobs run by this type of service
+   * @param operation
+   *          The operation of the jobs
+   * @param afterId
+   *          The identifier of the last job of the previous page, or <code>0</code> to start with the first job
+   * @param limit
+   *          The maximum number of jobs to return
+   * @return the jobs matching these criteria
+   * @throws ServiceRegistryException
+   *           if there is a problem accessing the service registry
+   */
+  List<Job> getJobs(String serviceType, String operation, long afterId, int limit) throws ServiceRegistryException;
+
   /**
    * Get all child jobs from a job
    * 
@@ -74,6 +74,9 @@ public class ServiceRegistryInMemoryImpl implements ServiceRegistry {
   /** The job identifier */
   protected AtomicLong idCounter = new AtomicLong();
 
+  /** Wakes up threads waiting for jobs to terminate */
+  protected JobCompletionNotifier jobCompletionNotifier = new JobCompletionNotifier(DEFAULT_DISPATCHER_TIMEOUT);
+
   /**
    * An (optional) security service. If set to a non-null value, this will be used to obtain the current user when
    * creating new jobs.
@@ -387,9 +390,44 @@ public class ServiceRegistryInMemoryImpl implements ServiceRegistry {
         throw new IllegalStateException("Error serializing job", e);
       }
     }
+    if (job.getStatus() != null && job.getStatus().isTerminated())
+      jobCompletionNotifier.jobTerminated(job.getId());
     return job;
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#waitForJobs(java.util.List, long)
+   */
+  @Override
+  public List<Job> waitForJobs(List<Long> ids, long timeout) throws NotFoundException, ServiceRegistryException {
+    return jobCompletionNotifier.waitForJobs(this, ids, timeout);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#getJobs(java.util.List)
+   */
+  @Override
+  public List<Job> getJobs(List<Long> ids) throws ServiceRegistryException {
+    List<Job> result = new ArrayList<Job>(ids.size());
+    synchronized (jobs) {
+      for (Long id : ids) {
+        String serializedJob = jobs.get(id);
+        if (serializedJob == null)
+          continue;
+        try {
+          result.add(JobParser.parseJob(serializedJob));
+        } catch (IOException e) {
+          throw new IllegalStateException("Error unmarshaling job", e);
+        }
+      }
+    }
+    return result;
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -478,6 +516,37 @@ public class ServiceRegistryInMemoryImpl implements ServiceRegistry {
     return result;
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#getJobs(java.lang.String, java.lang.String, long,
+   *      int)
+   */
+  @Override
+  public List<Job> getJobs(String serviceType, String operation, long afterId, int limit)
+          throws ServiceRegistryException {
+    List<Job> result = new ArrayList<Job>();
+    synchronized (jobs) {
+      List<Long> ids = new ArrayList<Long>(jobs.keySet());
+      Collections.sort(ids);
+      for (Long id : ids) {
+        if (id <= afterId)
+          continue;
+        Job job = null;
+        try {
+          job = JobParser.parseJob(jobs.get(id));
+        } catch (IOException e) {
+          throw new IllegalStateException("Error unmarshaling job", e);
+        }
+        if (serviceType.equals(job.getJobType()) && operation.equals(job.getOperation()))
+          result.add(job);
+        if (result.size() == limit)
+          break;
+      }
+    }
+    return result;
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -683,6 +752,8 @@ public class ServiceRegistryInMemoryImpl implements ServiceRegistry {
             } catch (IOException e) {
               throw new IllegalStateException("Error unmarshaling job", e);
             }
+            if (Status.FAILED.equals(job.getStatus()))
+              jobCompletionNotifier.jobTerminated(job.getId());
             securityService.setUser(null);
             securityService.setOrganization(null);
           }
@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+
+package org.opencastproject.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Response entity that writes a region of a file using {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * rather than copying it through a byte array on the heap. If the output stream of the servlet container is a channel
+ * itself, the transfer is left to the operating system entirely.
+ */
+public class FileChannelOutput implements StreamingOutput {
+
+  /** The maximum number of bytes handed to a single transfer */
+  private static final long CHUNK_SIZE = 8L * 1024L * 1024L;
+
+  /** The file */
+  private final File file;
+
+  /** The position of the first byte to write */
+  private final long start;
+
+  /** The number of bytes to write */
+  private final long length;
+
+  /**
+   * Creates an entity for the whole file.
+   * 
+   * @param file
+   *          the file
+   */
+  public FileChannelOutput(File file) {
+    this(file, 0, file.length());
+  }
+
+  /**
+   * Creates an entity for <code>length</code> bytes of the file, starting at <code>start</code>.
+   * 
+   * @param file
+   *          the file
+   * @param start
+   *          the position of the first byte
+   * @param length
+   *          the number of bytes
+   */
+  public FileChannelOutput(File file, long start, long length) {
+    if (start < 0 || length < 0)
+      throw new IllegalArgumentException("Start and length must not be negative");
+    this.file = file;
+    this.start = start;
+    this.length = length;
+  }
+
+  /**
+   * Returns the number of bytes that will be written.
+   * 
+   * @return the length
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see javax.ws.rs.core.StreamingOutput#write(java.io.OutputStream)
+   */
+  @Override
+  public void write(OutputStream out) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      WritableByteChannel target = out instanceof WritableByteChannel ? (WritableByteChannel) out : Channels
+              .newChannel(out);
+      long position = start;
+      long end = start + length;
+      while (position < end) {
+        long transferred = channel.transferTo(position, Math.min(end - position, CHUNK_SIZE), target);
+        if (transferred == 0 && position >= channel.size())
+          throw new IOException(file + " has been truncated while being written");
+        position += transferred;
+      }
+    } finally {
+      IoSupport.closeQuietly(in);
+    }
+  }
+
+}
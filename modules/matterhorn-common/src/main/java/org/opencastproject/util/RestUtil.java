@@ -61,7 +61,7 @@ public final class RestUtil {
   /** Create a file response. */
   public static Response.ResponseBuilder fileResponse(File f, String contentType,
                                                       Option<String> fileName) {
-    final Response.ResponseBuilder b = Response.ok(f).header("Content-Type", contentType)
+    final Response.ResponseBuilder b = Response.ok(new FileChannelOutput(f)).header("Content-Type", contentType)
         .header("Content-Length", f.length());
     for (String fn : fileName)
       b.header("Content-Disposition", "attachment; filename=" + fn);
@@ -69,7 +69,8 @@ public final class RestUtil {
   }
 
   /**
-   * create a partial file response
+   * create a partial file response. Requests for more than one range are answered with the complete file, requests for
+   * a range that lies outside of the file with <code>416 Requested Range Not Satisfiable</code>.
    * @param f the requested file
    * @param contentType the contentType to send
    * @param fileName the filename to send
@@ -80,37 +81,43 @@ public final class RestUtil {
   public static Response.ResponseBuilder partialFileResponse(File f, String contentType,
                                                              Option<String> fileName,
                                                              String rangeHeader) throws IOException {
+    final long fileLength = f.length();
+    final String rangeValue = rangeHeader.trim();
+    if (!rangeValue.startsWith("bytes=") || rangeValue.indexOf(',') > 0)
+      return fileResponse(f, contentType, fileName);
 
-    String rangeValue = rangeHeader.trim().substring("bytes=".length());
-    long fileLength = f.length();
     long start;
     long end;
-    if (rangeValue.startsWith("-")) {
-      end = fileLength - 1;
-      start = fileLength - 1 - Long.parseLong(rangeValue.substring("-".length()));
-    } else {
-      String[] range = rangeValue.split("-");
-      start = Long.parseLong(range[0]);
-      end = range.length > 1 ? Long.parseLong(range[1]) : fileLength - 1;
+    try {
+      final String[] range = rangeValue.substring("bytes=".length()).trim().split("-", 2);
+      if (range[0].length() == 0) {
+        // suffix range, containing the last n bytes
+        start = Math.max(0, fileLength - Long.parseLong(range[1].trim()));
+        end = fileLength - 1;
+      } else {
+        start = Long.parseLong(range[0].trim());
+        end = range.length > 1 && range[1].trim().length() > 0 ? Long.parseLong(range[1].trim()) : fileLength - 1;
+      }
+    } catch (NumberFormatException e) {
+      return fileResponse(f, contentType, fileName);
     }
     if (end > fileLength - 1) {
       end = fileLength - 1;
     }
 
-    // send partial response status code
-    Response.ResponseBuilder response = Response.status(206);
-
-    if (start <= end) {
-      long contentLength = end - start + 1;
-      response.header("Accept-Ranges", "bytes");
-      response.header("Connection", "Close");
-      response.header("Content-Length", contentLength + "");
-      response.header("Content-Range", "bytes " + start + "-" + end + "/" + fileLength);
-      response.header("Content-Type", contentType);
-      response.entity(new ChunkedFileInputStream(f, start, end));
+    if (start > end) {
+      return Response.status(416).header("Content-Range", "bytes */" + fileLength);
     }
 
-    return response;
+    // send partial response status code
+    final long contentLength = end - start + 1;
+    return Response.status(206)
+        .header("Accept-Ranges", "bytes")
+        .header("Connection", "Close")
+        .header("Content-Length", contentLength + "")
+        .header("Content-Range", "bytes " + start + "-" + end + "/" + fileLength)
+        .header("Content-Type", contentType)
+        .entity(new FileChannelOutput(f, start, contentLength));
   }
 
   /** Create a stream response. */
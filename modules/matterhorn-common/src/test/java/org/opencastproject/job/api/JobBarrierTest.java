@@ -20,19 +20,118 @@ import org.easymock.IAnswer;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
+import org.opencastproject.serviceregistry.api.ServiceRegistryException;
 import org.opencastproject.util.data.Function;
 import org.opencastproject.util.data.Function2;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
+import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createNiceMock;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.opencastproject.util.data.Collections.toArray;
 import static org.opencastproject.util.data.Monadics.mlist;
 
-@Ignore
 public class JobBarrierTest {
+  /**
+   * Tests that jobs reported as terminated by the service registry are picked up without polling.
+   */
+  @Test
+  public void testLongPoll() throws Exception {
+    final List<List<Long>> requestedIds = Collections.synchronizedList(new ArrayList<List<Long>>());
+    final ServiceRegistry sr = createMock(ServiceRegistry.class);
+    EasyMock.expect(sr.waitForJobs(EasyMock.<List<Long>> anyObject(), EasyMock.anyLong()))
+            .andAnswer(new IAnswer<List<Job>>() {
+              @Override public List<Job> answer() throws Throwable {
+                @SuppressWarnings("unchecked")
+                final List<Long> ids = (List<Long>) EasyMock.getCurrentArguments()[0];
+                requestedIds.add(new ArrayList<Long>(ids));
+                if (requestedIds.size() == 1)
+                  return Arrays.<Job> asList(terminatedJob(1L, Job.Status.FINISHED));
+                return Arrays.<Job> asList(terminatedJob(2L, Job.Status.FINISHED),
+                        terminatedJob(3L, Job.Status.FINISHED));
+              }
+            }).times(2);
+    EasyMock.replay(sr);
+
+    final Job[] jobs = new Job[] { runningJob(1L), runningJob(2L), runningJob(3L) };
+    final JobBarrier.Result res = new JobBarrier(sr, 10, jobs).waitForJobs(10000);
+    assertTrue(res.isSuccess());
+    assertEquals(3, res.getStatus().size());
+    for (final Job job : jobs) {
+      assertEquals(Job.Status.FINISHED, job.getStatus());
+      assertEquals("payload-" + job.getId(), job.getPayload());
+    }
+    assertEquals(new HashSet<Long>(Arrays.asList(1L, 2L, 3L)), new HashSet<Long>(requestedIds.get(0)));
+    assertEquals(new HashSet<Long>(Arrays.asList(2L, 3L)), new HashSet<Long>(requestedIds.get(1)));
+    EasyMock.verify(sr);
+  }
+
+  /**
+   * Tests that the barrier polls for the jobs if the service registry is unable to wait for them.
+   */
+  @Test
+  public void testFallbackToPolling() throws Exception {
+    final ServiceRegistry sr = createMock(ServiceRegistry.class);
+    EasyMock.expect(sr.waitForJobs(EasyMock.<List<Long>> anyObject(), EasyMock.anyLong()))
+            .andThrow(new ServiceRegistryException("Unable to wait for jobs")).once();
+    EasyMock.expect(sr.getJob(EasyMock.anyLong())).andAnswer(new IAnswer<Job>() {
+      @Override public Job answer() throws Throwable {
+        final long jobId = (Long) (EasyMock.getCurrentArguments()[0]);
+        return terminatedJob(jobId, jobId == 2L ? Job.Status.FAILED : Job.Status.FINISHED);
+      }
+    }).times(2);
+    EasyMock.replay(sr);
+
+    final Job[] jobs = new Job[] { runningJob(1L), runningJob(2L) };
+    final JobBarrier.Result res = new JobBarrier(sr, 10, jobs).waitForJobs(10000);
+    assertEquals(2, res.getStatus().size());
+    assertEquals(Job.Status.FINISHED, jobs[0].getStatus());
+    assertEquals(Job.Status.FAILED, jobs[1].getStatus());
+    EasyMock.verify(sr);
+  }
+
+  /**
+   * Tests that the barrier gives up once the timeout has elapsed and never asks the service registry to wait longer.
+   */
+  @Test
+  public void testTimeout() throws Exception {
+    final List<Long> requestedWaits = Collections.synchronizedList(new ArrayList<Long>());
+    final ServiceRegistry sr = createMock(ServiceRegistry.class);
+    EasyMock.expect(sr.waitForJobs(EasyMock.<List<Long>> anyObject(), EasyMock.anyLong()))
+            .andAnswer(new IAnswer<List<Job>>() {
+              @Override public List<Job> answer() throws Throwable {
+                final long wait = (Long) EasyMock.getCurrentArguments()[1];
+                requestedWaits.add(wait);
+                Thread.sleep(wait);
+                return new ArrayList<Job>();
+              }
+            }).atLeastOnce();
+    EasyMock.replay(sr);
+
+    final long start = System.currentTimeMillis();
+    try {
+      new JobBarrier(sr, 10, runningJob(1L)).waitForJobs(300);
+      fail("Waiting for a job that never terminates should time out");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getCause() instanceof InterruptedException);
+    }
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    assertTrue(requestedWaits.size() > 0);
+    for (final long wait : requestedWaits) {
+      assertTrue("Requested wait of " + wait + " ms exceeds the timeout", wait > 0 && wait <= 300);
+    }
+  }
+
+  @Ignore
   @Test
   public void testWaitForJobsAllFinish() throws Exception {
     for (int x = 10; x > 0; x--) {
@@ -40,6 +139,7 @@ public class JobBarrierTest {
     }
   }
 
+  @Ignore
   @Test
   public void testWaitForJobsSomeFail() throws Exception {
     for (int x = 10; x > 0; x--) {
@@ -74,6 +174,19 @@ public class JobBarrierTest {
     assertTrue("There are still some jobs running", noRunningJobs);
   }
 
+  private static Job runningJob(long id) {
+    final Job job = new JaxbJob(id);
+    job.setStatus(Job.Status.RUNNING);
+    return job;
+  }
+
+  private static Job terminatedJob(long id, Job.Status status) {
+    final Job job = new JaxbJob(id);
+    job.setStatus(status);
+    job.setPayload("payload-" + id);
+    return job;
+  }
+
   private static Function<Long, TestJob> alwaysFinish = new Function<Long, TestJob>() {
     @Override public TestJob apply(Long id) {
       return new TestJob(id,
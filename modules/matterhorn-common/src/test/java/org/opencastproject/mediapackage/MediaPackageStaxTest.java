@@ -0,0 +1,149 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.mediapackage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.mediapackage.track.AudioStreamImpl;
+import org.opencastproject.mediapackage.track.ScanOrder;
+import org.opencastproject.mediapackage.track.ScanType;
+import org.opencastproject.mediapackage.track.TrackImpl;
+import org.opencastproject.mediapackage.track.VideoStreamImpl;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URL;
+
+import javax.xml.bind.Marshaller;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Makes sure the streaming media package reader and writer agree with the JAXB mapping.
+ */
+public class MediaPackageStaxTest {
+
+  @Test
+  public void testReadMatchesJaxb() throws Exception {
+    MediaPackage jaxb = unmarshal(IOUtils.toString(getClass().getResourceAsStream("/manifest.xml"), "UTF-8"));
+    InputStream in = null;
+    try {
+      in = getClass().getResourceAsStream("/manifest.xml");
+      MediaPackage stax = MediaPackageStaxReader.read(in, null);
+      assertEquals(MediaPackageParser.getAsXml(jaxb), MediaPackageParser.getAsXml(stax));
+      assertEquals(2, stax.getTracks().length);
+      assertEquals(3, stax.getCatalogs().length);
+      assertEquals(2, stax.getAttachments().length);
+      assertEquals("engage", stax.getPublications()[0].getChannel());
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  @Test
+  public void testWriteMatchesJaxb() throws Exception {
+    MediaPackage mp = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder()
+            .loadFromXml(getClass().getResourceAsStream("/manifest.xml"));
+    mp.addCreator("<creator> & co");
+    mp.getCatalogs()[0].addTag("engage");
+    VideoStreamImpl video = new VideoStreamImpl("video-1");
+    video.setFrameWidth(640);
+    video.setFrameHeight(480);
+    video.setFrameRate(25.0f);
+    video.setScanType(ScanType.Progressive);
+    ((TrackImpl) mp.getTracks()[0]).addStream(video);
+
+    String xml = MediaPackageParser.getAsXml(mp);
+    assertEquals(xml, MediaPackageParser.getAsXml(unmarshal(xml)));
+    assertEquals(xml, MediaPackageParser.getAsXml(MediaPackageImpl.valueOf(xml)));
+    assertEquals(MediaPackageParser.getAsXml(unmarshal(marshal(mp))), xml);
+  }
+
+  /**
+   * Tests that the streaming writer produces exactly the JAXB document, including empty creators, contributors and
+   * subjects wrappers and the order of all attributes, and that the reader keeps those empty wrappers.
+   */
+  @Test
+  public void testWriteIsIdenticalToJaxb() throws Exception {
+    MediaPackage mp = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder()
+            .loadFromXml(getClass().getResourceAsStream("/manifest.xml"));
+    mp.removeCreator("p1");
+    mp.removeContributor("sd1");
+    mp.removeSubject("\u00d6kologie");
+    assertEquals(0, mp.getCreators().length);
+
+    TrackImpl track = (TrackImpl) mp.getTracks()[0];
+    track.setReference(new MediaPackageReferenceImpl(mp.getCatalogs()[0]));
+    AudioStreamImpl audio = new AudioStreamImpl("audio-1");
+    audio.setCaptureDevice("device");
+    audio.setCaptureDeviceVersion("1.0");
+    audio.setCaptureDeviceVendor("vendor");
+    audio.setFormat("AAC");
+    audio.setFormatVersion("2.0");
+    audio.setEncoderLibraryVendor("encoder vendor");
+    audio.setChannels(2);
+    track.addStream(audio);
+    VideoStreamImpl video = new VideoStreamImpl("video-2");
+    video.setScanType(ScanType.Interlaced);
+    video.setScanOrder(ScanOrder.TopFieldFirst);
+    track.addStream(video);
+
+    String xml = MediaPackageParser.getAsXml(mp);
+    assertEquals(marshal(mp), xml);
+    assertTrue(xml.contains("<creators/><contributors/><subjects/>"));
+    assertEquals(xml, MediaPackageParser.getAsXml(MediaPackageImpl.valueOf(xml)));
+    assertEquals(xml, marshal(MediaPackageImpl.valueOf(xml)));
+  }
+
+  @Test
+  public void testSerializerResolvesUrls() throws Exception {
+    URL rootUrl = getClass().getResource("/");
+    MediaPackageBuilder builder = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder();
+    builder.setSerializer(new DefaultMediaPackageSerializerImpl(rootUrl));
+    MediaPackage mp = builder.loadFromXml(getClass().getResourceAsStream("/manifest.xml"));
+    assertEquals(new URI(rootUrl.toExternalForm() + "tracks/vonly.mov"), mp.getTrack("track-1").getURI());
+    assertEquals(new URI("http://localhost/engage.html"), mp.getPublications()[0].getURI());
+  }
+
+  @Test
+  public void testEmptyMediaPackage() throws Exception {
+    MediaPackage mp = MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().createNew();
+    String xml = MediaPackageParser.getAsXml(mp);
+    assertTrue(xml.contains("<media/>"));
+    MediaPackage deserialized = MediaPackageImpl.valueOf(xml);
+    assertEquals(mp.getIdentifier(), deserialized.getIdentifier());
+    assertNull(deserialized.getTitle());
+    assertEquals(0, deserialized.getElements().length);
+  }
+
+  private static String marshal(MediaPackage mp) throws Exception {
+    Marshaller marshaller = MediaPackageImpl.context.createMarshaller();
+    StringWriter writer = new StringWriter();
+    marshaller.marshal(mp, writer);
+    return writer.toString();
+  }
+
+  private static MediaPackage unmarshal(String xml) throws Exception {
+    return MediaPackageImpl.context.createUnmarshaller()
+            .unmarshal(new StreamSource(IOUtils.toInputStream(xml, "UTF-8")), MediaPackageImpl.class).getValue();
+  }
+
+}
@@ -0,0 +1,99 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.serviceregistry.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.job.api.JaxbJob;
+import org.opencastproject.job.api.Job;
+import org.opencastproject.job.api.Job.Status;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests waking up threads waiting for jobs.
+ */
+public class JobCompletionNotifierTest {
+
+  /** The notifier, which never looks at the jobs unless it is notified */
+  private JobCompletionNotifier notifier = null;
+
+  /** The job to wait for */
+  private JaxbJob job = null;
+
+  /** A service registry returning the job */
+  private ServiceRegistry registry = null;
+
+  @Before
+  public void setUp() throws Exception {
+    notifier = new JobCompletionNotifier(60000L);
+    job = new JaxbJob(1L);
+    job.setStatus(Status.RUNNING);
+    registry = EasyMock.createNiceMock(ServiceRegistry.class);
+    EasyMock.expect(registry.getJob(EasyMock.anyLong())).andAnswer(new IAnswer<Job>() {
+      @Override
+      public Job answer() throws Throwable {
+        synchronized (job) {
+          return new JaxbJob(job);
+        }
+      }
+    }).anyTimes();
+    EasyMock.replay(registry);
+  }
+
+  @Test
+  public void testWakeUp() throws Exception {
+    Thread worker = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          return;
+        }
+        synchronized (job) {
+          job.setStatus(Status.FINISHED);
+        }
+        notifier.jobTerminated(1L);
+      }
+    };
+    long start = System.currentTimeMillis();
+    worker.start();
+    List<Job> terminated = notifier.waitForJobs(registry, Arrays.asList(1L), 30000L);
+    assertEquals(1, terminated.size());
+    assertEquals(Status.FINISHED, terminated.get(0).getStatus());
+    assertTrue(System.currentTimeMillis() - start < 10000L);
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    assertTrue(notifier.waitForJobs(registry, Arrays.asList(1L), 100L).isEmpty());
+  }
+
+  @Test
+  public void testTerminatedAlready() throws Exception {
+    job.setStatus(Status.FAILED);
+    assertEquals(1, notifier.waitForJobs(registry, Arrays.asList(1L), 30000L).size());
+  }
+
+}
@@ -0,0 +1,59 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+public class FileChannelOutputTest {
+
+  private File file = null;
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("filechanneloutput", ".txt");
+    FileUtils.writeStringToFile(file, "0123456789", "UTF-8");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteQuietly(file);
+  }
+
+  @Test
+  public void testWholeFile() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new FileChannelOutput(file).write(out);
+    assertEquals("0123456789", out.toString("UTF-8"));
+  }
+
+  @Test
+  public void testRegion() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FileChannelOutput output = new FileChannelOutput(file, 3, 4);
+    output.write(out);
+    assertEquals(4, output.getLength());
+    assertEquals("3456", out.toString("UTF-8"));
+  }
+
+}
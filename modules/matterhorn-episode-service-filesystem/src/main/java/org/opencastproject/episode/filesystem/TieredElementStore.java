@@ -0,0 +1,793 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.episode.filesystem;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.opencastproject.episode.api.Version;
+import org.opencastproject.episode.impl.StoragePath;
+import org.opencastproject.episode.impl.elementstore.DeletionSelector;
+import org.opencastproject.episode.impl.elementstore.ElementStore;
+import org.opencastproject.episode.impl.elementstore.ElementStoreException;
+import org.opencastproject.episode.impl.elementstore.Source;
+import org.opencastproject.security.api.TrustedHttpClient;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.PathSupport;
+import org.opencastproject.util.data.Option;
+import org.opencastproject.util.jmx.JmxUtil;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.component.ComponentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectInstance;
+
+import static org.opencastproject.util.IoSupport.file;
+import static org.opencastproject.util.OsgiUtil.getCfg;
+import static org.opencastproject.util.OsgiUtil.getOptCfg;
+import static org.opencastproject.util.data.Option.none;
+import static org.opencastproject.util.data.Option.some;
+
+/**
+ * Element store that keeps each distinct content only once, addressed by its MD5 checksum, and spreads the content over
+ * two local tiers: a fast hot tier for the assets in use and a slower, cheaper cold tier, e.g. a second mount, for the
+ * rest.
+ * <p>
+ * The hot tier holds the index, i.e. one small file per organization, media package, version and asset containing the
+ * checksum of the asset's content, and the content of the hot assets. Adding a new version of a media package only
+ * writes index files for the assets that did not change. A periodic sweep moves content to the cold tier once it has
+ * not been accessed for a while, or sooner if it is only referenced by superseded versions, and removes content that
+ * is no longer referenced. Reads are served from either tier. Content that is read repeatedly from the cold tier is
+ * moved back to the hot tier in the background.
+ * <p>
+ * The store is only activated if it is configured, see <code>OSGI-INF/tiered-element-store.xml</code>.
+ */
+public class TieredElementStore implements ElementStore {
+
+  /** Log facility */
+  private static final Logger logger = LoggerFactory.getLogger(TieredElementStore.class);
+
+  /** Configuration key for the hot tier directory */
+  public static final String CONFIG_HOT_DIR = "org.opencastproject.episode.tiered.hot.dir";
+
+  /** Configuration key for the cold tier directory */
+  public static final String CONFIG_COLD_DIR = "org.opencastproject.episode.tiered.cold.dir";
+
+  /** Configuration key for the number of days after which content that has not been accessed is moved to the cold tier */
+  public static final String CONFIG_COLD_AFTER_DAYS = "org.opencastproject.episode.tiered.cold.after.days";
+
+  /** Configuration key for the number of days after which content of superseded versions only is moved to the cold tier */
+  public static final String CONFIG_SUPERSEDED_AFTER_DAYS = "org.opencastproject.episode.tiered.superseded.after.days";
+
+  /** Configuration key for the number of reads from the cold tier after which content is moved back to the hot tier */
+  public static final String CONFIG_PROMOTION_READS = "org.opencastproject.episode.tiered.promotion.reads";
+
+  /** Configuration key for the number of minutes between two sweeps */
+  public static final String CONFIG_SWEEP_INTERVAL = "org.opencastproject.episode.tiered.sweep.interval";
+
+  /** The default number of days after which content that has not been accessed is moved to the cold tier */
+  public static final int DEFAULT_COLD_AFTER_DAYS = 30;
+
+  /** The default number of days after which content of superseded versions only is moved to the cold tier */
+  public static final int DEFAULT_SUPERSEDED_AFTER_DAYS = 7;
+
+  /** The default number of reads from the cold tier after which content is moved back to the hot tier */
+  public static final int DEFAULT_PROMOTION_READS = 2;
+
+  /** The default number of minutes between two sweeps */
+  public static final int DEFAULT_SWEEP_INTERVAL = 60;
+
+  /** The default hot tier directory name, relative to the archive root directory */
+  private static final String DEFAULT_HOT_DIRECTORY = "hot";
+
+  /** The type of the JMX bean */
+  private static final String JMX_TIERED_ELEMENT_STORE_TYPE = "TieredElementStore";
+
+  /** The time unreferenced content is kept, to protect content that is being added or copied during a sweep */
+  private static final long GC_GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+  /** Number of locks that serialize referencing content with removing unreferenced content */
+  private static final int CONTENT_LOCKS = 64;
+
+  /** Directory of the index, below the hot tier directory */
+  private static final String INDEX_DIR = "index";
+
+  /** Directory of the content, below both tier directories */
+  private static final String CONTENT_DIR = "content";
+
+  /** Directory of files being written, below both tier directories */
+  private static final String TMP_DIR = "tmp";
+
+  /** The hot tier directory */
+  private File hotDir;
+
+  /** The cold tier directory */
+  private File coldDir;
+
+  /** Time in milliseconds after which content that has not been accessed is moved to the cold tier */
+  private long coldAfter;
+
+  /** Time in milliseconds after which content that is only referenced by superseded versions is moved */
+  private long supersededAfter;
+
+  /** The number of reads from the cold tier after which content is moved back to the hot tier */
+  private int promotionReads;
+
+  /** The locks held while content is referenced or removed, by checksum hash */
+  private final Object[] contentLocks = newLocks(CONTENT_LOCKS);
+
+  /** Reads from the cold tier since the last sweep, by checksum */
+  private final ConcurrentMap<String, AtomicInteger> coldReads = new ConcurrentHashMap<String, AtomicInteger>();
+
+  /** Runs the sweeps and the promotions */
+  private ScheduledExecutorService executor;
+
+  /** The registered JMX bean */
+  private ObjectInstance registeredMXBean;
+
+  /** The http client */
+  private TrustedHttpClient httpClient;
+
+  // Statistics. The sizes and counts of the tiers are recalculated by each sweep and kept up to date in between.
+  private final AtomicLong hotBytes = new AtomicLong();
+  private final AtomicLong coldBytes = new AtomicLong();
+  private final AtomicLong hotAssets = new AtomicLong();
+  private final AtomicLong coldAssets = new AtomicLong();
+  private final AtomicLong hotReadCount = new AtomicLong();
+  private final AtomicLong coldReadCount = new AtomicLong();
+  private final AtomicLong deduplicatedPuts = new AtomicLong();
+  private final AtomicLong promotions = new AtomicLong();
+  private final AtomicLong demotions = new AtomicLong();
+  private final AtomicLong collectedAssets = new AtomicLong();
+  private volatile long lastSweep = -1L;
+  private volatile long lastSweepDuration = -1L;
+
+  /**
+   * Sets the trusted http client
+   * 
+   * @param httpClient
+   *          the http client
+   */
+  public void setHttpClient(TrustedHttpClient httpClient) {
+    this.httpClient = httpClient;
+  }
+
+  /**
+   * Service activator, called via declarative services configuration.
+   * 
+   * @param cc
+   *          the component context
+   * @throws ConfigurationException
+   *           if the cold tier directory is not configured or an option is not a number
+   */
+  public void activate(final ComponentContext cc) throws ConfigurationException {
+    final Dictionary properties = cc.getProperties();
+    String hotDirectory = getOptCfg(properties, CONFIG_HOT_DIR).getOrElse((String) null);
+    if (hotDirectory == null) {
+      String rootDirectory = StringUtils.trimToNull(cc.getBundleContext().getProperty(
+              FileSystemElementStore.CONFIG_ARCHIVE_ROOT_DIR));
+      if (rootDirectory == null)
+        throw new ConfigurationException(CONFIG_HOT_DIR, "must be set if the archive root directory is not");
+      hotDirectory = PathSupport.concat(rootDirectory, DEFAULT_HOT_DIRECTORY);
+    }
+    configure(new File(hotDirectory), new File(getCfg(properties, CONFIG_COLD_DIR)),
+            getInt(properties, CONFIG_COLD_AFTER_DAYS, DEFAULT_COLD_AFTER_DAYS),
+            getInt(properties, CONFIG_SUPERSEDED_AFTER_DAYS, DEFAULT_SUPERSEDED_AFTER_DAYS),
+            getInt(properties, CONFIG_PROMOTION_READS, DEFAULT_PROMOTION_READS));
+
+    final int sweepInterval = getInt(properties, CONFIG_SWEEP_INTERVAL, DEFAULT_SWEEP_INTERVAL);
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "tiered-element-store");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          sweep();
+        } catch (Exception e) {
+          logger.error("Error sweeping the tiered element store", e);
+        }
+      }
+    }, 0, sweepInterval, TimeUnit.MINUTES);
+
+    registeredMXBean = JmxUtil.registerMXBean(new TieredElementStoreBean(this), JMX_TIERED_ELEMENT_STORE_TYPE);
+    logger.info("Storing archive content in {} and moving cold content to {}", hotDir, coldDir);
+  }
+
+  /**
+   * Service deactivator, called via declarative services configuration.
+   */
+  public void deactivate() {
+    if (executor != null)
+      executor.shutdownNow();
+    if (registeredMXBean != null)
+      JmxUtil.unregisterMXBean(registeredMXBean);
+  }
+
+  /**
+   * Sets the tiers and the rules for moving content between them.
+   * 
+   * @param hotDir
+   *          the hot tier directory
+   * @param coldDir
+   *          the cold tier directory
+   * @param coldAfterDays
+   *          the number of days after which content that has not been accessed is moved to the cold tier
+   * @param supersededAfterDays
+   *          the number of days after which content that is only referenced by superseded versions is moved to the
+   *          cold tier
+   * @param promotionReads
+   *          the number of reads from the cold tier after which content is moved back to the hot tier
+   */
+  void configure(File hotDir, File coldDir, int coldAfterDays, int supersededAfterDays, int promotionReads) {
+    this.hotDir = hotDir;
+    this.coldDir = coldDir;
+    this.coldAfter = TimeUnit.DAYS.toMillis(coldAfterDays);
+    this.supersededAfter = TimeUnit.DAYS.toMillis(supersededAfterDays);
+    this.promotionReads = promotionReads;
+    mkDirs(file(hotDir.getPath(), INDEX_DIR));
+    mkDirs(file(hotDir.getPath(), CONTENT_DIR));
+    mkDirs(file(hotDir.getPath(), TMP_DIR));
+    mkDirs(file(coldDir.getPath(), CONTENT_DIR));
+    mkDirs(file(coldDir.getPath(), TMP_DIR));
+  }
+
+  /** Get an optional integer from a dictionary. */
+  private static int getInt(Dictionary properties, String key, int defaultValue) throws ConfigurationException {
+    for (String value : getOptCfg(properties, key)) {
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        throw new ConfigurationException(key, "not an integer");
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * @see org.opencastproject.episode.impl.elementstore.ElementStore#put(org.opencastproject.episode.impl.StoragePath,
+   *      Source)
+   */
+  @Override
+  public void put(StoragePath storagePath, Source source) throws ElementStoreException {
+    final File tmp = tmpFile(hotDir);
+    InputStream in = null;
+    OutputStream output = null;
+    HttpResponse response = null;
+    final String checksum;
+    try {
+      response = httpClient.execute(new HttpGet(source.getUri()));
+      final MessageDigest md5 = MessageDigest.getInstance("MD5");
+      in = new DigestInputStream(response.getEntity().getContent(), md5);
+      output = FileUtils.openOutputStream(tmp);
+      IOUtils.copy(in, output);
+      output.close();
+      checksum = Checksum.convertToHex(md5.digest());
+    } catch (Exception e) {
+      FileUtils.deleteQuietly(tmp);
+      logger.error("Error storing source {} to archive {}", source, tmp.getAbsolutePath());
+      throw new ElementStoreException(e);
+    } finally {
+      IOUtils.closeQuietly(output);
+      IOUtils.closeQuietly(in);
+      httpClient.close(response);
+    }
+
+    synchronized (lock(checksum)) {
+      final File hot = contentFile(hotDir, checksum);
+      if (hot.exists() && hot.setLastModified(System.currentTimeMillis())) {
+        FileUtils.deleteQuietly(tmp);
+        deduplicatedPuts.incrementAndGet();
+      } else {
+        // New content, or content that is about to be read again and therefore moved back from the cold tier
+        final long size = tmp.length();
+        mkParent(hot);
+        if (!tmp.renameTo(hot)) {
+          FileUtils.deleteQuietly(tmp);
+          throw new ElementStoreException("Cannot move " + tmp + " to " + hot);
+        }
+        hotBytes.addAndGet(size);
+        hotAssets.incrementAndGet();
+        final File cold = contentFile(coldDir, checksum);
+        if (cold.exists()) {
+          removeCold(cold);
+          deduplicatedPuts.incrementAndGet();
+        }
+      }
+      writeReference(storagePath, checksum);
+    }
+  }
+
+  /** @see org.opencastproject.episode.impl.elementstore.ElementStore#copy(StoragePath, StoragePath) */
+  @Override
+  public boolean copy(final StoragePath from, final StoragePath to) throws ElementStoreException {
+    for (String checksum : readReference(from)) {
+      synchronized (lock(checksum)) {
+        // Touch the content first, so that a running sweep does not collect it
+        if (!touch(checksum))
+          return false;
+        writeReference(to, checksum);
+      }
+      logger.debug("Copied {} to {}", from, to);
+      return true;
+    }
+    return false;
+  }
+
+  /** @see org.opencastproject.episode.impl.elementstore.ElementStore#get(StoragePath) */
+  @Override
+  public Option<InputStream> get(final StoragePath path) throws ElementStoreException {
+    for (String checksum : readReference(path)) {
+      // Content might move between the tiers while it is being looked up, so try again once
+      for (int attempt = 0; attempt < 2; attempt++) {
+        final File hot = contentFile(hotDir, checksum);
+        try {
+          final InputStream in = new FileInputStream(hot);
+          hot.setLastModified(System.currentTimeMillis());
+          hotReadCount.incrementAndGet();
+          return some(in);
+        } catch (FileNotFoundException ignore) {
+        }
+        final File cold = contentFile(coldDir, checksum);
+        try {
+          final InputStream in = new FileInputStream(cold);
+          coldReadCount.incrementAndGet();
+          countColdRead(checksum);
+          return some(in);
+        } catch (FileNotFoundException ignore) {
+        }
+      }
+      logger.error("Content {} of {} is missing from the archive", checksum, path);
+      throw new ElementStoreException("Content " + checksum + " of " + path + " is missing");
+    }
+    return none();
+  }
+
+  /** @see org.opencastproject.episode.impl.elementstore.ElementStore#contains(StoragePath) */
+  @Override
+  public boolean contains(StoragePath path) throws ElementStoreException {
+    for (String checksum : readReference(path)) {
+      return contentFile(hotDir, checksum).exists() || contentFile(coldDir, checksum).exists();
+    }
+    return false;
+  }
+
+  /**
+   * Deletes the index entries of the selected versions. The content is removed by the next sweep if it is not
+   * referenced anymore.
+   * 
+   * @see org.opencastproject.episode.impl.elementstore.ElementStore#delete(DeletionSelector)
+   */
+  @Override
+  public boolean delete(DeletionSelector sel) throws ElementStoreException {
+    File dir = file(hotDir.getPath(), INDEX_DIR, sel.getOrganizationId(), sel.getMediaPackageId());
+    for (Version v : sel.getVersion())
+      dir = new File(dir, v.toString());
+    try {
+      FileUtils.deleteDirectory(dir);
+      return true;
+    } catch (IOException e) {
+      logger.error("Error deleting directory from archive {}", dir);
+      throw new ElementStoreException(e);
+    }
+  }
+
+  /**
+   * Moves content that has not been accessed for a while to the cold tier and removes content that is not referenced
+   * anymore from both tiers.
+   */
+  void sweep() {
+    final long start = System.currentTimeMillis();
+    final Set<String> referenced = new HashSet<String>();
+    final Set<String> current = new HashSet<String>();
+    collectReferences(referenced, current);
+    coldReads.clear();
+
+    long bytes = 0;
+    long assets = 0;
+    for (File content : listContent(hotDir)) {
+      final String checksum = content.getName();
+      final long lastAccess = content.lastModified();
+      final long size = content.length();
+      if (!referenced.contains(checksum) && lastAccess < start - GC_GRACE_PERIOD) {
+        if (collect(content, lastAccess))
+          continue;
+      } else if (lastAccess < start - coldAfter || (!current.contains(checksum) && lastAccess < start - supersededAfter)) {
+        if (demote(content, lastAccess)) {
+          continue;
+        }
+      }
+      bytes += size;
+      assets++;
+    }
+    hotBytes.set(bytes);
+    hotAssets.set(assets);
+
+    bytes = 0;
+    assets = 0;
+    for (File content : listContent(coldDir)) {
+      final long lastAccess = content.lastModified();
+      if (!referenced.contains(content.getName()) && lastAccess < start - GC_GRACE_PERIOD) {
+        if (collect(content, lastAccess))
+          continue;
+      }
+      bytes += content.length();
+      assets++;
+    }
+    coldBytes.set(bytes);
+    coldAssets.set(assets);
+
+    lastSweep = start;
+    lastSweepDuration = System.currentTimeMillis() - start;
+    logger.debug("Swept the tiered element store in {} ms", lastSweepDuration);
+  }
+
+  /**
+   * Collects the checksums of all referenced content and of the content referenced by the latest version of each media
+   * package.
+   */
+  private void collectReferences(Set<String> referenced, Set<String> current) {
+    for (File org : listDirs(file(hotDir.getPath(), INDEX_DIR))) {
+      for (File mediaPackage : listDirs(org)) {
+        long latest = -1;
+        for (File version : listDirs(mediaPackage)) {
+          try {
+            latest = Math.max(latest, Long.parseLong(version.getName()));
+          } catch (NumberFormatException ignore) {
+          }
+        }
+        for (File version : listDirs(mediaPackage)) {
+          final boolean isLatest = version.getName().equals(Long.toString(latest));
+          for (File reference : listFiles(version)) {
+            try {
+              final String checksum = StringUtils.trim(FileUtils.readFileToString(reference));
+              referenced.add(checksum);
+              if (isLatest)
+                current.add(checksum);
+            } catch (IOException e) {
+              // The version has been deleted in the meantime
+              logger.debug("Cannot read index file {}", reference);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes content that was not referenced when the sweep collected the references. put() and copy() touch the content
+   * before they reference it, holding the content's lock, so the content is only removed if it has not been touched
+   * since.
+   * 
+   * @return whether the content has been removed
+   */
+  private boolean collect(File content, long lastAccess) {
+    synchronized (lock(content.getName())) {
+      if (content.lastModified() != lastAccess || !content.delete())
+        return false;
+    }
+    collectedAssets.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Moves content to the cold tier, unless it is accessed while it is being moved.
+   * 
+   * @return whether the content has been moved
+   */
+  private boolean demote(File hot, long lastAccess) {
+    final File cold = contentFile(coldDir, hot.getName());
+    final File tmp = tmpFile(coldDir);
+    try {
+      FileUtils.copyFile(hot, tmp);
+      tmp.setLastModified(lastAccess);
+      mkParent(cold);
+      if (!tmp.renameTo(cold))
+        throw new IOException("Cannot move " + tmp + " to " + cold);
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(tmp);
+      logger.warn("Error moving {} to the cold tier: {}", hot, e.getMessage());
+      return false;
+    }
+    if (hot.lastModified() != lastAccess || !hot.delete()) {
+      FileUtils.deleteQuietly(cold);
+      return false;
+    }
+    coldBytes.addAndGet(cold.length());
+    coldAssets.incrementAndGet();
+    demotions.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Counts a read from the cold tier and schedules moving the content back to the hot tier once it has been read often
+   * enough.
+   */
+  private void countColdRead(final String checksum) {
+    AtomicInteger reads = coldReads.get(checksum);
+    if (reads == null) {
+      final AtomicInteger first = new AtomicInteger();
+      reads = coldReads.putIfAbsent(checksum, first);
+      if (reads == null)
+        reads = first;
+    }
+    if (reads.incrementAndGet() == promotionReads && executor != null) {
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          promote(checksum);
+        }
+      });
+    }
+  }
+
+  /** Moves content back to the hot tier. */
+  void promote(String checksum) {
+    final File cold = contentFile(coldDir, checksum);
+    final File hot = contentFile(hotDir, checksum);
+    final File tmp = tmpFile(hotDir);
+    try {
+      FileUtils.copyFile(cold, tmp);
+      // The copy keeps the old date, which would make the next sweep move the content right back
+      tmp.setLastModified(System.currentTimeMillis());
+      mkParent(hot);
+      if (!tmp.renameTo(hot))
+        throw new IOException("Cannot move " + tmp + " to " + hot);
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(tmp);
+      logger.warn("Error moving {} back to the hot tier: {}", cold, e.getMessage());
+      return;
+    }
+    hotBytes.addAndGet(hot.length());
+    hotAssets.incrementAndGet();
+    removeCold(cold);
+    promotions.incrementAndGet();
+  }
+
+  /** Removes content from the cold tier that has been moved to the hot tier. */
+  private void removeCold(File cold) {
+    final long size = cold.length();
+    if (cold.delete()) {
+      coldBytes.addAndGet(-size);
+      coldAssets.decrementAndGet();
+    }
+  }
+
+  /** Returns the lock guarding the content with the given checksum. */
+  private Object lock(String checksum) {
+    return contentLocks[(checksum.hashCode() & Integer.MAX_VALUE) % contentLocks.length];
+  }
+
+  /** Creates the content locks. */
+  private static Object[] newLocks(int count) {
+    final Object[] locks = new Object[count];
+    for (int i = 0; i < count; i++)
+      locks[i] = new Object();
+    return locks;
+  }
+
+  /**
+   * Updates the last access time of content.
+   * 
+   * @return whether the content exists
+   */
+  private boolean touch(String checksum) {
+    final long now = System.currentTimeMillis();
+    return contentFile(hotDir, checksum).setLastModified(now) || contentFile(coldDir, checksum).setLastModified(now);
+  }
+
+  /** Writes the index file of a storage path. */
+  private void writeReference(StoragePath p, String checksum) {
+    final File reference = referenceFile(p);
+    final File tmp = tmpFile(hotDir);
+    try {
+      FileUtils.writeStringToFile(tmp, checksum);
+      mkParent(reference);
+      if (!tmp.renameTo(reference))
+        throw new IOException("Cannot move " + tmp + " to " + reference);
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(tmp);
+      logger.error("Error writing archive index file {}", reference);
+      throw new ElementStoreException(e);
+    }
+  }
+
+  /** Reads the checksum of the content of a storage path from the index. */
+  private Option<String> readReference(StoragePath p) {
+    final File reference = referenceFile(p);
+    try {
+      return some(StringUtils.trim(FileUtils.readFileToString(reference)));
+    } catch (FileNotFoundException e) {
+      return none();
+    } catch (IOException e) {
+      logger.error("Error reading archive index file {}", reference);
+      throw new ElementStoreException(e);
+    }
+  }
+
+  /** Returns the index file of a storage path. */
+  private File referenceFile(StoragePath p) {
+    return file(hotDir.getPath(), INDEX_DIR, p.getOrganizationId(), p.getMediaPackageId(), p.getVersion().toString(),
+            p.getAssetId());
+  }
+
+  /** Returns the content file of a tier, spread over subdirectories by the first characters of the checksum. */
+  private static File contentFile(File tier, String checksum) {
+    return file(tier.getPath(), CONTENT_DIR, checksum.substring(0, 2), checksum.substring(2, 4), checksum);
+  }
+
+  /** Returns a new temporary file of a tier. */
+  private static File tmpFile(File tier) {
+    return file(tier.getPath(), TMP_DIR, UUID.randomUUID().toString());
+  }
+
+  /** Returns all content files of a tier. */
+  private static Set<File> listContent(File tier) {
+    final Set<File> content = new HashSet<File>();
+    for (File first : listDirs(file(tier.getPath(), CONTENT_DIR))) {
+      for (File second : listDirs(first)) {
+        for (File f : listFiles(second)) {
+          content.add(f);
+        }
+      }
+    }
+    return content;
+  }
+
+  /** Returns the subdirectories of a directory, or none if it does not exist anymore. */
+  private static File[] listDirs(File dir) {
+    final File[] dirs = dir.listFiles(DIRECTORIES);
+    return dirs != null ? dirs : new File[0];
+  }
+
+  /** Returns the files of a directory, or none if it does not exist anymore. */
+  private static File[] listFiles(File dir) {
+    final File[] files = dir.listFiles(FILES);
+    return files != null ? files : new File[0];
+  }
+
+  /** Accepts directories only */
+  private static final FileFilter DIRECTORIES = new FileFilter() {
+    @Override
+    public boolean accept(File f) {
+      return f.isDirectory();
+    }
+  };
+
+  /** Accepts files only */
+  private static final FileFilter FILES = new FileFilter() {
+    @Override
+    public boolean accept(File f) {
+      return f.isFile();
+    }
+  };
+
+  /** Create all parent directories of a file. */
+  private static void mkParent(File f) {
+    mkDirs(f.getParentFile());
+  }
+
+  /** Create this directory and all of its parents. */
+  private static void mkDirs(File d) {
+    if (d != null && !d.exists() && !d.mkdirs() && !d.isDirectory()) {
+      final String msg = "Cannot create directory " + d;
+      logger.error(msg);
+      throw new ElementStoreException(msg);
+    }
+  }
+
+  @Override
+  public Option<Long> getUsedSpace() {
+    return some(hotBytes.get() + coldBytes.get());
+  }
+
+  @Override
+  public Option<Long> getUsableSpace() {
+    return some(hotDir.getUsableSpace() + coldDir.getUsableSpace());
+  }
+
+  @Override
+  public Option<Long> getTotalSpace() {
+    return some(hotDir.getTotalSpace() + coldDir.getTotalSpace());
+  }
+
+  File getHotDir() {
+    return hotDir;
+  }
+
+  File getColdDir() {
+    return coldDir;
+  }
+
+  long getHotBytes() {
+    return hotBytes.get();
+  }
+
+  long getColdBytes() {
+    return coldBytes.get();
+  }
+
+  long getHotAssets() {
+    return hotAssets.get();
+  }
+
+  long getColdAssets() {
+    return coldAssets.get();
+  }
+
+  long getHotReads() {
+    return hotReadCount.get();
+  }
+
+  long getColdReads() {
+    return coldReadCount.get();
+  }
+
+  long getDeduplicatedPuts() {
+    return deduplicatedPuts.get();
+  }
+
+  long getPromotions() {
+    return promotions.get();
+  }
+
+  long getDemotions() {
+    return demotions.get();
+  }
+
+  long getCollectedAssets() {
+    return collectedAssets.get();
+  }
+
+  long getLastSweep() {
+    return lastSweep;
+  }
+
+  long getLastSweepDuration() {
+    return lastSweepDuration;
+  }
+
+}
@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.episode.filesystem;
+
+import org.opencastproject.episode.impl.jmx.ElementStoreBean;
+
+public class TieredElementStoreBean extends ElementStoreBean implements TieredElementStoreMXBean {
+
+  private final TieredElementStore elementStore;
+
+  public TieredElementStoreBean(TieredElementStore elementStore) {
+    super(elementStore);
+    this.elementStore = elementStore;
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getHotUsedSpace()
+   */
+  @Override
+  public long getHotUsedSpace() {
+    return elementStore.getHotBytes();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getHotFreeSpace()
+   */
+  @Override
+  public long getHotFreeSpace() {
+    return elementStore.getHotDir().getUsableSpace();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getColdUsedSpace()
+   */
+  @Override
+  public long getColdUsedSpace() {
+    return elementStore.getColdBytes();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getColdFreeSpace()
+   */
+  @Override
+  public long getColdFreeSpace() {
+    return elementStore.getColdDir().getUsableSpace();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getHotAssets()
+   */
+  @Override
+  public long getHotAssets() {
+    return elementStore.getHotAssets();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getColdAssets()
+   */
+  @Override
+  public long getColdAssets() {
+    return elementStore.getColdAssets();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getHotReads()
+   */
+  @Override
+  public long getHotReads() {
+    return elementStore.getHotReads();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getColdReads()
+   */
+  @Override
+  public long getColdReads() {
+    return elementStore.getColdReads();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getDeduplicatedPuts()
+   */
+  @Override
+  public long getDeduplicatedPuts() {
+    return elementStore.getDeduplicatedPuts();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getPromotions()
+   */
+  @Override
+  public long getPromotions() {
+    return elementStore.getPromotions();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getDemotions()
+   */
+  @Override
+  public long getDemotions() {
+    return elementStore.getDemotions();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getCollectedAssets()
+   */
+  @Override
+  public long getCollectedAssets() {
+    return elementStore.getCollectedAssets();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getLastSweep()
+   */
+  @Override
+  public long getLastSweep() {
+    return elementStore.getLastSweep();
+  }
+
+  /**
+   * @see org.opencastproject.episode.filesystem.TieredElementStoreMXBean#getLastSweepDuration()
+   */
+  @Override
+  public long getLastSweepDuration() {
+    return elementStore.getLastSweepDuration();
+  }
+
+}
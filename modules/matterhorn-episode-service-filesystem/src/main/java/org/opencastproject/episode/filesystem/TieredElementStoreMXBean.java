@@ -0,0 +1,123 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.episode.filesystem;
+
+import org.opencastproject.episode.impl.jmx.ElementStoreMXBean;
+
+/**
+ * JMX Bean interface exposing the tiers of the tiered element store
+ */
+public interface TieredElementStoreMXBean extends ElementStoreMXBean {
+
+  /**
+   * Gets the size of the content on the hot tier in bytes
+   * 
+   * @return used space in bytes
+   */
+  long getHotUsedSpace();
+
+  /**
+   * Gets the free space of the hot tier in bytes
+   * 
+   * @return free space in bytes
+   */
+  long getHotFreeSpace();
+
+  /**
+   * Gets the size of the content on the cold tier in bytes
+   * 
+   * @return used space in bytes
+   */
+  long getColdUsedSpace();
+
+  /**
+   * Gets the free space of the cold tier in bytes
+   * 
+   * @return free space in bytes
+   */
+  long getColdFreeSpace();
+
+  /**
+   * Gets the number of distinct contents on the hot tier
+   * 
+   * @return the number of contents
+   */
+  long getHotAssets();
+
+  /**
+   * Gets the number of distinct contents on the cold tier
+   * 
+   * @return the number of contents
+   */
+  long getColdAssets();
+
+  /**
+   * Gets the number of reads served from the hot tier
+   * 
+   * @return the number of reads
+   */
+  long getHotReads();
+
+  /**
+   * Gets the number of reads served from the cold tier
+   * 
+   * @return the number of reads
+   */
+  long getColdReads();
+
+  /**
+   * Gets the number of added assets whose content was already stored
+   * 
+   * @return the number of assets
+   */
+  long getDeduplicatedPuts();
+
+  /**
+   * Gets the number of contents moved from the cold to the hot tier
+   * 
+   * @return the number of contents
+   */
+  long getPromotions();
+
+  /**
+   * Gets the number of contents moved from the hot to the cold tier
+   * 
+   * @return the number of contents
+   */
+  long getDemotions();
+
+  /**
+   * Gets the number of contents removed because they were not referenced anymore
+   * 
+   * @return the number of contents
+   */
+  long getCollectedAssets();
+
+  /**
+   * Gets the start of the last sweep in milliseconds since the epoch
+   * 
+   * @return the start time, or -1 if there has not been a sweep yet
+   */
+  long getLastSweep();
+
+  /**
+   * Gets the duration of the last sweep in milliseconds
+   * 
+   * @return the duration, or -1 if there has not been a sweep yet
+   */
+  long getLastSweepDuration();
+
+}
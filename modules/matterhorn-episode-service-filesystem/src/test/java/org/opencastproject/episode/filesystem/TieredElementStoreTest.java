@@ -0,0 +1,216 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.episode.filesystem;
+
+import static org.opencastproject.episode.impl.elementstore.Source.source;
+
+import org.opencastproject.episode.api.Version;
+import org.opencastproject.episode.impl.StoragePath;
+import org.opencastproject.episode.impl.elementstore.DeletionSelector;
+import org.opencastproject.security.api.TrustedHttpClient;
+import org.opencastproject.util.FileSupport;
+import org.opencastproject.util.data.Option;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collection;
+
+public class TieredElementStoreTest {
+
+  private static final String TEST_ROOT_DIR_NAME = "test-tiered-archive";
+
+  private static final String ORG_ID = "sampleOrgId";
+
+  private static final String MP_ID = "sampleMediaPackageId";
+
+  private static final String MP_ELEM_ID = "sampleMediaPackageElementId";
+
+  private static final String FILE_NAME = "dublincore.xml";
+
+  private static final Version VERSION_1 = new Version(1);
+
+  private static final Version VERSION_2 = new Version(2);
+
+  private static final long LONG_AGO = System.currentTimeMillis() - 365L * 24 * 60 * 60 * 1000;
+
+  private File tmpRoot;
+
+  private File hotDir;
+
+  private File coldDir;
+
+  private TieredElementStore repo = new TieredElementStore();
+
+  @Before
+  public void setUp() throws Exception {
+    HttpEntity entity = EasyMock.createNiceMock(HttpEntity.class);
+    EasyMock.expect(entity.getContent()).andAnswer(new IAnswer<InputStream>() {
+      @Override
+      public InputStream answer() throws Throwable {
+        return getClass().getClassLoader().getResourceAsStream(FILE_NAME);
+      }
+    }).anyTimes();
+    EasyMock.replay(entity);
+
+    HttpResponse response = EasyMock.createNiceMock(HttpResponse.class);
+    EasyMock.expect(response.getEntity()).andReturn(entity).anyTimes();
+    EasyMock.replay(response);
+
+    TrustedHttpClient httpClient = EasyMock.createNiceMock(TrustedHttpClient.class);
+    EasyMock.expect(httpClient.execute((HttpUriRequest) EasyMock.anyObject())).andReturn(response).anyTimes();
+    EasyMock.replay(httpClient);
+
+    tmpRoot = FileSupport.getTempDirectory(TEST_ROOT_DIR_NAME);
+    hotDir = new File(tmpRoot, "hot");
+    coldDir = new File(tmpRoot, "cold");
+
+    repo.setHttpClient(httpClient);
+    repo.configure(hotDir, coldDir, 30, 7, 2);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.forceDelete(tmpRoot);
+  }
+
+  @Test
+  public void testPutAndGet() throws Exception {
+    StoragePath storagePath = new StoragePath(ORG_ID, MP_ID, VERSION_1, MP_ELEM_ID);
+    repo.put(storagePath, source(getClass().getClassLoader().getResource(FILE_NAME).toURI()));
+    Assert.assertTrue(repo.contains(storagePath));
+    Assert.assertEquals(1, content(hotDir).size());
+    assertContent(repo.get(storagePath));
+    Assert.assertFalse(repo.get(new StoragePath(ORG_ID, MP_ID, VERSION_2, MP_ELEM_ID)).isSome());
+  }
+
+  @Test
+  public void testDeduplication() throws Exception {
+    repo.put(new StoragePath(ORG_ID, MP_ID, VERSION_1, MP_ELEM_ID),
+            source(getClass().getClassLoader().getResource(FILE_NAME).toURI()));
+    repo.put(new StoragePath(ORG_ID, "otherMediaPackageId", VERSION_1, MP_ELEM_ID),
+            source(getClass().getClassLoader().getResource(FILE_NAME).toURI()));
+    Assert.assertEquals(1, content(hotDir).size());
+    Assert.assertEquals(1, repo.getDeduplicatedPuts());
+  }
+
+  @Test
+  public void testCopy() throws Exception {
+    StoragePath from = new StoragePath(ORG_ID, MP_ID, VERSION_1, MP_ELEM_ID);
+    StoragePath to = new StoragePath(ORG_ID, MP_ID, VERSION_2, MP_ELEM_ID);
+    Assert.assertFalse(repo.copy(from, to));
+    repo.put(from, source(getClass().getClassLoader().getResource(FILE_NAME).toURI()));
+    Assert.assertTrue(repo.copy(from, to));
+    Assert.assertEquals(1, content(hotDir).size());
+    assertContent(repo.get(to));
+  }
+
+  @Test
+  public void testDemotionAndPromotion() throws Exception {
+    StoragePath storagePath = new StoragePath(ORG_ID, MP_ID, VERSION_1, MP_ELEM_ID);
+    repo.put(storagePath, source(getClass().getClassLoader().getResource(FILE_NAME).toURI()));
+    File hot = content(hotDir).iterator().next();
+    Assert.assertTrue(hot.setLastModified(LONG_AGO));
+
+    repo.sweep();
+    Assert.assertTrue(content(hotDir).isEmpty());
+    Assert.assertEquals(1, content(coldDir).size());
+    Assert.assertEquals(1, repo.getDemotions());
+    Assert.assertEquals(1, repo.getColdAssets());
+    assertContent(repo.get(storagePath));
+    Assert.assertEquals(1, repo.getColdReads());
+
+    repo.promote(hot.getName());
+    Assert.assertEquals(1, content(hotDir).size());
+    Assert.assertTrue(content(coldDir).isEmpty());
+    Assert.assertEquals(1, repo.getPromotions());
+
+    // Promoted content counts as accessed, so the next sweep keeps it in the hot tier
+    repo.sweep();
+    Assert.assertEquals(1, content(hotDir).size());
+    Assert.assertTrue(content(coldDir).isEmpty());
+    Assert.assertEquals(1, repo.getDemotions());
+    assertContent(repo.get(storagePath));
+    Assert.assertEquals(1, repo.getHotReads());
+  }
+
+  @Test
+  public void testSupersededVersionIsDemoted() throws Exception {
+    repo.put(new StoragePath(ORG_ID, MP_ID, VERSION_1, MP_ELEM_ID),
+            source(getClass().getClassLoader().getResource(FILE_NAME).toURI()));
+    File hot = content(hotDir).iterator().next();
+    Assert.assertTrue(hot.setLastModified(System.currentTimeMillis() - 10L * 24 * 60 * 60 * 1000));
+
+    // Still referenced by the latest version
+    repo.sweep();
+    Assert.assertEquals(1, content(hotDir).size());
+
+    // Only referenced by a superseded version
+    FileUtils.writeStringToFile(new File(hotDir, "index/" + ORG_ID + "/" + MP_ID + "/" + VERSION_2 + "/other"),
+            "0123456789abcdef0123456789abcdef");
+    repo.sweep();
+    Assert.assertTrue(content(hotDir).isEmpty());
+    Assert.assertEquals(1, content(coldDir).size());
+  }
+
+  @Test
+  public void testDeleteAndCollect() throws Exception {
+    StoragePath storagePath = new StoragePath(ORG_ID, MP_ID, VERSION_1, MP_ELEM_ID);
+    repo.put(storagePath, source(getClass().getClassLoader().getResource(FILE_NAME).toURI()));
+    Assert.assertTrue(repo.delete(new DeletionSelector(ORG_ID, MP_ID, Option.some(VERSION_2))));
+    Assert.assertTrue(repo.contains(storagePath));
+    Assert.assertTrue(repo.delete(new DeletionSelector(ORG_ID, MP_ID, Option.<Version> none())));
+    Assert.assertFalse(repo.contains(storagePath));
+
+    // Recently added content is kept
+    repo.sweep();
+    File hot = content(hotDir).iterator().next();
+    Assert.assertTrue(hot.setLastModified(LONG_AGO));
+    repo.sweep();
+    Assert.assertTrue(content(hotDir).isEmpty());
+    Assert.assertTrue(content(coldDir).isEmpty());
+    Assert.assertEquals(1, repo.getCollectedAssets());
+  }
+
+  private void assertContent(Option<InputStream> option) throws Exception {
+    Assert.assertTrue(option.isSome());
+    InputStream original = null;
+    InputStream stored = option.get();
+    try {
+      original = getClass().getClassLoader().getResourceAsStream(FILE_NAME);
+      Assert.assertTrue(IOUtils.contentEquals(original, stored));
+    } finally {
+      IOUtils.closeQuietly(original);
+      IOUtils.closeQuietly(stored);
+    }
+  }
+
+  private static Collection<File> content(File tier) {
+    return FileUtils.listFiles(new File(tier, "content"), null, true);
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.episode.impl;
+
+import org.opencastproject.episode.api.EpisodeServiceException;
+import org.opencastproject.episode.api.UriRewriter;
+import org.opencastproject.episode.api.Version;
+import org.opencastproject.episode.impl.persistence.Episode;
+import org.opencastproject.episode.impl.persistence.EpisodeServiceDatabase;
+import org.opencastproject.episode.impl.solr.Schema;
+import org.opencastproject.episode.impl.solr.SolrIndexManager;
+import org.opencastproject.security.api.Organization;
+import org.opencastproject.security.api.OrganizationDirectoryService;
+import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.security.util.SecurityUtil;
+import org.opencastproject.solr.SolrIndexRebuild;
+import org.opencastproject.util.data.Option;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.opencastproject.episode.impl.EpisodeServiceImpl.mkPartial;
+import static org.opencastproject.episode.impl.EpisodeServiceImpl.rewriteAssetUris;
+
+/**
+ * Rebuilds the episode index from the archive.
+ * <p/>
+ * The archive database does not page its episodes yet, so the pages are taken from the iterator returned by
+ * {@link EpisodeServiceDatabase#getAllEpisodes()}. Since media package element URIs are archived as location
+ * independent URNs they have to be rewritten to point to actual locations, hence a rebuild is only possible once a
+ * {@link UriRewriter} is available.
+ */
+final class EpisodeIndexRebuild extends SolrIndexRebuild<Episode> {
+  private final SolrIndexManager solrIndex;
+  private final EpisodeServiceDatabase persistence;
+  private final OrganizationDirectoryService orgDir;
+  private final SecurityService secSvc;
+  private final String systemUserName;
+
+  /** Latest archived version of each media package, shared by the workers */
+  private final ConcurrentMap<String, Version> latestVersions = new ConcurrentHashMap<String, Version>();
+
+  private volatile UriRewriter uriRewriter;
+  private Iterator<Episode> episodes;
+
+  EpisodeIndexRebuild(SolrIndexManager solrIndex,
+                      EpisodeServiceDatabase persistence,
+                      OrganizationDirectoryService orgDir,
+                      SecurityService secSvc,
+                      String systemUserName) {
+    super("episode", solrIndex.getSolrServer(), Schema.ID);
+    this.solrIndex = solrIndex;
+    this.persistence = persistence;
+    this.orgDir = orgDir;
+    this.secSvc = secSvc;
+    this.systemUserName = systemUserName;
+  }
+
+  /** Set the facility used to point media package element URIs to the episode service. */
+  void setUriRewriter(UriRewriter uriRewriter) {
+    this.uriRewriter = uriRewriter;
+  }
+
+  /** Opens the episode iterator. The number of episodes is not known in advance. */
+  @Override
+  protected long countItems() throws Exception {
+    if (uriRewriter == null)
+      throw new IllegalStateException("The episode index cannot be rebuilt before the episode service is published");
+    latestVersions.clear();
+    episodes = persistence.getAllEpisodes();
+    return -1;
+  }
+
+  @Override
+  protected List<Episode> loadItems(Episode last, int limit) throws Exception {
+    final List<Episode> page = new ArrayList<Episode>(limit);
+    while (page.size() < limit && episodes != null && episodes.hasNext()) {
+      page.add(episodes.next());
+    }
+    if (page.size() < limit)
+      episodes = null;
+    return page;
+  }
+
+  @Override
+  protected List<SolrInputDocument> createDocuments(Episode episode) throws Exception {
+    final String episodeId = episode.getMediaPackage().getIdentifier().toString();
+    Version latestVersion = latestVersions.get(episodeId);
+    if (latestVersion == null) {
+      final Option<Episode> latestEpisode = persistence.getLatestEpisode(episodeId);
+      if (latestEpisode.isNone())
+        throw new EpisodeServiceException("Latest episode from existing episode identifier not found!");
+      latestVersion = latestEpisode.get().getVersion();
+      latestVersions.putIfAbsent(episodeId, latestVersion);
+    }
+    final boolean isLatestVersion = episode.getVersion().equals(latestVersion);
+
+    final Organization organization = orgDir.getOrganization(episode.getOrganization());
+    secSvc.setOrganization(organization);
+    secSvc.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
+    try {
+      // mediapackage URIs need to be rewritten to concrete URLs for indexation to work
+      final PartialMediaPackage pmp = mkPartial(episode.getMediaPackage());
+      rewriteAssetUris(uriRewriter.curry(episode.getVersion()), pmp);
+      return Collections.singletonList(solrIndex.createInputDocument(pmp.getMediaPackage(), episode.getAcl(),
+              episode.getVersion(), episode.getDeletionDate(), episode.getModificationDate(), isLatestVersion));
+    } finally {
+      secSvc.setOrganization(null);
+      secSvc.setUser(null);
+    }
+  }
+
+  /**
+   * Looks up the archived version of each document. The document identifier is the media package identifier followed
+   * by the version, so the media package identifier is read from the document.
+   */
+  @Override
+  protected List<String> getRemovedIds(List<String> ids) throws Exception {
+    final List<String> removed = new ArrayList<String>();
+    for (String id : ids) {
+      final SolrQuery query = new SolrQuery(Schema.ID + ":" + ClientUtils.escapeQueryChars(id));
+      query.setFields(Schema.DC_ID);
+      final SolrDocumentList docs = solrIndex.getSolrServer().query(query).getResults();
+      if (docs.isEmpty())
+        continue;
+      final String mediaPackageId = Schema.getDcId(docs.get(0));
+      boolean archived = false;
+      if (mediaPackageId != null && id.startsWith(mediaPackageId)) {
+        try {
+          final Version version = Version.version(Long.parseLong(id.substring(mediaPackageId.length())));
+          archived = persistence.getEpisode(mediaPackageId, version).isSome();
+        } catch (NumberFormatException e) {
+          // Not the document of an archived version
+        }
+      }
+      if (!archived)
+        removed.add(id);
+    }
+    return removed;
+  }
+
+  @Override
+  protected void addDocuments(List<SolrInputDocument> documents) throws Exception {
+    solrIndex.addDocuments(documents);
+  }
+
+  @Override
+  protected void deleteDocuments(List<String> ids) throws Exception {
+    solrIndex.deleteDocuments(ids);
+  }
+}
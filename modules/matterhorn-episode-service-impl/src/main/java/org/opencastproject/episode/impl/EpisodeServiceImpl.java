@@ -63,19 +63,25 @@ import org.opencastproject.workflow.api.WorkflowInstance;
 import org.opencastproject.workflow.api.WorkflowParsingException;
 import org.opencastproject.workflow.api.WorkflowService;
 import org.opencastproject.workspace.api.Workspace;
-import org.osgi.framework.ServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.String.format;
 import static org.opencastproject.episode.api.EpisodeQuery.query;
@@ -119,6 +125,16 @@ public final class EpisodeServiceImpl implements EpisodeService {
   private final ElementStore elementStore;
   private final MediaInspectionService mediaInspectionSvc;
   private final String systemUserName;
+  private final EpisodeIndexRebuild indexRebuild;
+
+  /** The number of locks that mediapackages are spread across when they are added to the archive */
+  private static final int ADD_LOCK_STRIPES = 64;
+
+  /** Locks serializing the archiving of a mediapackage, see {@link #getAddLock(String)} */
+  private final Lock[] addLocks = new Lock[ADD_LOCK_STRIPES];
+
+  /** Thread pool transferring the assets of mediapackages into the element store */
+  private final ExecutorService assetTransfers;
 
   public EpisodeServiceImpl(SolrRequester solrRequester,
                             SolrIndexManager solrIndex,
@@ -131,7 +147,8 @@ public final class EpisodeServiceImpl implements EpisodeService {
                             MediaInspectionService mediaInspectionSvc,
                             EpisodeServiceDatabase persistence,
                             ElementStore elementStore,
-                            String systemUserName) {
+                            String systemUserName,
+                            int assetTransferThreads) {
     this.solrRequester = solrRequester;
     this.solrIndex = solrIndex;
     this.secSvc = secSvc;
@@ -144,26 +161,61 @@ public final class EpisodeServiceImpl implements EpisodeService {
     this.elementStore = elementStore;
     this.mediaInspectionSvc = mediaInspectionSvc;
     this.systemUserName = systemUserName;
+    this.indexRebuild = new EpisodeIndexRebuild(solrIndex, persistence, orgDir, secSvc, systemUserName);
+    for (int i = 0; i < addLocks.length; i++) {
+      addLocks[i] = new ReentrantLock();
+    }
+    this.assetTransfers = Executors.newFixedThreadPool(assetTransferThreads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override public Thread newThread(Runnable r) {
+        final Thread t = new Thread(r, "episode-asset-transfer-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Stop transferring assets. Archive operations in progress fail. Transfers that have not started yet are cancelled,
+   * so that archive operations waiting for them do not block while holding their add lock.
+   */
+  public void shutdown() {
+    for (Runnable queued : assetTransfers.shutdownNow()) {
+      if (queued instanceof Future)
+        ((Future<?>) queued).cancel(false);
+    }
   }
 
   @Override
-  /* todo adding to the archive needs to be synchronized because of the index.
-       It resets the oc_latest_version flag and this must not happen concurrently.
-       This approach works as long as the archive is not distributed. */
-  public synchronized void add(final MediaPackage mp) throws EpisodeServiceException {
+  /* Versions of the same mediapackage have to be added one after the other since adding a version resets the
+     oc_latest_version flag of the previous one. Different mediapackages are archived concurrently.
+     This approach works as long as the archive is not distributed. */
+  public void add(final MediaPackage mp) throws EpisodeServiceException {
     handleException(new Effect0.X() {
       @Override public void xrun() throws Exception {
         logger.debug("Attempting to add mediapackage {} to archive", mp.getIdentifier());
         final AccessControlList acl = authSvc.getAccessControlList(mp);
         protect(acl, list(WRITE_PERMISSION), new Effect0.X() {
           @Override public void xrun() throws Exception {
-            addInternal(copy(mp), acl);
+            final Lock lock = getAddLock(mp.getIdentifier().toString());
+            lock.lock();
+            try {
+              addInternal(copy(mp), acl);
+            } finally {
+              lock.unlock();
+            }
           }
         });
       }
     });
   }
 
+  /** Return the lock that needs to be held while adding a version of mediapackage <code>mpId</code>. */
+  private Lock getAddLock(String mpId) {
+    return addLocks[(mpId.hashCode() & Integer.MAX_VALUE) % addLocks.length];
+  }
+
   // todo make archiving transactional
   /** Mutates mp and its elements, so make sure to work on a copy. */
   private void addInternal(final MediaPackage mp,
@@ -418,43 +470,15 @@ public final class EpisodeServiceImpl implements EpisodeService {
    */
   void populateIndex(final UriRewriter uriRewriter) {
     logger.info("Start populating episode search index");
-
-    try {
-      Map<String, Version> maps = new HashMap<String, Version>();
-      Iterator<Episode> episodes = persistence.getAllEpisodes();
-      while (episodes.hasNext()) {
-        final Episode episode = episodes.next();
-        String episodeId = episode.getMediaPackage().getIdentifier().toString();
-  
-        Version latestVersion = maps.get(episodeId);
-        if (latestVersion == null) {
-          Option<Episode> latestEpisode = persistence.getLatestEpisode(episodeId);
-          if (latestEpisode.isNone())
-            throw new EpisodeServiceException("Latest episode from existing episode identifier not found!");
-          latestVersion = latestEpisode.get().getVersion();
-          maps.put(episodeId, latestVersion);
-        }
-        boolean isLatestVersion = episode.getVersion().equals(latestVersion);
-  
-        final Organization organization = orgDir.getOrganization(episode.getOrganization());
-        secSvc.setOrganization(organization);
-        secSvc.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
-        // mediapackage URIs need to be rewritten to concrete URLs for indexation to work
-        final PartialMediaPackage pmp = mkPartial(episode.getMediaPackage());
-        rewriteAssetUris(uriRewriter.curry(episode.getVersion()), pmp);
-        solrIndex.add(pmp.getMediaPackage(), episode.getAcl(), episode.getVersion(), episode.getDeletionDate(),
-                episode.getModificationDate(), isLatestVersion);
-      }
-      logger.info("Finished populating episode search index");
-    } catch (Exception e) {
-      logger.warn("Unable to index series instances: {}", e.getMessage());
-      throw new ServiceException(e.getMessage());
-    } finally {
-      secSvc.setOrganization(null);
-      secSvc.setUser(null);
-    }
+    indexRebuild.setUriRewriter(uriRewriter);
+    indexRebuild.run();
+    logger.info("Finished populating episode search index");
   }
 
+  /** Return the rebuild of the episode index. */
+  EpisodeIndexRebuild getIndexRebuild() {
+    return indexRebuild;
+  }
 
   /**
    * Returns a single element list containing the SearchResultItem if access is granted for write action
@@ -492,11 +516,18 @@ public final class EpisodeServiceImpl implements EpisodeService {
     }
   }
 
-  /** Store all assets of <code>mp</code> under the given version. */
+  /**
+   * Store all assets of <code>mp</code> under the given version. Assets that have been archived before are linked,
+   * all others are transferred concurrently by the asset transfer pool.
+   */
   private void storeAssets(final PartialMediaPackage pmp, final Version version)
           throws Exception {
     final String mpId = pmp.getMediaPackage().getIdentifier().toString();
     final String orgId = getOrgId();
+    // the transfers run in other threads, so they need to be given the security context explicitly
+    final Organization org = secSvc.getOrganization();
+    final User user = secSvc.getUser();
+    final List<Future<?>> transfers = new ArrayList<Future<?>>();
     for (final MediaPackageElement e : pmp.getPartial()) {
       logger.info(format("Archiving %s %s %s", e.getFlavor(), e.getMimeType(), e.getURI()));
       final StoragePath storagePath = spath(orgId, mpId, version, e.getIdentifier());
@@ -509,16 +540,42 @@ public final class EpisodeServiceImpl implements EpisodeService {
         }
 
         @Override public void enone() {
-          Option<Long> size = null;
+          final Option<Long> size;
           if (e.getSize() > 0) {
             size = Option.some(e.getSize());
           } else {
             size = Option.<Long> none();
           }
-          elementStore.put(storagePath, source(e.getURI(), size, option(e.getMimeType())));
+          transfers.add(assetTransfers.submit(new Runnable() {
+            @Override public void run() {
+              SecurityUtil.runAs(secSvc, org, user, new Function0<Void>() {
+                @Override public Void apply() {
+                  elementStore.put(storagePath, source(e.getURI(), size, option(e.getMimeType())));
+                  return null;
+                }
+              });
+            }
+          }));
         }
       });
     }
+    // wait for all transfers, even if one of them fails, so that none of them is still writing afterwards
+    Throwable failure = null;
+    for (Future<?> transfer : transfers) {
+      try {
+        transfer.get();
+      } catch (ExecutionException e) {
+        if (failure == null)
+          failure = e.getCause();
+      } catch (CancellationException e) {
+        if (failure == null)
+          failure = e;
+      }
+    }
+    if (failure instanceof Exception)
+      throw (Exception) failure;
+    else if (failure != null)
+      throw new EpisodeServiceException(failure);
   }
 
   private void storeManifest(final PartialMediaPackage pmp, final Version version) throws Exception {
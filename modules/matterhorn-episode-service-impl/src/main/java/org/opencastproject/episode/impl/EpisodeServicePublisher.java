@@ -82,6 +82,12 @@ public class EpisodeServicePublisher extends SimpleServicePublisher {
   /** Configuration key for an embedded solr configuration and data directory */
   public static final String CONFIG_SOLR_ROOT = "org.opencastproject.episode.solr.dir";
 
+  /** Configuration key for the number of assets that are transferred into the archive concurrently */
+  public static final String CONFIG_ASSET_TRANSFER_THREADS = "org.opencastproject.episode.archive.threads";
+
+  /** The default number of assets that are transferred into the archive concurrently */
+  public static final int DEFAULT_ASSET_TRANSFER_THREADS = 4;
+
   /** The add operation */
   public static final String OPERATION_ADD = "add";
 
@@ -91,9 +97,15 @@ public class EpisodeServicePublisher extends SimpleServicePublisher {
   /** File system element store JMX type */
   private static final String JMX_ELEMENT_STORE_TYPE = "ElementStore";
 
+  /** Episode index rebuild JMX type */
+  private static final String JMX_INDEX_REBUILD_TYPE = "EpisodeIndexRebuild";
+
   /** The JMX bean object instance */
   private ObjectInstance registeredMXBean;
 
+  /** The JMX index rebuild object instance */
+  private ObjectInstance registeredIndexRebuildMXBean;
+
   private VCell<List<StaticMetadataService>> metadataSvcs = VCell
           .<List<StaticMetadataService>> cell(new ArrayList<StaticMetadataService>());
   private Mpeg7CatalogService mpeg7CatalogService;
@@ -216,6 +228,18 @@ public class EpisodeServicePublisher extends SimpleServicePublisher {
                                                             mpeg7CatalogService,
                                                             securityService);
     String systemUserName = cc.getBundleContext().getProperty(SecurityUtil.PROPERTY_KEY_SYS_USER);
+    int assetTransferThreads = DEFAULT_ASSET_TRANSFER_THREADS;
+    final String assetTransferThreadsConfig = StringUtils.trimToNull(cc.getBundleContext().getProperty(
+            CONFIG_ASSET_TRANSFER_THREADS));
+    if (assetTransferThreadsConfig != null) {
+      try {
+        assetTransferThreads = Integer.parseInt(assetTransferThreadsConfig);
+      } catch (NumberFormatException e) {
+        throw new ConfigurationException(CONFIG_ASSET_TRANSFER_THREADS, "Not a number: " + assetTransferThreadsConfig);
+      }
+      if (assetTransferThreads < 1)
+        throw new ConfigurationException(CONFIG_ASSET_TRANSFER_THREADS, "Must be at least 1");
+    }
     episodeService = new EpisodeServiceImpl(solrRequester,
                                             solrIndex,
                                             securityService,
@@ -227,16 +251,23 @@ public class EpisodeServicePublisher extends SimpleServicePublisher {
                                             mediaInspectionSvc,
                                             persistence,
                                             elementStore,
-                                            systemUserName);
+                                            systemUserName,
+                                            assetTransferThreads);
     // the JMX file system element store bean
     final ElementStoreBean elementStoreBean = new ElementStoreBean(elementStore);
     registeredMXBean = JmxUtil.registerMXBean(elementStoreBean, JMX_ELEMENT_STORE_TYPE);
+    // the JMX episode index rebuild bean
+    final EpisodeIndexRebuild indexRebuild = episodeService.getIndexRebuild();
+    indexRebuild.configure(cc.getBundleContext());
+    registeredIndexRebuildMXBean = JmxUtil.registerMXBean(indexRebuild, JMX_INDEX_REBUILD_TYPE);
     return tuple(list(registerService(cc, episodeService, EpisodeService.class, "Episode service")),
             (Effect0) new Effect0() {
               @Override
               protected void run() {
+                episodeService.shutdown();
                 SolrServerFactory.shutdown(solrServer);
                 JmxUtil.unregisterMXBean(registeredMXBean);
+                JmxUtil.unregisterMXBean(registeredIndexRebuildMXBean);
               }
             });
   }
@@ -196,7 +196,7 @@ public class SolrIndexManager {
    * @throws SolrServerException
    *           if an errors occurs while talking to solr
    */
-  public void clear() throws SolrServerException {
+  public synchronized void clear() throws SolrServerException {
     try {
       solrServer.deleteByQuery("*:*");
       solrServer.commit();
@@ -231,7 +231,7 @@ public class SolrIndexManager {
    * @throws SolrServerException
    *           if an errors occurs while talking to solr
    */
-  public boolean delete(String id, Date deletionDate) throws SolrServerException {
+  public synchronized boolean delete(String id, Date deletionDate) throws SolrServerException {
     try {
       // Load the existing episode
       QueryResponse solrResponse = null;
@@ -267,7 +267,7 @@ public class SolrIndexManager {
   }
 
   /** Set the "locked" flag of an index entry. */
-  public boolean setLocked(String id, boolean locked) throws SolrServerException {
+  public synchronized boolean setLocked(String id, boolean locked) throws SolrServerException {
     try {
       // Load the existing episode
       QueryResponse solrResponse = null;
@@ -343,21 +343,30 @@ public class SolrIndexManager {
    */
   public void add(MediaPackage sourceMediaPackage, AccessControlList acl, Date now, Version version)
           throws SolrServerException {
+    final SolrInputDocument episodeDocument;
     try {
-      final SolrInputDocument episodeDocument = createEpisodeInputDocument(sourceMediaPackage, acl, version);
-      Schema.setOcTimestamp(episodeDocument, now);
-      Schema.setOcLatestVersion(episodeDocument, true);
-      resetFormerLatestVersion(sourceMediaPackage, new Version(version.value() - 1L));
-      // Post everything to the search index
-      solrServer.add(episodeDocument);
-      solrServer.commit();
+      episodeDocument = createEpisodeInputDocument(sourceMediaPackage, acl, version);
     } catch (Exception e) {
+      throw new SolrServerException(e);
+    }
+    Schema.setOcTimestamp(episodeDocument, now);
+    Schema.setOcLatestVersion(episodeDocument, true);
+    // Resetting the flag of the former version and adding the new one is committed, or rolled back, as a unit.
+    // Since commit and rollback apply to all pending changes of the index, updates must not interleave.
+    synchronized (this) {
       try {
-        solrServer.rollback();
-      } catch (IOException e1) {
-        throw new SolrServerException(e1);
+        resetFormerLatestVersion(sourceMediaPackage, new Version(version.value() - 1L));
+        // Post everything to the search index
+        solrServer.add(episodeDocument);
+        solrServer.commit();
+      } catch (Exception e) {
+        try {
+          solrServer.rollback();
+        } catch (IOException e1) {
+          throw new SolrServerException(e1);
+        }
+        throw new SolrServerException(e);
       }
-      throw new SolrServerException(e);
     }
   }
 
@@ -385,14 +394,73 @@ public class SolrIndexManager {
    */
   public void add(MediaPackage sourceMediaPackage, AccessControlList acl, Version version, Option<Date> deletionDate,
           Date modificationDate, boolean isLatestVersion) throws SolrServerException {
+    final SolrInputDocument episodeDocument;
     try {
-      final SolrInputDocument episodeDocument = createEpisodeInputDocument(sourceMediaPackage, acl, version);
-      Schema.setOcTimestamp(episodeDocument, modificationDate);
-      Schema.setOcLatestVersion(episodeDocument, isLatestVersion);
-      for (Date a : deletionDate) {
-        Schema.setOcDeleted(episodeDocument, a);
+      episodeDocument = createInputDocument(sourceMediaPackage, acl, version, deletionDate, modificationDate,
+              isLatestVersion);
+    } catch (Exception e) {
+      throw new SolrServerException(e);
+    }
+    synchronized (this) {
+      try {
+        solrServer.add(episodeDocument);
+        solrServer.commit();
+      } catch (Exception e) {
+        try {
+          solrServer.rollback();
+        } catch (IOException e1) {
+          throw new SolrServerException(e1);
+        }
+        throw new SolrServerException(e);
       }
-      solrServer.add(episodeDocument);
+    }
+  }
+
+  /**
+   * Creates the solr input document for an archived version of a media package without posting it.
+   * <p/>
+   * Note: Media package element URIs need to be URLs pointing to existing locations.
+   * 
+   * @param sourceMediaPackage
+   *          the media package
+   * @param acl
+   *          the access control list for this mediapackage
+   * @param version
+   *          the archive version
+   * @param deletionDate
+   *          the deletion date
+   * @param modificationDate
+   *          the modification date
+   * @param isLatestVersion
+   *          the latest version flag
+   * @return an input document ready to be posted to solr
+   * @throws MediaPackageException
+   *           if serialization of the media package fails
+   */
+  public SolrInputDocument createInputDocument(MediaPackage sourceMediaPackage, AccessControlList acl, Version version,
+          Option<Date> deletionDate, Date modificationDate, boolean isLatestVersion) throws MediaPackageException,
+          IOException {
+    final SolrInputDocument episodeDocument = createEpisodeInputDocument(sourceMediaPackage, acl, version);
+    Schema.setOcTimestamp(episodeDocument, modificationDate);
+    Schema.setOcLatestVersion(episodeDocument, isLatestVersion);
+    for (Date a : deletionDate) {
+      Schema.setOcDeleted(episodeDocument, a);
+    }
+    return episodeDocument;
+  }
+
+  /**
+   * Posts documents created by {@link #createInputDocument(MediaPackage, AccessControlList, Version, Option, Date,
+   * boolean)} to solr and commits them, e.g. while the index is being rebuilt.
+   * 
+   * @param docs
+   *          the documents
+   * @throws SolrServerException
+   *           if an errors occurs while talking to solr
+   */
+  public synchronized void addDocuments(Collection<SolrInputDocument> docs) throws SolrServerException {
+    try {
+      solrServer.add(docs);
       solrServer.commit();
     } catch (Exception e) {
       try {
@@ -404,6 +472,32 @@ public class SolrIndexManager {
     }
   }
 
+  /**
+   * Removes documents from the index for good, rather than marking them as deleted.
+   * 
+   * @param ids
+   *          the document identifiers
+   * @throws SolrServerException
+   *           if an errors occurs while talking to solr
+   */
+  public synchronized void deleteDocuments(List<String> ids) throws SolrServerException {
+    try {
+      solrServer.deleteById(ids);
+      solrServer.commit();
+    } catch (IOException e) {
+      throw new SolrServerException(e);
+    }
+  }
+
+  /**
+   * Returns the connection to the solr server.
+   * 
+   * @return the solr server
+   */
+  public SolrServer getSolrServer() {
+    return solrServer;
+  }
+
   /**
    * Creates a solr input document for the episode metadata of the media package.
    * 
@@ -27,6 +27,7 @@ import org.opencastproject.episode.impl.EpisodeServicePublisher;
 import org.opencastproject.episode.impl.StoragePath;
 import org.opencastproject.episode.impl.elementstore.DeletionSelector;
 import org.opencastproject.episode.impl.elementstore.ElementStore;
+import org.opencastproject.episode.impl.elementstore.Source;
 import org.opencastproject.episode.impl.persistence.AbstractEpisodeServiceDatabase;
 import org.opencastproject.episode.impl.persistence.EpisodeServiceDatabase;
 import org.opencastproject.episode.impl.solr.SolrIndexManager;
@@ -107,6 +108,9 @@ public final class EpisodeServiceTestEnv {
   private PersistenceEnv penv;
   private String storage;
 
+  /** Answers the puts into the mocked element store, if set */
+  private volatile IAnswer<Void> elementStorePut = null;
+
   private UriRewriter rewriter = new UriRewriter() {
     @Override public URI apply(Version version, MediaPackageElement mpe) {
       return uri("http://episodes",
@@ -176,6 +180,15 @@ public final class EpisodeServiceTestEnv {
     EasyMock.expect(elementStore.delete(EasyMock.<DeletionSelector>anyObject())).andReturn(true).once();
     EasyMock.expect(elementStore.copy(EasyMock.<StoragePath>anyObject(), EasyMock.<StoragePath>anyObject()))
             .andReturn(true).anyTimes();
+    elementStore.put(EasyMock.<StoragePath>anyObject(), EasyMock.<Source>anyObject());
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Void>() {
+      @Override public Void answer() throws Throwable {
+        final IAnswer<Void> put = elementStorePut;
+        return put != null ? put.answer() : null;
+      }
+    }).anyTimes();
+    // the answer to a put may block, which must not keep other threads from using the element store
+    EasyMock.makeThreadSafe(elementStore, false);
     EasyMock.replay(elementStore);
     // mpeg7 service
     final Mpeg7CatalogService mpeg7CatalogService = new Mpeg7CatalogService();
@@ -279,7 +292,8 @@ public final class EpisodeServiceTestEnv {
                                      mediaInspectionService,
                                      episodeDatabase,
                                      elementStore,
-                                     "System Admin");
+                                     "System Admin",
+                                     4);
   }
 
   public void setReadWritePermissions() {
@@ -351,4 +365,9 @@ public final class EpisodeServiceTestEnv {
   public UriRewriter getRewriter() {
     return rewriter;
   }
+
+  /** Set the answer to puts into the element store. The arguments of the put are available as usual. */
+  public void setElementStorePut(IAnswer<Void> put) {
+    this.elementStorePut = put;
+  }
 }
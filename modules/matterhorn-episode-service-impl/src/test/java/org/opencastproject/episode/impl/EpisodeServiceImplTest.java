@@ -17,6 +17,8 @@
 package org.opencastproject.episode.impl;
 
 import org.apache.commons.io.IOUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -29,6 +31,7 @@ import org.opencastproject.episode.api.SearchResult;
 import org.opencastproject.episode.api.SearchResultItem;
 import org.opencastproject.episode.api.UriRewriter;
 import org.opencastproject.episode.api.Version;
+import org.opencastproject.episode.impl.elementstore.ElementStoreException;
 import org.opencastproject.mediapackage.DefaultMediaPackageSerializerImpl;
 import org.opencastproject.mediapackage.MediaPackage;
 import org.opencastproject.mediapackage.MediaPackageBuilder;
@@ -54,8 +57,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.fail;
 import static org.junit.Assert.assertTrue;
@@ -440,6 +447,143 @@ public class EpisodeServiceImplTest {
                  e.find(systemQuery().sort(EpisodeQuery.Sort.SERIES_TITLE, false), r).getItems().get(0).getDcSeriesTitle());
   }
 
+  /** Assets of one archive operation are transferred at the same time. */
+  @Test
+  public void testParallelAssetTransfers() throws Exception {
+    // manifest-full has three catalogs, each put waits until another one has started
+    final CountDownLatch started = new CountDownLatch(2);
+    env.setElementStorePut(new IAnswer<Void>() {
+      @Override public Void answer() throws Throwable {
+        started.countDown();
+        if (!started.await(10, TimeUnit.SECONDS))
+          throw new ElementStoreException("Assets are not transferred in parallel");
+        return null;
+      }
+    });
+    env.setReadWritePermissions();
+    env.getService().add(loadFromClassPath("/manifest-full.xml"));
+    assertEquals(1, env.getService().find(systemQuery().id("10.0000/2"), env.getRewriter()).size());
+  }
+
+  /** A failed transfer fails the archive operation, but only after the other transfers are done. */
+  @Test
+  public void testFailedAssetTransfer() throws Exception {
+    final AtomicInteger transferred = new AtomicInteger();
+    env.setElementStorePut(new IAnswer<Void>() {
+      @Override public Void answer() throws Throwable {
+        final StoragePath path = (StoragePath) EasyMock.getCurrentArguments()[0];
+        if ("catalog-1".equals(path.getAssetId()))
+          throw new ElementStoreException("Transfer of " + path + " failed");
+        Thread.sleep(200);
+        transferred.incrementAndGet();
+        return null;
+      }
+    });
+    env.setReadWritePermissions();
+    try {
+      env.getService().add(loadFromClassPath("/manifest-full.xml"));
+      fail("Archiving must fail if an asset cannot be transferred");
+    } catch (EpisodeServiceException e) {
+      // expected
+    }
+    assertEquals("Transfers finished before the archive operation failed", 2, transferred.get());
+    assertEquals(0, env.getService().find(systemQuery().id("10.0000/2"), env.getRewriter()).size());
+  }
+
+  /**
+   * Versions of the same mediapackage are added one after the other, different mediapackages, which are guarded by
+   * different lock stripes, are added concurrently.
+   */
+  @Test
+  public void testAddLockStripes() throws Exception {
+    final MediaPackage mpSimple = loadFromClassPath("/manifest-simple.xml");
+    final MediaPackage mpFull = loadFromClassPath("/manifest-full.xml");
+    assertTrue("The mediapackages use different lock stripes",
+               ("10.0000/1".hashCode() & Integer.MAX_VALUE) % 64 != ("10.0000/2".hashCode() & Integer.MAX_VALUE) % 64);
+    // hold the first archive operation of mpSimple in its asset transfer
+    final CountDownLatch firstPut = new CountDownLatch(1);
+    final CountDownLatch gate = new CountDownLatch(1);
+    final List<StoragePath> puts = java.util.Collections.synchronizedList(new ArrayList<StoragePath>());
+    env.setElementStorePut(new IAnswer<Void>() {
+      @Override public Void answer() throws Throwable {
+        final StoragePath path = (StoragePath) EasyMock.getCurrentArguments()[0];
+        puts.add(path);
+        if ("10.0000/1".equals(path.getMediaPackageId())) {
+          firstPut.countDown();
+          gate.await(10, TimeUnit.SECONDS);
+        }
+        return null;
+      }
+    });
+    env.setReadWritePermissions();
+    final List<Throwable> failures = java.util.Collections.synchronizedList(new ArrayList<Throwable>());
+    final Thread first = addInThread(mpSimple, failures);
+    assertTrue(firstPut.await(10, TimeUnit.SECONDS));
+    final Thread second = addInThread(mpSimple, failures);
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (second.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    assertEquals("The second version waits for the first one", Thread.State.WAITING, second.getState());
+    // another mediapackage can be archived in the meantime
+    env.getService().add(mpFull);
+    assertEquals(1, gate.getCount());
+    final Set<Version> versions = Collections.set();
+    for (StoragePath path : new ArrayList<StoragePath>(puts)) {
+      if ("10.0000/1".equals(path.getMediaPackageId()))
+        versions.add(path.getVersion());
+    }
+    assertEquals("Only the first version of mpSimple has been started", 1, versions.size());
+    gate.countDown();
+    first.join(10000);
+    second.join(10000);
+    assertTrue(failures.toString(), failures.isEmpty());
+    assertEquals(2, env.getService().find(systemQuery().id("10.0000/1"), env.getRewriter()).size());
+  }
+
+  /** Shutting down fails archive operations whose transfers are still queued instead of blocking them forever. */
+  @Test
+  public void testShutdownCancelsQueuedTransfers() throws Exception {
+    // five assets on four transfer threads, so one of them is queued while the others block
+    final CountDownLatch started = new CountDownLatch(4);
+    final CountDownLatch gate = new CountDownLatch(1);
+    env.setElementStorePut(new IAnswer<Void>() {
+      @Override public Void answer() throws Throwable {
+        started.countDown();
+        gate.await(10, TimeUnit.SECONDS);
+        return null;
+      }
+    });
+    env.setReadWritePermissions();
+    final List<Throwable> failures = java.util.Collections.synchronizedList(new ArrayList<Throwable>());
+    final Thread full = addInThread(loadFromClassPath("/manifest-full.xml"), failures);
+    final Thread a = addInThread(loadFromClassPath("/manifest-a.xml"), failures);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    final long deadline = System.currentTimeMillis() + 10000;
+    while ((full.getState() != Thread.State.WAITING || a.getState() != Thread.State.WAITING)
+            && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    env.getService().shutdown();
+    full.join(10000);
+    a.join(10000);
+    gate.countDown();
+    assertFalse("Archive operations are not blocked", full.isAlive() || a.isAlive());
+    assertEquals("Both archive operations failed", 2, failures.size());
+  }
+
+  private Thread addInThread(final MediaPackage mp, final List<Throwable> failures) {
+    final Thread t = new Thread() {
+      @Override public void run() {
+        try {
+          env.getService().add(mp);
+        } catch (Throwable e) {
+          failures.add(e);
+        }
+      }
+    };
+    t.start();
+    return t;
+  }
+
   private static final Function<SearchResultItem, Boolean> hasSeriesTitle = new Function<SearchResultItem, Boolean>() {
     @Override public Boolean apply(SearchResultItem item) {
       return item.getDcSeriesTitle() != null;
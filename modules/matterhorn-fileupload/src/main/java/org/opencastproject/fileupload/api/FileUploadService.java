@@ -89,7 +89,8 @@ public interface FileUploadService {
   void deleteJob(String id) throws FileUploadException;
 
   /**
-   * Appends the next part to the payload and updates the upload job accordingly.
+   * Writes a part to its position in the payload and updates the upload job accordingly. The parts of a chunked upload
+   * may be sent in any order and in parallel, the job is completed as soon as all parts have been recieved.
    * 
    * @param job
    *          the job object for the upload
@@ -60,6 +60,8 @@ public class FileUploadJob {
   private long chunksTotal = 1; // total number of chunks the upload consists of
   @XmlElement(name = "current-chunk")
   private Chunk currentChunk = new Chunk(); // information about the current chunk
+  @XmlElement(name = "chunks-received")
+  private byte[] chunksReceived = null; // bitmap of the chunks that have been recieved completely
 
   public FileUploadJob() {
     this.id = UUID.randomUUID().toString();
@@ -124,6 +126,52 @@ public class FileUploadJob {
     this.currentChunk = currentChunk;
   }
 
+  /**
+   * Returns true if the chunk with the given number has been recieved completely.
+   * 
+   * @param number
+   *          number of the chunk
+   * @return true if the chunk has been recieved
+   */
+  public synchronized boolean isChunkReceived(long number) {
+    if (chunksReceived == null || number < 0 || number >= chunksTotal) {
+      return false;
+    }
+    return (chunksReceived[(int) (number >> 3)] & (1 << (number & 7))) != 0;
+  }
+
+  /**
+   * Marks the chunk with the given number as recieved completely.
+   * 
+   * @param number
+   *          number of the chunk
+   */
+  public synchronized void setChunkReceived(long number) {
+    if (number < 0 || number >= chunksTotal) {
+      throw new IllegalArgumentException("No chunk #" + number + " in a job with " + chunksTotal + " chunks");
+    }
+    if (chunksReceived == null) {
+      chunksReceived = new byte[(int) ((chunksTotal + 7) >> 3)];
+    }
+    chunksReceived[(int) (number >> 3)] |= 1 << (number & 7);
+    setLastModified(System.currentTimeMillis());
+  }
+
+  /**
+   * Returns the number of chunks that have been recieved completely.
+   * 
+   * @return number of recieved chunks
+   */
+  public synchronized long getChunksReceived() {
+    long received = 0;
+    if (chunksReceived != null) {
+      for (byte b : chunksReceived) {
+        received += Integer.bitCount(b & 0xff);
+      }
+    }
+    return received;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder().append("FileUploadJob(id=").append(this.id).append(", filename=")
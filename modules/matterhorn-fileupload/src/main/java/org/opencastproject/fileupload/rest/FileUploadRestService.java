@@ -177,14 +177,14 @@ public class FileUploadRestService {
   @POST
   @Produces(MediaType.APPLICATION_XML)
   @Path("job/{jobID}")
-  @RestQuery(name = "newjob", description = "Appends the next chunk of data to the file on the server.", pathParameters = {
+  @RestQuery(name = "newjob", description = "Stores a chunk of data at its position in the file on the server. Chunks may be sent in any order and in parallel.", pathParameters = {
     @RestParameter(description = "The ID of the upload job", isRequired = false, name = "jobID", type = RestParameter.Type.STRING)
   },
   restParameters = {
     @RestParameter(description = "The number of the current chunk", isRequired = false, name = "chunknumber", type = RestParameter.Type.STRING),
     @RestParameter(description = "The payload", isRequired = false, name = "filedata", type = RestParameter.Type.FILE)},
   reponses = {
-    @RestResponse(description = "the chunk data was successfully appended to file on server", responseCode = HttpServletResponse.SC_OK),
+    @RestResponse(description = "the chunk data was successfully stored in the file on server", responseCode = HttpServletResponse.SC_OK),
     @RestResponse(description = "the upload job was not found", responseCode = HttpServletResponse.SC_NOT_FOUND),
     @RestResponse(description = "the request was malformed", responseCode = HttpServletResponse.SC_BAD_REQUEST)
   }, returnDescription = "The XML representation of the updated upload job")
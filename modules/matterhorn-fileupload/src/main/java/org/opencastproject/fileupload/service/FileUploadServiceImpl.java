@@ -39,19 +39,25 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
@@ -71,9 +77,8 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
   final String DEFAULT_UPLOAD_WORKDIR = "fileupload-tmp"; /* The default location is the storage dir */
   final String UPLOAD_COLLECTION = "uploaded";
   final String FILEEXT_DATAFILE = ".payload";
-  final String FILENAME_CHUNKFILE = "chunk.part";
   final String FILENAME_JOBFILE = "job.xml";
-  final int READ_BUFFER_LENGTH = 512;
+  final int WRITE_BUFFER_LENGTH = 64 * 1024;
   final int DEFAULT_CLEANER_MAXTTL = 6;
   private static final Logger log = LoggerFactory.getLogger(FileUploadServiceImpl.class);
   private File workRoot = null;
@@ -81,8 +86,8 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
   private Workspace workspace;
   private Marshaller jobMarshaller;
   private Unmarshaller jobUnmarshaller;
-  private HashMap<String, FileUploadJob> jobCache = new HashMap<String, FileUploadJob>();
-  private byte[] readBuffer = new byte[READ_BUFFER_LENGTH];
+  private ConcurrentMap<String, FileUploadJob> jobCache = new ConcurrentHashMap<String, FileUploadJob>();
+  private Map<String, Set<Long>> chunksInProgress = new HashMap<String, Set<Long>>(); // chunks being recieved, by job
   private FileUploadServiceCleaner cleaner;
   private int jobMaxTTL = DEFAULT_CLEANER_MAXTTL;
 
@@ -159,8 +164,9 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
     try {
       File jobDir = getJobDir(job.getId());      // create working dir
       FileUtils.forceMkdir(jobDir);
-      ensureExists(getPayloadFile(job.getId())); // create empty payload file
+      allocatePayloadFile(job);                  // create payload file of the final size
       storeJob(job);                             // create job file
+      jobCache.put(job.getId(), job);            // share the job among the requests uploading its chunks
     
     } catch (FileUploadException e) {
       deleteJob(job.getId());
@@ -214,6 +220,12 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
           File jobFile = getJobFile(id);
           FileUploadJob job = (FileUploadJob) jobUnmarshaller.unmarshal(jobFile);
           job.setLastModified(jobFile.lastModified());  // get last modified time from job file
+          if (!job.getState().equals(FileUploadJob.JobState.COMPLETE)) {
+            FileUploadJob cached = jobCache.putIfAbsent(id, job); // chunks of a job may be uploaded in parallel, so
+            if (cached != null) {                                 // ..all requests have to share the same job object
+              return cached;
+            }
+          }
           return job;
         }                                    // if loading from fs also fails 
       } catch (Exception e) {                // we could not find the job and throw an Exception
@@ -259,11 +271,13 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
    *      job)
    */
   @Override
-  public void storeJob(FileUploadJob job) throws FileUploadException {
+  public synchronized void storeJob(FileUploadJob job) throws FileUploadException {
     try {
       log.debug("Attempting to store job {}", job.getId());
       File jobFile = ensureExists(getJobFile(job.getId()));
-      jobMarshaller.marshal(job, jobFile);
+      synchronized (job) {
+        jobMarshaller.marshal(job, jobFile);
+      }
     } catch (Exception e) {
       log.warn("Error while storing upload job: " + e.getMessage());
       throw new FileUploadException("Failed to write job file.");
@@ -279,9 +293,7 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
   public void deleteJob(String id) throws FileUploadException {
     try {
       log.debug("Attempting to delete job " + id);
-      if (isLocked(id)) {
-        jobCache.remove(id);
-      }
+      jobCache.remove(id);
       File jobDir = getJobDir(id);
       FileUtils.forceDelete(jobDir);
     } catch (Exception e) {
@@ -298,109 +310,199 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
    */
   @Override
   public void acceptChunk(FileUploadJob job, long chunkNumber, InputStream content) throws FileUploadException {
-    // job already completed?
+    try {
+      startChunk(job, chunkNumber);
+    } catch (FileUploadException e) {
+      IOUtils.closeQuietly(content);
+      throw e;
+    }
+    log.debug("Recieving chunk #" + chunkNumber + " of job {}", job);
+
+    // write chunk directly to its position in the payload file
+    FileUploadException failure = null;
+    try {
+      writeChunk(job, chunkNumber, content);
+    } catch (FileUploadException e) {
+      failure = e;
+    } finally {
+      IOUtils.closeQuietly(content);
+    }
+
+    // update job
+    if (endChunk(job, chunkNumber)) { // upload is complete
+      try {
+        finalizeJob(job);
+      } catch (FileUploadException e) {
+        job.setState(FileUploadJob.JobState.READY); // all chunks are there, so the next chunk retries finalization
+        storeJob(job);
+        throw e;
+      }
+      log.info("Upload job completed: {}", job);
+    }
+    storeJob(job);
     if (job.getState().equals(FileUploadJob.JobState.COMPLETE)) {
       removeFromCache(job);
-      throw new FileUploadException("Job is already complete!");
     }
+    if (failure != null) {
+      throw failure;
+    }
+  }
 
-    // job ready to recieve data?
-    if (isLocked(job.getId())) {
-      throw new FileUploadException("Job is locked. Seems like a concurrent upload to this job is in progress.");
-    } else {
+  /**
+   * Registers a chunk that is about to be recieved. Chunks may be recieved in any order and in parallel, but each chunk
+   * only by one request at a time.
+   * 
+   * @param job
+   *          the job the chunk belongs to
+   * @param chunkNumber
+   *          number of the chunk
+   * @throws FileUploadException
+   *           if the job does not accept the chunk
+   */
+  private void startChunk(FileUploadJob job, long chunkNumber) throws FileUploadException {
+    synchronized (chunksInProgress) {
+      // job already completed?
+      if (job.getState().equals(FileUploadJob.JobState.COMPLETE)) {
+        removeFromCache(job);
+        throw new FileUploadException("Job is already complete!");
+      }
+      if (job.getState().equals(FileUploadJob.JobState.FINALIZING)) {
+        throw new FileUploadException("Job is being finalized. No more chunks are accepted.");
+      }
+
+      // valid chunk offered?
+      if (chunkNumber < 0 || chunkNumber >= job.getChunksTotal()) {
+        StringBuilder sb = new StringBuilder().append("Wrong chunk number! Awaiting #0 to #")
+                .append(job.getChunksTotal() - 1).append(" but #").append(Long.toString(chunkNumber))
+                .append(" was offered.");
+        throw new FileUploadException(sb.toString());
+      }
+      Set<Long> chunks = chunksInProgress.get(job.getId());
+      if (chunks == null) {
+        chunks = new HashSet<Long>();
+        chunksInProgress.put(job.getId(), chunks);
+      }
+      if (!chunks.add(chunkNumber)) {
+        throw new FileUploadException("Chunk #" + chunkNumber
+                + " is locked. Seems like a concurrent upload of this chunk is in progress.");
+      }
       lock(job);
     }
+  }
 
-    // right chunk offered?
-    int supposedChunk = job.getCurrentChunk().getNumber() + 1;
-    if (chunkNumber != supposedChunk) {
-      StringBuilder sb = new StringBuilder().append("Wrong chunk number! Awaiting #").append(supposedChunk)
-              .append(" but #").append(Long.toString(chunkNumber)).append(" was offered.");
-      removeFromCache(job);
-      throw new FileUploadException(sb.toString());
+  /**
+   * Unregisters a chunk that is no longer being recieved and determines whether the upload is complete.
+   * 
+   * @param job
+   *          the job the chunk belongs to
+   * @param chunkNumber
+   *          number of the chunk
+   * @return true if all chunks have been recieved and the job has to be finalized by the caller
+   */
+  private boolean endChunk(FileUploadJob job, long chunkNumber) {
+    synchronized (chunksInProgress) {
+      Set<Long> chunks = chunksInProgress.get(job.getId());
+      chunks.remove(chunkNumber);
+      if (!chunks.isEmpty()) {
+        return false;
+      }
+      chunksInProgress.remove(job.getId());
+      if (job.getChunksReceived() == job.getChunksTotal()) {
+        job.setState(FileUploadJob.JobState.FINALIZING);
+        return true;
+      } else {
+        job.setState(FileUploadJob.JobState.READY); // upload still incomplete
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Writes the data of a chunk to the chunk's position in the payload file and marks the chunk as recieved.
+   * 
+   * @param job
+   *          the job the chunk belongs to
+   * @param chunkNumber
+   *          number of the chunk
+   * @param content
+   *          the chunk data
+   * @throws FileUploadException
+   *           if the data could not be written or has the wrong size
+   */
+  private void writeChunk(FileUploadJob job, long chunkNumber, InputStream content) throws FileUploadException {
+    Payload payload = job.getPayload();
+    boolean ordinaryUpload = job.getChunksize() == -1; // ordinary form submit, the size is not known in advance
+    long position = ordinaryUpload ? 0 : chunkNumber * job.getChunksize();
+    long supposedSize = -1;
+    if (!ordinaryUpload) {
+      if (chunkNumber == job.getChunksTotal() - 1 && payload.getTotalSize() > 0) {
+        supposedSize = payload.getTotalSize() - position;
+      } else {
+        supposedSize = job.getChunksize();
+      }
     }
-    log.debug("Recieving chunk #" + chunkNumber + " of job {}", job);
 
-    // write chunk to temp file
-    job.getCurrentChunk().incrementNumber();
-    File chunkFile = ensureExists(getChunkFile(job.getId()));
-    OutputStream out = null;
+    boolean resent = job.isChunkReceived(chunkNumber); // chunks may be sent again, e.g. if a response got lost
+    Chunk currentChunk = new Chunk((int) chunkNumber, 0);
+    job.setCurrentChunk(currentChunk);
+    long bytesReadTotal = 0L;
+    boolean success = false;
+    RandomAccessFile payloadFile = null;
     try {
-      out = new FileOutputStream(chunkFile, false);
-      int bytesRead = 0;
-      long bytesReadTotal = 0l;
-      Chunk currentChunk = job.getCurrentChunk(); // copy manually (instead of using IOUtils.copy()) so we can count the
-                                                  // number of bytes
-      do {
-        bytesRead = content.read(readBuffer);
-        if (bytesRead > 0) {
-          out.write(readBuffer, 0, bytesRead);
-          bytesReadTotal += bytesRead;
-          currentChunk.setRecieved(bytesReadTotal);
+      payloadFile = new RandomAccessFile(getPayloadFile(job.getId()), "rw");
+      FileChannel channel = payloadFile.getChannel();
+      byte[] buffer = new byte[WRITE_BUFFER_LENGTH];
+      int bytesRead;
+      while ((bytesRead = content.read(buffer)) != -1) {
+        if (supposedSize != -1 && bytesReadTotal + bytesRead > supposedSize) {
+          throw new FileUploadException(new StringBuilder().append("Chunk has wrong size. Awaited: ")
+                  .append(supposedSize).append(" bytes, recieved more.").toString());
+        }
+        ByteBuffer data = ByteBuffer.wrap(buffer, 0, bytesRead);
+        while (data.hasRemaining()) {
+          channel.write(data, position + bytesReadTotal + data.position());
+        }
+        bytesReadTotal += bytesRead;
+        currentChunk.setRecieved(bytesReadTotal);
+        if (!resent) {
+          addToCurrentSize(job, bytesRead);
         }
-      } while (bytesRead != -1);
-      if (job.getPayload().getTotalSize() == -1 && job.getChunksTotal() == 1) { // set totalSize in case of ordinary
-                                                                                // from submit
-        job.getPayload().setTotalSize(bytesReadTotal);
       }
-    } catch (Exception e) {
-      removeFromCache(job);
+      if (ordinaryUpload) {
+        channel.truncate(bytesReadTotal);
+        if (payload.getTotalSize() == -1) {
+          payload.setTotalSize(bytesReadTotal);
+        }
+      } else if (bytesReadTotal != supposedSize) {
+        StringBuilder sb = new StringBuilder().append("Chunk has wrong size. Awaited: ").append(supposedSize)
+                .append(" bytes, recieved: ").append(bytesReadTotal).append(" bytes.");
+        throw new FileUploadException(sb.toString());
+      }
+      job.setChunkReceived(chunkNumber);
+      success = true;
+    } catch (IOException e) {
       throw new FileUploadException("Failed to store chunk data!", e);
     } finally {
-      IOUtils.closeQuietly(content);
-      IOUtils.closeQuietly(out);
-    }
-
-    // check if chunk has right size
-    long actualSize = chunkFile.length();
-    long supposedSize;
-    if (chunkNumber == job.getChunksTotal() - 1) {
-      supposedSize = job.getPayload().getTotalSize() % job.getChunksize();
-      supposedSize = supposedSize == 0 ? job.getChunksize() : supposedSize; // a not so nice workaround for the rare
-                                                                            // case that file size is a multiple of the
-                                                                            // chunk size
-    } else {
-      supposedSize = job.getChunksize();
-    }
-    if (actualSize == supposedSize || (job.getChunksTotal() == 1 && job.getChunksize() == -1)) {
-
-      // append chunk to payload file
-      FileInputStream in = null;
-      try {
-        File payloadFile = getPayloadFile(job.getId());
-        in = new FileInputStream(chunkFile);
-        out = new FileOutputStream(payloadFile, true);
-        IOUtils.copy(in, out);
-        Payload payload = job.getPayload();
-        payload.setCurrentSize(payload.getCurrentSize() + actualSize);
-
-      } catch (IOException e) {
-        log.error("Failed to append chunk data.", e);
-        removeFromCache(job);
-        throw new FileUploadException("Could not append chunk data", e);
-
-      } finally {
-        IOUtils.closeQuietly(in);
-        IOUtils.closeQuietly(out);
-        deleteChunkFile(job.getId());
+      IOUtils.closeQuietly(payloadFile);
+      if (!success && !resent) {
+        addToCurrentSize(job, -bytesReadTotal);
       }
-
-    } else {
-      StringBuilder sb = new StringBuilder().append("Chunk has wrong size. Awaited: ").append(supposedSize)
-              .append(" bytes, recieved: ").append(actualSize).append(" bytes.");
-      removeFromCache(job);
-      throw new FileUploadException(sb.toString());
     }
+  }
 
-    // update job
-    if (chunkNumber == job.getChunksTotal() - 1) { // upload is complete
-      finalizeJob(job);
-      log.info("Upload job completed: {}", job);
-    } else {
-      job.setState(FileUploadJob.JobState.READY); // upload still incomplete
+  /**
+   * Adds the given number of bytes to the number of bytes recieved for the payload of a job.
+   * 
+   * @param job
+   *          the upload job
+   * @param bytes
+   *          number of bytes to add
+   */
+  private void addToCurrentSize(FileUploadJob job, long bytes) {
+    Payload payload = job.getPayload();
+    synchronized (payload) {
+      payload.setCurrentSize(payload.getCurrentSize() + bytes);
     }
-    storeJob(job);
-    removeFromCache(job);
   }
 
   /**
@@ -560,38 +662,40 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
   }
 
   /**
-   * Deletes the chunk file from working directory.
+   * Deletes the payload file from working directory.
    * 
    * @param id
-   *          ID of the job of which the chunk file should be deleted
+   *          ID of the job of which the payload file should be deleted
    */
-  private void deleteChunkFile(String id) {
-    File chunkFile = getChunkFile(id);
+  private void deletePayloadFile(String id) {
+    File payloadFile = getPayloadFile(id);
     try {
-      log.debug("Attempting to delete chunk file of job " + id);
-      if (!chunkFile.delete()) {
-        throw new RuntimeException("Could not delete chunk file");
+      log.debug("Attempting to delete payload file of job " + id);
+      if (!payloadFile.delete()) {
+        throw new RuntimeException("Could not delete payload file");
       }
     } catch (Exception e) {
-      log.warn("Could not delete chunk file " + chunkFile.getAbsolutePath());
+      log.warn("Could not delete payload file " + payloadFile.getAbsolutePath());
     }
   }
 
   /**
-   * Deletes the payload file from working directory.
+   * Creates the payload file of a job. If the size of the payload is known, the file is extended to that size right
+   * away, so that the chunks can be written to their positions in any order.
    * 
-   * @param id
-   *          ID of the job of which the chunk file should be deleted
+   * @param job
+   *          the upload job
+   * @throws IOException
+   *           if the file could not be created
    */
-  private void deletePayloadFile(String id) {
-    File payloadFile = getPayloadFile(id);
+  private void allocatePayloadFile(FileUploadJob job) throws IOException {
+    RandomAccessFile payloadFile = new RandomAccessFile(getPayloadFile(job.getId()), "rw");
     try {
-      log.debug("Attempting to delete payload file of job " + id);
-      if (!payloadFile.delete()) {
-        throw new RuntimeException("Could not delete chunk file");
+      if (job.getPayload().getTotalSize() > 0) {
+        payloadFile.setLength(job.getPayload().getTotalSize());
       }
-    } catch (Exception e) {
-      log.warn("Could not delete chunk file " + payloadFile.getAbsolutePath());
+    } finally {
+      payloadFile.close();
     }
   }
 
@@ -607,7 +711,7 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
       try {
         file.createNewFile();
       } catch (IOException e) {
-        throw new IllegalStateException("Failed to create chunk file!");
+        throw new IllegalStateException("Failed to create file " + file.getAbsolutePath());
       }
     }
     return file;
@@ -638,19 +742,6 @@ public class FileUploadServiceImpl implements FileUploadService, ManagedService
     return new File(sb.toString());
   }
 
-  /**
-   * Returns the chunk file for a given job ID.
-   * 
-   * @param id
-   *          ID for which a chunk file name should be generated
-   * @return File chunk file
-   */
-  private File getChunkFile(String id) {
-    StringBuilder sb = new StringBuilder().append(workRoot.getAbsolutePath()).append(File.separator).append(id)
-            .append(File.separator).append(FILENAME_CHUNKFILE);
-    return new File(sb.toString());
-  }
-
   /**
    * Returns the payload file for a given job ID.
    * 
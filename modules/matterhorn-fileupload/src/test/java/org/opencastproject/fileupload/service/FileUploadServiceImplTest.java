@@ -0,0 +1,219 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.fileupload.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.opencastproject.fileupload.api.exception.FileUploadException;
+import org.opencastproject.fileupload.api.job.FileUploadJob;
+import org.opencastproject.workspace.api.Workspace;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the chunked uploads of the {@link FileUploadServiceImpl}.
+ */
+public class FileUploadServiceImplTest {
+
+  /** The chunk size */
+  private static final int CHUNK_SIZE = 4;
+
+  /** The uploaded data, three chunks with a short last one */
+  private static final byte[] DATA = "0123456789".getBytes();
+
+  /** The service to test */
+  private FileUploadServiceImpl service = null;
+
+  /** The working directory */
+  private File workDir = null;
+
+  /** The content that has been put into the upload collection */
+  private byte[] uploaded = null;
+
+  @Before
+  public void setUp() throws Exception {
+    workDir = new File("target", "fileupload-" + System.currentTimeMillis());
+    FileUtils.forceMkdir(workDir);
+
+    Workspace workspace = EasyMock.createNiceMock(Workspace.class);
+    EasyMock.expect(
+            workspace.putInCollection(EasyMock.eq("uploaded"), (String) EasyMock.anyObject(),
+                    (InputStream) EasyMock.anyObject())).andAnswer(new IAnswer<URI>() {
+      @Override
+      public URI answer() throws Throwable {
+        uploaded = IOUtils.toByteArray((InputStream) EasyMock.getCurrentArguments()[2]);
+        return new URI("http://localhost/files/collection/uploaded/" + EasyMock.getCurrentArguments()[1]);
+      }
+    }).anyTimes();
+    EasyMock.replay(workspace);
+
+    Hashtable<String, String> properties = new Hashtable<String, String>();
+    properties.put("org.opencastproject.upload.workdir", workDir.getAbsolutePath());
+    properties.put("org.opencastproject.upload.cleaner.maxttl", "6");
+
+    service = new FileUploadServiceImpl();
+    service.setWorkspace(workspace);
+    service.updated(properties);
+    service.activate(null);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    service.deactivate(null);
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  /**
+   * Tests that chunks can be uploaded in any order.
+   */
+  @Test
+  public void testChunksOutOfOrder() throws Exception {
+    FileUploadJob job = createJob();
+    acceptChunk(job, 2);
+    acceptChunk(job, 0);
+    assertEquals(FileUploadJob.JobState.READY, job.getState());
+    acceptChunk(job, 1);
+    assertComplete(job);
+  }
+
+  /**
+   * Tests that chunks uploaded at the same time end up at their positions in the payload.
+   */
+  @Test
+  public void testConcurrentChunks() throws Exception {
+    final FileUploadJob job = createJob();
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < job.getChunksTotal(); i++) {
+      final int chunk = i;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            acceptChunk(job, chunk);
+          } catch (Throwable t) {
+            failures.add(t);
+          }
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join(10000);
+    }
+    assertTrue(failures.toString(), failures.isEmpty());
+    assertComplete(job);
+  }
+
+  /**
+   * Tests that a chunk that is sent again, e.g. because the response got lost, is not counted twice.
+   */
+  @Test
+  public void testResentChunk() throws Exception {
+    FileUploadJob job = createJob();
+    acceptChunk(job, 0);
+    acceptChunk(job, 0);
+    assertEquals(CHUNK_SIZE, job.getPayload().getCurrentSize());
+    acceptChunk(job, 1);
+    acceptChunk(job, 2);
+    assertComplete(job);
+  }
+
+  /**
+   * Tests that a chunk of the wrong size is rejected and can be sent again.
+   */
+  @Test
+  public void testWrongChunkSize() throws Exception {
+    FileUploadJob job = createJob();
+    try {
+      service.acceptChunk(job, 0, new ByteArrayInputStream(DATA, 0, CHUNK_SIZE - 1));
+      fail("A chunk of the wrong size must be rejected");
+    } catch (FileUploadException e) {
+      // expected
+    }
+    assertEquals(0, job.getPayload().getCurrentSize());
+    assertFalse(job.isChunkReceived(0));
+    acceptChunk(job, 0);
+    acceptChunk(job, 1);
+    acceptChunk(job, 2);
+    assertComplete(job);
+  }
+
+  /**
+   * Tests that a finished upload has moved its payload to the upload collection and accepts no more chunks.
+   */
+  @Test
+  public void testFinishedUpload() throws Exception {
+    FileUploadJob job = createJob();
+    for (int i = 0; i < job.getChunksTotal(); i++) {
+      acceptChunk(job, i);
+    }
+    assertComplete(job);
+    assertFalse(new File(new File(workDir, job.getId()), job.getId() + ".payload").exists());
+    assertEquals(FileUploadJob.JobState.COMPLETE, service.getJob(job.getId()).getState());
+    try {
+      acceptChunk(job, 0);
+      fail("A completed job must not accept chunks");
+    } catch (FileUploadException e) {
+      // expected
+    }
+  }
+
+  private FileUploadJob createJob() throws Exception {
+    FileUploadJob job = service.createJob("test.txt", DATA.length, CHUNK_SIZE, null, null);
+    assertEquals(3, job.getChunksTotal());
+    return job;
+  }
+
+  private void acceptChunk(FileUploadJob job, int chunk) throws Exception {
+    int offset = chunk * CHUNK_SIZE;
+    int length = Math.min(CHUNK_SIZE, DATA.length - offset);
+    service.acceptChunk(job, chunk, new ByteArrayInputStream(DATA, offset, length));
+  }
+
+  private void assertComplete(FileUploadJob job) {
+    assertEquals(FileUploadJob.JobState.COMPLETE, job.getState());
+    assertEquals(DATA.length, job.getPayload().getCurrentSize());
+    assertNotNull(job.getPayload().getUrl());
+    assertArrayEquals(DATA, uploaded);
+  }
+
+}
@@ -45,6 +45,8 @@ import org.opencastproject.security.api.UserDirectoryService;
 import org.opencastproject.series.api.SeriesService;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
 import org.opencastproject.serviceregistry.api.ServiceRegistryException;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.ChecksumType;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.jmx.JmxUtil;
 import org.opencastproject.workflow.api.WorkflowDatabaseException;
@@ -61,6 +63,7 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -82,6 +85,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -279,6 +285,8 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
 
     ZipArchiveInputStream zis = null;
     Set<String> collectionFilenames = new HashSet<String>();
+    Set<String> storedElementIds = new HashSet<String>();
+    String mediaPackageId = null;
     try {
       // We don't need anybody to do the dispatching for us. Therefore we need to make sure that the job is never in
       // QUEUED state but set it to INSTANTIATED in the beginning and then manually switch it to RUNNING.
@@ -292,11 +300,16 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
       zis = new ZipArchiveInputStream(zipStream);
       ZipArchiveEntry entry;
       MediaPackage mp = null;
+      // Entries that precede the manifest are stored in the collection and moved once the manifest has been read
       Map<String, URI> uris = new HashMap<String, URI>();
+      // The checksums of the entries in the collection
+      Map<String, Checksum> checksums = new HashMap<String, Checksum>();
+      // Elements of the manifest whose entry has not been seen yet, by the element uri found in the manifest
+      Map<String, MediaPackageElement> pendingElements = new HashMap<String, MediaPackageElement>();
       // Sequential number to append to file names so that, if two files have the same
       // name, one does not overwrite the other
       int seq = 1;
-      // While there are entries write them to a collection
+      // While there are entries write them to their final location or to a collection
       while ((entry = zis.getNextZipEntry()) != null) {
         try {
           if (entry.isDirectory() || entry.getName().contains("__MACOSX"))
@@ -305,6 +318,26 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
           if (entry.getName().endsWith("manifest.xml") || entry.getName().endsWith("index.xml")) {
             // Build the mediapackage
             mp = loadMediaPackageFromManifest(new ZipEntryInputStream(zis, entry.getSize()));
+            mediaPackageId = setMediaPackageIdentifier(mp, workflowInstance);
+            logger.info("Ingesting mediapackage {} is named '{}'", mediaPackageId, mp.getTitle());
+            pendingElements.clear();
+            for (MediaPackageElement element : mp.elements()) {
+              String key = element.getURI().toString();
+              if (element.getIdentifier() != null && !uris.containsKey(key) && !pendingElements.containsKey(key))
+                pendingElements.put(key, element);
+            }
+            continue;
+          }
+
+          // Each entry name starts with zip file name; discard it so that the map key will match the media package
+          // element uri
+          String key = entry.getName().substring(entry.getName().indexOf('/') + 1);
+          MediaPackageElement element = pendingElements.remove(key);
+          if (element != null) {
+            // The manifest is known, so the entry can be written to its final location right away. The element is
+            // registered first, so that it is removed again if storing or verifying it fails.
+            storedElementIds.add(element.getIdentifier());
+            storeZipEntry(zis, entry, mediaPackageId, element);
           } else {
             logger.info("Storing zip entry {} in working file repository collection '{}'",
                     job.getId() + entry.getName(), wfrCollectionId);
@@ -312,15 +345,20 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
             // name is different than the previous one(s) by adding a sequential number
             String fileName = FilenameUtils.getBaseName(entry.getName()) + "_" + seq++ + "."
                     + FilenameUtils.getExtension(entry.getName());
-            URI contentUri = workingFileRepository.putInCollection(wfrCollectionId, fileName, new ZipEntryInputStream(
-                    zis, entry.getSize()));
+            long start = System.currentTimeMillis();
+            MessageDigest md5 = createMd5();
+            CountingInputStream in = new CountingInputStream(new DigestInputStream(new ZipEntryInputStream(zis,
+                    entry.getSize()), md5));
+            URI contentUri = workingFileRepository.putInCollection(wfrCollectionId, fileName, in);
             collectionFilenames.add(fileName);
-            // Each entry name starts with zip file name; discard it so that the map key will match the media package
-            // element uri
-            String key = entry.getName().substring(entry.getName().indexOf('/') + 1);
             uris.put(key, contentUri);
-            ingestStatistics.add(entry.getSize());
-            logger.info("Zip entry {} stored at {}", job.getId() + entry.getName(), contentUri);
+            checksums.put(key, Checksum.create(ChecksumType.DEFAULT_TYPE, Checksum.convertToHex(md5.digest())));
+            long bytes = in.getByteCount();
+            long millis = System.currentTimeMillis() - start;
+            ingestStatistics.add(bytes);
+            ingestStatistics.addCollectionEntry(bytes, millis);
+            logger.info("Zip entry {} stored at {} ({})",
+                    new Object[] { job.getId() + entry.getName(), contentUri, formatThroughput(bytes, millis) });
           }
         } catch (IOException e) {
           logger.warn("Unable to process zip entry {}: {}", entry.getName(), e.getMessage());
@@ -331,35 +369,25 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
       if (mp == null)
         throw new MediaPackageException("No manifest found in this zip");
 
-      // Determine the mediapackage identifier
-      String mediaPackageId = null;
-      if (workflowInstance != null) {
-        mediaPackageId = workflowInstance.getMediaPackage().getIdentifier().toString();
-        mp.setIdentifier(workflowInstance.getMediaPackage().getIdentifier());
-      } else {
-        if (mp.getIdentifier() == null || StringUtils.isBlank(mp.getIdentifier().toString()))
-          mp.setIdentifier(new UUIDIdBuilderImpl().createNew());
-        mediaPackageId = mp.getIdentifier().toString();
-      }
-
-      logger.info("Ingesting mediapackage {} is named '{}'", mediaPackageId, mp.getTitle());
-
       // Make sure there are tracks in the mediapackage
       if (mp.getTracks().length == 0) {
         logger.warn("Mediapackage {} has no media tracks", mediaPackageId);
       }
 
-      // Update the element uris to point to their working file repository location
+      // Move the elements that preceded the manifest from the collection to their working file repository location
       for (MediaPackageElement element : mp.elements()) {
-        URI uri = uris.get(element.getURI().toString());
-
-        if (uri == null)
-          throw new MediaPackageException("Unable to map element name '" + element.getURI() + "' to workspace uri");
-        logger.info("Ingested mediapackage element {}/{} is located at {}",
-                new Object[] { mediaPackageId, element.getIdentifier(), uri });
-        URI dest = workingFileRepository.moveTo(wfrCollectionId, uri.toString(), mediaPackageId,
-                element.getIdentifier(), FilenameUtils.getName(element.getURI().toString()));
-        element.setURI(dest);
+        if (!storedElementIds.contains(element.getIdentifier())) {
+          URI uri = uris.get(element.getURI().toString());
+
+          if (uri == null)
+            throw new MediaPackageException("Unable to map element name '" + element.getURI() + "' to workspace uri");
+          verifyChecksum(mediaPackageId, element, checksums.get(element.getURI().toString()));
+          logger.info("Ingested mediapackage element {}/{} is located at {}",
+                  new Object[] { mediaPackageId, element.getIdentifier(), uri });
+          URI dest = workingFileRepository.moveTo(wfrCollectionId, uri.toString(), mediaPackageId,
+                  element.getIdentifier(), FilenameUtils.getName(element.getURI().toString()));
+          element.setURI(dest);
+        }
 
         // TODO: This should be triggered somehow instead of being handled here
         if (MediaPackageElements.SERIES.equals(element.getFlavor())) {
@@ -410,6 +438,11 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
       for (String filename : collectionFilenames) {
         workingFileRepository.deleteFromCollection(Long.toString(job.getId()), filename);
       }
+      if (job != null && job.getStatus() != Job.Status.FINISHED) {
+        for (String elementId : storedElementIds) {
+          workingFileRepository.delete(mediaPackageId, elementId);
+        }
+      }
       try {
         serviceRegistry.updateJob(job);
       } catch (Exception e) {
@@ -418,6 +451,115 @@ public class IngestServiceImpl extends AbstractJobProducer implements IngestServ
     }
   }
 
+  /**
+   * Sets the identifier of a mediapackage that has been read from a zip manifest. If the zip is ingested into an
+   * existing workflow, the identifier of the workflow's mediapackage is used, otherwise the identifier from the manifest
+   * or, if there is none, a new one.
+   * 
+   * @param mp
+   *          the mediapackage
+   * @param workflowInstance
+   *          the workflow to ingest into, or <code>null</code>
+   * @return the mediapackage identifier
+   */
+  private String setMediaPackageIdentifier(MediaPackage mp, WorkflowInstance workflowInstance) {
+    if (workflowInstance != null) {
+      mp.setIdentifier(workflowInstance.getMediaPackage().getIdentifier());
+    } else if (mp.getIdentifier() == null || StringUtils.isBlank(mp.getIdentifier().toString())) {
+      mp.setIdentifier(new UUIDIdBuilderImpl().createNew());
+    }
+    return mp.getIdentifier().toString();
+  }
+
+  /**
+   * Writes a zip entry straight to the working file repository location of its mediapackage element, computing the
+   * md5 checksum of the entry while it is being written. The element's uri is updated, and the checksum is verified as
+   * described in {@link #verifyChecksum(String, MediaPackageElement, Checksum)}.
+   * 
+   * @param zis
+   *          the zip stream, positioned at the beginning of the entry
+   * @param entry
+   *          the zip entry
+   * @param mediaPackageId
+   *          the mediapackage identifier
+   * @param element
+   *          the mediapackage element that refers to the entry
+   * @throws IOException
+   *           if reading the entry or writing it to the working file repository fails
+   * @throws IngestException
+   *           if the checksum of the entry does not match the checksum in the manifest
+   */
+  private void storeZipEntry(ZipArchiveInputStream zis, ZipArchiveEntry entry, String mediaPackageId,
+          MediaPackageElement element) throws IOException, IngestException {
+    MessageDigest md5 = createMd5();
+    long start = System.currentTimeMillis();
+    CountingInputStream in = new CountingInputStream(new DigestInputStream(new ZipEntryInputStream(zis,
+            entry.getSize()), md5));
+    URI uri = workingFileRepository.put(mediaPackageId, element.getIdentifier(),
+            FilenameUtils.getName(element.getURI().toString()), in);
+    long bytes = in.getByteCount();
+    long millis = System.currentTimeMillis() - start;
+    element.setURI(uri);
+
+    ingestStatistics.add(bytes);
+    ingestStatistics.addDirectEntry(bytes, millis);
+    logger.info("Zip entry {} stored as mediapackage element {}/{} at {} ({})", new Object[] { entry.getName(),
+            mediaPackageId, element.getIdentifier(), uri, formatThroughput(bytes, millis) });
+
+    verifyChecksum(mediaPackageId, element,
+            Checksum.create(ChecksumType.DEFAULT_TYPE, Checksum.convertToHex(md5.digest())));
+  }
+
+  /**
+   * Compares the md5 checksum of a zip entry with the checksum of its mediapackage element in the manifest. The
+   * checksum is set on the element if the manifest does not contain one, a checksum of a different type is kept.
+   * 
+   * @param mediaPackageId
+   *          the mediapackage identifier
+   * @param element
+   *          the mediapackage element that refers to the entry
+   * @param checksum
+   *          the md5 checksum of the entry
+   * @throws IngestException
+   *           if the manifest contains a different md5 checksum
+   */
+  private void verifyChecksum(String mediaPackageId, MediaPackageElement element, Checksum checksum)
+          throws IngestException {
+    Checksum manifestChecksum = element.getChecksum();
+    if (manifestChecksum == null) {
+      element.setChecksum(checksum);
+    } else if (ChecksumType.DEFAULT_TYPE.equals(manifestChecksum.getType())
+            && !checksum.getValue().equalsIgnoreCase(manifestChecksum.getValue())) {
+      throw new IngestException("Checksum " + checksum + " of mediapackage element " + mediaPackageId + "/"
+              + element.getIdentifier() + " does not match the checksum " + manifestChecksum
+              + " found in the manifest");
+    }
+  }
+
+  /**
+   * Returns a new md5 message digest.
+   */
+  private static MessageDigest createMd5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("No md5 message digest available", e);
+    }
+  }
+
+  /**
+   * Returns a human readable description of the number of bytes written in the given time.
+   * 
+   * @param bytes
+   *          the number of bytes
+   * @param millis
+   *          the time in milliseconds
+   * @return the size and throughput
+   */
+  private static String formatThroughput(long bytes, long millis) {
+    return bytes + " bytes in " + millis + " ms, " + (bytes * 1000 / Math.max(1, millis) / 1024) + " KB/s";
+  }
+
   private MediaPackage loadMediaPackageFromManifest(InputStream manifest) throws IOException, MediaPackageException,
           IngestException {
     // TODO: Uncomment the following line and remove the patch when the compatibility with pre-1.4 MediaPackages is
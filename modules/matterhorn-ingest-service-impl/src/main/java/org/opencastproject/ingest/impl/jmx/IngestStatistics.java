@@ -30,6 +30,11 @@ public class IngestStatistics implements IngestStatisticsMXBean {
   private long totalNumBytesRead = 0L;
   private int successful = 0;
   private int failed = 0;
+  private int directEntries = 0;
+  private int collectionEntries = 0;
+  private long entryBytes = 0L;
+  private long entryMillis = 0L;
+  private long lastEntryBytesPerSecond = 0L;
   private ConcurrentMap<Long, Long> bytesCounter = new MapMaker().expireAfterWrite(15, TimeUnit.MINUTES).makeMap();
 
   /**
@@ -83,6 +88,38 @@ public class IngestStatistics implements IngestStatisticsMXBean {
     return key != 0 ? totalNumBytesRead - bytesCounter.get(key) : 0;
   }
 
+  /**
+   * @see org.opencastproject.ingest.impl.jmx.IngestStatisticsMXBean#getDirectlyStoredZipEntries()
+   */
+  @Override
+  public int getDirectlyStoredZipEntries() {
+    return directEntries;
+  }
+
+  /**
+   * @see org.opencastproject.ingest.impl.jmx.IngestStatisticsMXBean#getCollectionStoredZipEntries()
+   */
+  @Override
+  public int getCollectionStoredZipEntries() {
+    return collectionEntries;
+  }
+
+  /**
+   * @see org.opencastproject.ingest.impl.jmx.IngestStatisticsMXBean#getLastZipEntryBytesPerSecond()
+   */
+  @Override
+  public long getLastZipEntryBytesPerSecond() {
+    return lastEntryBytesPerSecond;
+  }
+
+  /**
+   * @see org.opencastproject.ingest.impl.jmx.IngestStatisticsMXBean#getAverageZipEntryBytesPerSecond()
+   */
+  @Override
+  public synchronized long getAverageZipEntryBytesPerSecond() {
+    return entryBytes * 1000 / Math.max(1, entryMillis);
+  }
+
   private long getKeyByTime(long timeBeforeFiveMinute) {
     long key = 0L;
     List<Long> bytes = new ArrayList<Long>(bytesCounter.keySet());
@@ -103,6 +140,39 @@ public class IngestStatistics implements IngestStatisticsMXBean {
     bytesCounter.put(System.currentTimeMillis(), totalNumBytesRead);
   }
 
+  /**
+   * Records a zip entry that has been written straight to the location of its mediapackage element.
+   * 
+   * @param bytes
+   *          the size of the entry
+   * @param millis
+   *          the time it took to write the entry
+   */
+  public void addDirectEntry(long bytes, long millis) {
+    addEntry(bytes, millis);
+    directEntries++;
+  }
+
+  /**
+   * Records a zip entry that has been written to a collection, to be moved to the location of its mediapackage element
+   * once the manifest is known.
+   * 
+   * @param bytes
+   *          the size of the entry
+   * @param millis
+   *          the time it took to write the entry
+   */
+  public void addCollectionEntry(long bytes, long millis) {
+    addEntry(bytes, millis);
+    collectionEntries++;
+  }
+
+  private synchronized void addEntry(long bytes, long millis) {
+    entryBytes += bytes;
+    entryMillis += millis;
+    lastEntryBytesPerSecond = bytes * 1000 / Math.max(1, millis);
+  }
+
   public void successful() {
     successful++;
   }
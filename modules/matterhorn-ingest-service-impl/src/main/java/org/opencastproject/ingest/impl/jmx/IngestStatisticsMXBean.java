@@ -62,4 +62,32 @@ public interface IngestStatisticsMXBean {
    */
   long getBytesInLastFifteenMinutes();
 
+  /**
+   * Gets the number of zip entries that have been written straight to the location of their mediapackage element
+   * 
+   * @return the number of zip entries
+   */
+  int getDirectlyStoredZipEntries();
+
+  /**
+   * Gets the number of zip entries that preceded the manifest and have therefore been written to a collection first
+   * 
+   * @return the number of zip entries
+   */
+  int getCollectionStoredZipEntries();
+
+  /**
+   * Gets the throughput of the last zip entry written to the working file repository
+   * 
+   * @return the number of bytes per second
+   */
+  long getLastZipEntryBytesPerSecond();
+
+  /**
+   * Gets the average throughput of all zip entries written to the working file repository
+   * 
+   * @return the number of bytes per second
+   */
+  long getAverageZipEntryBytesPerSecond();
+
 }
@@ -16,6 +16,7 @@
 package org.opencastproject.ingest.impl;
 
 import org.opencastproject.capture.CaptureParameters;
+import org.opencastproject.ingest.api.IngestException;
 import org.opencastproject.mediapackage.MediaPackage;
 import org.opencastproject.mediapackage.MediaPackageElements;
 import org.opencastproject.metadata.dublincore.DublinCoreCatalogImpl;
@@ -50,6 +51,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -58,6 +60,9 @@ import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 public class IngestServiceImplTest {
   private IngestServiceImpl service = null;
@@ -296,6 +301,45 @@ public class IngestServiceImplTest {
 
   }
 
+  @Test
+  public void testThickClientChecksumMismatch() throws Exception {
+    // vonly.mov follows the manifest in the zip, aonly.mov precedes it
+    String[] checksums = { "43b7d843b02c4a429b2f547a4f230d31", "950f9fa49caa8f1c5bbc36892f6fd062" };
+    for (String checksum : checksums) {
+      InputStream packageStream = null;
+      try {
+        packageStream = urlPackage.toURL().openStream();
+        byte[] zip = replaceInManifest(packageStream, checksum, "00000000000000000000000000000000");
+        service.addZippedMediaPackage(new ByteArrayInputStream(zip));
+        Assert.fail("An element whose checksum does not match the manifest must not be ingested");
+      } catch (IngestException e) {
+        // expected
+      } finally {
+        IOUtils.closeQuietly(packageStream);
+      }
+    }
+  }
+
+  /**
+   * Copies a zipped mediapackage, replacing a string in its manifest.
+   */
+  private static byte[] replaceInManifest(InputStream in, String search, String replacement) throws IOException {
+    ZipInputStream zis = new ZipInputStream(in);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ZipOutputStream zos = new ZipOutputStream(out);
+    ZipEntry entry;
+    while ((entry = zis.getNextEntry()) != null) {
+      byte[] content = IOUtils.toByteArray(zis);
+      if (entry.getName().endsWith("manifest.xml"))
+        content = new String(content, "UTF-8").replace(search, replacement).getBytes("UTF-8");
+      zos.putNextEntry(new ZipEntry(entry.getName()));
+      zos.write(content);
+      zos.closeEntry();
+    }
+    zos.close();
+    return out.toByteArray();
+  }
+
   @Test
   public void testStartOver() throws Exception {
     MediaPackage mediaPackage = null;
@@ -19,6 +19,7 @@ package org.opencastproject.kernel.http.impl;
 
 import org.opencastproject.kernel.http.api.HttpClient;
 
+import org.apache.http.conn.ClientConnectionManager;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
 import org.osgi.service.component.ComponentContext;
@@ -61,4 +62,12 @@ public class HttpClientFactory implements ManagedService {
   public HttpClient makeHttpClient() {
     return new HttpClientImpl();
   }
+
+  /**
+   * Creates a new HttpClient to make requests through the given connection manager, which is shared with other clients
+   * and must not be shut down once a request has been handled.
+   */
+  public HttpClient makeHttpClient(ClientConnectionManager connectionManager) {
+    return new HttpClientImpl(connectionManager);
+  }
 }
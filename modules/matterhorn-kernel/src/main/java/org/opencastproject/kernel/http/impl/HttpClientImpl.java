@@ -26,6 +26,8 @@ import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.params.HttpParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,7 +53,52 @@ public class HttpClientImpl implements HttpClient {
   private static final Logger logger = LoggerFactory.getLogger(HttpClientImpl.class);
 
   /** client used for all http requests. */
-  private DefaultHttpClient defaultHttpClient = makeHttpClient();
+  private DefaultHttpClient defaultHttpClient = null;
+
+  /**
+   * Creates a new http client with its own connection manager.
+   */
+  public HttpClientImpl() {
+    defaultHttpClient = makeHttpClient();
+  }
+
+  /**
+   * Creates a new http client that is using a connection manager that is shared with other clients. Shutting down the
+   * connection manager is up to whoever created it.
+   * 
+   * @param connectionManager
+   *          the shared connection manager
+   */
+  public HttpClientImpl(ClientConnectionManager connectionManager) {
+    defaultHttpClient = new DefaultHttpClient(connectionManager);
+  }
+
+  /**
+   * Creates a connection manager that is keeping connections alive and pools them by target host, so they can be reused
+   * across requests. Https connections are set up the same forgiving way as with clients having their own connection
+   * manager.
+   * 
+   * @param maxTotal
+   *          the maximum number of connections
+   * @param maxPerHost
+   *          the maximum number of connections to a single host
+   * @return the connection manager
+   */
+  public static PoolingClientConnectionManager createPooledConnectionManager(int maxTotal, int maxPerHost) {
+    SchemeRegistry sr = SchemeRegistryFactory.createDefault();
+    try {
+      SSLSocketFactory ssf = createForgivingSocketFactory();
+      sr.register(new Scheme("https", 443, ssf));
+    } catch (NoSuchAlgorithmException e) {
+      logger.error("Error creating context to handle TLS connections: {}", e.getMessage());
+    } catch (KeyManagementException e) {
+      logger.error("Error creating context to handle TLS connections: {}", e.getMessage());
+    }
+    PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager(sr);
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerHost);
+    return connectionManager;
+  }
 
   /** See org.opencastproject.kernel.http.api.HttpClient */
   @Override
@@ -86,12 +133,7 @@ public class HttpClientImpl implements HttpClient {
 
     DefaultHttpClient defaultHttpClient = new DefaultHttpClient();
     try {
-      logger.debug("Installing forgiving hostname verifier and trust managers");
-      X509TrustManager trustManager = createTrustManager();
-      X509HostnameVerifier hostNameVerifier = createHostNameVerifier();
-      SSLContext sslContext = SSLContext.getInstance("TLS");
-      sslContext.init(null, new TrustManager[] { trustManager }, new SecureRandom());
-      SSLSocketFactory ssf = new SSLSocketFactory(sslContext, hostNameVerifier);
+      SSLSocketFactory ssf = createForgivingSocketFactory();
       ClientConnectionManager ccm = defaultHttpClient.getConnectionManager();
       SchemeRegistry sr = ccm.getSchemeRegistry();
       sr.register(new Scheme("https", 443, ssf));
@@ -104,13 +146,32 @@ public class HttpClientImpl implements HttpClient {
     return defaultHttpClient;
   }
 
+  /**
+   * Creates a socket factory for https connections that is using a forgiving hostname verifier and trust manager.
+   * 
+   * @return the socket factory
+   * @throws NoSuchAlgorithmException
+   *           if TLS is not supported
+   * @throws KeyManagementException
+   *           if the ssl context can't be initialized
+   */
+  private static SSLSocketFactory createForgivingSocketFactory() throws NoSuchAlgorithmException,
+          KeyManagementException {
+    logger.debug("Installing forgiving hostname verifier and trust managers");
+    X509TrustManager trustManager = createTrustManager();
+    X509HostnameVerifier hostNameVerifier = createHostNameVerifier();
+    SSLContext sslContext = SSLContext.getInstance("TLS");
+    sslContext.init(null, new TrustManager[] { trustManager }, new SecureRandom());
+    return new SSLSocketFactory(sslContext, hostNameVerifier);
+  }
+
   /**
    * Returns a new trust manager which will be in charge of checking the SSL certificates that are being presented by
    * SSL enabled hosts.
    * 
    * @return the trust manager
    */
-  private X509TrustManager createTrustManager() {
+  private static X509TrustManager createTrustManager() {
     X509TrustManager trustManager = new X509TrustManager() {
 
       /**
@@ -151,7 +212,7 @@ public class HttpClientImpl implements HttpClient {
    * 
    * @return the host name verifier
    */
-  private X509HostnameVerifier createHostNameVerifier() {
+  private static X509HostnameVerifier createHostNameVerifier() {
     X509HostnameVerifier verifier = new X509HostnameVerifier() {
 
       /**
@@ -21,4 +21,13 @@ package org.opencastproject.kernel.security;
 public interface HttpConnectionMXBean {
   /** Gets the number of open http connections */
   int getOpenConnections();
+
+  /** Gets the number of pooled connections that are kept alive for reuse */
+  int getIdleConnections();
+
+  /** Gets the number of requests waiting for a pooled connection to become available */
+  int getPendingConnections();
+
+  /** Gets the maximum number of pooled connections, or 0 if connections are not pooled */
+  int getMaxConnections();
 }
@@ -21,6 +21,7 @@ import static org.opencastproject.kernel.security.DelegatingAuthenticationEntryP
 
 import org.opencastproject.kernel.http.api.HttpClient;
 import org.opencastproject.kernel.http.impl.HttpClientFactory;
+import org.opencastproject.kernel.http.impl.HttpClientImpl;
 import org.opencastproject.security.api.Organization;
 import org.opencastproject.security.api.SecurityConstants;
 import org.opencastproject.security.api.SecurityService;
@@ -32,6 +33,8 @@ import org.opencastproject.serviceregistry.api.ServiceRegistry;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -39,7 +42,9 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionReleaseTrigger;
 import org.apache.http.impl.auth.DigestScheme;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.CoreConnectionPNames;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
@@ -47,9 +52,13 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.net.URI;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -85,6 +94,36 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
    */
   public static final String NONCE_TIMEOUT_RETRY_MAXIMUM_VARIABLE_TIME_KEY = "org.opencastproject.security.digest.nonce.variable.time";
 
+  /** The configuration property specifying whether connections are pooled and kept alive across requests */
+  public static final String CONNECTION_POOL_ENABLED_KEY = "org.opencastproject.http.pool.enabled";
+
+  /** The configuration property specifying the maximum number of pooled connections */
+  public static final String CONNECTION_POOL_MAX_TOTAL_KEY = "org.opencastproject.http.pool.max.total";
+
+  /** The configuration property specifying the maximum number of pooled connections to a single host */
+  public static final String CONNECTION_POOL_MAX_PER_HOST_KEY = "org.opencastproject.http.pool.max.perhost";
+
+  /** The configuration property specifying the time in seconds after which idle pooled connections are closed */
+  public static final String CONNECTION_POOL_IDLE_TIMEOUT_KEY = "org.opencastproject.http.pool.idle.timeout";
+
+  /**
+   * The configuration property specifying the time in seconds that a digest nonce is reused for requests to the same
+   * host when connections are pooled. Set to 0 to request a new nonce for every request.
+   */
+  public static final String NONCE_CACHE_TIME_KEY = "org.opencastproject.http.pool.nonce.time";
+
+  /** The default maximum number of pooled connections */
+  public static final int DEFAULT_CONNECTION_POOL_MAX_TOTAL = 200;
+
+  /** The default maximum number of pooled connections to a single host */
+  public static final int DEFAULT_CONNECTION_POOL_MAX_PER_HOST = 20;
+
+  /** The default time in seconds after which idle pooled connections are closed */
+  public static final int DEFAULT_CONNECTION_POOL_IDLE_TIMEOUT = 60;
+
+  /** The default time in seconds that a digest nonce is reused */
+  public static final int DEFAULT_NONCE_CACHE_TIME = 60;
+
   /** The default time until a connection attempt fails */
   public static final int DEFAULT_CONNECTION_TIMEOUT = 60 * 1000;
 
@@ -133,6 +172,18 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
   /** The security service */
   protected SecurityService securityService = null;
 
+  /** The connection manager shared by all requests, or <code>null</code> if connections are not pooled */
+  private PoolingClientConnectionManager connectionManager = null;
+
+  /** Closes expired and idle connections in the connection pool */
+  private ScheduledExecutorService idleConnectionEvictor = null;
+
+  /** The time in milliseconds that a digest nonce is reused for requests to the same host */
+  private long nonceCacheTime = DEFAULT_NONCE_CACHE_TIME * MILLISECONDS_IN_SECONDS;
+
+  /** Realm and nonce of the last digest handshake, by host */
+  private Map<String, CachedNonce> nonceCache = new ConcurrentHashMap<String, CachedNonce>();
+
   public void activate(ComponentContext cc) {
     logger.debug("activate");
     user = cc.getBundleContext().getProperty(DIGEST_AUTH_USER_KEY);
@@ -144,6 +195,10 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     getRetryBaseTime(cc);
     getRetryMaximumVariableTime(cc);
 
+    if (Boolean.valueOf(StringUtils.trimToNull(cc.getBundleContext().getProperty(CONNECTION_POOL_ENABLED_KEY)))) {
+      createConnectionPool(cc);
+    }
+
     // register with jmx
     try {
       MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
@@ -236,8 +291,48 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     return result;
   }
 
+  /**
+   * Sets up the connection manager that is shared by all requests, along with the eviction of idle connections.
+   * 
+   * @param cc
+   *          The ComponentContent to extract the pool configuration from.
+   */
+  private void createConnectionPool(ComponentContext cc) {
+    int maxTotal = getIntFromComponentContext(cc, CONNECTION_POOL_MAX_TOTAL_KEY, DEFAULT_CONNECTION_POOL_MAX_TOTAL);
+    int maxPerHost = getIntFromComponentContext(cc, CONNECTION_POOL_MAX_PER_HOST_KEY,
+            DEFAULT_CONNECTION_POOL_MAX_PER_HOST);
+    final int idleTimeout = getIntFromComponentContext(cc, CONNECTION_POOL_IDLE_TIMEOUT_KEY,
+            DEFAULT_CONNECTION_POOL_IDLE_TIMEOUT);
+    nonceCacheTime = getIntFromComponentContext(cc, NONCE_CACHE_TIME_KEY, DEFAULT_NONCE_CACHE_TIME)
+            * MILLISECONDS_IN_SECONDS;
+
+    connectionManager = HttpClientImpl.createPooledConnectionManager(maxTotal, maxPerHost);
+    logger.info("Pooling http connections, using at most {} connections and {} connections per host", maxTotal,
+            maxPerHost);
+
+    if (idleTimeout > 0) {
+      idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor();
+      idleConnectionEvictor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          connectionManager.closeExpiredConnections();
+          connectionManager.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+        }
+      }, idleTimeout, idleTimeout, TimeUnit.SECONDS);
+    }
+  }
+
   public void deactivate() {
     logger.debug("deactivate");
+    if (idleConnectionEvictor != null) {
+      idleConnectionEvictor.shutdownNow();
+      idleConnectionEvictor = null;
+    }
+    if (connectionManager != null) {
+      connectionManager.shutdown();
+      connectionManager = null;
+    }
+    nonceCache.clear();
   }
 
   /**
@@ -274,9 +369,37 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
       throw new TrustedHttpClientException(new NullPointerException(
               "There is no DefaultHttpClientFactory service available so we cannot make a request"));
     }
+    if (connectionManager != null)
+      return httpClientFactory.makeHttpClient(connectionManager);
     return httpClientFactory.makeHttpClient();
   }
 
+  /**
+   * Releases the connection(s) that have been used by the http client. A pooled connection is handed back to the pool
+   * once its response has been read completely. If the response is still being streamed, reading the rest of it could
+   * take as long as the whole download, so the connection is aborted instead of being reused. Connections that are not
+   * pooled are closed.
+   * 
+   * @param httpClient
+   *          the http client
+   * @param response
+   *          the response, may be <code>null</code>
+   */
+  private void closeConnection(HttpClient httpClient, HttpResponse response) {
+    if (connectionManager == null) {
+      httpClient.getConnectionManager().shutdown();
+    } else if (response != null && response.getEntity() != null) {
+      HttpEntity entity = response.getEntity();
+      if (entity.isStreaming() && entity instanceof ConnectionReleaseTrigger) {
+        try {
+          ((ConnectionReleaseTrigger) entity).abortConnection();
+        } catch (IOException e) {
+          logger.debug("Unable to abort the connection of an unread response: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -322,20 +445,30 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
         return response;
       } catch (IOException e) {
         // close the http connection(s)
-        httpClient.getConnectionManager().shutdown();
+        closeConnection(httpClient, null);
         throw new TrustedHttpClientException(e);
       }
     }
 
     // HttpClient doesn't handle the request dynamics for other verbs (especially when sending a streamed multipart
     // request), so we need to handle the details of the digest auth back-and-forth manually
-    manuallyHandleDigestAuthentication(httpUriRequest, httpClient);
+    boolean usedCachedNonce = manuallyHandleDigestAuthentication(httpUriRequest, httpClient,
+            isRepeatable(httpUriRequest));
 
     HttpResponse response = null;
     try {
       response = httpClient.execute(httpUriRequest);
+      if (usedCachedNonce && hadNonceTimeoutResponse(response)) {
+        // The cached nonce is no longer valid, so do a regular handshake right away
+        logger.debug("Cached nonce for {} has expired", httpUriRequest.getURI());
+        closeConnection(httpClient, response);
+        nonceCache.remove(getNonceCacheKey(httpUriRequest.getURI()));
+        httpUriRequest.removeHeaders(AUTHORIZATION_HEADER_NAME);
+        manuallyHandleDigestAuthentication(httpUriRequest, httpClient, false);
+        response = httpClient.execute(httpUriRequest);
+      }
       if (nonceTimeoutRetries > 0 && hadNonceTimeoutResponse(response)) {
-        httpClient.getConnectionManager().shutdown();
+        closeConnection(httpClient, response);
         response = retryAuthAndRequestAfterNonceTimeout(httpUriRequest, response);
       }
       responseMap.put(response, httpClient);
@@ -346,7 +479,7 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
         responseMap.remove(response);
       }
       // close the http connection(s)
-      httpClient.getConnectionManager().shutdown();
+      closeConnection(httpClient, response);
       throw new TrustedHttpClientException(e);
     }
   }
@@ -387,13 +520,13 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
           logger.error("Suffered InteruptedException while trying to sleep until next retry.", e);
         }
       }
-      manuallyHandleDigestAuthentication(httpUriRequest, httpClient);
+      manuallyHandleDigestAuthentication(httpUriRequest, httpClient, false);
       response = httpClient.execute(httpUriRequest);
       if (!hadNonceTimeoutResponse(response)) {
         responseMap.put(response, httpClient);
         break;
       }
-      httpClient.getConnectionManager().shutdown();
+      closeConnection(httpClient, response);
     }
     return response;
   }
@@ -411,26 +544,74 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
   }
 
   /**
-   * Handles the necessary handshake for digest authenticaion in the case where it isn't a GET operation.
+   * Returns <code>true</code> if the request can be sent more than once, which is the case unless the request is
+   * carrying a streamed entity.
+   * 
+   * @param httpUriRequest
+   *          the request
+   * @return whether the request can be repeated
+   */
+  private boolean isRepeatable(HttpUriRequest httpUriRequest) {
+    if (httpUriRequest instanceof HttpEntityEnclosingRequest) {
+      HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) httpUriRequest;
+      return entityRequest.getEntity() == null || entityRequest.getEntity().isRepeatable();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the key used to cache nonces, which is the request's scheme, host and port.
+   * 
+   * @param uri
+   *          the request uri
+   * @return the cache key
+   */
+  private String getNonceCacheKey(URI uri) {
+    return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+  }
+
+  /**
+   * Handles the necessary handshake for digest authenticaion in the case where it isn't a GET operation. If connections
+   * are pooled, the realm and nonce of a previous handshake with the same host may be reused.
    * 
    * @param httpUriRequest
    *          The request location to get the digest authentication for.
    * @param httpClient
    *          The client to send the request through.
+   * @param useNonceCache
+   *          Whether a cached nonce may be used instead of doing the handshake
+   * @return <code>true</code> if a cached nonce has been used
    * @throws TrustedHttpClientException
    *           Thrown if the client cannot be shutdown.
    */
-  private void manuallyHandleDigestAuthentication(HttpUriRequest httpUriRequest, HttpClient httpClient)
-          throws TrustedHttpClientException {
-    HttpRequestBase digestRequest;
-    try {
-      digestRequest = (HttpRequestBase) httpUriRequest.getClass().newInstance();
-    } catch (Exception e) {
-      throw new IllegalStateException("Can not create a new " + httpUriRequest.getClass().getName());
+  private boolean manuallyHandleDigestAuthentication(HttpUriRequest httpUriRequest, HttpClient httpClient,
+          boolean useNonceCache) throws TrustedHttpClientException {
+    boolean cacheNonces = connectionManager != null && nonceCacheTime > 0;
+    String cacheKey = getNonceCacheKey(httpUriRequest.getURI());
+    String[] realmAndNonce = null;
+    boolean usedCachedNonce = false;
+
+    if (cacheNonces && useNonceCache) {
+      CachedNonce cachedNonce = nonceCache.get(cacheKey);
+      if (cachedNonce != null && System.currentTimeMillis() - cachedNonce.created < nonceCacheTime) {
+        realmAndNonce = cachedNonce.realmAndNonce;
+        usedCachedNonce = true;
+      }
+    }
+
+    if (realmAndNonce == null) {
+      HttpRequestBase digestRequest;
+      try {
+        digestRequest = (HttpRequestBase) httpUriRequest.getClass().newInstance();
+      } catch (Exception e) {
+        throw new IllegalStateException("Can not create a new " + httpUriRequest.getClass().getName());
+      }
+      digestRequest.setURI(httpUriRequest.getURI());
+      digestRequest.setHeader(REQUESTED_AUTH_HEADER, DIGEST_AUTH);
+      realmAndNonce = getRealmAndNonce(digestRequest);
+      if (cacheNonces && realmAndNonce != null)
+        nonceCache.put(cacheKey, new CachedNonce(realmAndNonce));
     }
-    digestRequest.setURI(httpUriRequest.getURI());
-    digestRequest.setHeader(REQUESTED_AUTH_HEADER, DIGEST_AUTH);
-    String[] realmAndNonce = getRealmAndNonce(digestRequest);
 
     if (realmAndNonce != null) {
       // Set the user/pass
@@ -446,10 +627,11 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
         httpUriRequest.setHeader(digestAuth.authenticate(creds, httpUriRequest));
       } catch (Exception e) {
         // close the http connection(s)
-        httpClient.getConnectionManager().shutdown();
+        closeConnection(httpClient, null);
         throw new TrustedHttpClientException(e);
       }
     }
+    return usedCachedNonce;
   }
 
   @Override
@@ -474,7 +656,7 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     } else {
       HttpClient httpClient = responseMap.remove(response);
       if (httpClient != null) {
-        httpClient.getConnectionManager().shutdown();
+        closeConnection(httpClient, response);
       }
     }
   }
@@ -504,13 +686,13 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     try {
       response = httpClient.execute(request);
     } catch (IOException e) {
-      httpClient.getConnectionManager().shutdown();
+      closeConnection(httpClient, null);
       throw new TrustedHttpClientException(e);
     }
     Header[] headers = response.getHeaders("WWW-Authenticate");
     if (headers == null || headers.length == 0) {
       logger.warn("URI {} does not support digest authentication", request.getURI());
-      httpClient.getConnectionManager().shutdown();
+      closeConnection(httpClient, response);
       return null;
     }
     Header authRequiredResponseHeader = headers[0];
@@ -523,7 +705,7 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
         realm = element.getValue();
       }
     }
-    httpClient.getConnectionManager().shutdown();
+    closeConnection(httpClient, response);
     return new String[] { realm, nonce };
   }
 
@@ -534,9 +716,47 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
    */
   @Override
   public int getOpenConnections() {
+    if (connectionManager != null)
+      return connectionManager.getTotalStats().getLeased();
     return responseMap.size();
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.kernel.security.HttpConnectionMXBean#getIdleConnections()
+   */
+  @Override
+  public int getIdleConnections() {
+    if (connectionManager != null)
+      return connectionManager.getTotalStats().getAvailable();
+    return 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.kernel.security.HttpConnectionMXBean#getPendingConnections()
+   */
+  @Override
+  public int getPendingConnections() {
+    if (connectionManager != null)
+      return connectionManager.getTotalStats().getPending();
+    return 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.kernel.security.HttpConnectionMXBean#getMaxConnections()
+   */
+  @Override
+  public int getMaxConnections() {
+    if (connectionManager != null)
+      return connectionManager.getMaxTotal();
+    return 0;
+  }
+
   /**
    * @return Returns the number of times the TrustedHttpClient will retry a request if nonce timeouts are occuring.
    */
@@ -558,4 +778,22 @@ public class TrustedHttpClientImpl implements TrustedHttpClient, HttpConnectionM
     return retryMaximumVariableTime;
   }
 
+  /**
+   * Realm and nonce as obtained from a digest handshake, along with the time of the handshake.
+   */
+  private static final class CachedNonce {
+
+    /** The realm and nonce */
+    private final String[] realmAndNonce;
+
+    /** Creation date in milliseconds */
+    private final long created;
+
+    private CachedNonce(String[] realmAndNonce) {
+      this.realmAndNonce = realmAndNonce;
+      this.created = System.currentTimeMillis();
+    }
+
+  }
+
 }
@@ -309,6 +309,64 @@ public class TrustedHttpClientImplTest {
     Assert.assertEquals(200, response.getStatusLine().getStatusCode());
   }
 
+  @Test
+  public void pooledConnectionsReuseNonce() throws ClientProtocolException, IOException {
+    // Setup bundle context for TrustedHttpClientImpl
+    bundleContextMock = createNiceMock(BundleContext.class);
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.DIGEST_AUTH_USER_KEY)).andReturn(
+            "matterhorn_system_account");
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.DIGEST_AUTH_PASS_KEY)).andReturn("CHANGE_ME");
+    expect(bundleContextMock.getProperty(TrustedHttpClientImpl.CONNECTION_POOL_ENABLED_KEY)).andReturn("true");
+    replay(bundleContextMock);
+
+    componentContextMock = createNiceMock(ComponentContext.class);
+    expect(componentContextMock.getBundleContext()).andReturn(bundleContextMock).anyTimes();
+    replay(componentContextMock);
+    client = new TrustedHttpClientImpl("matterhorn_system_account", "CHANGE_ME");
+    client.setServiceRegistry(serviceRegistry);
+    client.setSecurityService(securityService);
+    client.activate(componentContextMock);
+
+    HttpParams httpParams = createNiceMock(HttpParams.class);
+
+    // The connection manager is shared, so none of the clients is expected to shut it down
+    HttpClient securityDefaultHttpClient = createMock("Digest", HttpClient.class);
+    expect(securityDefaultHttpClient.execute(isA(HttpUriRequest.class))).andReturn(digestResponse);
+    replay(securityDefaultHttpClient);
+
+    HttpClient firstRequestHttpClient = createMock("FirstRequest", HttpClient.class);
+    expect(firstRequestHttpClient.getParams()).andReturn(httpParams);
+    expect(firstRequestHttpClient.execute(isA(HttpUriRequest.class))).andReturn(okResponse);
+    replay(firstRequestHttpClient);
+
+    HttpClient secondRequestHttpClient = createMock("SecondRequest", HttpClient.class);
+    expect(secondRequestHttpClient.getParams()).andReturn(httpParams);
+    expect(secondRequestHttpClient.execute(isA(HttpUriRequest.class))).andReturn(okResponse);
+    replay(secondRequestHttpClient);
+
+    // The second request is expected to reuse the nonce and therefore skip the digest handshake
+    HttpClientFactory httpClientFactory = createMock(HttpClientFactory.class);
+    expect(httpClientFactory.makeHttpClient(isA(ClientConnectionManager.class))).andReturn(firstRequestHttpClient);
+    expect(httpClientFactory.makeHttpClient(isA(ClientConnectionManager.class))).andReturn(securityDefaultHttpClient);
+    expect(httpClientFactory.makeHttpClient(isA(ClientConnectionManager.class))).andReturn(secondRequestHttpClient);
+    replay(httpClientFactory);
+
+    client.setHttpClientFactory(httpClientFactory);
+
+    try {
+      HttpResponse response = client.execute(new HttpPost("http://localhost:8080/fake"));
+      Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+      client.close(response);
+      response = client.execute(new HttpPost("http://localhost:8080/fake"));
+      Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+      client.close(response);
+      Assert.assertEquals(0, client.getOpenConnections());
+      verify(httpClientFactory, securityDefaultHttpClient, firstRequestHttpClient, secondRequestHttpClient);
+    } finally {
+      client.deactivate();
+    }
+  }
+
   @Test
   public void failsIfNonceReturnAndNoRetries() throws ClientProtocolException, IOException {
     // Setup bundle context for TrustedHttpClientImpl
@@ -54,6 +54,15 @@ public final class OaiPmhUtil {
     return newDateTimeFormat().format(d);
   }
 
+  /**
+   * Convert to a UTC date and time string with milliseconds, as used in solr date queries.
+   */
+  public static String toUtcMillisecond(Date d) {
+    SimpleDateFormat f = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    f.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return f.format(d);
+  }
+
   /**
    * Convert to a UTC date string containing only the day (granularity is "day").
    */
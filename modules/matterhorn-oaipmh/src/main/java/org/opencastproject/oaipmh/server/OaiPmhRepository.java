@@ -16,6 +16,7 @@
 
 package org.opencastproject.oaipmh.server;
 
+import org.apache.commons.lang.StringUtils;
 import org.opencastproject.oaipmh.Granularity;
 import org.opencastproject.oaipmh.util.XmlGen;
 import org.opencastproject.search.api.SearchQuery;
@@ -23,6 +24,7 @@ import org.opencastproject.search.api.SearchResult;
 import org.opencastproject.search.api.SearchResultItem;
 import org.opencastproject.search.api.SearchService;
 import org.opencastproject.search.impl.solr.Schema;
+import org.opencastproject.util.SolrUtils;
 import org.opencastproject.util.data.Function;
 import org.opencastproject.util.data.Function0;
 import org.opencastproject.util.data.Option;
@@ -32,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -39,11 +42,13 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.opencastproject.oaipmh.OaiPmhUtil.toOaiRepresentation;
 import static org.opencastproject.oaipmh.OaiPmhUtil.toUtc;
 import static org.opencastproject.oaipmh.OaiPmhUtil.toUtcDay;
+import static org.opencastproject.oaipmh.OaiPmhUtil.toUtcMillisecond;
 import static org.opencastproject.oaipmh.OaiPmhUtil.toUtcSecond;
 import static org.opencastproject.oaipmh.server.Functions.isAfter;
 import static org.opencastproject.util.data.Collections.find;
@@ -270,14 +275,9 @@ public abstract class OaiPmhRepository {
       protected ListXmlGen respond(ListGenParams listParams) {
         return new ListXmlGen(listParams, p.getVerb().get()) {
           @Override
-          protected List<Node> createContent() {
-            return map(_(params.getResult().getItems()), __(Node.class), new Function<SearchResultItem, Node>() {
-              @Override
-              public Node apply(SearchResultItem item) {
-                Element metadata = params.getMetadataProvider().createMetadata(OaiPmhRepository.this, item);
-                return record(item, metadata);
-              }
-            });
+          protected Node createItem(SearchResultItem item) {
+            Element metadata = params.getMetadataProvider().createMetadata(OaiPmhRepository.this, item);
+            return record(item, metadata);
           }
         };
       }
@@ -292,13 +292,8 @@ public abstract class OaiPmhRepository {
         // create XML response
         return new ListXmlGen(listParams, p.getVerb().get()) {
           @Override
-          protected List<Node> createContent() {
-            return map(_(params.getResult().getItems()), __(Node.class), new Function<SearchResultItem, Node>() {
-              @Override
-              public Node apply(SearchResultItem item) {
-                return header(item);
-              }
-            });
+          protected Node createItem(SearchResultItem item) {
+            return header(item);
           }
         };
       }
@@ -502,6 +497,8 @@ public abstract class OaiPmhRepository {
         @Override
         public XmlGen some(MetadataProvider metadataProvider) {
           try {
+            final String query;
+            final int cursor;
             final SearchResult result;
             if (!resumptionTokenExists) {
               // start a new query
@@ -513,26 +510,30 @@ public abstract class OaiPmhRepository {
                     until.map(toSolrDateRangeEnd).getOrElse("*")));
               }
               p.getSet().flatMap(convSetSpecToSolrQuery).map(Functions.appendTo(queryFragments));
-              result = getSearchService().getByQuery(mkString(queryFragments, " "), getResultLimit(), 0);
+              query = mkString(queryFragments, " AND ");
+              cursor = 0;
+              result = getSearchService().getByQuery(newPageQuery(query, getResultLimit()));
             } else {
-              // resume query
-              result = getSavedQuery(p.getResumptionToken().get()).fold(new Option.Match<ResumableQuery, SearchResult>() {
-                @Override
-                public SearchResult some(ResumableQuery rq) {
-                  return getSearchService().getByQuery(rq.getQuery(), rq.getLimit(), rq.getOffset() + rq.getLimit());
-                }
-
-                @Override
-                public SearchResult none() {
-                  // no resumable query found
-                  throw new BadResumptionTokenException();
-                }
-              });
+              // resume query after the last item of the previous page
+              final ResumableQuery rq = getSavedQuery(p.getResumptionToken().get()).getOrElse(
+                  new Function0<ResumableQuery>() {
+                    @Override
+                    public ResumableQuery apply() {
+                      // no resumable query found
+                      throw new BadResumptionTokenException();
+                    }
+                  });
+              query = rq.getQuery();
+              cursor = rq.getCursor();
+              result = getSearchService().getByQuery(newPageQuery(
+                  appendCursor(query, rq.getLastModified(), rq.getLastId()), rq.getLimit()));
             }
             if (result.size() > 0) {
               return respond(new ListGenParams(
                   OaiPmhRepository.this,
                   result,
+                  query,
+                  cursor,
                   metadataProvider,
                   metadataPrefix,
                   p.getResumptionToken(),
@@ -600,26 +601,80 @@ public abstract class OaiPmhRepository {
     }
 
     /**
-     * OAI XML response generation environment for list responses.
+     * Create a query for a page of items in a stable order.
+     */
+    private SearchQuery newPageQuery(String query, int limit) {
+      return new SearchQuery().withQuery(query).withModificationDateAndIdSort(true).withLimit(limit);
+    }
+
+    /**
+     * Restrict a query to the items that follow the given item in the order of {@link #newPageQuery(String, int)}.
+     */
+    private String appendCursor(String query, Date lastModified, String lastId) {
+      final String modified = toUtcMillisecond(lastModified);
+      final String cursor = String.format("(%s:{%s TO *} OR (%s:[%s TO %s] AND %s:{%s TO *}))",
+          Schema.OC_MODIFIED, modified,
+          Schema.OC_MODIFIED, modified, modified,
+          Schema.ID, SolrUtils.clean(lastId));
+      return StringUtils.isBlank(query) ? cursor : "(" + query + ") AND " + cursor;
+    }
+
+    /**
+     * OAI XML response generation environment for list responses. The items are streamed to the client
+     * one by one when the response is written to an output stream.
      */
     abstract class ListXmlGen extends OaiVerbXmlGen {
 
       protected final ListGenParams params;
 
+      /** Whether the items are streamed instead of being added to the document */
+      private boolean streaming = false;
+
       ListXmlGen(ListGenParams p, String verb) {
         super(p.getRepository(), verb);
         this.params = p;
       }
 
       /**
-       * Implement to create your content. Gets placed as children of the verb node.
+       * Implement to create the node of an item. Gets placed as child of the verb node.
        */
-      protected abstract List<Node> createContent();
+      protected abstract Node createItem(SearchResultItem item);
+
+      @Override
+      public void generate(OutputStream out) {
+        streaming = true;
+        final SearchResultItem[] items = params.getResult().getItems();
+        generate(out, new Iterator<Node>() {
+          private int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return next < items.length;
+          }
+
+          @Override
+          public Node next() {
+            return createItem(items[next++]);
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        });
+      }
 
       @Override
       public Element create() {
-        List<Node> content = createContent();
-        content.add(resumptionToken(params.getResumptionToken(), params.getMetadataPrefix(), params.getResult()));
+        final List<Node> content = new ArrayList<Node>();
+        if (streaming) {
+          content.add($stream());
+        } else {
+          for (SearchResultItem item : params.getResult().getItems())
+            content.add(createItem(item));
+        }
+        content.add(resumptionToken(params.getResumptionToken(), params.getMetadataPrefix(), params.getQuery(),
+            params.getCursor(), params.getResult()));
         return oai(
             request(
                 $a("metadataPrefix", params.getMetadataPrefix()),
@@ -645,6 +700,10 @@ final class ListGenParams {
 
   private final SearchResult result;
 
+  private final String query;
+
+  private final int cursor;
+
   private final MetadataProvider metadataProvider;
 
   private final String metadataPrefix;
@@ -658,11 +717,14 @@ final class ListGenParams {
   private final Option<String> set;
 
   // CHECKSTYLE:OFF
-  ListGenParams(OaiPmhRepository repository, SearchResult result, MetadataProvider metadataProvider,
+  ListGenParams(OaiPmhRepository repository, SearchResult result, String query, int cursor,
+                MetadataProvider metadataProvider,
                 String metadataPrefix,
                 Option<String> resumptionToken, Option<Date> from, Option<Date> until, Option<String> set) {
     this.repository = repository;
     this.result = result;
+    this.query = query;
+    this.cursor = cursor;
     this.metadataProvider = metadataProvider;
     this.resumptionToken = resumptionToken;
     this.metadataPrefix = metadataPrefix;
@@ -680,6 +742,20 @@ final class ListGenParams {
     return result;
   }
 
+  /**
+   * Return the query without the cursor condition.
+   */
+  public String getQuery() {
+    return query;
+  }
+
+  /**
+   * Return the number of items returned before the current page.
+   */
+  public int getCursor() {
+    return cursor;
+  }
+
   public MetadataProvider getMetadataProvider() {
     return metadataProvider;
   }
@@ -105,21 +105,29 @@ public abstract class OaiXmlGen extends XmlGen {
 
   /**
    * Create the resumption token and store the query.
+   *
+   * @param resumptionToken
+   *        the token of the current page, if it is not the first one
+   * @param query
+   *        the query without the cursor condition
+   * @param cursor
+   *        the number of items returned before the current page
+   * @param result
+   *        the current page
    */
-  Node resumptionToken(final Option<String> resumptionToken, final String metadataPrefix, final SearchResult result) {
-    final int offset;
-    if (result.getOffset() <= Integer.MAX_VALUE) {
-      offset = (int) result.getOffset();
-    } else {
-      throw new RuntimeException("offset too big");
-    }
+  Node resumptionToken(final Option<String> resumptionToken, final String metadataPrefix, final String query,
+                       final int cursor, final SearchResult result) {
+    final SearchResultItem[] items = result.getItems();
     // compute the token value...
     final Option<Option<String>> token;
-    if (offset + result.size() < result.getTotalSize()) {
+    if (items.length > 0 && result.size() < result.getTotalSize()) {
       // more to come...
-      token = some(some(repository.saveQuery(new ResumableQuery(result.getQuery(),
+      final SearchResultItem last = items[items.length - 1];
+      token = some(some(repository.saveQuery(new ResumableQuery(query,
           metadataPrefix,
-          offset,
+          last.getModified(),
+          last.getId(),
+          cursor + items.length,
           repository.getResultLimit()))));
     } else if (resumptionToken.isSome()) {
       // last page reached
@@ -133,8 +141,8 @@ public abstract class OaiXmlGen extends XmlGen {
           @Override
           public Node apply(Option<String> token) {
             return $e("resumptionToken",
-                $a("completeListSize", Long.toString(result.getTotalSize())),
-                $a("cursor", Integer.toString(offset)),
+                $a("completeListSize", Long.toString(cursor + result.getTotalSize())),
+                $a("cursor", Integer.toString(cursor)),
                 token.map(mkText).getOrElse(nodeZero));
           }
         })
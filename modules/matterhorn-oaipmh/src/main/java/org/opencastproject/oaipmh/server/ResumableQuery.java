@@ -16,19 +16,27 @@
 
 package org.opencastproject.oaipmh.server;
 
+import java.util.Date;
+
 /**
- * Stores information about a query with a paged response so that the next page can be retrieved.
+ * Stores information about a query with a paged response so that the next page can be retrieved. Instead of an offset
+ * the query remembers the sort key of the last item returned, i.e. its modification date and identifier, so the next
+ * page is found without skipping all previous results and items added in the meantime do not shift the pages.
  */
 class ResumableQuery {
   private final String query;
   private final String metadataPrefix;
-  private final int offset;
+  private final Date lastModified;
+  private final String lastId;
+  private final int cursor;
   private final int limit;
 
-  ResumableQuery(String query, String metadataPrefix, int offset, int limit) {
+  ResumableQuery(String query, String metadataPrefix, Date lastModified, String lastId, int cursor, int limit) {
     this.query = query;
     this.metadataPrefix = metadataPrefix;
-    this.offset = offset;
+    this.lastModified = lastModified;
+    this.lastId = lastId;
+    this.cursor = cursor;
     this.limit = limit;
   }
 
@@ -36,8 +44,25 @@ class ResumableQuery {
     return query;
   }
 
-  int getOffset() {
-    return offset;
+  /**
+   * Return the modification date of the last item returned so far.
+   */
+  Date getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Return the identifier of the last item returned so far.
+   */
+  String getLastId() {
+    return lastId;
+  }
+
+  /**
+   * Return the number of items returned so far.
+   */
+  int getCursor() {
+    return cursor;
   }
 
   int getLimit() {
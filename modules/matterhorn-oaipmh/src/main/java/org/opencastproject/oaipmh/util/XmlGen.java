@@ -37,21 +37,30 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.opencastproject.util.data.Collections.flatMap;
 
 /**
  * DOM based XML generation environment. Implement {@link #create()} to create the XML.
- * Serialize to an output stream with {@link #generate(java.io.OutputStream)}.
+ * Serialize to an output stream with {@link #generate(java.io.OutputStream)}. Large documents may be streamed with
+ * {@link #generate(java.io.OutputStream, java.util.Iterator)} instead.
  *
  * todo document the node creator functions
  */
 public abstract class XmlGen {
+  /** Content of the comment that marks the position of the streamed nodes */
+  private static final String STREAM_MARKER = "xmlgen-stream";
+
   private Document document;
 
   /**
@@ -70,20 +79,26 @@ public abstract class XmlGen {
 
   private void write(OutputStream out) {
     try {
-      TransformerFactory transformerFactory = TransformerFactory.newInstance();
-      Transformer transformer = transformerFactory.newTransformer();
-      transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-      transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-      transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
       DOMSource source = new DOMSource(document);
       StreamResult result = new StreamResult(out);
-      transformer.transform(source, result);
+      newTransformer(false).transform(source, result);
     } catch (TransformerException e) {
       throw new RuntimeException(e);
     }
   }
 
+  private static Transformer newTransformer(boolean fragment) throws TransformerException {
+    TransformerFactory transformerFactory = TransformerFactory.newInstance();
+    Transformer transformer = transformerFactory.newTransformer();
+    transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+    transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+    transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+    if (fragment)
+      transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+    return transformer;
+  }
+
   /**
    * Generate the XML and write it to <code>out</code>.
    */
@@ -92,6 +107,36 @@ public abstract class XmlGen {
     write(out);
   }
 
+  /**
+   * Generate the XML and write it to <code>out</code>, streaming <code>nodes</code> in place of the
+   * {@linkplain #$stream() stream placeholder} contained in the DOM returned by {@link #create()}.
+   * Each node is serialized before the next one is requested from the iterator, so the nodes
+   * are never held in memory all at once.
+   */
+  protected void generate(OutputStream out, Iterator<Node> nodes) {
+    document.appendChild(create());
+    try {
+      final StringWriter envelope = new StringWriter();
+      newTransformer(false).transform(new DOMSource(document), new StreamResult(envelope));
+      final String marker = "<!--" + STREAM_MARKER + "-->";
+      final int position = envelope.getBuffer().indexOf(marker);
+      if (position < 0)
+        throw new IllegalStateException("The document does not contain a stream placeholder");
+      final Writer writer = new OutputStreamWriter(out, "UTF-8");
+      writer.write(envelope.getBuffer().substring(0, position));
+      final Transformer fragmentTransformer = newTransformer(true);
+      while (nodes.hasNext()) {
+        fragmentTransformer.transform(new DOMSource(nodes.next()), new StreamResult(writer));
+      }
+      writer.write(envelope.getBuffer().substring(position + marker.length()));
+      writer.flush();
+    } catch (TransformerException e) {
+      throw new RuntimeException(e);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Generate the document.
    */
@@ -236,6 +281,13 @@ public abstract class XmlGen {
     }
   }
 
+  /**
+   * Create the placeholder for the nodes streamed by {@link #generate(java.io.OutputStream, java.util.Iterator)}.
+   */
+  protected Node $stream() {
+    return document.createComment(STREAM_MARKER);
+  }
+
   protected Node $txt(String text) {
     return document.createTextNode(text);
   }
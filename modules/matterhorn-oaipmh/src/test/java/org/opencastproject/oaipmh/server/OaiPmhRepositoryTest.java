@@ -28,17 +28,21 @@ import org.opencastproject.search.api.SearchService;
 import org.opencastproject.util.data.NonEmptyList;
 import org.opencastproject.util.data.Option;
 
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
 
 import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -119,20 +123,14 @@ public class OaiPmhRepositoryTest {
             newSearchResultItem("id-4", newDate(2011, 5, 13), newDate(2011, 5, 13)),
             newSearchResultItem("id-5", newDate(2011, 5, 14), newDate(2011, 5, 14)) };
     // setup search service mock
-    // this setup is really ugly since it needs knowledge about implementation details
     SearchService search = EasyMock.createMock(SearchService.class);
-    SearchResult result = EasyMock.createMock(SearchResult.class);
-    EasyMock.expect(search.getByQuery(EasyMock.<SearchQuery> anyObject())).andReturn(result).anyTimes();
-    EasyMock.expect(search.getByQuery(EasyMock.<String> anyObject(), EasyMock.anyInt(), EasyMock.anyInt()))
-            .andReturn(result).anyTimes();
-    EasyMock.expect(result.getItems()).andReturn(items1).andReturn(items2);
-    EasyMock.expect(result.getQuery()).andReturn("").anyTimes();
-    EasyMock.expect(result.getLimit()).andReturn(RESULT_LIMIT).anyTimes();
-    EasyMock.expect(result.getOffset()).andReturn(0L).times(2).andReturn(RESULT_LIMIT).anyTimes();
-    EasyMock.expect(result.size()).andReturn((long) items1.length).times(2).andReturn((long) items2.length).times(2);
-    EasyMock.expect(result.getTotalSize()).andReturn((long) items1.length + items2.length).anyTimes();
+    Capture<SearchQuery> query1 = new Capture<SearchQuery>();
+    Capture<SearchQuery> query2 = new Capture<SearchQuery>();
+    // the first page knows about all items, the second one only about the items after the cursor
+    EasyMock.expect(search.getByQuery(EasyMock.capture(query1))).andReturn(
+            newSearchResult(items1, items1.length + items2.length));
+    EasyMock.expect(search.getByQuery(EasyMock.capture(query2))).andReturn(newSearchResult(items2, items2.length));
     EasyMock.replay(search);
-    EasyMock.replay(result);
     // do testing
     OaiPmhRepository repo = newRepo(search);
     Document doc1 = repo.selectVerb(newParams("ListIdentifiers", null, "oai_dc", null, null, null)).generate();
@@ -144,6 +142,9 @@ public class OaiPmhRepositoryTest {
     assertXpathEquals(doc1, "id-1", "//ListIdentifiers/header[1]/identifier/text()");
     assertXpathEquals(doc1, "id-2", "//ListIdentifiers/header[2]/identifier/text()");
     assertXpathEquals(doc1, "id-3", "//ListIdentifiers/header[3]/identifier/text()");
+    assertTrue(query1.getValue().isSortByModificationDateAndId());
+    assertEquals(RESULT_LIMIT, query1.getValue().getLimit());
+    assertEquals(0, query1.getValue().getOffset());
     // resume query
     Document doc2 = repo.selectVerb(newParams("ListIdentifiers", null, null, null, null, "r-token")).generate();
     assertEquals(2.0, xpath(doc2, "count(//ListIdentifiers/header)", XPathConstants.NUMBER));
@@ -152,9 +153,30 @@ public class OaiPmhRepositoryTest {
     // token must be empty now since there are no more pages
     assertXpathEquals(doc2, "", "//ListIdentifiers/resumptionToken/text()");
     assertXpathExists(doc2, "//ListIdentifiers/resumptionToken[@cursor=" + RESULT_LIMIT + "]");
+    assertXpathExists(doc2, "//ListIdentifiers/resumptionToken[@completeListSize=" + (items1.length + items2.length)
+            + "]");
+    // the second page starts after the last item of the first page instead of at an offset
+    assertTrue(query2.getValue().isSortByModificationDateAndId());
+    assertEquals(0, query2.getValue().getOffset());
+    assertTrue(query2.getValue().getQuery().contains("oc_modified:{2011-05-12T00:00:00.000Z TO *}"));
+    assertTrue(query2.getValue().getQuery().contains("id:{id\\-3 TO *}"));
     EasyMock.verify(repo.getSearchService());
   }
 
+  @Test
+  public void testStreaming() throws Exception {
+    OaiPmhRepository repo = newRepo(newSearchServiceMock(newSearchResultItem("id-1", new Date(), new Date()),
+            newSearchResultItem("id-2", newDate(2011, 5, 30), newDate(2011, 6, 1))));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    repo.selectVerb(newParams("ListRecords", null, "oai_dc", null, null, null)).generate(out);
+    // parse without namespaces to be able to use the same paths as for the generated DOM
+    Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+    assertXpathExists(doc, "//ListRecords/record/header[identifier=\"id-1\"]");
+    assertXpathExists(doc, "//ListRecords/record/header[identifier=\"id-2\"]");
+    assertEquals(2.0, xpath(doc, "count(//ListRecords/record/metadata)", XPathConstants.NUMBER));
+    assertEquals(0.0, xpath(doc, "count(//comment())", XPathConstants.NUMBER));
+  }
+
   // --
 
   private static Object xpath(Document document, String path, QName returnType) {
@@ -229,13 +251,23 @@ public class OaiPmhRepositoryTest {
     EasyMock.expect(search.getByQuery(EasyMock.<SearchQuery> anyObject())).andReturn(result).anyTimes();
     EasyMock.expect(search.getByQuery(EasyMock.<String> anyObject(), EasyMock.anyInt(), EasyMock.anyInt()))
             .andReturn(result).anyTimes();
-    EasyMock.expect(result.getItems()).andReturn(items);
-    EasyMock.expect(result.size()).andReturn((long) items.length);
+    EasyMock.expect(result.getItems()).andReturn(items).anyTimes();
+    EasyMock.expect(result.size()).andReturn((long) items.length).anyTimes();
+    EasyMock.expect(result.getTotalSize()).andReturn((long) items.length).anyTimes();
     EasyMock.replay(search);
     EasyMock.replay(result);
     return search;
   }
 
+  private static SearchResult newSearchResult(SearchResultItem[] items, long totalSize) {
+    SearchResult result = EasyMock.createNiceMock(SearchResult.class);
+    EasyMock.expect(result.getItems()).andReturn(items).anyTimes();
+    EasyMock.expect(result.size()).andReturn((long) items.length).anyTimes();
+    EasyMock.expect(result.getTotalSize()).andReturn(totalSize).anyTimes();
+    EasyMock.replay(result);
+    return result;
+  }
+
   private static SearchResultItemImpl newSearchResultItem(String id, Date created, Date modified) {
     SearchResultItemImpl item = new SearchResultItemImpl();
     item.setDcCreated(created);
@@ -246,6 +278,8 @@ public class OaiPmhRepositoryTest {
 
   private static OaiPmhRepository newRepo(final SearchService searchService) {
     return new OaiPmhRepository() {
+      private ResumableQuery savedQuery;
+
       @Override
       public Granularity getRepositoryTimeGranularity() {
         return Granularity.DAY;
@@ -273,12 +307,13 @@ public class OaiPmhRepositoryTest {
 
       @Override
       public String saveQuery(ResumableQuery query) {
+        savedQuery = query;
         return "r-token";
       }
 
       @Override
       public Option<ResumableQuery> getSavedQuery(String resumptionToken) {
-        return Option.some(new ResumableQuery("", "oai_dc", 0, (int) RESULT_LIMIT));
+        return Option.option(savedQuery);
       }
 
       @Override
@@ -0,0 +1,389 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.scheduler.impl;
+
+import static org.opencastproject.scheduler.impl.Util.getEventIdentifier;
+
+import org.opencastproject.metadata.dublincore.DCMIPeriod;
+import org.opencastproject.metadata.dublincore.DublinCore;
+import org.opencastproject.metadata.dublincore.DublinCoreCatalog;
+import org.opencastproject.metadata.dublincore.EncodingSchemeUtils;
+import org.opencastproject.scheduler.api.SchedulerQuery;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory cache of the recording calendars of the capture agents.
+ * <p>
+ * The cache holds the upcoming events of every capture agent together with their rendered iCalendar VEVENT entries.
+ * Adding, updating or removing an event only discards the entry of that event, which is rendered again the next time
+ * a calendar containing it is requested. Calendars are assembled from the rendered entries on every request, so that
+ * each capture agent can use its own cutoff date without bypassing the cache.
+ * <p>
+ * Events that have ended are dropped, also when the query has no end date. This does not change the calendars, since
+ * {@link CalendarGenerator} leaves ended events out of every calendar, including the ones built from the search index.
+ * <p>
+ * Every entry carries the date of its last modification. The modification date of a calendar is the latest
+ * modification date of its entries, or the date the last event has been removed from the capture agent, whichever is
+ * later. Apart from ended events, which count as removed, this matches the modification date the search index
+ * reports for the same query.
+ */
+public class CalendarCache {
+
+  /** Orders entries by start date */
+  private static final Comparator<Entry> START_COMPARATOR = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      if (a.start != b.start)
+        return a.start < b.start ? -1 : 1;
+      return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+    }
+  };
+
+  /** The events by identifier */
+  private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+
+  /** The events by capture agent */
+  private final Map<String, Map<Long, Entry>> agents = new HashMap<String, Map<Long, Entry>>();
+
+  /** The date an event has last been removed from a capture agent's calendar, by capture agent */
+  private final Map<String, Long> removed = new HashMap<String, Long>();
+
+  /** The latest modification date handed out, used to keep modification dates strictly increasing */
+  private long lastModified = 0L;
+
+  /**
+   * Returns <code>true</code> if the query asks for the calendar of a single capture agent, optionally restricted to a
+   * series and to the events that start before a cutoff date. These are the queries answered by the cache.
+   * 
+   * @param query
+   *          the query
+   * @return <code>true</code> if the query can be answered by the cache
+   */
+  public static boolean isAgentCalendarQuery(SchedulerQuery query) {
+    return StringUtils.isNotBlank(query.getSpatial()) && query.getText() == null && query.getIdentifier() == null
+            && query.getIdsList() == null && query.getTitle() == null && query.getCreator() == null
+            && query.getContributor() == null && query.getLanguage() == null && query.getLicense() == null
+            && query.getSubject() == null && query.getPublisher() == null && query.getAbstract() == null
+            && query.getDescription() == null && query.getCreatedFrom() == null && query.getCreatedTo() == null
+            && query.getStartsFrom() == null && query.getEndsTo() == null && query.getRightsHolder() == null;
+  }
+
+  /**
+   * Adds the event or updates it, discarding its rendered entry. Events without capture agent or period are removed
+   * from the cache.
+   * 
+   * @param event
+   *          the event catalog, with the identifier set
+   * @param now
+   *          the current date
+   */
+  public synchronized void put(DublinCoreCatalog event, Date now) {
+    long eventId = getEventIdentifier(event);
+    String agent = StringUtils.trimToNull(event.getFirst(DublinCore.PROPERTY_SPATIAL));
+    DCMIPeriod period = null;
+    try {
+      period = EncodingSchemeUtils.decodeMandatoryPeriod(event.getFirst(DublinCore.PROPERTY_TEMPORAL));
+    } catch (Exception e) {
+      period = null;
+    }
+    if (agent == null || period == null || !period.hasStart() || !period.hasEnd()) {
+      remove(eventId, now);
+      return;
+    }
+    String seriesId = StringUtils.trimToNull(event.getFirst(DublinCore.PROPERTY_IS_PART_OF));
+    put(eventId, agent, seriesId, period.getStart().getTime(), period.getEnd().getTime(), now);
+  }
+
+  /**
+   * Adds the event or updates it, discarding its rendered entry.
+   * 
+   * @param eventId
+   *          the event identifier
+   * @param agent
+   *          the capture agent
+   * @param seriesId
+   *          the series identifier, or <code>null</code>
+   * @param start
+   *          the start date in milliseconds
+   * @param end
+   *          the end date in milliseconds
+   * @param now
+   *          the current date
+   */
+  public synchronized void put(long eventId, String agent, String seriesId, long start, long end, Date now) {
+    put(new Entry(eventId, agent, seriesId, start, end, nextModified(now)));
+  }
+
+  /**
+   * Adds the events or updates them.
+   * 
+   * @param events
+   *          the event catalogs, with the identifiers set
+   * @param now
+   *          the current date
+   */
+  public synchronized void putAll(List<DublinCoreCatalog> events, Date now) {
+    for (DublinCoreCatalog event : events) {
+      put(event, now);
+    }
+  }
+
+  /**
+   * Discards the rendered entry of the event, e.g. after its capture agent properties have changed.
+   * 
+   * @param eventId
+   *          the event identifier
+   * @param now
+   *          the current date
+   */
+  public synchronized void invalidate(long eventId, Date now) {
+    Entry entry = entries.get(eventId);
+    if (entry != null)
+      put(entry.modified(null, nextModified(now)));
+  }
+
+  /**
+   * Discards the rendered entries of all events of the series, e.g. after the series metadata has changed.
+   * 
+   * @param seriesId
+   *          the series identifier
+   * @param now
+   *          the current date
+   */
+  public synchronized void invalidateSeries(String seriesId, Date now) {
+    if (seriesId == null)
+      return;
+    List<Entry> stale = new ArrayList<Entry>();
+    for (Entry entry : entries.values()) {
+      if (seriesId.equals(entry.seriesId))
+        stale.add(entry);
+    }
+    long modified = nextModified(now);
+    for (Entry entry : stale) {
+      put(entry.modified(null, modified));
+    }
+  }
+
+  /**
+   * Removes the event from the cache.
+   * 
+   * @param eventId
+   *          the event identifier
+   * @param now
+   *          the current date
+   */
+  public synchronized void remove(long eventId, Date now) {
+    Entry entry = entries.remove(eventId);
+    if (entry == null)
+      return;
+    agents.get(entry.agent).remove(eventId);
+    removed.put(entry.agent, nextModified(now));
+  }
+
+  /** Removes all events from the cache. */
+  public synchronized void clear() {
+    entries.clear();
+    agents.clear();
+    removed.clear();
+  }
+
+  /**
+   * Returns the number of events in the cache.
+   * 
+   * @return the number of events
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the events of the capture agent's calendar, sorted by start date. Events that have ended are dropped from
+   * the cache.
+   * 
+   * @param agent
+   *          the capture agent
+   * @param seriesId
+   *          the series to restrict the calendar to, or <code>null</code>
+   * @param cutoff
+   *          the date after which events are left out of the calendar, or <code>null</code>
+   * @param now
+   *          the current date
+   * @return the calendar entries, some of which may not have been rendered yet
+   */
+  public synchronized List<Entry> getEntries(String agent, String seriesId, Date cutoff, Date now) {
+    List<Entry> result = new ArrayList<Entry>();
+    for (Entry entry : select(agent, seriesId, cutoff, now)) {
+      result.add(entry);
+    }
+    Collections.sort(result, START_COMPARATOR);
+    return result;
+  }
+
+  /**
+   * Returns the modification date of the capture agent's calendar.
+   * 
+   * @param agent
+   *          the capture agent
+   * @param seriesId
+   *          the series to restrict the calendar to, or <code>null</code>
+   * @param cutoff
+   *          the date after which events are left out of the calendar, or <code>null</code>
+   * @param now
+   *          the current date
+   * @return the modification date, or <code>null</code> if the calendar has never been modified
+   */
+  public synchronized Date getLastModified(String agent, String seriesId, Date cutoff, Date now) {
+    Long lastRemoved = removed.get(agent);
+    long result = lastRemoved != null ? lastRemoved : -1L;
+    for (Entry entry : select(agent, seriesId, cutoff, now)) {
+      result = Math.max(result, entry.modified);
+    }
+    return result >= 0 ? new Date(result) : null;
+  }
+
+  /**
+   * Stores the rendered VEVENT of the entry, unless the event has been modified since the entry has been handed out.
+   * 
+   * @param entry
+   *          the entry that has been rendered
+   * @param vevent
+   *          the rendered VEVENT
+   */
+  public synchronized void setRendered(Entry entry, String vevent) {
+    if (entries.get(entry.id) == entry)
+      put(entry.modified(vevent, entry.modified));
+  }
+
+  /**
+   * Returns the calendar entries of the capture agent that match the series and cutoff date, dropping events that have
+   * ended. Dropping an event counts as a modification of the capture agent's calendar.
+   */
+  private List<Entry> select(String agent, String seriesId, Date cutoff, Date now) {
+    Map<Long, Entry> events = agents.get(agent);
+    if (events == null)
+      return Collections.emptyList();
+    List<Entry> result = new ArrayList<Entry>();
+    for (Iterator<Entry> i = events.values().iterator(); i.hasNext();) {
+      Entry entry = i.next();
+      if (entry.end < now.getTime()) {
+        i.remove();
+        entries.remove(entry.id);
+        removed.put(agent, nextModified(now));
+      } else if ((seriesId == null || seriesId.equals(entry.seriesId))
+              && (cutoff == null || entry.start <= cutoff.getTime())) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  /** Stores the entry, moving it to its new capture agent if it has changed. */
+  private void put(Entry entry) {
+    Entry previous = entries.put(entry.id, entry);
+    if (previous != null && !previous.agent.equals(entry.agent)) {
+      agents.get(previous.agent).remove(entry.id);
+      removed.put(previous.agent, entry.modified);
+    }
+    Map<Long, Entry> events = agents.get(entry.agent);
+    if (events == null) {
+      events = new HashMap<Long, Entry>();
+      agents.put(entry.agent, events);
+    }
+    events.put(entry.id, entry);
+  }
+
+  /** Returns a modification date that is later than all modification dates handed out before. */
+  private long nextModified(Date now) {
+    lastModified = Math.max(lastModified + 1, now.getTime());
+    return lastModified;
+  }
+
+  /**
+   * An event in a capture agent's calendar. Entries are immutable.
+   */
+  public static final class Entry {
+
+    /** The event identifier */
+    private final long id;
+
+    /** The capture agent */
+    private final String agent;
+
+    /** The series identifier, or <code>null</code> */
+    private final String seriesId;
+
+    /** The start date */
+    private final long start;
+
+    /** The end date */
+    private final long end;
+
+    /** The modification date */
+    private final long modified;
+
+    /** The rendered VEVENT, or <code>null</code> if it has not been rendered yet */
+    private final String vevent;
+
+    Entry(long id, String agent, String seriesId, long start, long end, long modified) {
+      this(id, agent, seriesId, start, end, modified, null);
+    }
+
+    private Entry(long id, String agent, String seriesId, long start, long end, long modified, String vevent) {
+      this.id = id;
+      this.agent = agent;
+      this.seriesId = seriesId;
+      this.start = start;
+      this.end = end;
+      this.modified = modified;
+      this.vevent = vevent;
+    }
+
+    /**
+     * Returns the event identifier.
+     * 
+     * @return the identifier
+     */
+    public long getId() {
+      return id;
+    }
+
+    /**
+     * Returns the rendered VEVENT.
+     * 
+     * @return the VEVENT, or <code>null</code> if the event needs to be rendered
+     */
+    public String getRendered() {
+      return vevent;
+    }
+
+    /** Returns a copy of this entry with the given VEVENT and modification date. */
+    private Entry modified(String vevent, long modified) {
+      return new Entry(id, agent, seriesId, start, end, modified, vevent);
+    }
+
+  }
+
+}
@@ -0,0 +1,309 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.scheduler.impl;
+
+import static org.opencastproject.scheduler.impl.Util.getEventIdentifier;
+
+import org.opencastproject.metadata.dublincore.DCMIPeriod;
+import org.opencastproject.metadata.dublincore.DublinCore;
+import org.opencastproject.metadata.dublincore.DublinCoreCatalog;
+import org.opencastproject.metadata.dublincore.EncodingSchemeUtils;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * In-memory index of the time periods that are booked on each capture agent, used to detect scheduling conflicts
+ * without querying the search index.
+ * <p>
+ * The events of a capture agent are kept sorted by start date, together with a tree holding the latest end date of
+ * every range of events. A conflict check therefore only visits the events that actually overlap the requested period,
+ * and all occurrences of a recurring event are checked in a single call. The sorted arrays are rebuilt on the first
+ * query after a modification, so adding a whole series of events costs a single rebuild.
+ * <p>
+ * Periods are closed, i.e. an event that ends at the very moment another one starts is considered to be in conflict
+ * with it.
+ */
+public class EventIntervalIndex {
+
+  /** The booked periods by capture agent */
+  private final Map<String, Agent> agents = new HashMap<String, Agent>();
+
+  /** The capture agent of each event */
+  private final Map<Long, String> eventAgents = new HashMap<Long, String>();
+
+  /**
+   * Adds the event or updates its period. Events without capture agent or period are removed from the index.
+   * 
+   * @param event
+   *          the event catalog, with the identifier set
+   */
+  public synchronized void put(DublinCoreCatalog event) {
+    long eventId = getEventIdentifier(event);
+    String agent = StringUtils.trimToNull(event.getFirst(DublinCore.PROPERTY_SPATIAL));
+    DCMIPeriod period = null;
+    try {
+      period = EncodingSchemeUtils.decodeMandatoryPeriod(event.getFirst(DublinCore.PROPERTY_TEMPORAL));
+    } catch (Exception e) {
+      period = null;
+    }
+    if (agent == null || period == null || !period.hasStart() || !period.hasEnd()) {
+      remove(eventId);
+      return;
+    }
+    put(eventId, agent, period.getStart().getTime(), period.getEnd().getTime());
+  }
+
+  /**
+   * Adds the events or updates their periods.
+   * 
+   * @param events
+   *          the event catalogs, with the identifiers set
+   */
+  public synchronized void putAll(List<DublinCoreCatalog> events) {
+    for (DublinCoreCatalog event : events) {
+      put(event);
+    }
+  }
+
+  /**
+   * Adds the event or updates its period.
+   * 
+   * @param eventId
+   *          the event identifier
+   * @param agent
+   *          the capture agent
+   * @param start
+   *          the start of the event in milliseconds
+   * @param end
+   *          the end of the event in milliseconds
+   */
+  public synchronized void put(long eventId, String agent, long start, long end) {
+    String previous = eventAgents.put(eventId, agent);
+    if (previous != null && !previous.equals(agent)) {
+      Agent intervals = agents.get(previous);
+      intervals.remove(eventId);
+      if (intervals.isEmpty())
+        agents.remove(previous);
+    }
+    Agent intervals = agents.get(agent);
+    if (intervals == null) {
+      intervals = new Agent();
+      agents.put(agent, intervals);
+    }
+    intervals.put(eventId, start, end);
+  }
+
+  /**
+   * Removes the event from the index.
+   * 
+   * @param eventId
+   *          the event identifier
+   */
+  public synchronized void remove(long eventId) {
+    String agent = eventAgents.remove(eventId);
+    if (agent == null)
+      return;
+    Agent intervals = agents.get(agent);
+    intervals.remove(eventId);
+    if (intervals.isEmpty())
+      agents.remove(agent);
+  }
+
+  /**
+   * Removes all events from the index.
+   */
+  public synchronized void clear() {
+    agents.clear();
+    eventAgents.clear();
+  }
+
+  /**
+   * Returns the number of events in the index.
+   * 
+   * @return the number of events
+   */
+  public synchronized int size() {
+    return eventAgents.size();
+  }
+
+  /**
+   * Returns the events on the capture agent that overlap the period.
+   * 
+   * @param agent
+   *          the capture agent
+   * @param start
+   *          the start of the period
+   * @param end
+   *          the end of the period
+   * @return the identifiers of the conflicting events
+   */
+  public SortedSet<Long> findConflicts(String agent, Date start, Date end) {
+    return findConflicts(agent, Arrays.asList(new DCMIPeriod(start, end)));
+  }
+
+  /**
+   * Returns the events on the capture agent that overlap any of the periods, e. g. the occurrences of a recurring
+   * event.
+   * 
+   * @param agent
+   *          the capture agent
+   * @param periods
+   *          the periods
+   * @return the identifiers of the conflicting events
+   */
+  public synchronized SortedSet<Long> findConflicts(String agent, List<DCMIPeriod> periods) {
+    SortedSet<Long> conflicts = new TreeSet<Long>();
+    Agent intervals = agents.get(agent);
+    if (intervals == null)
+      return conflicts;
+    for (DCMIPeriod period : periods) {
+      intervals.find(period.getStart().getTime(), period.getEnd().getTime(), conflicts);
+    }
+    return conflicts;
+  }
+
+  /**
+   * The periods booked on a single capture agent.
+   */
+  private static final class Agent {
+
+    /** The periods by event identifier, as start and end */
+    private final Map<Long, long[]> periods = new HashMap<Long, long[]>();
+
+    /** The event identifiers, sorted by start date, or <code>null</code> if they need to be sorted again */
+    private long[] ids = null;
+
+    /** The start dates in ascending order */
+    private long[] starts;
+
+    /** The end dates, in the order of the start dates */
+    private long[] ends;
+
+    /** Binary tree over the end dates, with the latest end date of each subtree. The root is at index 1. */
+    private long[] maxEnds;
+
+    /** Index of the first leaf of the tree */
+    private int leaves;
+
+    void put(long eventId, long start, long end) {
+      periods.put(eventId, new long[] { start, end });
+      ids = null;
+    }
+
+    void remove(long eventId) {
+      if (periods.remove(eventId) != null)
+        ids = null;
+    }
+
+    boolean isEmpty() {
+      return periods.isEmpty();
+    }
+
+    /**
+     * Adds the events that overlap the period to the result.
+     */
+    void find(long start, long end, SortedSet<Long> result) {
+      if (ids == null)
+        build();
+      // Only events starting before the end of the period may overlap it
+      int count = upperBound(starts, end);
+      if (count > 0)
+        collect(1, 0, leaves, count, start, result);
+    }
+
+    /**
+     * Adds the events from the subtree covering the events <code>[from, to)</code> that are among the first
+     * <code>count</code> events and end at or after <code>start</code>.
+     */
+    private void collect(int node, int from, int to, int count, long start, SortedSet<Long> result) {
+      if (from >= count || maxEnds[node] < start)
+        return;
+      if (to - from == 1) {
+        result.add(ids[from]);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      collect(2 * node, from, middle, count, start, result);
+      collect(2 * node + 1, middle, to, count, start, result);
+    }
+
+    /**
+     * Sorts the periods by start date and builds the tree of end dates.
+     */
+    private void build() {
+      Map.Entry<Long, long[]>[] entries = sortedEntries();
+      int size = entries.length;
+      ids = new long[size];
+      starts = new long[size];
+      ends = new long[size];
+      for (int i = 0; i < size; i++) {
+        ids[i] = entries[i].getKey();
+        starts[i] = entries[i].getValue()[0];
+        ends[i] = entries[i].getValue()[1];
+      }
+      leaves = 1;
+      while (leaves < size)
+        leaves <<= 1;
+      maxEnds = new long[2 * leaves];
+      Arrays.fill(maxEnds, Long.MIN_VALUE);
+      System.arraycopy(ends, 0, maxEnds, leaves, size);
+      for (int i = leaves - 1; i > 0; i--) {
+        maxEnds[i] = Math.max(maxEnds[2 * i], maxEnds[2 * i + 1]);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map.Entry<Long, long[]>[] sortedEntries() {
+      Map.Entry<Long, long[]>[] entries = periods.entrySet().toArray(new Map.Entry[periods.size()]);
+      Arrays.sort(entries, new Comparator<Map.Entry<Long, long[]>>() {
+        @Override
+        public int compare(Map.Entry<Long, long[]> a, Map.Entry<Long, long[]> b) {
+          long startA = a.getValue()[0];
+          long startB = b.getValue()[0];
+          return startA < startB ? -1 : (startA > startB ? 1 : 0);
+        }
+      });
+      return entries;
+    }
+
+    /**
+     * Returns the number of values that are less than or equal to the key.
+     */
+    private static int upperBound(long[] values, long key) {
+      int low = 0;
+      int high = values.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (values[middle] <= key)
+          low = middle + 1;
+        else
+          high = middle;
+      }
+      return low;
+    }
+
+  }
+
+}
@@ -16,8 +16,11 @@
 package org.opencastproject.scheduler.impl;
 
 import org.opencastproject.metadata.dublincore.DublinCoreCatalog;
+import org.opencastproject.scheduler.impl.persistence.EventEntity;
 import org.opencastproject.util.NotFoundException;
+import org.opencastproject.util.data.Tuple;
 
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -47,6 +50,29 @@ public interface SchedulerServiceDatabase {
    */
   DublinCoreCatalog[] getAllEvents() throws SchedulerServiceDatabaseException;
 
+  /**
+   * Returns the number of events in persistent storage.
+   * 
+   * @return the number of events
+   * @throws SchedulerServiceDatabaseException
+   *           if exception occurred
+   */
+  long countEvents() throws SchedulerServiceDatabaseException;
+
+  /**
+   * Returns a page of the stored events, ordered by their identifier. The entities are returned as stored, leaving it
+   * to the caller to parse the dublin core and capture agent metadata.
+   * 
+   * @param afterId
+   *          the identifier of the last event of the previous page, or <code>null</code> to start with the first event
+   * @param limit
+   *          the maximum number of events to return
+   * @return the events
+   * @throws SchedulerServiceDatabaseException
+   *           if exception occurred
+   */
+  List<EventEntity> getEventEntities(Long afterId, int limit) throws SchedulerServiceDatabaseException;
+
   /**
    * Returns CA metadata associated with specified event
    * 
@@ -70,6 +96,17 @@ public interface SchedulerServiceDatabase {
    */
   void storeEvents(DublinCoreCatalog... event) throws SchedulerServiceDatabaseException;
 
+  /**
+   * Stores events together with their capture agent metadata in a single transaction.
+   * 
+   * @param events
+   *          the {@link DublinCoreCatalog}s representing the events, each with its capture agent properties
+   * @throws SchedulerServiceDatabaseException
+   *           if exception occurred
+   */
+  void storeEventsWithMetadata(List<Tuple<DublinCoreCatalog, Properties>> events)
+          throws SchedulerServiceDatabaseException;
+
   /**
    * Updates event.
    * 
@@ -17,6 +17,8 @@ package org.opencastproject.scheduler.impl;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static org.opencastproject.event.EventAdminConstants.ID;
+import static org.opencastproject.event.EventAdminConstants.SERIES_TOPIC;
 import static org.opencastproject.scheduler.impl.Util.getEventIdentifier;
 import static org.opencastproject.scheduler.impl.Util.setEventIdentifierImmutable;
 import static org.opencastproject.scheduler.impl.Util.setEventIdentifierMutable;
@@ -42,10 +44,13 @@ import org.opencastproject.scheduler.api.SchedulerException;
 import org.opencastproject.scheduler.api.SchedulerQuery;
 import org.opencastproject.scheduler.api.SchedulerQuery.Sort;
 import org.opencastproject.scheduler.api.SchedulerService;
+import org.opencastproject.scheduler.impl.solr.SchedulerIndexRebuild;
+import org.opencastproject.scheduler.impl.solr.SchedulerServiceSolrIndex;
 import org.opencastproject.security.api.UnauthorizedException;
 import org.opencastproject.series.api.SeriesService;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.data.Tuple;
+import org.opencastproject.util.jmx.JmxUtil;
 import org.opencastproject.workflow.api.WorkflowDefinition;
 import org.opencastproject.workflow.api.WorkflowException;
 import org.opencastproject.workflow.api.WorkflowInstance;
@@ -67,6 +72,8 @@ import org.osgi.framework.ServiceException;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
 import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,6 +81,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Dictionary;
 import java.util.HashMap;
@@ -84,11 +93,13 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.TimeZone;
 
+import javax.management.ObjectInstance;
+
 /**
  * Implementation of {@link SchedulerService}.
  * 
  */
-public class SchedulerServiceImpl implements SchedulerService, ManagedService {
+public class SchedulerServiceImpl implements SchedulerService, ManagedService, EventHandler {
 
   /** The logger */
   private static final Logger logger = LoggerFactory.getLogger(SchedulerServiceImpl.class);
@@ -114,6 +125,12 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
   /** The workflow operation property that stores the event location */
   public static final String WORKFLOW_OPERATION_KEY_SCHEDULE_LOCATION = "schedule.location";
 
+  /** JMX type of the scheduler index rebuild */
+  public static final String JMX_INDEX_REBUILD_TYPE = "SchedulerIndexRebuild";
+
+  /** Maximum number of events that are loaded from the index with a single query */
+  private static final int MAX_IDS_PER_QUERY = 500;
+
   /** The series service */
   protected SeriesService seriesService;
 
@@ -132,6 +149,18 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
   /** Workspace */
   protected Workspace workspace;
 
+  /** Rebuilds the event index from persistent storage, if the index is solr based */
+  protected SchedulerIndexRebuild indexRebuild;
+
+  /** The index rebuild registered with JMX */
+  private ObjectInstance registeredMXBean;
+
+  /** The periods booked on each capture agent, used to detect conflicts */
+  protected EventIntervalIndex conflictIndex;
+
+  /** The rendered calendars of the capture agents */
+  protected CalendarCache calendarCache;
+
   /**
    * Properties that are updated by ManagedService updated method
    */
@@ -199,6 +228,14 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
   public void activate(ComponentContext cc) throws Exception {
     logger.info("Activating Scheduler Service");
 
+    if (index instanceof SchedulerServiceSolrIndex) {
+      indexRebuild = new SchedulerIndexRebuild((SchedulerServiceSolrIndex) index, persistence);
+      if (cc != null) {
+        indexRebuild.configure(cc.getBundleContext());
+        registeredMXBean = JmxUtil.registerMXBean(indexRebuild, JMX_INDEX_REBUILD_TYPE);
+      }
+    }
+
     long instancesInSolr = 0L;
     try {
       instancesInSolr = this.index.count();
@@ -206,7 +243,10 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
       throw new IllegalStateException(e);
     }
 
-    if (instancesInSolr == 0L) {
+    if (instancesInSolr == 0L && indexRebuild != null) {
+      logger.info("The event index is empty. Populating it now with events");
+      indexRebuild.run();
+    } else if (instancesInSolr == 0L) {
       try {
         DublinCoreCatalog[] events = persistence.getAllEvents();
         if (events.length != 0) {
@@ -226,6 +266,29 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
         throw new ServiceException(e.getMessage());
       }
     }
+
+    conflictIndex = new EventIntervalIndex();
+    calendarCache = new CalendarCache();
+    try {
+      DublinCoreCatalog[] events = persistence.getAllEvents();
+      conflictIndex.putAll(Arrays.asList(events));
+      calendarCache.putAll(Arrays.asList(events), getCurrentDate());
+      logger.info("Loaded {} scheduled events into the conflict index", conflictIndex.size());
+    } catch (SchedulerServiceDatabaseException e) {
+      logger.warn("Unable to load events into the conflict index: {}", e.getMessage());
+      throw new ServiceException(e.getMessage());
+    }
+  }
+
+  /**
+   * Deactivates Scheduler Service.
+   * 
+   * @param cc
+   *          ComponentContext
+   */
+  public void deactivate(ComponentContext cc) {
+    if (registeredMXBean != null)
+      JmxUtil.unregisterMXBean(registeredMXBean);
   }
 
   /**
@@ -533,6 +596,8 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
       logger.warn("Unable to index event with ID '{}': {}", eventId, e.getMessage());
       throw new SchedulerException(e);
     }
+    conflictIndex.put(event);
+    calendarCache.put(event, getCurrentDate());
 
     // update with default CA properties
     try {
@@ -592,8 +657,14 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
       eventsIDs.add(instance.getId());
     }
 
+    // store the events along with the default CA properties in one transaction
+    List<Tuple<DublinCoreCatalog, Properties>> events = new ArrayList<Tuple<DublinCoreCatalog, Properties>>(
+            eventList.size());
+    for (DublinCoreCatalog event : eventList) {
+      events.add(tuple(event, createCaptureAgentMetadata(new Properties(), event)));
+    }
     try {
-      persistence.storeEvents(eventList.toArray(new DublinCoreCatalog[eventList.size()]));
+      persistence.storeEventsWithMetadata(events);
     } catch (SchedulerServiceDatabaseException e) {
       logger.error("Could not persist events: {}", e.getMessage());
       if (!eventsIDs.isEmpty()) {
@@ -606,28 +677,18 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
           }
         }
       }
+      throw new SchedulerException(e);
     }
 
-    // index events
-
-    for (DublinCoreCatalog event : eventList) {
-      try {
-        index.index(event);
-      } catch (Exception e) {
-        logger.warn("Unable to index event {}: {}", getEventIdentifier(event), e.getMessage());
-        throw new SchedulerException(e);
-      }
-    }
-
-    // update with CA properties with defaults
-    for (DublinCoreCatalog event : eventList) {
-      try {
-        updateCaptureAgentMetadata(new Properties(), tuple(getEventIdentifier(event), event));
-      } catch (NotFoundException e) {
-        // should not happen
-        throw new IllegalStateException(e);
-      }
+    // index events with a single commit
+    try {
+      index.index(events);
+    } catch (Exception e) {
+      logger.warn("Unable to index {} events: {}", events.size(), e.getMessage());
+      throw new SchedulerException(e);
     }
+    conflictIndex.putAll(eventList);
+    calendarCache.putAll(eventList, getCurrentDate());
 
     return eventsIDs.toArray(new Long[eventsIDs.size()]);
   }
@@ -643,16 +704,7 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
           throws NotFoundException, SchedulerException {
     for (Tuple<Long, DublinCoreCatalog> e : events) {
       final long eventId = e.getA();
-      final DublinCoreCatalog event = e.getB();
-      // create clone and update with matching values from DC
-      Properties properties = (Properties) configuration.clone();
-      properties.put("event.title", event.getFirst(DublinCore.PROPERTY_TITLE));
-      if (StringUtils.isNotBlank(event.getFirst(DublinCore.PROPERTY_IS_PART_OF))) {
-        properties.put("event.series", event.getFirst(DublinCore.PROPERTY_IS_PART_OF));
-      }
-      if (StringUtils.isNotBlank(event.getFirst(DublinCore.PROPERTY_SPATIAL))) {
-        properties.put("event.location", event.getFirst(DublinCore.PROPERTY_SPATIAL));
-      }
+      Properties properties = createCaptureAgentMetadata(configuration, e.getB());
       // store
       try {
         persistence.updateEventWithMetadata(eventId, properties);
@@ -667,7 +719,29 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
         logger.warn("Unable to update capture agent properties for event with ID '{}': {}", eventId, ex.getMessage());
         throw new SchedulerException(ex);
       }
+      calendarCache.invalidate(eventId, getCurrentDate());
+    }
+  }
+
+  /**
+   * Creates a clone of the capture agent configuration, updated with the matching values from the event catalog.
+   * 
+   * @param configuration
+   *          the capture agent configuration
+   * @param event
+   *          the event catalog
+   * @return the capture agent properties of the event
+   */
+  private Properties createCaptureAgentMetadata(Properties configuration, DublinCoreCatalog event) {
+    Properties properties = (Properties) configuration.clone();
+    properties.put("event.title", event.getFirst(DublinCore.PROPERTY_TITLE));
+    if (StringUtils.isNotBlank(event.getFirst(DublinCore.PROPERTY_IS_PART_OF))) {
+      properties.put("event.series", event.getFirst(DublinCore.PROPERTY_IS_PART_OF));
+    }
+    if (StringUtils.isNotBlank(event.getFirst(DublinCore.PROPERTY_SPATIAL))) {
+      properties.put("event.location", event.getFirst(DublinCore.PROPERTY_SPATIAL));
     }
+    return properties;
   }
 
   /*
@@ -718,6 +792,8 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
       logger.warn("Unable to index event with ID '{}': {}", eventId, e.getMessage());
       throw new SchedulerException(e);
     }
+    conflictIndex.put(event);
+    calendarCache.put(event, getCurrentDate());
 
     // update workflow
     try {
@@ -879,6 +955,9 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
       throw new SchedulerException(e);
     }
 
+    conflictIndex.remove(eventId);
+    calendarCache.remove(eventId, getCurrentDate());
+
     try {
       index.delete(eventId);
     } catch (Exception e) {
@@ -941,14 +1020,36 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
   @Override
   public DublinCoreCatalogList findConflictingEvents(String captureDeviceID, Date startDate, Date endDate)
           throws SchedulerException {
-    SchedulerQuery q = new SchedulerQuery().setSpatial(captureDeviceID).setEndsFrom(startDate).setStartsTo(endDate);
+    return getEvents(captureDeviceID, conflictIndex.findConflicts(captureDeviceID, startDate, endDate));
+  }
+
+  /**
+   * Loads the catalogs of the conflicting events from the index, sorted by start date.
+   * 
+   * @param captureDeviceID
+   *          the capture agent
+   * @param eventIds
+   *          the identifiers of the conflicting events
+   * @return the event catalogs
+   * @throws SchedulerException
+   *           if the events can't be loaded
+   */
+  private DublinCoreCatalogList getEvents(String captureDeviceID, Collection<Long> eventIds)
+          throws SchedulerException {
+    List<DublinCoreCatalog> events = new ArrayList<DublinCoreCatalog>(eventIds.size());
+    List<Long> ids = new ArrayList<Long>(eventIds);
     try {
-      return index.search(q);
+      for (int i = 0; i < ids.size(); i += MAX_IDS_PER_QUERY) {
+        List<Long> page = ids.subList(i, Math.min(i + MAX_IDS_PER_QUERY, ids.size()));
+        SchedulerQuery q = new SchedulerQuery().withIdInList(page).withSort(Sort.EVENT_START);
+        events.addAll(index.search(q).getCatalogList());
+      }
     } catch (SchedulerServiceDatabaseException e) {
       logger.error("Could not complete search after conflicting events for device '{}': {}", captureDeviceID,
               e.getMessage());
       throw new SchedulerException(e);
     }
+    return new DublinCoreCatalogList(events, events.size());
   }
 
   /*
@@ -983,7 +1084,7 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
       period.setTime(endDate.getTime());
     }
     DateList dates = recur.getDates(seed, period, Value.DATE_TIME);
-    List<DublinCoreCatalog> events = new ArrayList<DublinCoreCatalog>();
+    List<DCMIPeriod> periods = new ArrayList<DCMIPeriod>(dates.size());
 
     for (Object date : dates) {
       // Date filterStart = (Date) d;
@@ -998,13 +1099,10 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
           d.setTime(d.getTime() - tz.getDSTSavings()); // Adjust for Spring forward one hour
         }
       }
-      // TODO optimize: create only one query and execute it
-      List<DublinCoreCatalog> filterEvents = findConflictingEvents(captureDeviceID, d, new Date(d.getTime() + duration))
-              .getCatalogList();
-      events.addAll(filterEvents);
+      periods.add(new DCMIPeriod(new Date(d.getTime()), new Date(d.getTime() + duration)));
     }
 
-    return new DublinCoreCatalogList(events, events.size());
+    return getEvents(captureDeviceID, conflictIndex.findConflicts(captureDeviceID, periods));
   }
 
   /*
@@ -1014,6 +1112,8 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
    */
   @Override
   public String getCalendar(SchedulerQuery filter) throws SchedulerException {
+    if (CalendarCache.isAgentCalendarQuery(filter))
+      return getAgentCalendar(filter);
 
     List<DublinCoreCatalog> eventList;
     try {
@@ -1057,6 +1157,71 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
     return cal.getCalendar().toString(); // CalendarOutputter performance sucks (jmh)
   }
 
+  /**
+   * Assembles the calendar of a capture agent from the calendar cache, rendering the events that have been added or
+   * modified since the last request.
+   * 
+   * @param filter
+   *          the capture agent, series and cutoff date
+   * @return the calendar
+   * @throws SchedulerException
+   *           if an event can't be loaded
+   */
+  private String getAgentCalendar(SchedulerQuery filter) throws SchedulerException {
+    List<CalendarCache.Entry> entries = calendarCache.getEntries(filter.getSpatial(), filter.getSeriesId(),
+            filter.getStartsTo(), getCurrentDate());
+
+    // The header and footer are the ones of an empty calendar
+    String empty = new CalendarGenerator(seriesService).getCalendar().toString();
+    int footer = empty.lastIndexOf("END:VCALENDAR");
+    StringBuilder calendar = new StringBuilder(empty.substring(0, footer));
+    for (CalendarCache.Entry entry : entries) {
+      String vevent = entry.getRendered();
+      if (vevent == null) {
+        vevent = renderEvent(entry.getId());
+        if (vevent == null)
+          continue;
+        calendarCache.setRendered(entry, vevent);
+      }
+      calendar.append(vevent);
+    }
+    return calendar.append(empty.substring(footer)).toString();
+  }
+
+  /**
+   * Renders the iCalendar VEVENT of a single event.
+   * 
+   * @param eventId
+   *          the event identifier
+   * @return the VEVENT, or <code>null</code> if the event is not recorded
+   * @throws SchedulerException
+   *           if the event can't be loaded
+   */
+  private String renderEvent(long eventId) throws SchedulerException {
+    DublinCoreCatalog event;
+    Properties properties;
+    try {
+      event = getEventDublinCore(eventId);
+      properties = getEventCaptureAgentConfiguration(eventId);
+    } catch (NotFoundException e) {
+      logger.warn("Event '{}' or its properties can't be found, event is not recorded", eventId);
+      return null;
+    }
+
+    CalendarGenerator cal = new CalendarGenerator(seriesService);
+    if (!cal.addEvent(event, properties)) {
+      logger.warn("Error adding event '{}' to calendar. Event is not recorded", eventId);
+      return null;
+    }
+    try {
+      cal.getCalendar().validate();
+    } catch (ValidationException e) {
+      logger.warn("Recording calendar entry of event '{}' could not be validated (returning it anyways): {}", eventId,
+              e.getMessage());
+    }
+    return cal.getCalendar().getComponents().get(0).toString();
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -1064,6 +1229,11 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
    */
   @Override
   public Date getScheduleLastModified(SchedulerQuery filter) throws SchedulerException {
+    if (CalendarCache.isAgentCalendarQuery(filter)) {
+      Date lastModified = calendarCache.getLastModified(filter.getSpatial(), filter.getSeriesId(),
+              filter.getStartsTo(), getCurrentDate());
+      return lastModified != null ? lastModified : new Date();
+    }
     try {
       Date lastModified = index.getLastModifiedDate(filter);
       return lastModified != null ? lastModified : new Date();
@@ -1073,6 +1243,20 @@ public class SchedulerServiceImpl implements SchedulerService, ManagedService {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * Discards the rendered calendar entries of the events of a series when the series metadata changes, since the
+   * entries contain the series catalog.
+   * 
+   * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
+   */
+  @Override
+  public void handleEvent(Event event) {
+    if (SERIES_TOPIC.equals(event.getTopic()) && calendarCache != null)
+      calendarCache.invalidateSeries((String) event.getProperty(ID), getCurrentDate());
+  }
+
   /**
    * Verifies if existing event is found and has not already ended
    * 
@@ -19,8 +19,10 @@ import org.opencastproject.metadata.dublincore.DublinCoreCatalog;
 import org.opencastproject.metadata.dublincore.DublinCoreCatalogList;
 import org.opencastproject.scheduler.api.SchedulerQuery;
 import org.opencastproject.util.NotFoundException;
+import org.opencastproject.util.data.Tuple;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -70,6 +72,16 @@ public interface SchedulerServiceIndex {
    */
   void index(DublinCoreCatalog dc, Properties captureAgentProperties) throws SchedulerServiceDatabaseException;
 
+  /**
+   * Index new event catalogs together with their capture agent properties at once.
+   * 
+   * @param events
+   *          the {@link DublinCoreCatalog}s describing the events, each with the properties for the capture agent
+   * @throws SchedulerServiceDatabaseException
+   *           if indexing failed
+   */
+  void index(List<Tuple<DublinCoreCatalog, Properties>> events) throws SchedulerServiceDatabaseException;
+
   /**
    * Index CA properties for existing event.
    * 
@@ -31,7 +31,11 @@ import javax.persistence.Table;
 @Entity(name = "EventEntity")
 @NamedQueries({
   // Job queries
-  @NamedQuery(name = "Event.findAll", query = "SELECT e FROM EventEntity e ")
+  @NamedQuery(name = "Event.findAll", query = "SELECT e FROM EventEntity e "),
+  @NamedQuery(name = "Event.findAllById", query = "SELECT e FROM EventEntity e ORDER BY e.eventId"),
+  @NamedQuery(name = "Event.findAfterId",
+          query = "SELECT e FROM EventEntity e WHERE e.eventId > :eventId ORDER BY e.eventId"),
+  @NamedQuery(name = "Event.count", query = "SELECT COUNT(e) FROM EventEntity e")
 })
 @Table(name = "mh_scheduled_event")
 public class EventEntity {
@@ -21,6 +21,7 @@ import org.opencastproject.metadata.dublincore.DublinCoreCatalogService;
 import org.opencastproject.scheduler.impl.SchedulerServiceDatabase;
 import org.opencastproject.scheduler.impl.SchedulerServiceDatabaseException;
 import org.opencastproject.util.NotFoundException;
+import org.opencastproject.util.data.Tuple;
 
 import org.apache.commons.io.IOUtils;
 import org.osgi.service.component.ComponentContext;
@@ -242,6 +243,57 @@ public class SchedulerServiceDatabaseImpl implements SchedulerServiceDatabase {
     return eventList.toArray(new DublinCoreCatalog[eventList.size()]);
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.scheduler.impl.SchedulerServiceDatabase#countEvents()
+   */
+  @Override
+  public long countEvents() throws SchedulerServiceDatabaseException {
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      Query query = em.createNamedQuery("Event.count");
+      Number countResult = (Number) query.getSingleResult();
+      return countResult.longValue();
+    } catch (Exception e) {
+      logger.error("Could not count events: {}", e.getMessage());
+      throw new SchedulerServiceDatabaseException(e);
+    } finally {
+      if (em != null)
+        em.close();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.scheduler.impl.SchedulerServiceDatabase#getEventEntities(java.lang.Long, int)
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<EventEntity> getEventEntities(Long afterId, int limit) throws SchedulerServiceDatabaseException {
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      Query query;
+      if (afterId == null) {
+        query = em.createNamedQuery("Event.findAllById");
+      } else {
+        query = em.createNamedQuery("Event.findAfterId");
+        query.setParameter("eventId", afterId);
+      }
+      query.setMaxResults(limit);
+      return (List<EventEntity>) query.getResultList();
+    } catch (Exception e) {
+      logger.error("Could not retrieve events: {}", e.getMessage());
+      throw new SchedulerServiceDatabaseException(e);
+    } finally {
+      if (em != null)
+        em.close();
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -362,6 +414,52 @@ public class SchedulerServiceDatabaseImpl implements SchedulerServiceDatabase {
     }
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.scheduler.impl.SchedulerServiceDatabase#storeEventsWithMetadata(java.util.List)
+   */
+  @Override
+  public void storeEventsWithMetadata(List<Tuple<DublinCoreCatalog, Properties>> events)
+          throws SchedulerServiceDatabaseException {
+    EntityManager em = null;
+    EntityTransaction tx = null;
+    try {
+      em = emf.createEntityManager();
+      tx = em.getTransaction();
+      tx.begin();
+      for (Tuple<DublinCoreCatalog, Properties> event : events) {
+        Long eventId = Long.parseLong(event.getA().getFirst(DublinCore.PROPERTY_IDENTIFIER));
+        Properties caProperties = event.getB() != null ? event.getB() : new Properties();
+        EventEntity entity = new EventEntity();
+        entity.setEventId(eventId);
+        try {
+          entity.setEventDublinCore(serializeDublinCore(event.getA()));
+          entity.setCaptureAgentMetadata(serializeProperties(caProperties));
+        } catch (Exception e1) {
+          logger.error("Could not serialize event {}: {}", eventId, e1);
+          throw new SchedulerServiceDatabaseException(e1);
+        }
+        em.persist(entity);
+      }
+      tx.commit();
+    } catch (SchedulerServiceDatabaseException e) {
+      if (tx.isActive()) {
+        tx.rollback();
+      }
+      throw e;
+    } catch (Exception e) {
+      if (tx.isActive()) {
+        tx.rollback();
+      }
+      logger.error("Could not store events: {}", e);
+      throw new SchedulerServiceDatabaseException(e);
+    } finally {
+      if (em != null)
+        em.close();
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
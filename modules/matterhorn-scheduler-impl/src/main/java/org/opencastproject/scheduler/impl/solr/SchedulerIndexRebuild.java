@@ -0,0 +1,132 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.scheduler.impl.solr;
+
+import org.opencastproject.metadata.dublincore.DublinCoreCatalog;
+import org.opencastproject.scheduler.impl.SchedulerServiceDatabase;
+import org.opencastproject.scheduler.impl.persistence.EventEntity;
+import org.opencastproject.solr.SolrIndexRebuild;
+import org.opencastproject.util.NotFoundException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.solr.common.SolrInputDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Rebuilds the scheduler index from the scheduler database.
+ */
+public class SchedulerIndexRebuild extends SolrIndexRebuild<EventEntity> {
+
+  /** The scheduler index */
+  private final SchedulerServiceSolrIndex index;
+
+  /** The scheduler database */
+  private final SchedulerServiceDatabase persistence;
+
+  /**
+   * Creates a rebuild of the scheduler index.
+   * 
+   * @param index
+   *          the scheduler index
+   * @param persistence
+   *          the scheduler database
+   */
+  public SchedulerIndexRebuild(SchedulerServiceSolrIndex index, SchedulerServiceDatabase persistence) {
+    super("scheduler", index.getSolrServer(), SolrFields.ID_KEY);
+    this.index = index;
+    this.persistence = persistence;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#countItems()
+   */
+  @Override
+  protected long countItems() throws Exception {
+    return persistence.countEvents();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#loadItems(java.lang.Object, int)
+   */
+  @Override
+  protected List<EventEntity> loadItems(EventEntity last, int limit) throws Exception {
+    return persistence.getEventEntities(last != null ? last.getEventId() : null, limit);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#getRemovedIds(java.util.List)
+   */
+  @Override
+  protected List<String> getRemovedIds(List<String> ids) throws Exception {
+    List<String> removed = new ArrayList<String>();
+    for (String id : ids) {
+      try {
+        persistence.getEventMetadata(Long.parseLong(id));
+      } catch (NumberFormatException e) {
+        removed.add(id);
+      } catch (NotFoundException e) {
+        removed.add(id);
+      }
+    }
+    return removed;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#createDocuments(java.lang.Object)
+   */
+  @Override
+  protected List<SolrInputDocument> createDocuments(EventEntity entity) throws Exception {
+    DublinCoreCatalog dc = index.dcService.load(IOUtils.toInputStream(entity.getEventDublinCore(), "UTF-8"));
+    SolrInputDocument doc = index.createDocument(dc);
+    // The capture agent metadata is stored in the same serialized form as in the index
+    doc.setField(SolrFields.CA_PROPERTIES, entity.getCaptureAgentMetadata());
+    doc.setField(SolrFields.LAST_MODIFIED, new Date());
+    return Collections.singletonList(doc);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#addDocuments(java.util.List)
+   */
+  @Override
+  protected void addDocuments(List<SolrInputDocument> documents) throws Exception {
+    index.addDocuments(documents);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#deleteDocuments(java.util.List)
+   */
+  @Override
+  protected void deleteDocuments(List<String> ids) throws Exception {
+    index.deleteDocuments(ids);
+  }
+
+}
@@ -33,6 +33,7 @@ import org.opencastproject.solr.SolrServerFactory;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.PathSupport;
 import org.opencastproject.util.SolrUtils;
+import org.opencastproject.util.data.Tuple;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -59,6 +60,7 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -257,6 +259,53 @@ public class SchedulerServiceSolrIndex implements SchedulerServiceIndex {
     SolrServerFactory.shutdown(solrServer);
   }
 
+  /**
+   * Posts documents to the index and commits them, e.g. while the index is being rebuilt.
+   * 
+   * @param docs
+   *          the documents
+   * @throws SchedulerServiceDatabaseException
+   *           if the documents can't be written
+   */
+  void addDocuments(List<SolrInputDocument> docs) throws SchedulerServiceDatabaseException {
+    try {
+      synchronized (solrServer) {
+        solrServer.add(docs);
+        solrServer.commit();
+      }
+    } catch (Exception e) {
+      throw new SchedulerServiceDatabaseException("Unable to index events", e);
+    }
+  }
+
+  /**
+   * Removes documents from the index and commits.
+   * 
+   * @param ids
+   *          the event identifiers
+   * @throws SchedulerServiceDatabaseException
+   *           if the documents can't be removed
+   */
+  void deleteDocuments(List<String> ids) throws SchedulerServiceDatabaseException {
+    try {
+      synchronized (solrServer) {
+        solrServer.deleteById(ids);
+        solrServer.commit();
+      }
+    } catch (Exception e) {
+      throw new SchedulerServiceDatabaseException("Unable to remove events from the index", e);
+    }
+  }
+
+  /**
+   * Returns the connection to the solr server.
+   * 
+   * @return the solr server
+   */
+  SolrServer getSolrServer() {
+    return solrServer;
+  }
+
   // TODO: generalize this method
   private void copyClasspathResourceToFile(String classpath, File dir) {
     InputStream in = null;
@@ -343,6 +392,57 @@ public class SchedulerServiceSolrIndex implements SchedulerServiceIndex {
     }
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.scheduler.impl.SchedulerServiceIndex#index(java.util.List)
+   */
+  @Override
+  public void index(List<Tuple<DublinCoreCatalog, Properties>> events) throws SchedulerServiceDatabaseException {
+    final List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(events.size());
+    Date now = new Date();
+    for (Tuple<DublinCoreCatalog, Properties> event : events) {
+      SolrInputDocument doc = createDocument(event.getA());
+      if (event.getB() != null) {
+        try {
+          doc.setField(SolrFields.CA_PROPERTIES, serializeProperties(event.getB()));
+        } catch (IOException e) {
+          logger.error("Error serializing capture agent properties: {}", e.getMessage());
+          throw new SchedulerServiceDatabaseException(e);
+        }
+      }
+      doc.setField(SolrFields.LAST_MODIFIED, now);
+      docs.add(doc);
+    }
+    if (docs.isEmpty())
+      return;
+
+    if (synchronousIndexing) {
+      try {
+        synchronized (solrServer) {
+          solrServer.add(docs);
+          solrServer.commit();
+        }
+      } catch (Exception e) {
+        throw new SchedulerServiceDatabaseException("Unable to index events", e);
+      }
+    } else {
+      indexingExecutor.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            synchronized (solrServer) {
+              solrServer.add(docs);
+              solrServer.commit();
+            }
+          } catch (Exception e) {
+            logger.warn("Unable to index {} events: {}", docs.size(), e.getMessage());
+          }
+        }
+      });
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -0,0 +1,130 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.scheduler.api.SchedulerQuery;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests the {@link CalendarCache}.
+ */
+public class CalendarCacheTest {
+
+  private static final long HOUR = 60L * 60L * 1000L;
+
+  private CalendarCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new CalendarCache();
+    cache.put(1L, "Device A", "series", 12 * HOUR, 13 * HOUR, date(1));
+    cache.put(2L, "Device A", null, 10 * HOUR, 11 * HOUR, date(1));
+    cache.put(3L, "Device A", "series", 30 * HOUR, 31 * HOUR, date(1));
+    cache.put(4L, "Device B", null, 10 * HOUR, 11 * HOUR, date(1));
+  }
+
+  @Test
+  public void testAgentCalendarQuery() {
+    assertTrue(CalendarCache.isAgentCalendarQuery(new SchedulerQuery().setSpatial("Device A").setSeriesId("series")
+            .setEndsFrom(new Date()).setStartsTo(new Date())));
+    assertFalse(CalendarCache.isAgentCalendarQuery(new SchedulerQuery()));
+    assertFalse(CalendarCache.isAgentCalendarQuery(new SchedulerQuery().setSpatial("Device A").setTitle("title")));
+  }
+
+  @Test
+  public void testGetEntries() {
+    assertEquals(Arrays.asList(2L, 1L, 3L), ids(cache.getEntries("Device A", null, null, date(2))));
+    assertEquals(Arrays.asList(2L, 1L), ids(cache.getEntries("Device A", null, date(20), date(2))));
+    assertEquals(Arrays.asList(1L, 3L), ids(cache.getEntries("Device A", "series", null, date(2))));
+    assertTrue(cache.getEntries("Device C", null, null, date(2)).isEmpty());
+
+    // Events that have ended are dropped
+    assertEquals(Arrays.asList(1L, 3L), ids(cache.getEntries("Device A", null, null, date(12))));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void testRendering() {
+    CalendarCache.Entry entry = cache.getEntries("Device B", null, null, date(2)).get(0);
+    assertNull(entry.getRendered());
+    cache.setRendered(entry, "VEVENT");
+    assertEquals("VEVENT", cache.getEntries("Device B", null, null, date(2)).get(0).getRendered());
+
+    // A modification discards the rendered entry, and a rendering that started before is not stored
+    entry = cache.getEntries("Device B", null, null, date(2)).get(0);
+    cache.invalidate(4L, date(3));
+    cache.setRendered(entry, "OUTDATED");
+    assertNull(cache.getEntries("Device B", null, null, date(3)).get(0).getRendered());
+
+    cache.setRendered(cache.getEntries("Device A", null, null, date(2)).get(1), "VEVENT");
+    cache.invalidateSeries("series", date(3));
+    assertNull(cache.getEntries("Device A", null, null, date(3)).get(1).getRendered());
+  }
+
+  @Test
+  public void testLastModified() {
+    Date initial = cache.getLastModified("Device A", null, null, date(2));
+    assertTrue(initial.getTime() >= date(1).getTime());
+    assertNull(cache.getLastModified("Device C", null, null, date(2)));
+
+    // Modifications on other devices don't change the calendar
+    cache.invalidate(4L, date(2));
+    assertEquals(initial, cache.getLastModified("Device A", null, null, date(2)));
+
+    // Modifications are always later, even if they happen within the same millisecond
+    cache.invalidate(1L, date(1));
+    Date modified = cache.getLastModified("Device A", null, null, date(2));
+    assertTrue(modified.after(initial));
+
+    // Moving an event to another device modifies both calendars
+    cache.put(2L, "Device B", null, 10 * HOUR, 11 * HOUR, date(2));
+    assertTrue(cache.getLastModified("Device A", null, null, date(2)).after(modified));
+    assertEquals(cache.getLastModified("Device A", null, null, date(2)),
+            cache.getLastModified("Device B", null, null, date(2)));
+
+    // So does removing an event or an event coming to an end
+    modified = cache.getLastModified("Device A", null, null, date(2));
+    cache.remove(3L, date(2));
+    assertTrue(cache.getLastModified("Device A", null, null, date(2)).after(modified));
+    modified = cache.getLastModified("Device A", null, null, date(2));
+    assertTrue(cache.getLastModified("Device A", null, null, date(14)).after(modified));
+  }
+
+  private static List<Long> ids(List<CalendarCache.Entry> entries) {
+    List<Long> ids = new ArrayList<Long>();
+    for (CalendarCache.Entry entry : entries) {
+      ids.add(entry.getId());
+    }
+    return ids;
+  }
+
+  private static Date date(long hours) {
+    return new Date(hours * HOUR);
+  }
+
+}
@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.metadata.dublincore.DCMIPeriod;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests the conflict detection of the {@link EventIntervalIndex}.
+ */
+public class EventIntervalIndexTest {
+
+  private static final long HOUR = 60L * 60L * 1000L;
+
+  private EventIntervalIndex index;
+
+  @Before
+  public void setUp() {
+    index = new EventIntervalIndex();
+    index.put(1L, "Device A", 10 * HOUR, 11 * HOUR);
+    index.put(2L, "Device A", 12 * HOUR, 13 * HOUR);
+    index.put(3L, "Device A", 0L, 100 * HOUR);
+    index.put(4L, "Device B", 10 * HOUR, 11 * HOUR);
+  }
+
+  @Test
+  public void testFindConflicts() {
+    assertEquals(Arrays.asList(1L, 3L), new ArrayList<Long>(index.findConflicts("Device A", date(10), date(11))));
+    // Periods are closed
+    assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<Long>(index.findConflicts("Device A", date(11), date(12))));
+    assertEquals(Arrays.asList(4L), new ArrayList<Long>(index.findConflicts("Device B", date(9), date(10))));
+    assertTrue(index.findConflicts("Device B", date(12), date(13)).isEmpty());
+    assertTrue(index.findConflicts("Device C", date(0), date(100)).isEmpty());
+  }
+
+  @Test
+  public void testFindRecurringConflicts() {
+    List<DCMIPeriod> periods = new ArrayList<DCMIPeriod>();
+    for (int day = 0; day < 10; day++) {
+      periods.add(new DCMIPeriod(date(day * 24 + 12), date(day * 24 + 13)));
+    }
+    assertEquals(Arrays.asList(2L, 3L), new ArrayList<Long>(index.findConflicts("Device A", periods)));
+    assertEquals(0, index.findConflicts("Device B", periods).size());
+  }
+
+  @Test
+  public void testUpdateAndRemove() {
+    // Move the long event to another device
+    index.put(3L, "Device B", 0L, 100 * HOUR);
+    assertEquals(Arrays.asList(1L), new ArrayList<Long>(index.findConflicts("Device A", date(10), date(11))));
+    assertEquals(Arrays.asList(3L, 4L), new ArrayList<Long>(index.findConflicts("Device B", date(10), date(11))));
+
+    index.remove(1L);
+    assertTrue(index.findConflicts("Device A", date(10), date(11)).isEmpty());
+    assertEquals(3, index.size());
+  }
+
+  private static Date date(long hours) {
+    return new Date(hours * HOUR);
+  }
+
+}
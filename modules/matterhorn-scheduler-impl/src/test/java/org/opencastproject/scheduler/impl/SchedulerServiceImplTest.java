@@ -481,6 +481,27 @@ public class SchedulerServiceImplTest {
     assertEquals(2, events.size());
   }
 
+  @Test
+  public void testCalendarOfEndedEvents() throws Exception {
+    String device = "Calendar Device";
+    long now = System.currentTimeMillis();
+    DublinCoreCatalog ended = generateEvent(device, new Date(now - 7200000), new Date(now - 3600000));
+    Long endedId = schedSvc.addEvent(ended, wfProperties);
+    schedSvc.updateCaptureAgentMetadata(generateCaptureAgentMetadata(device),
+            tuple(endedId, schedSvc.getEventDublinCore(endedId)));
+    DublinCoreCatalog upcoming = generateEvent(device, new Date(now + 3600000), new Date(now + 7200000));
+    Long upcomingId = schedSvc.addEvent(upcoming, wfProperties);
+    schedSvc.updateCaptureAgentMetadata(generateCaptureAgentMetadata(device),
+            tuple(upcomingId, schedSvc.getEventDublinCore(upcomingId)));
+
+    // Calendars never contain events that have ended, whether they are served from the cache or from the index
+    CalendarBuilder calBuilder = new CalendarBuilder();
+    String calendar = schedSvc.getCalendar(new SchedulerQuery().setSpatial(device));
+    assertEquals(1, calBuilder.build(IOUtils.toInputStream(calendar, "UTF-8")).getComponents(VEVENT).size());
+    calendar = schedSvc.getCalendar(new SchedulerQuery().setSpatial(device).setStartsFrom(new Date(0)));
+    assertEquals(1, calBuilder.build(IOUtils.toInputStream(calendar, "UTF-8")).getComponents(VEVENT).size());
+  }
+
   @Test
   public void testCalendarNotModified() throws Exception {
     HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
@@ -27,6 +27,7 @@ public class SearchQuery {
   protected boolean includeSeries = false;
   protected boolean sortByCreationDate = false;
   protected boolean sortByPublicationDate = false;
+  protected boolean sortByModificationDateAndId = false;
   protected String id;
   protected String seriesId;
   protected String text;
@@ -127,6 +128,19 @@ public class SearchQuery {
     return sortByPublicationDate;
   }
 
+  /**
+   * Sorts the results by ascending modification date and identifier. Unlike the other orders this one is total, so a
+   * client can page through the results by asking for the results after the last one it has seen.
+   */
+  public SearchQuery withModificationDateAndIdSort(boolean sort) {
+    this.sortByModificationDateAndId = sort;
+    return this;
+  }
+
+  public boolean isSortByModificationDateAndId() {
+    return sortByModificationDateAndId;
+  }
+
   public MediaPackageElementFlavor[] getElementFlavors() {
     return flavors;
   }
@@ -0,0 +1,178 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.feed.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of rendered feeds, keyed by everything that determines the content of a feed.
+ * <p>
+ * Every cached feed remembers the series it has been restricted to, if any. Changes to the search index invalidate the
+ * feeds of the affected series as well as all feeds that are not restricted to a single series, since these may
+ * contain episodes of any series. Invalidated feeds are kept until they are rendered again, so that their
+ * modification date can be carried forward.
+ */
+class FeedCache {
+
+  /** Maximum number of cached feeds */
+  private final int capacity;
+
+  /** Time in milliseconds after which a cached feed is rendered again */
+  private final long ttl;
+
+  /** Number of invalidations so far */
+  private long generation = 0;
+
+  /** The cached feeds, least recently used first */
+  private final Map<String, Entry> entries;
+
+  /**
+   * Creates a new cache.
+   * 
+   * @param capacity
+   *          the maximum number of cached feeds
+   * @param ttl
+   *          the time in milliseconds after which a cached feed is rendered again
+   */
+  FeedCache(final int capacity, long ttl) {
+    this.capacity = capacity;
+    this.ttl = ttl;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, FeedCache.Entry> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns whether feeds are cached at all.
+   * 
+   * @return <code>true</code> if the cache is enabled
+   */
+  boolean isEnabled() {
+    return capacity > 0;
+  }
+
+  /**
+   * Returns the number of invalidations so far. Pass it to {@link #put(String, Entry, long)} once the feed has been
+   * rendered, so that a feed that has been invalidated while being rendered is not cached.
+   * 
+   * @return the generation
+   */
+  synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Returns the cached feed or <code>null</code> if the feed has not been cached, has been invalidated or is expired.
+   * 
+   * @param key
+   *          the feed key
+   * @return the cached feed
+   */
+  synchronized Entry get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null || entry.stale || System.currentTimeMillis() - entry.created > ttl)
+      return null;
+    return entry;
+  }
+
+  /**
+   * Caches a rendered feed. If the feed content has changed while its modification date has not advanced, which
+   * happens when the newest entries have been removed from the feed, the modification date is set to the time of
+   * rendering.
+   * 
+   * @param key
+   *          the feed key
+   * @param entry
+   *          the rendered feed
+   * @param generation
+   *          the generation at the time rendering has started
+   * @return the entry as it has been cached
+   */
+  synchronized Entry put(String key, Entry entry, long generation) {
+    Entry previous = entries.get(key);
+    if (previous != null && !previous.etag.equals(entry.etag) && entry.lastModified <= previous.lastModified)
+      entry = new Entry(entry.content, entry.encoding, entry.etag, Math.max(entry.created, previous.lastModified + 1000),
+              entry.series);
+    if (capacity > 0 && generation == this.generation)
+      entries.put(key, entry);
+    return entry;
+  }
+
+  /**
+   * Invalidates the feeds of the given series and all feeds that are not restricted to a single series.
+   * 
+   * @param series
+   *          the series identifier or <code>null</code> to invalidate all feeds
+   */
+  synchronized void invalidate(String series) {
+    generation++;
+    for (Entry entry : entries.values()) {
+      if (series == null || entry.series == null || series.equals(entry.series))
+        entry.stale = true;
+    }
+  }
+
+  /**
+   * Removes all feeds from the cache.
+   */
+  synchronized void clear() {
+    generation++;
+    entries.clear();
+  }
+
+  /**
+   * A rendered feed.
+   */
+  static final class Entry {
+
+    /** The serialized feed */
+    final byte[] content;
+
+    /** The character encoding of the serialized feed */
+    final String encoding;
+
+    /** The entity tag */
+    final String etag;
+
+    /** The modification date in milliseconds, truncated to seconds */
+    final long lastModified;
+
+    /** The series that the feed is restricted to or <code>null</code> */
+    final String series;
+
+    /** The time of rendering */
+    final long created = System.currentTimeMillis();
+
+    /** Whether the feed has been invalidated */
+    boolean stale = false;
+
+    Entry(byte[] content, String encoding, String etag, long lastModified, String series) {
+      this.content = content;
+      this.encoding = encoding;
+      this.etag = etag;
+      this.lastModified = lastModified / 1000L * 1000L;
+      this.series = series;
+    }
+
+  }
+
+}
@@ -16,23 +16,35 @@
 
 package org.opencastproject.feed.impl;
 
+import static org.opencastproject.event.EventAdminConstants.ID;
+
 import org.opencastproject.feed.api.Feed;
+import org.opencastproject.feed.api.FeedEntry;
 import org.opencastproject.feed.api.FeedGenerator;
+import org.opencastproject.util.Checksum;
 
 import com.sun.syndication.io.SyndFeedOutput;
 import com.sun.syndication.io.WireFeedOutput;
 
 import org.apache.commons.lang.StringUtils;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
 import org.osgi.service.http.HttpContext;
 import org.osgi.service.http.HttpService;
 import org.osgi.service.http.NamespaceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.ArrayList;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -58,8 +70,12 @@ import javax.servlet.http.HttpServletResponse;
  * The servlet returns a HTTP status 200 with the feed data. 
  * If the feed could not be found because the query is unknown a HTTP error 404 is returned
  * If the feed could not be build (wrong RSS or Atom version, corrupt data, etc) an HTTP error 500 is returned. 
+ * <p>
+ * Rendered feeds are cached until the search index changes for the series they contain. Every feed carries an entity
+ * tag and the modification date of its newest entry, so that clients polling an unchanged feed receive an HTTP status
+ * 304 without the feed being rendered again.
  */
-public class FeedServlet extends HttpServlet {
+public class FeedServlet extends HttpServlet implements EventHandler {
 
   /** The serial version uid */
   private static final long serialVersionUID = -4623160106007127801L;
@@ -67,11 +83,64 @@ public class FeedServlet extends HttpServlet {
   /** Name of the size parameter */
   private static final String PARAM_SIZE = "size";
 
+  /** Configuration key for the maximum number of cached feeds */
+  public static final String CONFIG_CACHE_SIZE = "org.opencastproject.feed.cache.size";
+
+  /** Configuration key for the time in seconds that a feed is served from the cache */
+  public static final String CONFIG_CACHE_TTL = "org.opencastproject.feed.cache.ttl";
+
+  /** Default maximum number of cached feeds */
+  public static final int DEFAULT_CACHE_SIZE = 100;
+
+  /** Default time in seconds that a feed is served from the cache */
+  public static final long DEFAULT_CACHE_TTL = 600L;
+
   /** Logging facility */
   private static Logger logger = LoggerFactory.getLogger(FeedServlet.class);
 
   /** List of feed generators */
-  private List<FeedGenerator> feeds = new ArrayList<FeedGenerator>();
+  private List<FeedGenerator> feeds = new CopyOnWriteArrayList<FeedGenerator>();
+
+  /** The rendered feeds */
+  private FeedCache cache = new FeedCache(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL * 1000L);
+
+  /**
+   * Callback from the OSGi declarative services to configure the feed cache.
+   * 
+   * @param cc
+   *          the component context
+   */
+  public void activate(ComponentContext cc) {
+    int size = DEFAULT_CACHE_SIZE;
+    long ttl = DEFAULT_CACHE_TTL;
+    String sizeValue = StringUtils.trimToNull(cc.getBundleContext().getProperty(CONFIG_CACHE_SIZE));
+    String ttlValue = StringUtils.trimToNull(cc.getBundleContext().getProperty(CONFIG_CACHE_TTL));
+    try {
+      if (sizeValue != null)
+        size = Integer.parseInt(sizeValue);
+      if (ttlValue != null)
+        ttl = Long.parseLong(ttlValue);
+    } catch (NumberFormatException e) {
+      logger.warn("Invalid feed cache configuration, using {} feeds for {} seconds", DEFAULT_CACHE_SIZE,
+              DEFAULT_CACHE_TTL);
+      size = DEFAULT_CACHE_SIZE;
+      ttl = DEFAULT_CACHE_TTL;
+    }
+    cache = new FeedCache(size, ttl * 1000L);
+    logger.debug("Caching up to {} feeds for {} seconds", size, ttl);
+  }
+
+  /**
+   * Invalidates the cached feeds that are affected by a change to the search index.
+   * 
+   * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
+   */
+  @Override
+  public void handleEvent(Event event) {
+    String series = (String) event.getProperty(ID);
+    logger.debug("Search index changed for series {}, invalidating cached feeds", series);
+    cache.invalidate(series);
+  }
 
   /**
    * @see javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
@@ -115,21 +184,61 @@ public class FeedServlet extends HttpServlet {
       return;
     }
 
+    // Serve the feed from the cache unless it has changed
+    String key = getCacheKey(request, feedInfo);
+    FeedCache.Entry entry = cache.isEnabled() ? cache.get(key) : null;
+    if (entry == null) {
+      long generation = cache.getGeneration();
+      entry = renderFeed(feedInfo, response);
+      if (entry == null)
+        return;
+      entry = cache.put(key, entry, generation);
+    } else {
+      logger.debug("Serving {} feed '{}' from the cache", feedInfo.getType(), key);
+    }
+
+    response.setHeader("ETag", entry.etag);
+    response.setDateHeader("Last-Modified", entry.lastModified);
+    if (isNotModified(request, entry)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
     // Set the content type
     if (feedInfo.getType().equals(Feed.Type.Atom))
       response.setContentType("application/atom+xml");
     else if (feedInfo.getType().equals(Feed.Type.RSS))
       response.setContentType("application/rss+xml");
+    response.setCharacterEncoding(entry.encoding);
+    response.setContentLength(entry.content.length);
+    response.getOutputStream().write(entry.content);
+  }
 
+  /**
+   * Has the matching feed generator create the requested feed and serializes it. If the feed can't be created, an
+   * error is sent and <code>null</code> is returned.
+   * 
+   * @param feedInfo
+   *          the requested feed
+   * @param response
+   *          the http response
+   * @return the rendered feed or <code>null</code>
+   * @throws IOException
+   *           if the error can't be sent
+   */
+  private FeedCache.Entry renderFeed(FeedInfo feedInfo, HttpServletResponse response) throws IOException {
     // Have a feed generator create the requested feed
     Feed feed = null;
+    String series = null;
     for (FeedGenerator generator : feeds) {
       if (generator.accept(feedInfo.getQuery())) {
         feed = generator.createFeed(feedInfo.getType(), feedInfo.getQuery(), feedInfo.getSize());
         if (feed == null) {
           response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-          return;
+          return null;
         }
+        if (generator instanceof SeriesFeedService)
+          series = ((SeriesFeedService) generator).getSeriesId();
         break;
       }
     }
@@ -138,32 +247,110 @@ public class FeedServlet extends HttpServlet {
     if (feed == null) {
       logger.debug("RSS/Atom feed could not be generated");
       response.sendError(HttpServletResponse.SC_NOT_FOUND);
-      return;
+      return null;
     }
 
-    // Set character encoding
-    response.setCharacterEncoding(feed.getEncoding());
-
-    // Write back feed using Rome
-    Writer responseWriter = response.getWriter();
+    // Write the feed using Rome
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Writer writer = new OutputStreamWriter(out, feed.getEncoding());
     if (feedInfo.getType().equals(Feed.Type.RSS)) {
       logger.debug("Creating RSS feed output.");
       SyndFeedOutput output = new SyndFeedOutput();
       try {
-        output.output(new RomeRssFeed(feed, feedInfo), responseWriter);
+        output.output(new RomeRssFeed(feed, feedInfo), writer);
       } catch (Exception e) {
         logger.error("Error serializing RSS feed", e);
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        return null;
       }
     } else {
       logger.debug("Creating Atom feed output.");
       WireFeedOutput output = new WireFeedOutput();
       try {
-        output.output(new RomeAtomFeed(feed, feedInfo), responseWriter);
+        output.output(new RomeAtomFeed(feed, feedInfo), writer);
       } catch (Exception e) {
         logger.error("Error serializing Atom feed", e);
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        return null;
+      }
+    }
+    writer.flush();
+    byte[] content = out.toByteArray();
+
+    // The feed is as recent as its newest entry
+    long lastModified = 0;
+    for (FeedEntry feedEntry : feed.getEntries()) {
+      Date updated = feedEntry.getUpdatedDate();
+      if (updated != null && updated.getTime() > lastModified)
+        lastModified = updated.getTime();
+    }
+    if (lastModified == 0)
+      lastModified = System.currentTimeMillis();
+
+    return new FeedCache.Entry(content, feed.getEncoding(), createETag(content), lastModified, series);
+  }
+
+  /**
+   * Returns whether the client already has the current version of the feed, according to the
+   * <code>If-None-Match</code> or, if that's missing, the <code>If-Modified-Since</code> request header.
+   * 
+   * @param request
+   *          the http request
+   * @param entry
+   *          the rendered feed
+   * @return <code>true</code> if the feed doesn't need to be sent
+   */
+  static boolean isNotModified(HttpServletRequest request, FeedCache.Entry entry) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String etag : ifNoneMatch.split(",")) {
+        etag = etag.trim();
+        if ("*".equals(etag) || entry.etag.equals(etag) || entry.etag.equals(StringUtils.removeStart(etag, "W/")))
+          return true;
       }
+      return false;
+    }
+    try {
+      long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+      return ifModifiedSince >= 0 && entry.lastModified <= ifModifiedSince;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the key of the requested feed in the cache. Since the feed contents depend on the organization and on the
+   * permissions of the user, the key includes the host name and the name of the user.
+   * 
+   * @param request
+   *          the http request
+   * @param feedInfo
+   *          the requested feed
+   * @return the cache key
+   */
+  private static String getCacheKey(HttpServletRequest request, FeedInfo feedInfo) {
+    StringBuilder key = new StringBuilder();
+    key.append(request.getServerName()).append(':').append(request.getServerPort());
+    key.append('|').append(StringUtils.trimToEmpty(request.getRemoteUser()));
+    key.append('|').append(feedInfo.getType()).append('/').append(feedInfo.getVersion());
+    key.append('|').append(StringUtils.join(feedInfo.getQuery(), '/'));
+    key.append('|').append(feedInfo.getSize());
+    return key.toString();
+  }
+
+  /**
+   * Creates a strong entity tag from the serialized feed.
+   * 
+   * @param content
+   *          the serialized feed
+   * @return the quoted entity tag
+   */
+  private static String createETag(byte[] content) {
+    try {
+      MessageDigest md5 = MessageDigest.getInstance("MD5");
+      return "\"" + Checksum.convertToHex(md5.digest(content)) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
     }
   }
 
@@ -244,6 +431,7 @@ public class FeedServlet extends HttpServlet {
   public void addFeedGenerator(FeedGenerator generator) {
     logger.info("Registering '{}' feed", generator.getIdentifier());
     feeds.add(generator);
+    cache.clear();
   }
 
   /**
@@ -255,6 +443,7 @@ public class FeedServlet extends HttpServlet {
   public void removeFeedGenerator(FeedGenerator generator) {
     logger.info("Removing '{}' feed", generator.getIdentifier());
     feeds.remove(generator);
+    cache.clear();
   }
 
 }
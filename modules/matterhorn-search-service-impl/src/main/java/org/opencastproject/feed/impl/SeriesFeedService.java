@@ -92,6 +92,15 @@ public class SeriesFeedService extends AbstractFeedService implements FeedGenera
     return series.get() != null ? series.get() : super.getIdentifier();
   }
 
+  /**
+   * Returns the identifier of the series that has been accepted by the current thread.
+   * 
+   * @return the series identifier or <code>null</code>
+   */
+  public String getSeriesId() {
+    return series.get();
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -26,6 +26,7 @@ import org.opencastproject.search.api.SearchQuery;
 import org.opencastproject.search.impl.SearchServiceImpl;
 import org.opencastproject.security.api.UnauthorizedException;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
+import org.opencastproject.solr.SolrIndexRebuildMXBean;
 import org.opencastproject.util.doc.rest.RestParameter;
 import org.opencastproject.util.doc.rest.RestQuery;
 import org.opencastproject.util.doc.rest.RestResponse;
@@ -66,6 +67,9 @@ public class SearchRestService extends AbstractJobProducerEndpoint {
 
   private static final Logger logger = LoggerFactory.getLogger(SearchRestService.class);
 
+  /** The value of the lucene query's sort parameter that orders by modification date and identifier */
+  private static final String LUCENE_SORT_MODIFIED = "modified";
+
   /** The search service */
   protected SearchServiceImpl searchService;
 
@@ -120,6 +124,35 @@ public class SearchRestService extends AbstractJobProducerEndpoint {
     }
   }
 
+  @GET
+  @Path("reindex")
+  @Produces(MediaType.TEXT_PLAIN)
+  @RestQuery(name = "reindexstatus", description = "Returns the progress of the most recent rebuild of the search index.", reponses = {
+          @RestResponse(description = "The progress of the rebuild", responseCode = HttpServletResponse.SC_OK),
+          @RestResponse(description = "The search index is not available", responseCode = HttpServletResponse.SC_SERVICE_UNAVAILABLE) }, returnDescription = "A one line summary of the rebuild progress")
+  public Response getReindexStatus() {
+    SolrIndexRebuildMXBean rebuild = searchService.getIndexRebuild();
+    if (rebuild == null)
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+    return Response.ok(rebuild.toString()).build();
+  }
+
+  @POST
+  @Path("reindex")
+  @Produces(MediaType.TEXT_PLAIN)
+  @RestQuery(name = "reindex", description = "Rebuilds the search index from the search database in the background. The index remains usable while it is being rebuilt.", reponses = {
+          @RestResponse(description = "The rebuild has been started", responseCode = HttpServletResponse.SC_ACCEPTED),
+          @RestResponse(description = "A rebuild is already running", responseCode = HttpServletResponse.SC_CONFLICT),
+          @RestResponse(description = "The search index is not available", responseCode = HttpServletResponse.SC_SERVICE_UNAVAILABLE) }, returnDescription = "A one line summary of the rebuild progress")
+  public Response reindex() {
+    SolrIndexRebuildMXBean rebuild = searchService.getIndexRebuild();
+    if (rebuild == null)
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+    if (!rebuild.start())
+      return Response.status(Response.Status.CONFLICT).entity(rebuild.toString()).build();
+    return Response.status(Response.Status.ACCEPTED).entity(rebuild.toString()).build();
+  }
+
   @GET
   @Path("series.{format:xml|json}")
   @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
@@ -243,14 +276,17 @@ public class SearchRestService extends AbstractJobProducerEndpoint {
           @RestParameter(defaultValue = "", description = "The lucene query.", isRequired = false, name = "q", type = RestParameter.Type.STRING),
           @RestParameter(defaultValue = "20", description = "The maximum number of items to return per page.", isRequired = false, name = "limit", type = RestParameter.Type.STRING),
           @RestParameter(defaultValue = "0", description = "The page number.", isRequired = false, name = "offset", type = RestParameter.Type.STRING),
-          @RestParameter(defaultValue = "false", description = "Whether this is an administrative query", isRequired = false, name = "admin", type = RestParameter.Type.BOOLEAN) }, reponses = { @RestResponse(description = "The request was processed succesfully.", responseCode = HttpServletResponse.SC_OK) }, returnDescription = "The search results, expressed as xml or json")
+          @RestParameter(defaultValue = "false", description = "Whether this is an administrative query", isRequired = false, name = "admin", type = RestParameter.Type.BOOLEAN),
+          @RestParameter(defaultValue = "", description = "Set to 'modified' to sort by ascending modification date and identifier.", isRequired = false, name = "sort", type = RestParameter.Type.STRING) }, reponses = { @RestResponse(description = "The request was processed succesfully.", responseCode = HttpServletResponse.SC_OK) }, returnDescription = "The search results, expressed as xml or json")
   public Response getByLuceneQuery(@QueryParam("q") String q, @QueryParam("limit") int limit,
-          @QueryParam("offset") int offset, @QueryParam("admin") boolean admin, @PathParam("format") String format)
-          throws SearchException, UnauthorizedException {
+          @QueryParam("offset") int offset, @QueryParam("admin") boolean admin, @QueryParam("sort") String sort,
+          @PathParam("format") String format) throws SearchException, UnauthorizedException {
     SearchQuery query = new SearchQuery();
     if (!StringUtils.isBlank(q))
       query.withQuery(q);
-    else
+    if (LUCENE_SORT_MODIFIED.equals(sort))
+      query.withModificationDateAndIdSort(true);
+    else if (StringUtils.isBlank(q))
       query.withPublicationDateSort(true);
     query.withLimit(limit);
     query.withOffset(offset);
@@ -0,0 +1,152 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.search.impl;
+
+import org.opencastproject.mediapackage.MediaPackage;
+import org.opencastproject.mediapackage.MediaPackageParser;
+import org.opencastproject.search.impl.persistence.SearchEntity;
+import org.opencastproject.search.impl.persistence.SearchServiceDatabase;
+import org.opencastproject.search.impl.solr.Schema;
+import org.opencastproject.search.impl.solr.SolrIndexManager;
+import org.opencastproject.security.api.AccessControlList;
+import org.opencastproject.security.api.AccessControlParser;
+import org.opencastproject.security.api.Organization;
+import org.opencastproject.security.api.OrganizationDirectoryService;
+import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.security.util.SecurityUtil;
+import org.opencastproject.solr.SolrIndexRebuild;
+import org.opencastproject.util.NotFoundException;
+
+import org.apache.solr.common.SolrInputDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds the search index from the search database.
+ */
+class SearchIndexRebuild extends SolrIndexRebuild<SearchEntity> {
+
+  /** The index manager creating the documents */
+  private final SolrIndexManager indexManager;
+
+  /** The search database */
+  private final SearchServiceDatabase persistence;
+
+  /** The organization directory */
+  private final OrganizationDirectoryService organizationDirectory;
+
+  /** The security service */
+  private final SecurityService securityService;
+
+  /** The name of the system user */
+  private final String systemUserName;
+
+  SearchIndexRebuild(SolrIndexManager indexManager, SearchServiceDatabase persistence,
+          OrganizationDirectoryService organizationDirectory, SecurityService securityService, String systemUserName) {
+    super("search", indexManager.getSolrServer(), Schema.ID);
+    this.indexManager = indexManager;
+    this.persistence = persistence;
+    this.organizationDirectory = organizationDirectory;
+    this.securityService = securityService;
+    this.systemUserName = systemUserName;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#countItems()
+   */
+  @Override
+  protected long countItems() throws Exception {
+    return persistence.countMediaPackages();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#loadItems(java.lang.Object, int)
+   */
+  @Override
+  protected List<SearchEntity> loadItems(SearchEntity last, int limit) throws Exception {
+    return persistence.getSearchEntities(last != null ? last.getMediaPackageId() : null, limit);
+  }
+
+  /**
+   * {@inheritDoc} Series documents have no entry of their own but are written along with their media packages, so they
+   * are removed once none of their media packages is left.
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#getRemovedIds(java.util.List)
+   */
+  @Override
+  protected List<String> getRemovedIds(List<String> ids) throws Exception {
+    List<String> removed = new ArrayList<String>();
+    for (String id : ids) {
+      try {
+        persistence.getOrganizationId(id);
+      } catch (NotFoundException e) {
+        removed.add(id);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#createDocuments(java.lang.Object)
+   */
+  @Override
+  protected List<SolrInputDocument> createDocuments(SearchEntity entity) throws Exception {
+    MediaPackage mediaPackage = MediaPackageParser.getFromXml(entity.getMediaPackageXML());
+    AccessControlList acl = null;
+    if (entity.getAccessControl() != null)
+      acl = AccessControlParser.parseAcl(entity.getAccessControl());
+
+    // Run as the system user of the media package's organization
+    Organization organization = organizationDirectory.getOrganization(entity.getOrganization());
+    securityService.setOrganization(organization);
+    securityService.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
+    try {
+      return indexManager.createInputDocuments(mediaPackage, acl, entity.getDeletionDate(),
+              entity.getModificationDate());
+    } finally {
+      securityService.setOrganization(null);
+      securityService.setUser(null);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#addDocuments(java.util.List)
+   */
+  @Override
+  protected void addDocuments(List<SolrInputDocument> documents) throws Exception {
+    indexManager.addDocuments(documents);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#deleteDocuments(java.util.List)
+   */
+  @Override
+  protected void deleteDocuments(List<String> ids) throws Exception {
+    indexManager.deleteDocuments(ids);
+  }
+
+}
@@ -46,19 +46,22 @@ import org.opencastproject.series.api.SeriesService;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
 import org.opencastproject.serviceregistry.api.ServiceRegistryException;
 import org.opencastproject.solr.SolrServerFactory;
+import org.opencastproject.solr.SolrIndexRebuildMXBean;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.PathSupport;
 import org.opencastproject.util.data.Tuple;
+import org.opencastproject.util.jmx.JmxUtil;
 import org.opencastproject.workspace.api.Workspace;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.osgi.framework.ServiceException;
 import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.EventAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,6 +77,8 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.management.ObjectInstance;
+
 /**
  * A Solr-based {@link SearchService} implementation.
  */
@@ -88,6 +93,30 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
   /** Configuration key for an embedded solr configuration and data directory */
   public static final String CONFIG_SOLR_ROOT = "org.opencastproject.search.solr.dir";
 
+  /** Configuration key for enabling batched, asynchronous updates of the search index */
+  public static final String CONFIG_INDEX_WRITE_BEHIND = "org.opencastproject.search.index.writebehind";
+
+  /** Configuration key for the maximum number of index updates waiting to be written */
+  public static final String CONFIG_INDEX_QUEUE_SIZE = "org.opencastproject.search.index.queue.size";
+
+  /** Configuration key for the maximum number of index updates written with a single commit */
+  public static final String CONFIG_INDEX_BATCH_SIZE = "org.opencastproject.search.index.batch.size";
+
+  /** Configuration key for the maximum time in milliseconds that an index update is held back to fill up a batch */
+  public static final String CONFIG_INDEX_COMMIT_DELAY = "org.opencastproject.search.index.commit.delay";
+
+  /** Default number of index updates waiting to be written */
+  public static final int DEFAULT_INDEX_QUEUE_SIZE = 1000;
+
+  /** Default number of index updates per commit */
+  public static final int DEFAULT_INDEX_BATCH_SIZE = 100;
+
+  /** Default time in milliseconds that an index update is held back */
+  public static final long DEFAULT_INDEX_COMMIT_DELAY = 1000L;
+
+  /** JMX type of the search index rebuild */
+  public static final String JMX_INDEX_REBUILD_TYPE = "SearchIndexRebuild";
+
   /** The job type */
   public static final String JOB_TYPE = "org.opencastproject.search";
 
@@ -124,12 +153,21 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
   /** Persistent storage */
   private SearchServiceDatabase persistence;
 
+  /** Rebuilds the search index from persistent storage */
+  private SearchIndexRebuild indexRebuild;
+
+  /** The index rebuild registered with JMX */
+  private ObjectInstance registeredMXBean;
+
   /** The user directory service */
   protected UserDirectoryService userDirectoryService = null;
 
   /** The organization directory service */
   protected OrganizationDirectoryService organizationDirectory = null;
 
+  /** The event admin that is notified about changes to the index */
+  private EventAdmin eventAdmin = null;
+
   /**
    * Creates a new instance of the search service.
    */
@@ -205,15 +243,59 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
     solrRequester = new SolrRequester(solrServer, securityService);
     indexManager = new SolrIndexManager(solrServer, workspace, mdServices, seriesService, mpeg7CatalogService,
             securityService);
+    indexManager.setEventAdmin(eventAdmin);
+
+    if (BooleanUtils.toBoolean(StringUtils.trimToNull(cc.getBundleContext().getProperty(CONFIG_INDEX_WRITE_BEHIND)))) {
+      int queueSize = (int) getConfiguredNumber(cc, CONFIG_INDEX_QUEUE_SIZE, DEFAULT_INDEX_QUEUE_SIZE);
+      int batchSize = (int) getConfiguredNumber(cc, CONFIG_INDEX_BATCH_SIZE, DEFAULT_INDEX_BATCH_SIZE);
+      long commitDelay = getConfiguredNumber(cc, CONFIG_INDEX_COMMIT_DELAY, DEFAULT_INDEX_COMMIT_DELAY);
+      indexManager.startWriteBehind(queueSize, batchSize, commitDelay);
+    }
 
     String systemUserName = cc.getBundleContext().getProperty(SecurityUtil.PROPERTY_KEY_SYS_USER);
+    getIndexRebuild(systemUserName).configure(cc.getBundleContext());
+    registeredMXBean = JmxUtil.registerMXBean(indexRebuild, JMX_INDEX_REBUILD_TYPE);
     populateIndex(systemUserName);
   }
 
+  /**
+   * Reads a positive number from the bundle configuration.
+   * 
+   * @param cc
+   *          the component context
+   * @param key
+   *          the configuration key
+   * @param defaultValue
+   *          the value to use if the key is missing or invalid
+   * @return the configured number
+   */
+  private static long getConfiguredNumber(ComponentContext cc, String key, long defaultValue) {
+    String value = StringUtils.trimToNull(cc.getBundleContext().getProperty(key));
+    if (value == null)
+      return defaultValue;
+    try {
+      long number = Long.parseLong(value);
+      if (number >= 0)
+        return number;
+    } catch (NumberFormatException e) {
+      // Handled below
+    }
+    logger.warn("Invalid value '{}' for '{}', using {}", new Object[] { value, key, defaultValue });
+    return defaultValue;
+  }
+
   /**
    * Service deactivator, called via declarative services configuration.
    */
   public void deactivate() {
+    if (registeredMXBean != null)
+      JmxUtil.unregisterMXBean(registeredMXBean);
+    try {
+      indexManager.stopWriteBehind();
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while writing the pending search index updates");
+      Thread.currentThread().interrupt();
+    }
     SolrServerFactory.shutdown(solrServer);
   }
 
@@ -347,6 +429,23 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
 
     Date now = new Date();
 
+    // In write-behind mode, the database entry is written first so that the update can be recovered from there
+    if (indexManager.isWriteBehind()) {
+      try {
+        persistence.storeMediaPackage(mediaPackage, acl, now);
+        indexManager.enqueue(mediaPackage, acl, null, now);
+        logger.info("Queued mediapackage {} for the search index", mediaPackage.getIdentifier());
+        return;
+      } catch (SearchServiceDatabaseException e) {
+        logger.error("Could not store media package to search database {}: {}", mediaPackage.getIdentifier(), e);
+        throw new SearchException(e);
+      } catch (SolrServerException e) {
+        throw new SearchException(e);
+      } catch (InterruptedException e) {
+        throw new SearchException(e);
+      }
+    }
+
     try {
       if (indexManager.add(mediaPackage, acl, now)) {
         logger.info("Added mediapackage {} to the search index", mediaPackage.getIdentifier());
@@ -395,6 +494,10 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
           NotFoundException {
     SearchResult result;
     try {
+      // Make sure a pending update of the media package is visible before checking its permissions
+      if (indexManager.isPending(mediaPackageId))
+        indexManager.flush();
+
       result = solrRequester.getForWrite(new SearchQuery().withId(mediaPackageId));
       if (result.getItems().length == 0) {
         logger.warn(
@@ -412,9 +515,15 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
         throw new SearchException(e);
       }
 
+      if (indexManager.isWriteBehind()) {
+        indexManager.enqueueDelete(mediaPackageId, now);
+        return true;
+      }
       return indexManager.delete(mediaPackageId, now);
     } catch (SolrServerException e) {
       throw new SearchException(e);
+    } catch (InterruptedException e) {
+      throw new SearchException(e);
     }
   }
 
@@ -482,47 +591,82 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
 
     if (instancesInSolr > 0) {
       logger.debug("Search index found");
+      if (indexManager.isWriteBehind())
+        recoverIndex(systemUserName);
       return;
     }
 
-    if (instancesInSolr == 0L) {
-      logger.info("No search index found");
-      logger.info("Starting population of search index from database");
-      Iterator<Tuple<MediaPackage, String>> mediaPackages;
+    logger.info("No search index found");
+    logger.info("Starting population of search index from database");
+    getIndexRebuild(systemUserName).run();
+  }
+
+  /**
+   * Returns the rebuild of the search index, creating it if needed.
+   * 
+   * @param systemUserName
+   *          the name of the system user
+   * @return the index rebuild
+   */
+  private synchronized SearchIndexRebuild getIndexRebuild(String systemUserName) {
+    if (indexRebuild == null)
+      indexRebuild = new SearchIndexRebuild(indexManager, persistence, organizationDirectory, securityService,
+              systemUserName);
+    return indexRebuild;
+  }
+
+  /**
+   * Returns the rebuild of the search index, which can be used to rebuild the index from the database and to track its
+   * progress.
+   * 
+   * @return the index rebuild or <code>null</code> if the service has not been activated
+   */
+  public synchronized SolrIndexRebuildMXBean getIndexRebuild() {
+    return indexRebuild;
+  }
+
+  /**
+   * Queues the search entries that have been modified in the database after the most recent update found in the index.
+   * In write-behind mode, these are updates that had been accepted but were not yet written to the index when the
+   * service was stopped.
+   * 
+   * @param systemUserName
+   *          the name of the system user
+   */
+  protected void recoverIndex(String systemUserName) {
+    Iterator<Tuple<MediaPackage, String>> mediaPackages;
+    try {
+      Date lastModified = indexManager.getLastModificationDate();
+      if (lastModified == null)
+        return;
+      mediaPackages = persistence.getMediaPackagesModifiedSince(lastModified);
+    } catch (SearchServiceDatabaseException e) {
+      logger.error("Unable to load the search entries that are missing from the index: {}", e.getMessage());
+      return;
+    }
+    int recovered = 0;
+    while (mediaPackages.hasNext()) {
+      Tuple<MediaPackage, String> mediaPackage = mediaPackages.next();
+      String mediaPackageId = mediaPackage.getA().getIdentifier().toString();
       try {
-        mediaPackages = persistence.getAllMediaPackages();
-      } catch (SearchServiceDatabaseException e) {
-        logger.error("Unable to load the search entries: {}", e.getMessage());
-        throw new ServiceException(e.getMessage());
-      }
-      int errors = 0;
-      while (mediaPackages.hasNext()) {
-        try {
-          Tuple<MediaPackage, String> mediaPackage = mediaPackages.next();
-
-          String mediaPackageId = mediaPackage.getA().getIdentifier().toString();
-
-          Organization organization = organizationDirectory.getOrganization(mediaPackage.getB());
-          securityService.setOrganization(organization);
-          securityService.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
-
-          AccessControlList acl = persistence.getAccessControlList(mediaPackageId);
-          Date modificationDate = persistence.getModificationDate(mediaPackageId);
-          Date deletionDate = persistence.getDeletionDate(mediaPackageId);
-
-          indexManager.add(mediaPackage.getA(), acl, deletionDate, modificationDate);
-        } catch (Exception e) {
-          logger.error("Unable to index search instances: {}", e);
-          errors++;
-        } finally {
-          securityService.setOrganization(null);
-          securityService.setUser(null);
-        }
+        Organization organization = organizationDirectory.getOrganization(mediaPackage.getB());
+        securityService.setOrganization(organization);
+        securityService.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
+
+        AccessControlList acl = persistence.getAccessControlList(mediaPackageId);
+        Date modificationDate = persistence.getModificationDate(mediaPackageId);
+        Date deletionDate = persistence.getDeletionDate(mediaPackageId);
+        indexManager.enqueue(mediaPackage.getA(), acl, deletionDate, modificationDate);
+        recovered++;
+      } catch (Exception e) {
+        logger.error("Unable to recover search index entry {}: {}", mediaPackageId, e);
+      } finally {
+        securityService.setOrganization(null);
+        securityService.setUser(null);
       }
-      if (errors > 0)
-        logger.error("Skipped {} erroneous search entries while populating the search index", errors);
-      logger.info("Finished populating search index");
     }
+    if (recovered > 0)
+      logger.info("Queued {} search entries that were missing from the search index", recovered);
   }
 
   /**
@@ -576,6 +720,21 @@ public final class SearchServiceImpl extends AbstractJobProducer implements Sear
       indexManager.setStaticMetadataServices(mdServices);
   }
 
+  /** Dynamic reference. */
+  public synchronized void setEventAdmin(EventAdmin eventAdmin) {
+    this.eventAdmin = eventAdmin;
+    if (indexManager != null)
+      indexManager.setEventAdmin(eventAdmin);
+  }
+
+  public synchronized void unsetEventAdmin(EventAdmin eventAdmin) {
+    if (this.eventAdmin != eventAdmin)
+      return;
+    this.eventAdmin = null;
+    if (indexManager != null)
+      indexManager.setEventAdmin(null);
+  }
+
   public void setMpeg7CatalogService(Mpeg7CatalogService mpeg7CatalogService) {
     this.mpeg7CatalogService = mpeg7CatalogService;
   }
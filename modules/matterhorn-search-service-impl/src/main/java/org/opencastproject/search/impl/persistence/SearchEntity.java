@@ -34,8 +34,13 @@ import javax.persistence.TemporalType;
 @Table(name = "mh_search")
 @NamedQueries({
         @NamedQuery(name = "Search.findAll", query = "SELECT s FROM SearchEntity s"),
+        @NamedQuery(name = "Search.findAllById", query = "SELECT s FROM SearchEntity s ORDER BY s.mediaPackageId"),
+        @NamedQuery(name = "Search.findAfterId", query = "SELECT s FROM SearchEntity s WHERE s.mediaPackageId > :mediaPackageId "
+                + "ORDER BY s.mediaPackageId"),
         @NamedQuery(name = "Search.getCount", query = "SELECT COUNT(s) FROM SearchEntity s"),
-        @NamedQuery(name = "Search.findById", query = "SELECT s FROM SearchEntity s WHERE s.mediaPackageId=:mediaPackageId") })
+        @NamedQuery(name = "Search.findById", query = "SELECT s FROM SearchEntity s WHERE s.mediaPackageId=:mediaPackageId"),
+        @NamedQuery(name = "Search.findModifiedSince", query = "SELECT s FROM SearchEntity s WHERE s.modificationDate > :since "
+                + "OR s.deletionDate > :since") })
 public class SearchEntity {
 
   /** media package id, primary key */
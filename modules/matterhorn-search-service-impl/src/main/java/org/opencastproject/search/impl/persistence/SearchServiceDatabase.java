@@ -23,6 +23,7 @@ import org.opencastproject.util.data.Tuple;
 
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * API that defines persistent storage of series.
@@ -39,6 +40,40 @@ public interface SearchServiceDatabase {
    */
   Iterator<Tuple<MediaPackage, String>> getAllMediaPackages() throws SearchServiceDatabaseException;
 
+  /**
+   * Returns the search entries that have been modified or deleted after the given date.
+   * 
+   * @param since
+   *          the date
+   * @return {@link Tuple} array representing the stored media packages
+   * @throws SearchServiceDatabaseException
+   *           if exception occurs
+   */
+  Iterator<Tuple<MediaPackage, String>> getMediaPackagesModifiedSince(Date since) throws SearchServiceDatabaseException;
+
+  /**
+   * Returns the number of search entries in persistent storage.
+   * 
+   * @return the number of entries
+   * @throws SearchServiceDatabaseException
+   *           if exception occurs
+   */
+  int countMediaPackages() throws SearchServiceDatabaseException;
+
+  /**
+   * Returns a page of the search entries in persistent storage, ordered by media package identifier.
+   * 
+   * @param afterId
+   *          the media package identifier of the last entry of the previous page, or <code>null</code> to start with
+   *          the first entry
+   * @param limit
+   *          the maximum number of entries
+   * @return the entries
+   * @throws SearchServiceDatabaseException
+   *           if exception occurs
+   */
+  List<SearchEntity> getSearchEntities(String afterId, int limit) throws SearchServiceDatabaseException;
+
   /**
    * Returns the organization id of the selected media package
    * 
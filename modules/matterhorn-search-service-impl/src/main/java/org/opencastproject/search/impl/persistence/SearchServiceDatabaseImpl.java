@@ -46,6 +46,7 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
+import javax.persistence.TemporalType;
 import javax.persistence.spi.PersistenceProvider;
 
 /**
@@ -184,6 +185,93 @@ public class SearchServiceDatabaseImpl implements SearchServiceDatabase {
     } finally {
       em.close();
     }
+    return toMediaPackages(searchEntities);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.search.impl.persistence.SearchServiceDatabase#getMediaPackagesModifiedSince(java.util.Date)
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<Tuple<MediaPackage, String>> getMediaPackagesModifiedSince(Date since)
+          throws SearchServiceDatabaseException {
+    List<SearchEntity> searchEntities = null;
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      Query query = em.createNamedQuery("Search.findModifiedSince");
+      query.setParameter("since", since, TemporalType.TIMESTAMP);
+      searchEntities = (List<SearchEntity>) query.getResultList();
+    } catch (Exception e) {
+      logger.error("Could not retrieve episodes modified since {}: {}", since, e.getMessage());
+      throw new SearchServiceDatabaseException(e);
+    } finally {
+      em.close();
+    }
+    return toMediaPackages(searchEntities);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.search.impl.persistence.SearchServiceDatabase#countMediaPackages()
+   */
+  @Override
+  public int countMediaPackages() throws SearchServiceDatabaseException {
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      Query query = em.createNamedQuery("Search.getCount");
+      return ((Number) query.getSingleResult()).intValue();
+    } catch (Exception e) {
+      logger.error("Could not count episodes: {}", e.getMessage());
+      throw new SearchServiceDatabaseException(e);
+    } finally {
+      em.close();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.search.impl.persistence.SearchServiceDatabase#getSearchEntities(java.lang.String, int)
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<SearchEntity> getSearchEntities(String afterId, int limit) throws SearchServiceDatabaseException {
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      Query query;
+      if (afterId == null) {
+        query = em.createNamedQuery("Search.findAllById");
+      } else {
+        query = em.createNamedQuery("Search.findAfterId");
+        query.setParameter("mediaPackageId", afterId);
+      }
+      query.setMaxResults(limit);
+      return (List<SearchEntity>) query.getResultList();
+    } catch (Exception e) {
+      logger.error("Could not retrieve episodes: {}", e.getMessage());
+      throw new SearchServiceDatabaseException(e);
+    } finally {
+      em.close();
+    }
+  }
+
+  /**
+   * Parses the media packages of the given search entities.
+   * 
+   * @param searchEntities
+   *          the entities
+   * @return the media packages along with their organization identifiers
+   * @throws SearchServiceDatabaseException
+   *           if a media package can't be parsed
+   */
+  private Iterator<Tuple<MediaPackage, String>> toMediaPackages(List<SearchEntity> searchEntities)
+          throws SearchServiceDatabaseException {
     List<Tuple<MediaPackage, String>> mediaPackageList = new LinkedList<Tuple<MediaPackage, String>>();
     try {
       for (SearchEntity entity : searchEntities) {
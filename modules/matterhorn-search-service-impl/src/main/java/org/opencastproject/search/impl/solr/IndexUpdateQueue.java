@@ -0,0 +1,434 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.search.impl.solr;
+
+import org.opencastproject.mediapackage.MediaPackage;
+import org.opencastproject.security.api.AccessControlList;
+import org.opencastproject.security.api.Organization;
+import org.opencastproject.security.api.User;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded write-behind queue for updates to the search index.
+ * <p>
+ * Updates are keyed by mediapackage identifier, so that repeated updates to the same mediapackage that arrive before
+ * the first one has been written are coalesced into one. A background thread hands the queued updates to the index in
+ * batches as soon as either the batch size is reached or the oldest update has been waiting for the commit delay.
+ * Producers are blocked while the queue is full.
+ * <p>
+ * Updates that can't be written stay in the queue and are retried with an increasing delay, unless a newer update of
+ * the same mediapackage has been queued in the meantime. Only when the queue is stopped, updates that fail once more
+ * are dropped.
+ */
+class IndexUpdateQueue implements Runnable {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(IndexUpdateQueue.class);
+
+  /** Time in milliseconds before the first retry of a failed update */
+  static final long MIN_RETRY_DELAY = 1000L;
+
+  /** Maximum time in milliseconds between two retries of a failed update */
+  static final long MAX_RETRY_DELAY = 60000L;
+
+  /** The index manager that writes the updates */
+  private final SolrIndexManager indexManager;
+
+  /** Maximum number of pending updates */
+  private final int capacity;
+
+  /** Maximum number of updates written and committed at once */
+  private final int batchSize;
+
+  /** Maximum time in milliseconds that an update is held back in order to fill up a batch */
+  private final long commitDelay;
+
+  /** The pending updates by mediapackage identifier, in the order of their arrival */
+  private final Map<String, Update> pending = new LinkedHashMap<String, Update>();
+
+  /** Identifiers of the mediapackages that are currently being written */
+  private final Set<String> inFlight = new HashSet<String>();
+
+  /** Number of threads waiting for the queue to be flushed */
+  private int flushing = 0;
+
+  /** Whether the queue accepts updates */
+  private boolean running = false;
+
+  /** The thread writing the updates */
+  private Thread worker = null;
+
+  /**
+   * Creates a new queue.
+   * 
+   * @param indexManager
+   *          the index manager
+   * @param capacity
+   *          maximum number of pending updates
+   * @param batchSize
+   *          maximum number of updates per commit
+   * @param commitDelay
+   *          maximum time in milliseconds an update is held back
+   */
+  IndexUpdateQueue(SolrIndexManager indexManager, int capacity, int batchSize, long commitDelay) {
+    if (capacity < 1 || batchSize < 1 || commitDelay < 0)
+      throw new IllegalArgumentException("Queue capacity and batch size must be positive, delay must not be negative");
+    this.indexManager = indexManager;
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.commitDelay = commitDelay;
+  }
+
+  /**
+   * Starts the thread writing the updates.
+   */
+  synchronized void start() {
+    if (running)
+      return;
+    running = true;
+    worker = new Thread(this, "Search index writer");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Writes the pending updates and stops the writer thread.
+   * 
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting for the writer
+   */
+  void stop() throws InterruptedException {
+    Thread t = null;
+    synchronized (this) {
+      if (!running)
+        return;
+      running = false;
+      t = worker;
+      notifyAll();
+    }
+    t.join();
+  }
+
+  /**
+   * Queues a mediapackage to be added to the index, replacing any pending update of the same mediapackage.
+   * 
+   * @param mediaPackage
+   *          the mediapackage
+   * @param acl
+   *          the access control list
+   * @param deletionDate
+   *          the deletion date or <code>null</code>
+   * @param modificationDate
+   *          the modification date
+   * @param organization
+   *          the organization to index the mediapackage for
+   * @param user
+   *          the user on whose behalf the mediapackage is indexed
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting for room in the queue
+   */
+  synchronized void add(MediaPackage mediaPackage, AccessControlList acl, Date deletionDate, Date modificationDate,
+          Organization organization, User user) throws InterruptedException {
+    String id = mediaPackage.getIdentifier().toString();
+    Update update = new Update(id, organization, user);
+    update.mediaPackage = mediaPackage;
+    update.acl = acl;
+    update.deletionDate = deletionDate;
+    update.modificationDate = modificationDate;
+    put(update);
+  }
+
+  /**
+   * Queues a mediapackage to be marked as deleted. If there is a pending update of the mediapackage, it will be written
+   * as deleted.
+   * 
+   * @param id
+   *          the mediapackage identifier
+   * @param deletionDate
+   *          the deletion date
+   * @param organization
+   *          the organization to index the mediapackage for
+   * @param user
+   *          the user on whose behalf the mediapackage is indexed
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting for room in the queue
+   */
+  synchronized void delete(String id, Date deletionDate, Organization organization, User user)
+          throws InterruptedException {
+    Update existing = pending.get(id);
+    if (existing != null) {
+      existing.deletionDate = deletionDate;
+      return;
+    }
+    Update update = new Update(id, organization, user);
+    update.deletionDate = deletionDate;
+    put(update);
+  }
+
+  /**
+   * Adds the update to the queue, waiting for room if needed.
+   */
+  private void put(Update update) throws InterruptedException {
+    if (!running)
+      throw new IllegalStateException("The search index queue is not running");
+    while (running && pending.size() >= capacity && !pending.containsKey(update.id))
+      wait();
+    if (pending.remove(update.id) != null)
+      logger.debug("Coalescing updates of {} in the search index queue", update.id);
+    pending.put(update.id, update);
+    notifyAll();
+  }
+
+  /**
+   * Returns <code>true</code> if there is an update of the mediapackage that has not been written yet.
+   * 
+   * @param id
+   *          the mediapackage identifier
+   * @return <code>true</code> if an update is pending
+   */
+  synchronized boolean isPending(String id) {
+    return pending.containsKey(id) || inFlight.contains(id);
+  }
+
+  /**
+   * Returns the number of updates that have not been written yet.
+   * 
+   * @return the number of pending updates
+   */
+  synchronized int size() {
+    return pending.size() + inFlight.size();
+  }
+
+  /**
+   * Waits until all updates that have been queued so far are written to the index, or have failed and are waiting to
+   * be retried.
+   * 
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting
+   */
+  synchronized void flush() throws InterruptedException {
+    flushing++;
+    try {
+      notifyAll();
+      while (!inFlight.isEmpty() || hasUnattempted())
+        wait();
+    } finally {
+      flushing--;
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if there are pending updates that have not been tried to write yet.
+   */
+  private boolean hasUnattempted() {
+    for (Update update : pending.values()) {
+      if (update.attempts == 0)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Discards all pending updates.
+   */
+  synchronized void clear() {
+    pending.clear();
+    notifyAll();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see java.lang.Runnable#run()
+   */
+  @Override
+  public void run() {
+    while (true) {
+      List<Update> batch = null;
+      try {
+        batch = nextBatch();
+      } catch (InterruptedException e) {
+        logger.warn("Search index writer interrupted with {} pending updates", size());
+        return;
+      }
+      if (batch == null)
+        return;
+      List<Update> failed = batch;
+      try {
+        failed = indexManager.write(batch);
+      } catch (Throwable t) {
+        logger.error("Error writing {} updates to the search index: {}", batch.size(), t.getMessage());
+      } finally {
+        synchronized (this) {
+          inFlight.clear();
+          retry(failed);
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Puts updates that could not be written back into the queue, to be retried after a delay that doubles with every
+   * failed attempt. Updates that have been superseded by a newer update of the same mediapackage are dropped, except for
+   * their mediapackage if the newer update is a deletion only.
+   * 
+   * @param failed
+   *          the updates that could not be written
+   */
+  private void retry(List<Update> failed) {
+    long now = System.currentTimeMillis();
+    for (Update update : failed) {
+      update.attempts++;
+      if (!running) {
+        logger.error("Dropping the update of {} after {} failed attempts, since the search index writer is stopping",
+                update.id, update.attempts);
+        continue;
+      }
+      Update newer = pending.get(update.id);
+      if (newer != null) {
+        if (newer.mediaPackage == null) {
+          newer.mediaPackage = update.mediaPackage;
+          newer.acl = update.acl;
+          newer.modificationDate = update.modificationDate;
+        }
+        continue;
+      }
+      long delay = Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min(update.attempts - 1, 16));
+      update.notBefore = now + delay;
+      pending.put(update.id, update);
+      logger.warn("Retrying the update of {} in the search index in {} ms", update.id, delay);
+    }
+  }
+
+  /**
+   * Waits for the next batch of updates to become ready. Once the queue has been stopped, failed updates are no longer
+   * held back.
+   * 
+   * @return the updates or <code>null</code> if the queue has been stopped and there is nothing left to write
+   */
+  private synchronized List<Update> nextBatch() throws InterruptedException {
+    while (true) {
+      if (pending.isEmpty()) {
+        if (!running)
+          return null;
+        wait();
+        continue;
+      }
+
+      // Find the oldest update that is not waiting to be retried
+      long now = System.currentTimeMillis();
+      Update first = null;
+      int ready = 0;
+      long nextRetry = Long.MAX_VALUE;
+      for (Update update : pending.values()) {
+        if (isReady(update, now)) {
+          if (first == null)
+            first = update;
+          ready++;
+        } else {
+          nextRetry = Math.min(nextRetry, update.notBefore);
+        }
+      }
+      if (first == null) {
+        wait(Math.max(1L, nextRetry - now));
+        continue;
+      }
+
+      // Give the batch a chance to fill up, unless someone is waiting for the updates
+      long remaining = first.queued + commitDelay - now;
+      if (running && flushing == 0 && ready < batchSize && remaining > 0) {
+        wait(remaining);
+        continue;
+      }
+
+      List<Update> batch = new ArrayList<Update>(Math.min(batchSize, ready));
+      Iterator<Update> updates = pending.values().iterator();
+      while (updates.hasNext() && batch.size() < batchSize) {
+        Update update = updates.next();
+        if (!isReady(update, now))
+          continue;
+        updates.remove();
+        inFlight.add(update.id);
+        batch.add(update);
+      }
+      notifyAll();
+      return batch;
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the update may be written now.
+   */
+  private boolean isReady(Update update, long now) {
+    return !running || update.notBefore <= now;
+  }
+
+  /**
+   * A pending update of the search index.
+   */
+  static final class Update {
+
+    /** The mediapackage identifier */
+    final String id;
+
+    /** The organization */
+    final Organization organization;
+
+    /** The user */
+    final User user;
+
+    /** The time the update has been queued */
+    final long queued = System.currentTimeMillis();
+
+    /** The mediapackage, or <code>null</code> if the update is a deletion only */
+    MediaPackage mediaPackage;
+
+    /** The access control list */
+    AccessControlList acl;
+
+    /** The modification date */
+    Date modificationDate;
+
+    /** The deletion date */
+    Date deletionDate;
+
+    /** The number of failed attempts to write the update */
+    int attempts = 0;
+
+    /** The time before which a failed update is not retried */
+    long notBefore = 0L;
+
+    Update(String id, Organization organization, User user) {
+      this.id = id;
+      this.organization = organization;
+      this.user = user;
+    }
+
+  }
+
+}
@@ -336,6 +336,11 @@ public final class Schema {
     return mkString(doc.get(DC_IS_PART_OF));
   }
 
+  public static String getDcIsPartOf(SolrInputDocument doc) {
+    SolrInputField f = doc.get(DC_IS_PART_OF);
+    return f != null ? mkString(f.getFirstValue()) : null;
+  }
+
   public static void setDcIsPartOf(SolrInputDocument doc, String isPartOf) {
     doc.setField(DC_IS_PART_OF, isPartOf);
   }
@@ -456,6 +461,11 @@ public final class Schema {
     return mkString(doc.get(OC_MEDIATYPE));
   }
 
+  public static String getOcMediatype(SolrInputDocument doc) {
+    SolrInputField f = doc.get(OC_MEDIATYPE);
+    return f != null ? mkString(f.getFirstValue()) : null;
+  }
+
   public static void setOcMediatype(SolrInputDocument doc, String mediatype) {
     doc.setField(OC_MEDIATYPE, mediatype);
   }
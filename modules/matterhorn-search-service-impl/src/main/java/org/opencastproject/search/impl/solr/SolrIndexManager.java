@@ -16,6 +16,8 @@
 
 package org.opencastproject.search.impl.solr;
 
+import static org.opencastproject.event.EventAdminConstants.ID;
+import static org.opencastproject.event.EventAdminConstants.SEARCH_TOPIC;
 import static org.opencastproject.search.api.SearchService.READ_PERMISSION;
 import static org.opencastproject.search.api.SearchService.WRITE_PERMISSION;
 import static org.opencastproject.util.RequireUtil.notNull;
@@ -61,8 +63,10 @@ import org.opencastproject.search.api.SearchResultItem.SearchResultItemType;
 import org.opencastproject.search.impl.persistence.SearchServiceDatabaseException;
 import org.opencastproject.security.api.AccessControlEntry;
 import org.opencastproject.security.api.AccessControlList;
+import org.opencastproject.security.api.Organization;
 import org.opencastproject.security.api.SecurityService;
 import org.opencastproject.security.api.UnauthorizedException;
+import org.opencastproject.security.api.User;
 import org.opencastproject.series.api.SeriesException;
 import org.opencastproject.series.api.SeriesService;
 import org.opencastproject.util.NotFoundException;
@@ -81,6 +85,8 @@ import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.servlet.SolrRequestParsers;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -94,11 +100,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -113,6 +124,9 @@ public class SolrIndexManager {
   /** Connection to the database */
   private SolrServer solrServer = null;
 
+  /** The queue of updates waiting to be written to solr, or <code>null</code> if updates are written immediately */
+  private IndexUpdateQueue queue = null;
+
   /**
    * Factor multiplied to fine tune relevance and confidence impact on important keyword decision. importance =
    * RELEVANCE_BOOST * relevance + confidence
@@ -136,6 +150,9 @@ public class SolrIndexManager {
 
   private SecurityService securityService;
 
+  /** The event admin that is notified about changes to the index, or <code>null</code> */
+  private volatile EventAdmin eventAdmin;
+
   /** Convert a DublinCoreValue into a date. */
   private static Function<DublinCoreValue, Option<Date>> toDateF = new Function<DublinCoreValue, Option<Date>>() {
     @Override
@@ -195,6 +212,54 @@ public class SolrIndexManager {
     setStaticMetadataServices(notNull(mdServices, "metadata service"));
   }
 
+  /**
+   * Sets the event admin that is notified about changes to the index.
+   * 
+   * @param eventAdmin
+   *          the event admin or <code>null</code> to stop sending events
+   */
+  public void setEventAdmin(EventAdmin eventAdmin) {
+    this.eventAdmin = eventAdmin;
+  }
+
+  /**
+   * Posts an event on {@link org.opencastproject.event.EventAdminConstants#SEARCH_TOPIC} for each series affected by
+   * the committed documents. Episodes that are not part of a series result in an event without series identifier,
+   * which tells listeners that any part of the index may have changed.
+   * 
+   * @param docs
+   *          the committed documents or <code>null</code> if the whole index has changed
+   */
+  private void indexChanged(Collection<SolrInputDocument> docs) {
+    EventAdmin eventAdmin = this.eventAdmin;
+    if (eventAdmin == null)
+      return;
+    Set<String> series = new LinkedHashSet<String>();
+    boolean unscoped = docs == null;
+    if (docs != null) {
+      for (SolrInputDocument doc : docs) {
+        if (doc == null)
+          continue;
+        String seriesId = SearchResultItemType.Series.toString().equals(Schema.getOcMediatype(doc)) ? Schema
+                .getId(doc) : Schema.getDcIsPartOf(doc);
+        if (seriesId != null)
+          series.add(seriesId);
+        else
+          unscoped = true;
+      }
+    }
+    if (unscoped) {
+      Dictionary<String, String> eventProperties = new Hashtable<String, String>();
+      eventAdmin.postEvent(new Event(SEARCH_TOPIC, eventProperties));
+      return;
+    }
+    for (String seriesId : series) {
+      Dictionary<String, String> eventProperties = new Hashtable<String, String>();
+      eventProperties.put(ID, seriesId);
+      eventAdmin.postEvent(new Event(SEARCH_TOPIC, eventProperties));
+    }
+  }
+
   /**
    * Clears the search index. Make sure you know what you are doing.
    * 
@@ -202,14 +267,236 @@ public class SolrIndexManager {
    *           if an errors occurs while talking to solr
    */
   public void clear() throws SolrServerException {
+    IndexUpdateQueue q = getQueue();
+    if (q != null)
+      q.clear();
     try {
       solrServer.deleteByQuery("*:*");
       solrServer.commit();
+      indexChanged(null);
     } catch (IOException e) {
       throw new SolrServerException(e);
     }
   }
 
+  /**
+   * Switches the index manager to write-behind mode. Updates passed to {@link #enqueue(MediaPackage, AccessControlList,
+   * Date, Date)} and {@link #enqueueDelete(String, Date)} are then collected in a bounded queue and written to solr in
+   * batches, with a single commit per batch.
+   * 
+   * @param capacity
+   *          maximum number of pending updates before callers are blocked
+   * @param batchSize
+   *          maximum number of updates per commit
+   * @param commitDelay
+   *          maximum time in milliseconds that an update is held back to fill up a batch
+   */
+  public synchronized void startWriteBehind(int capacity, int batchSize, long commitDelay) {
+    if (queue != null)
+      return;
+    queue = new IndexUpdateQueue(this, capacity, batchSize, commitDelay);
+    queue.start();
+    logger.info("Search index write-behind enabled with a queue of {} updates, {} updates per commit", capacity,
+            batchSize);
+  }
+
+  /**
+   * Writes all pending updates to the index and switches back to immediate updates.
+   * 
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting for the pending updates
+   */
+  public void stopWriteBehind() throws InterruptedException {
+    IndexUpdateQueue q = null;
+    synchronized (this) {
+      q = queue;
+      queue = null;
+    }
+    if (q != null)
+      q.stop();
+  }
+
+  /**
+   * Returns <code>true</code> if updates are written to the index in the background.
+   * 
+   * @return <code>true</code> if write-behind mode is enabled
+   */
+  public synchronized boolean isWriteBehind() {
+    return queue != null;
+  }
+
+  /**
+   * Queues the media package to be posted to solr. If write-behind mode is disabled, the media package is posted
+   * immediately.
+   * 
+   * @param mediaPackage
+   *          the media package to post
+   * @param acl
+   *          the access control list for this mediapackage
+   * @param deletionDate
+   *          the deletion date or <code>null</code>
+   * @param modificationDate
+   *          the modification date
+   * @throws SolrServerException
+   *           if an errors occurs while talking to solr
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting for room in the queue
+   */
+  public void enqueue(MediaPackage mediaPackage, AccessControlList acl, Date deletionDate, Date modificationDate)
+          throws SolrServerException, InterruptedException {
+    IndexUpdateQueue q = getQueue();
+    if (q == null) {
+      add(mediaPackage, acl, deletionDate, modificationDate);
+      return;
+    }
+    q.add(mediaPackage, acl, deletionDate, modificationDate, securityService.getOrganization(),
+            securityService.getUser());
+  }
+
+  /**
+   * Queues the entry with the given <code>id</code> to be marked as deleted. If write-behind mode is disabled, the entry
+   * is deleted immediately.
+   * 
+   * @param id
+   *          identifier of the episode to delete
+   * @param deletionDate
+   *          the deletion date
+   * @throws SolrServerException
+   *           if an errors occurs while talking to solr
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting for room in the queue
+   */
+  public void enqueueDelete(String id, Date deletionDate) throws SolrServerException, InterruptedException {
+    IndexUpdateQueue q = getQueue();
+    if (q == null) {
+      delete(id, deletionDate);
+      return;
+    }
+    q.delete(id, deletionDate, securityService.getOrganization(), securityService.getUser());
+  }
+
+  /**
+   * Returns <code>true</code> if there is a queued update of the given media package that has not yet been written to
+   * the index.
+   * 
+   * @param id
+   *          the media package identifier
+   * @return <code>true</code> if an update is pending
+   */
+  public boolean isPending(String id) {
+    IndexUpdateQueue q = getQueue();
+    return q != null && q.isPending(id);
+  }
+
+  /**
+   * Waits until all queued updates have been written to the index.
+   * 
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting
+   */
+  public void flush() throws InterruptedException {
+    IndexUpdateQueue q = getQueue();
+    if (q != null)
+      q.flush();
+  }
+
+  /**
+   * Returns the write-behind queue or <code>null</code> if updates are written immediately.
+   */
+  private synchronized IndexUpdateQueue getQueue() {
+    return queue;
+  }
+
+  /**
+   * Writes a batch of queued updates to solr and commits them at once. Series documents shared by several episodes of
+   * the batch are only posted once. If the batch can't be written, the updates are written one by one, so that a
+   * single broken media package does not prevent the others from being indexed.
+   * 
+   * @param updates
+   *          the updates
+   * @return the updates that could not be written
+   */
+  List<IndexUpdateQueue.Update> write(List<IndexUpdateQueue.Update> updates) {
+    try {
+      Map<String, SolrInputDocument> docs = new LinkedHashMap<String, SolrInputDocument>();
+      for (IndexUpdateQueue.Update update : updates) {
+        createInputDocuments(update, docs);
+      }
+      if (!docs.isEmpty()) {
+        solrServer.add(docs.values());
+        solrServer.commit();
+        indexChanged(docs.values());
+      }
+      logger.debug("Wrote {} queued updates to the search index", updates.size());
+      return Collections.emptyList();
+    } catch (Exception e) {
+      logger.warn("Writing {} updates to the search index failed, writing them one by one: {}", updates.size(),
+              e.getMessage());
+      try {
+        solrServer.rollback();
+      } catch (Exception e1) {
+        logger.warn("Unable to roll back the search index: {}", e1.getMessage());
+      }
+    }
+
+    if (updates.size() == 1) {
+      logger.warn("Unable to write media package {} to the search index", updates.get(0).id);
+      return updates;
+    }
+    List<IndexUpdateQueue.Update> failed = new ArrayList<IndexUpdateQueue.Update>();
+    for (IndexUpdateQueue.Update update : updates) {
+      failed.addAll(write(Collections.singletonList(update)));
+    }
+    return failed;
+  }
+
+  /**
+   * Creates the solr documents for a queued update in the name of the organization and user that queued it.
+   * 
+   * @param update
+   *          the update
+   * @param docs
+   *          the documents by identifier
+   */
+  private void createInputDocuments(IndexUpdateQueue.Update update, Map<String, SolrInputDocument> docs)
+          throws Exception {
+    Organization organization = securityService.getOrganization();
+    User user = null;
+    try {
+      user = securityService.getUser();
+    } catch (IllegalStateException e) {
+      user = null;
+    }
+    securityService.setOrganization(update.organization);
+    securityService.setUser(update.user);
+    try {
+      if (update.mediaPackage == null) {
+        SolrInputDocument deleted = docs.get(update.id);
+        if (deleted == null) {
+          SolrQuery query = new SolrQuery(Schema.ID + ":" + ClientUtils.escapeQueryChars(update.id) + " AND -"
+                  + Schema.OC_DELETED + ":[* TO *]");
+          QueryResponse response = solrServer.query(query);
+          if (response.getResults().size() == 0) {
+            logger.warn("Trying to delete non-existing media package {} from the search index", update.id);
+            return;
+          }
+          docs.put(update.id, createDeletedInputDocument(response.getResults().get(0), update.deletionDate));
+        } else {
+          Schema.setOcDeleted(deleted, update.deletionDate);
+        }
+        return;
+      }
+
+      for (SolrInputDocument doc : createInputDocuments(update.mediaPackage, update.acl, update.deletionDate,
+              update.modificationDate)) {
+        docs.put(doc.getFieldValue(Schema.ID).toString(), doc);
+      }
+    } finally {
+      securityService.setOrganization(organization);
+      securityService.setUser(user);
+    }
+  }
+
   /**
    * Removes the entry with the given <code>id</code> from the database. The entry can either be a series or an episode.
    * 
@@ -238,23 +525,35 @@ public class SolrIndexManager {
         return false;
       }
 
-      // Use all existing fields
-      SolrDocument doc = solrResponse.getResults().get(0);
-      SolrInputDocument inputDocument = new SolrInputDocument();
-      for (String field : doc.getFieldNames()) {
-        inputDocument.setField(field, doc.get(field));
-      }
-
-      // Set the oc_deleted field to the current date, then update
-      Schema.setOcDeleted(inputDocument, deletionDate);
+      // Use all existing fields and set the oc_deleted field to the current date, then update
+      SolrInputDocument inputDocument = createDeletedInputDocument(solrResponse.getResults().get(0), deletionDate);
       solrServer.add(inputDocument);
       solrServer.commit();
+      indexChanged(Collections.singletonList(inputDocument));
       return true;
     } catch (IOException e) {
       throw new SolrServerException(e);
     }
   }
 
+  /**
+   * Creates a copy of an existing solr document that is marked as deleted.
+   * 
+   * @param doc
+   *          the existing document
+   * @param deletionDate
+   *          the deletion date
+   * @return the input document
+   */
+  private SolrInputDocument createDeletedInputDocument(SolrDocument doc, Date deletionDate) {
+    SolrInputDocument inputDocument = new SolrInputDocument();
+    for (String field : doc.getFieldNames()) {
+      inputDocument.setField(field, doc.get(field));
+    }
+    Schema.setOcDeleted(inputDocument, deletionDate);
+    return inputDocument;
+  }
+
   /**
    * Posts the media package to solr. Depending on what is referenced in the media package, the method might create one
    * or two entries: one for the episode and one for the series that the episode belongs to.
@@ -292,6 +591,7 @@ public class SolrIndexManager {
       if (seriesDocument != null)
         solrServer.add(seriesDocument);
       solrServer.commit();
+      indexChanged(Arrays.asList(episodeDocument, seriesDocument));
       return true;
     } catch (Exception e) {
       throw new SolrServerException(e);
@@ -332,6 +632,7 @@ public class SolrIndexManager {
       solrServer.add(episodeDocument);
       solrServer.add(seriesDocument);
       solrServer.commit();
+      indexChanged(Arrays.asList(episodeDocument, seriesDocument));
       return true;
     } catch (Exception e) {
       try {
@@ -343,6 +644,89 @@ public class SolrIndexManager {
     }
   }
 
+  /**
+   * Creates the solr documents for a media package without posting them: one for the episode and, if the media package
+   * belongs to a series, one for the series. The documents are created on behalf of the current organization.
+   * 
+   * @param mediaPackage
+   *          the media package
+   * @param acl
+   *          the access control list for this mediapackage
+   * @param deletionDate
+   *          the deletion date or <code>null</code>
+   * @param modificationDate
+   *          the modification date
+   * @return the episode document, followed by the series document if there is one
+   * @throws Exception
+   *           if the documents can't be created
+   */
+  public List<SolrInputDocument> createInputDocuments(MediaPackage mediaPackage, AccessControlList acl,
+          Date deletionDate, Date modificationDate) throws Exception {
+    List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(2);
+    SolrInputDocument episodeDocument = createEpisodeInputDocument(mediaPackage, acl);
+    SolrInputDocument seriesDocument = createSeriesInputDocument(mediaPackage.getSeries(), acl);
+    if (seriesDocument != null)
+      Schema.enrich(episodeDocument, seriesDocument);
+    Schema.setOcModified(episodeDocument, modificationDate);
+    if (deletionDate != null)
+      Schema.setOcDeleted(episodeDocument, deletionDate);
+    docs.add(episodeDocument);
+    if (seriesDocument != null)
+      docs.add(seriesDocument);
+    return docs;
+  }
+
+  /**
+   * Posts documents created by {@link #createInputDocuments(MediaPackage, AccessControlList, Date, Date)} to solr and
+   * commits them, e.g. while the index is being rebuilt.
+   * 
+   * @param docs
+   *          the documents
+   * @throws SolrServerException
+   *           if an errors occurs while talking to solr
+   */
+  public void addDocuments(Collection<SolrInputDocument> docs) throws SolrServerException {
+    try {
+      solrServer.add(docs);
+      solrServer.commit();
+      indexChanged(docs);
+    } catch (Exception e) {
+      try {
+        solrServer.rollback();
+      } catch (IOException e1) {
+        logger.warn("Unable to roll back the search index: {}", e1.getMessage());
+      }
+      throw new SolrServerException(e);
+    }
+  }
+
+  /**
+   * Removes documents from the index for good, rather than marking them as deleted.
+   * 
+   * @param ids
+   *          the document identifiers
+   * @throws SolrServerException
+   *           if an errors occurs while talking to solr
+   */
+  public void deleteDocuments(List<String> ids) throws SolrServerException {
+    try {
+      solrServer.deleteById(ids);
+      solrServer.commit();
+      indexChanged(null);
+    } catch (IOException e) {
+      throw new SolrServerException(e);
+    }
+  }
+
+  /**
+   * Returns the solr server holding the index.
+   * 
+   * @return the solr server
+   */
+  public SolrServer getSolrServer() {
+    return solrServer;
+  }
+
   /**
    * Creates a solr input document for the episode metadata of the media package.
    * 
@@ -1246,6 +1630,35 @@ public class SolrIndexManager {
     return sb.toString();
   }
 
+  /**
+   * Returns the most recent modification or deletion date found in the index.
+   * 
+   * @return the date or <code>null</code> if the index is empty
+   * @throws SearchServiceDatabaseException
+   *           if the index can't be queried
+   */
+  public Date getLastModificationDate() throws SearchServiceDatabaseException {
+    Date last = null;
+    try {
+      for (String field : new String[] { Schema.OC_MODIFIED, Schema.OC_DELETED }) {
+        SolrQuery query = new SolrQuery(field + ":[* TO *]");
+        query.setFields(field);
+        query.addSortField(field, SolrQuery.ORDER.desc);
+        query.setRows(1);
+        QueryResponse response = solrServer.query(query);
+        if (response.getResults().size() == 0)
+          continue;
+        Date date = Schema.OC_MODIFIED.equals(field) ? Schema.getOcModified(response.getResults().get(0)) : Schema
+                .getOcDeleted(response.getResults().get(0));
+        if (date != null && (last == null || date.after(last)))
+          last = date;
+      }
+      return last;
+    } catch (SolrServerException e) {
+      throw new SearchServiceDatabaseException(e);
+    }
+  }
+
   /**
    * Returns number of entries in search index, across all organizations.
    * 
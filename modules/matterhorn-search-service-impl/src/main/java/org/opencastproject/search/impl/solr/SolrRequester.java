@@ -719,6 +719,9 @@ public class SolrRequester {
       query.addSortField(Schema.DC_CREATED, ORDER.desc);
       // If the dublin core field dc:created has not been filled in...
       query.addSortField(Schema.OC_MODIFIED, ORDER.desc);
+    } else if (q.isSortByModificationDateAndId()) {
+      query.addSortField(Schema.OC_MODIFIED, ORDER.asc);
+      query.addSortField(Schema.ID, ORDER.asc);
     }
 
     query.setFields("* score");
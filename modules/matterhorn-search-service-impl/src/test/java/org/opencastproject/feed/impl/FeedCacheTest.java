@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.feed.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the invalidation of cached feeds.
+ */
+public class FeedCacheTest {
+
+  @Test
+  public void testInvalidation() {
+    FeedCache cache = new FeedCache(10, 60000L);
+    cache.put("latest", entry("a", 1000L, null), cache.getGeneration());
+    cache.put("series1", entry("b", 1000L, "series1"), cache.getGeneration());
+    cache.put("series2", entry("c", 1000L, "series2"), cache.getGeneration());
+
+    // Feeds of other series are still valid, feeds across all series are not
+    cache.invalidate("series1");
+    assertNull(cache.get("latest"));
+    assertNull(cache.get("series1"));
+    assertNotNull(cache.get("series2"));
+
+    cache.invalidate(null);
+    assertNull(cache.get("series2"));
+  }
+
+  @Test
+  public void testInvalidationWhileRendering() {
+    FeedCache cache = new FeedCache(10, 60000L);
+    long generation = cache.getGeneration();
+    cache.invalidate("series1");
+    cache.put("series1", entry("a", 1000L, "series1"), generation);
+    assertNull(cache.get("series1"));
+  }
+
+  @Test
+  public void testModificationDate() {
+    FeedCache cache = new FeedCache(10, 60000L);
+    cache.put("latest", entry("a", 5000L, null), cache.getGeneration());
+    cache.invalidate(null);
+
+    // The newest entry has been removed, but the feed has changed nonetheless
+    FeedCache.Entry entry = cache.put("latest", entry("b", 3000L, null), cache.getGeneration());
+    assertTrue(entry.lastModified > 5000L);
+    assertEquals(entry, cache.get("latest"));
+  }
+
+  @Test
+  public void testCapacity() {
+    FeedCache cache = new FeedCache(2, 60000L);
+    cache.put("a", entry("a", 1000L, null), cache.getGeneration());
+    cache.put("b", entry("b", 1000L, null), cache.getGeneration());
+    cache.get("a");
+    cache.put("c", entry("c", 1000L, null), cache.getGeneration());
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+  }
+
+  private static FeedCache.Entry entry(String etag, long lastModified, String series) {
+    return new FeedCache.Entry(new byte[0], "UTF-8", etag, lastModified, series);
+  }
+
+}
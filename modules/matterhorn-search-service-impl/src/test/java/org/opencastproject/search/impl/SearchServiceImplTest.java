@@ -17,7 +17,9 @@
 package org.opencastproject.search.impl;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
 import org.opencastproject.job.api.JaxbJob;
@@ -540,6 +542,37 @@ public class SearchServiceImplTest {
     assertEquals(1, service.getByQuery(q).size());
   }
 
+  /**
+   * Test whether queued updates are coalesced and become visible once the queue has been flushed.
+   */
+  @Test
+  public void testWriteBehind() throws Exception {
+    MediaPackage mediaPackage = getMediaPackage("/manifest-simple.xml");
+    String id = mediaPackage.getIdentifier().toString();
+    acl.getEntries().add(new AccessControlEntry(ROLE_STUDENT, SearchService.READ_PERMISSION, true));
+    acl.getEntries().add(new AccessControlEntry(ROLE_STUDENT, SearchService.WRITE_PERMISSION, true));
+
+    SolrIndexManager indexManager = service.getSolrIndexManager();
+    indexManager.startWriteBehind(10, 10, 60000L);
+    try {
+      service.addSynchronously(mediaPackage);
+      service.addSynchronously(mediaPackage);
+      assertTrue(indexManager.isPending(id));
+
+      indexManager.flush();
+      assertFalse(indexManager.isPending(id));
+      assertEquals(1, service.getByQuery(new SearchQuery().withId(id)).size());
+
+      Date deletedDate = new Date();
+      assertTrue(service.deleteSynchronously(id));
+      indexManager.flush();
+      assertEquals(0, service.getByQuery(new SearchQuery().withId(id)).size());
+      assertEquals(1, service.getByQuery(new SearchQuery().withDeletedSince(deletedDate)).size());
+    } finally {
+      indexManager.stopWriteBehind();
+    }
+  }
+
   /**
    * Ads a media package with one dublin core for the episode and one for the series.
    * 
@@ -0,0 +1,136 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.search.impl.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.metadata.api.StaticMetadataService;
+import org.opencastproject.metadata.mpeg7.Mpeg7CatalogService;
+import org.opencastproject.security.api.DefaultOrganization;
+import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.series.api.SeriesService;
+import org.opencastproject.workspace.api.Workspace;
+
+import org.apache.solr.client.solrj.SolrServer;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests the retries of the search index write-behind queue.
+ */
+public class IndexUpdateQueueTest {
+
+  /** The index manager whose writes fail a number of times */
+  private FailingIndexManager indexManager = null;
+
+  @Before
+  public void setUp() throws Exception {
+    indexManager = new FailingIndexManager();
+  }
+
+  /**
+   * Tests that an update that can't be written to the index is kept and written once the index is available again.
+   */
+  @Test
+  public void testFailedUpdateIsRetried() throws Exception {
+    indexManager.failures = 1;
+    IndexUpdateQueue queue = new IndexUpdateQueue(indexManager, 10, 10, 0L);
+    queue.start();
+    try {
+      queue.delete("a", new Date(), new DefaultOrganization(), null);
+      queue.flush();
+      assertTrue(queue.isPending("a"));
+      assertTrue(indexManager.getWritten().isEmpty());
+
+      long timeout = System.currentTimeMillis() + IndexUpdateQueue.MIN_RETRY_DELAY * 10;
+      while (queue.isPending("a") && System.currentTimeMillis() < timeout)
+        Thread.sleep(50);
+      assertFalse(queue.isPending("a"));
+      assertEquals(Collections.singletonList("a"), indexManager.getWritten());
+      assertEquals(2, indexManager.getAttempts());
+    } finally {
+      queue.stop();
+    }
+  }
+
+  /**
+   * Tests that updates waiting to be retried are written when the queue is stopped.
+   */
+  @Test
+  public void testFailedUpdateIsWrittenOnStop() throws Exception {
+    indexManager.failures = 1;
+    IndexUpdateQueue queue = new IndexUpdateQueue(indexManager, 10, 10, 0L);
+    queue.start();
+    queue.delete("a", new Date(), new DefaultOrganization(), null);
+    queue.flush();
+    assertTrue(queue.isPending("a"));
+
+    queue.stop();
+    assertFalse(queue.isPending("a"));
+    assertEquals(Collections.singletonList("a"), indexManager.getWritten());
+  }
+
+  /**
+   * Index manager that fails to write a given number of times before it succeeds.
+   */
+  static class FailingIndexManager extends SolrIndexManager {
+
+    /** Number of writes that are still going to fail */
+    int failures = 0;
+
+    /** Number of writes */
+    private int attempts = 0;
+
+    /** Identifiers of the written updates */
+    private final List<String> written = new ArrayList<String>();
+
+    FailingIndexManager() {
+      super(EasyMock.createNiceMock(SolrServer.class), EasyMock.createNiceMock(Workspace.class),
+              new ArrayList<StaticMetadataService>(), EasyMock.createNiceMock(SeriesService.class), EasyMock
+                      .createNiceMock(Mpeg7CatalogService.class), EasyMock.createNiceMock(SecurityService.class));
+    }
+
+    @Override
+    synchronized List<IndexUpdateQueue.Update> write(List<IndexUpdateQueue.Update> updates) {
+      attempts++;
+      if (failures > 0) {
+        failures--;
+        return updates;
+      }
+      for (IndexUpdateQueue.Update update : updates)
+        written.add(update.id);
+      return Collections.emptyList();
+    }
+
+    synchronized int getAttempts() {
+      return attempts;
+    }
+
+    synchronized List<String> getWritten() {
+      return new ArrayList<String>(written);
+    }
+
+  }
+
+}
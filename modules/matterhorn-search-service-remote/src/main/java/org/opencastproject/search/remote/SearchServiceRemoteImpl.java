@@ -189,7 +189,12 @@ public class SearchServiceRemoteImpl extends RemoteBase implements SearchService
     StringBuilder url = new StringBuilder();
     List<NameValuePair> queryStringParams = new ArrayList<NameValuePair>();
 
-    if (q.getSeriesId() != null || q.getElementFlavors() != null || q.getElementTags() != null) {
+    if (q.getQuery() != null) {
+      url.append("/lucene.xml?");
+      queryStringParams.add(new BasicNameValuePair("q", q.getQuery()));
+      if (q.isSortByModificationDateAndId())
+        queryStringParams.add(new BasicNameValuePair("sort", "modified"));
+    } else if (q.getSeriesId() != null || q.getElementFlavors() != null || q.getElementTags() != null) {
       url.append("/episode.xml?");
 
       if (q.getSeriesId() != null)
@@ -213,10 +218,10 @@ public class SearchServiceRemoteImpl extends RemoteBase implements SearchService
     }
 
     // General query parameters
-    if (q.getText() != null)
+    if (q.getText() != null && q.getQuery() == null)
       queryStringParams.add(new BasicNameValuePair("q", q.getText()));
 
-    if (q.getId() != null)
+    if (q.getId() != null && q.getQuery() == null)
       queryStringParams.add(new BasicNameValuePair("id", q.getId()));
 
     if (admin) {
@@ -17,11 +17,13 @@ package org.opencastproject.series.impl;
 
 import org.opencastproject.metadata.dublincore.DublinCoreCatalog;
 import org.opencastproject.security.api.AccessControlList;
+import org.opencastproject.series.impl.persistence.SeriesEntity;
 import org.opencastproject.security.api.UnauthorizedException;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.data.Tuple;
 
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * API that defines persistent storage of series.
@@ -80,6 +82,23 @@ public interface SeriesServiceDatabase {
    */
   Iterator<Tuple<DublinCoreCatalog, String>> getAllSeries() throws SeriesServiceDatabaseException;
 
+  /**
+   * Returns a page of the series in persistent storage, ordered by organization and series identifier.
+   * 
+   * @param afterOrganization
+   *          the organization of the last series of the previous page, or <code>null</code> to start with the first
+   *          series
+   * @param afterSeriesId
+   *          the identifier of the last series of the previous page
+   * @param limit
+   *          the maximum number of series
+   * @return the series entities
+   * @throws SeriesServiceDatabaseException
+   *           if exception occurs
+   */
+  List<SeriesEntity> getSeriesEntities(String afterOrganization, String afterSeriesId, int limit)
+          throws SeriesServiceDatabaseException;
+
   /**
    * Retrieves ACL for series with given ID.
    * 
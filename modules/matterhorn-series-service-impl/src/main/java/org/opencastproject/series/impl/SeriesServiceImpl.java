@@ -40,10 +40,13 @@ import org.opencastproject.security.util.SecurityUtil;
 import org.opencastproject.series.api.SeriesException;
 import org.opencastproject.series.api.SeriesQuery;
 import org.opencastproject.series.api.SeriesService;
+import org.opencastproject.series.impl.solr.SeriesIndexRebuild;
+import org.opencastproject.series.impl.solr.SeriesServiceSolrIndex;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.data.FunctionException;
 import org.opencastproject.util.data.Option;
 import org.opencastproject.util.data.Tuple;
+import org.opencastproject.util.jmx.JmxUtil;
 
 import org.apache.commons.lang.StringUtils;
 import org.osgi.framework.ServiceException;
@@ -61,6 +64,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import javax.management.ObjectInstance;
+
 /**
  * Implements {@link SeriesService}. Uses {@link SeriesServiceDatabase} for permanent storage and
  * {@link SeriesServiceIndex} for searching.
@@ -70,6 +75,9 @@ public class SeriesServiceImpl implements SeriesService {
   /** Logging utility */
   private static final Logger logger = LoggerFactory.getLogger(SeriesServiceImpl.class);
 
+  /** JMX type of the series index rebuild */
+  public static final String JMX_INDEX_REBUILD_TYPE = "SeriesIndexRebuild";
+
   /** Index for searching */
   protected SeriesServiceIndex index;
 
@@ -85,6 +93,12 @@ public class SeriesServiceImpl implements SeriesService {
   /** The OSGI event admin service */
   protected EventAdmin eventAdmin;
 
+  /** Rebuilds the series index from persistent storage, if the index is solr based */
+  protected SeriesIndexRebuild indexRebuild;
+
+  /** The index rebuild registered with JMX */
+  private ObjectInstance registeredMXBean;
+
   /** OSGi callback for setting index. */
   public void setIndex(SeriesServiceIndex index) {
     this.index = index;
@@ -118,9 +132,23 @@ public class SeriesServiceImpl implements SeriesService {
   public void activate(ComponentContext cc) throws Exception {
     logger.info("Activating Series Service");
     String systemUserName = cc.getBundleContext().getProperty(SecurityUtil.PROPERTY_KEY_SYS_USER);
+    if (index instanceof SeriesServiceSolrIndex) {
+      indexRebuild = new SeriesIndexRebuild((SeriesServiceSolrIndex) index, persistence, orgDirectory,
+              securityService, systemUserName);
+      indexRebuild.configure(cc.getBundleContext());
+      registeredMXBean = JmxUtil.registerMXBean(indexRebuild, JMX_INDEX_REBUILD_TYPE);
+    }
     populateSolr(systemUserName);
   }
 
+  /**
+   * Deactivates the series service.
+   */
+  public void deactivate() {
+    if (registeredMXBean != null)
+      JmxUtil.unregisterMXBean(registeredMXBean);
+  }
+
   /** If the solr index is empty, but there are series in the database, populate the solr index. */
   private void populateSolr(String systemUserName) {
     long instancesInSolr = 0L;
@@ -129,7 +157,10 @@ public class SeriesServiceImpl implements SeriesService {
     } catch (Exception e) {
       throw new IllegalStateException(e);
     }
-    if (instancesInSolr == 0L) {
+    if (instancesInSolr == 0L && indexRebuild != null) {
+      logger.info("The series index is empty. Populating it now with series");
+      indexRebuild.run();
+    } else if (instancesInSolr == 0L) {
       try {
         Iterator<Tuple<DublinCoreCatalog, String>> databaseSeries = persistence.getAllSeries();
         if (databaseSeries.hasNext()) {
@@ -35,6 +35,9 @@ import javax.persistence.Table;
 @Table(name = "mh_series")
 @NamedQueries({
         @NamedQuery(name = "Series.findAll", query = "select s from SeriesEntity s"),
+        @NamedQuery(name = "Series.findAllById", query = "select s from SeriesEntity s order by s.organization, s.seriesId"),
+        @NamedQuery(name = "Series.findAfterId", query = "select s from SeriesEntity s where s.organization > :organization "
+                + "or (s.organization = :organization and s.seriesId > :seriesId) order by s.organization, s.seriesId"),
         @NamedQuery(name = "Series.getCount", query = "select COUNT(s) from SeriesEntity s"),
         @NamedQuery(name = "seriesById", query = "select s from SeriesEntity as s where s.seriesId=:seriesId and s.organization=:organization"),
         @NamedQuery(name = "allSeriesInOrg", query = "select s from SeriesEntity as s where s.organization=:organization") })
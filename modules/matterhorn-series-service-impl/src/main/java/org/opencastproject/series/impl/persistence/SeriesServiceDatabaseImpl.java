@@ -241,6 +241,36 @@ public class SeriesServiceDatabaseImpl implements SeriesServiceDatabase {
     return seriesList.iterator();
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.opencastproject.series.impl.SeriesServiceDatabase#getSeriesEntities(java.lang.String,
+   *      java.lang.String, int)
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<SeriesEntity> getSeriesEntities(String afterOrganization, String afterSeriesId, int limit)
+          throws SeriesServiceDatabaseException {
+    EntityManager em = emf.createEntityManager();
+    Query query;
+    if (afterOrganization == null) {
+      query = em.createNamedQuery("Series.findAllById");
+    } else {
+      query = em.createNamedQuery("Series.findAfterId");
+      query.setParameter("organization", afterOrganization);
+      query.setParameter("seriesId", afterSeriesId);
+    }
+    query.setMaxResults(limit);
+    try {
+      return (List<SeriesEntity>) query.getResultList();
+    } catch (Exception e) {
+      logger.error("Could not retrieve series: {}", e.getMessage());
+      throw new SeriesServiceDatabaseException(e);
+    } finally {
+      em.close();
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
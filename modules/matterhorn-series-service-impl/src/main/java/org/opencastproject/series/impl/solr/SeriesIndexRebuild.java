@@ -0,0 +1,179 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.series.impl.solr;
+
+import org.opencastproject.metadata.dublincore.DublinCoreCatalog;
+import org.opencastproject.security.api.AccessControlParser;
+import org.opencastproject.security.api.Organization;
+import org.opencastproject.security.api.OrganizationDirectoryService;
+import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.security.util.SecurityUtil;
+import org.opencastproject.series.impl.SeriesServiceDatabase;
+import org.opencastproject.series.impl.persistence.SeriesEntity;
+import org.opencastproject.solr.SolrIndexRebuild;
+import org.opencastproject.util.NotFoundException;
+
+import org.apache.solr.common.SolrInputDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rebuilds the series index from the series database.
+ */
+public class SeriesIndexRebuild extends SolrIndexRebuild<SeriesEntity> {
+
+  /** The series index */
+  private final SeriesServiceSolrIndex index;
+
+  /** The series database */
+  private final SeriesServiceDatabase persistence;
+
+  /** The organization directory */
+  private final OrganizationDirectoryService organizationDirectory;
+
+  /** The security service */
+  private final SecurityService securityService;
+
+  /** The name of the system user */
+  private final String systemUserName;
+
+  /**
+   * Creates a rebuild of the series index.
+   * 
+   * @param index
+   *          the series index
+   * @param persistence
+   *          the series database
+   * @param organizationDirectory
+   *          the organization directory
+   * @param securityService
+   *          the security service
+   * @param systemUserName
+   *          the name of the system user
+   */
+  public SeriesIndexRebuild(SeriesServiceSolrIndex index, SeriesServiceDatabase persistence,
+          OrganizationDirectoryService organizationDirectory, SecurityService securityService, String systemUserName) {
+    super("series", index.getSolrServer(), SolrFields.COMPOSITE_ID_KEY);
+    this.index = index;
+    this.persistence = persistence;
+    this.organizationDirectory = organizationDirectory;
+    this.securityService = securityService;
+    this.systemUserName = systemUserName;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#countItems()
+   */
+  @Override
+  protected long countItems() throws Exception {
+    return persistence.countSeries();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#loadItems(java.lang.Object, int)
+   */
+  @Override
+  protected List<SeriesEntity> loadItems(SeriesEntity last, int limit) throws Exception {
+    if (last == null)
+      return persistence.getSeriesEntities(null, null, limit);
+    return persistence.getSeriesEntities(last.getOrganization(), last.getSeriesId(), limit);
+  }
+
+  /**
+   * {@inheritDoc} The documents are identified by the organization and the series identifier, joined by an underscore.
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#getRemovedIds(java.util.List)
+   */
+  @Override
+  protected List<String> getRemovedIds(List<String> ids) throws Exception {
+    List<Organization> organizations = organizationDirectory.getOrganizations();
+    List<String> removed = new ArrayList<String>();
+    for (String id : ids) {
+      boolean found = false;
+      for (Organization organization : organizations) {
+        String prefix = organization.getId() + "_";
+        if (found || !id.startsWith(prefix))
+          continue;
+        securityService.setOrganization(organization);
+        securityService.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
+        try {
+          persistence.getSeries(id.substring(prefix.length()));
+          found = true;
+        } catch (NotFoundException e) {
+          // Not a series of this organization
+        } finally {
+          securityService.setOrganization(null);
+          securityService.setUser(null);
+        }
+      }
+      if (!found)
+        removed.add(id);
+    }
+    return removed;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#createDocuments(java.lang.Object)
+   */
+  @Override
+  protected List<SolrInputDocument> createDocuments(SeriesEntity entity) throws Exception {
+    DublinCoreCatalog dc = index.parseDublinCore(entity.getDublinCoreXML());
+
+    // Run as the system user of the series' organization
+    Organization organization = organizationDirectory.getOrganization(entity.getOrganization());
+    securityService.setOrganization(organization);
+    securityService.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
+    try {
+      SolrInputDocument doc = index.createDocument(dc);
+      if (entity.getAccessControl() != null)
+        index.addAccessControl(doc, AccessControlParser.parseAcl(entity.getAccessControl()),
+                entity.getAccessControl());
+      return Collections.singletonList(doc);
+    } finally {
+      securityService.setOrganization(null);
+      securityService.setUser(null);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#addDocuments(java.util.List)
+   */
+  @Override
+  protected void addDocuments(List<SolrInputDocument> documents) throws Exception {
+    index.addDocuments(documents);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#deleteDocuments(java.util.List)
+   */
+  @Override
+  protected void deleteDocuments(List<String> ids) throws Exception {
+    index.deleteDocuments(ids);
+  }
+
+}
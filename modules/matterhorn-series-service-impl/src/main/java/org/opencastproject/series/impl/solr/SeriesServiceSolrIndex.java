@@ -352,16 +352,7 @@ public class SeriesServiceSolrIndex implements SeriesServiceIndex {
     }
 
     final SolrInputDocument inputDoc = ClientUtils.toSolrInputDocument(seriesDoc);
-    inputDoc.setField(SolrFields.ACCESS_CONTROL_KEY, serializedAC);
-    for (AccessControlEntry ace : accessControl.getEntries()) {
-      if (SeriesService.CONTRIBUTE_CONTENT_PERMISSION.equals(ace.getAction()) && ace.isAllow()) {
-        inputDoc.addField(SolrFields.ACCESS_CONTROL_CONTRIBUTE, ace.getRole());
-      } else if (SeriesService.EDIT_SERIES_PERMISSION.equals(ace.getAction()) && ace.isAllow()) {
-        inputDoc.addField(SolrFields.ACCESS_CONTROL_EDIT, ace.getRole());
-      } else if (SeriesService.READ_CONTENT_PERMISSION.equals(ace.getAction()) && ace.isAllow()) {
-        inputDoc.addField(SolrFields.ACCESS_CONTROL_READ, ace.getRole());
-      }
-    }
+    addAccessControl(inputDoc, accessControl, serializedAC);
 
     if (synchronousIndexing) {
       try {
@@ -390,6 +381,76 @@ public class SeriesServiceSolrIndex implements SeriesServiceIndex {
     }
   }
 
+  /**
+   * Adds the access control fields to a series document.
+   * 
+   * @param doc
+   *          the series document
+   * @param accessControl
+   *          the access control list
+   * @param serializedAC
+   *          the serialized access control list
+   */
+  void addAccessControl(SolrInputDocument doc, AccessControlList accessControl, String serializedAC) {
+    doc.setField(SolrFields.ACCESS_CONTROL_KEY, serializedAC);
+    for (AccessControlEntry ace : accessControl.getEntries()) {
+      if (SeriesService.CONTRIBUTE_CONTENT_PERMISSION.equals(ace.getAction()) && ace.isAllow()) {
+        doc.addField(SolrFields.ACCESS_CONTROL_CONTRIBUTE, ace.getRole());
+      } else if (SeriesService.EDIT_SERIES_PERMISSION.equals(ace.getAction()) && ace.isAllow()) {
+        doc.addField(SolrFields.ACCESS_CONTROL_EDIT, ace.getRole());
+      } else if (SeriesService.READ_CONTENT_PERMISSION.equals(ace.getAction()) && ace.isAllow()) {
+        doc.addField(SolrFields.ACCESS_CONTROL_READ, ace.getRole());
+      }
+    }
+  }
+
+  /**
+   * Posts documents to the index and commits them, e.g. while the index is being rebuilt.
+   * 
+   * @param docs
+   *          the documents
+   * @throws SeriesServiceDatabaseException
+   *           if the documents can't be written
+   */
+  void addDocuments(List<SolrInputDocument> docs) throws SeriesServiceDatabaseException {
+    try {
+      synchronized (solrServer) {
+        solrServer.add(docs);
+        solrServer.commit();
+      }
+    } catch (Exception e) {
+      throw new SeriesServiceDatabaseException(e);
+    }
+  }
+
+  /**
+   * Removes documents from the index and commits.
+   * 
+   * @param ids
+   *          the composite keys of the documents
+   * @throws SeriesServiceDatabaseException
+   *           if the documents can't be removed
+   */
+  void deleteDocuments(List<String> ids) throws SeriesServiceDatabaseException {
+    try {
+      synchronized (solrServer) {
+        solrServer.deleteById(ids);
+        solrServer.commit();
+      }
+    } catch (Exception e) {
+      throw new SeriesServiceDatabaseException(e);
+    }
+  }
+
+  /**
+   * Returns the solr server holding the index.
+   * 
+   * @return the solr server
+   */
+  SolrServer getSolrServer() {
+    return solrServer;
+  }
+
   /**
    * Creates solr document for inserting into solr index.
    * 
@@ -978,7 +1039,7 @@ public class SeriesServiceSolrIndex implements SeriesServiceIndex {
    * @throws IOException
    *           if parsing fails
    */
-  private DublinCoreCatalog parseDublinCore(String dcXML) throws IOException {
+  DublinCoreCatalog parseDublinCore(String dcXML) throws IOException {
     DublinCoreCatalog dc = dcService.load(IOUtils.toInputStream(dcXML, "UTF-8"));
     return dc;
   }
@@ -533,6 +533,72 @@ public class ServiceRegistryRemoteImpl implements ServiceRegistry {
     throw new ServiceRegistryException("Unable to retrieve job " + id + " (" + responseStatusCode + ")");
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#getJobs(java.util.List)
+   */
+  @Override
+  public List<Job> getJobs(List<Long> ids) throws ServiceRegistryException {
+    if (ids.isEmpty())
+      return new ArrayList<Job>();
+    QueryStringBuilder qsb = new QueryStringBuilder("jobs.xml");
+    for (Long id : ids) {
+      qsb.add("id", Long.toString(id));
+    }
+    HttpGet get = new HttpGet(UrlSupport.concat(serviceURL, qsb.toString()));
+    HttpResponse response = null;
+    int responseStatusCode;
+    try {
+      response = client.execute(get);
+      responseStatusCode = response.getStatusLine().getStatusCode();
+      if (responseStatusCode == HttpStatus.SC_OK) {
+        JaxbJobList jaxbJobList = JobParser.parseJobList(response.getEntity().getContent());
+        return new ArrayList<Job>(jaxbJobList.getJobs());
+      }
+    } catch (IOException e) {
+      throw new ServiceRegistryException("Unable to get jobs " + ids, e);
+    } finally {
+      client.close(response);
+    }
+    throw new ServiceRegistryException("Unable to get jobs " + ids + " (" + responseStatusCode + ")");
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#waitForJobs(java.util.List, long)
+   */
+  @Override
+  public List<Job> waitForJobs(List<Long> ids, long timeout) throws NotFoundException, ServiceRegistryException {
+    QueryStringBuilder qsb = new QueryStringBuilder("jobs/wait.xml").add("timeout", Long.toString(timeout));
+    for (Long id : ids) {
+      qsb.add("id", Long.toString(id));
+    }
+    HttpGet get = new HttpGet(UrlSupport.concat(serviceURL, qsb.toString()));
+    HttpResponse response = null;
+    int responseStatusCode;
+    try {
+      response = client.execute(get);
+      responseStatusCode = response.getStatusLine().getStatusCode();
+      if (responseStatusCode == HttpStatus.SC_OK) {
+        JaxbJobList jaxbJobList = JobParser.parseJobList(response.getEntity().getContent());
+        return new ArrayList<Job>(jaxbJobList.getJobs());
+      }
+    } catch (IOException e) {
+      throw new ServiceRegistryException("Unable to wait for jobs " + ids, e);
+    } finally {
+      client.close(response);
+    }
+    if (responseStatusCode == HttpStatus.SC_NOT_FOUND) {
+      // Either one of the jobs does not exist, or the remote service registry does not know how to wait for jobs
+      for (Long id : ids) {
+        getJob(id);
+      }
+    }
+    throw new ServiceRegistryException("Unable to wait for jobs " + ids + " (" + responseStatusCode + ")");
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -595,6 +661,35 @@ public class ServiceRegistryRemoteImpl implements ServiceRegistry {
     throw new ServiceRegistryException("Unable to retrieve jobs via http:" + response.getStatusLine());
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#getJobs(java.lang.String, java.lang.String, long,
+   *      int)
+   */
+  @Override
+  public List<Job> getJobs(String serviceType, String operation, long afterId, int limit)
+          throws ServiceRegistryException {
+    QueryStringBuilder qsb = new QueryStringBuilder("jobs.xml").add("serviceType", serviceType)
+            .add("operation", operation).add("afterId", Long.toString(afterId)).add("limit", Integer.toString(limit));
+    HttpGet get = new HttpGet(UrlSupport.concat(serviceURL, qsb.toString()));
+    HttpResponse response = null;
+    int responseStatusCode;
+    try {
+      response = client.execute(get);
+      responseStatusCode = response.getStatusLine().getStatusCode();
+      if (responseStatusCode == HttpStatus.SC_OK) {
+        JaxbJobList jaxbJobList = JobParser.parseJobList(response.getEntity().getContent());
+        return new ArrayList<Job>(jaxbJobList.getJobs());
+      }
+    } catch (IOException e) {
+      throw new ServiceRegistryException("Unable to get jobs", e);
+    } finally {
+      client.close(response);
+    }
+    throw new ServiceRegistryException("Unable to get jobs (" + responseStatusCode + ")");
+  }
+
   /**
    * {@inheritDoc}
    * 
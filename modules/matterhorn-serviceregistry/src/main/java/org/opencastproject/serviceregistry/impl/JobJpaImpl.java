@@ -79,6 +79,10 @@ import javax.xml.bind.annotation.XmlType;
         @NamedQuery(name = "Job.status", query = "SELECT j FROM Job j "
                 + "where j.status = :status order by j.dateCreated"),
         @NamedQuery(name = "Job.all", query = "SELECT j FROM Job j order by j.dateCreated"),
+        @NamedQuery(name = "Job.type.operation.page", query = "SELECT j FROM Job j "
+                + "where j.creatorServiceRegistration.serviceType = :serviceType and j.operation = :operation and "
+                + "j.id > :id order by j.id"),
+        @NamedQuery(name = "Job.ids", query = "SELECT j FROM Job j WHERE j.id IN :ids"),
         @NamedQuery(name = "Job.dispatchable.status", query = "SELECT j FROM Job j where j.dispatchable = true and "
                 + "j.status in :statuses order by j.dateCreated"),
         @NamedQuery(name = "Job.undispatchable.status", query = "SELECT j FROM Job j where j.dispatchable = false and "
@@ -39,6 +39,7 @@ import org.opencastproject.security.api.UserDirectoryService;
 import org.opencastproject.serviceregistry.api.HostRegistration;
 import org.opencastproject.serviceregistry.api.JaxbServiceRegistration;
 import org.opencastproject.serviceregistry.api.JaxbServiceStatistics;
+import org.opencastproject.serviceregistry.api.JobCompletionNotifier;
 import org.opencastproject.serviceregistry.api.ServiceRegistration;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
 import org.opencastproject.serviceregistry.api.ServiceRegistryException;
@@ -82,8 +83,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.management.ObjectInstance;
 import javax.persistence.EntityManager;
@@ -153,6 +156,30 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
   /** Default delay between job dispatching attempts, in milliseconds */
   static final long DEFAULT_DISPATCH_INTERVAL = 5000;
 
+  /** Delay between a job being queued and the dispatching round it triggers, used to coalesce bursts, in miliseconds */
+  static final long DISPATCH_TRIGGER_DELAY = 100;
+
+  /** The delay between job dispatching attempts, in milliseconds. A value of 0 disables dispatching */
+  protected long dispatchInterval = DEFAULT_DISPATCH_INTERVAL;
+
+  /** In-memory view of the hosts, services and host loads that is used for dispatching */
+  protected final DispatchSnapshot dispatchSnapshot = new DispatchSnapshot();
+
+  /** Flag indicating that an event driven dispatching round has been scheduled but has not yet started */
+  protected final AtomicBoolean dispatchPending = new AtomicBoolean(false);
+
+  /** Lock making sure that there is only one dispatching round at a time */
+  private final Object dispatchLock = new Object();
+
+  /**
+   * Time after which threads waiting for jobs look at them in the database even if they have not been notified. Needed
+   * for jobs that are updated by other nodes sharing the database, in miliseconds
+   */
+  static final long JOB_WAIT_RECHECK_INTERVAL = 5000;
+
+  /** Wakes up threads waiting for jobs that have been updated through this service registry */
+  protected final JobCompletionNotifier jobCompletionNotifier = new JobCompletionNotifier(JOB_WAIT_RECHECK_INTERVAL);
+
   /** Default value for {@link #maxAttemptsBeforeErrorState} */
   private static final int MAX_FAILURE_BEFORE_ERROR_STATE = 1;
 
@@ -297,8 +324,8 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
             TimeUnit.SECONDS);
 
     // Schedule the job dispatching with the default interval
-    scheduledExecutor.scheduleWithFixedDelay(new JobDispatcher(), DEFAULT_DISPATCH_INTERVAL, DEFAULT_DISPATCH_INTERVAL,
-            TimeUnit.MILLISECONDS);
+    scheduledExecutor.scheduleWithFixedDelay(new JobDispatcher(true), DEFAULT_DISPATCH_INTERVAL,
+            DEFAULT_DISPATCH_INTERVAL, TimeUnit.MILLISECONDS);
   }
 
   public void deactivate() {
@@ -460,6 +487,11 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       em.persist(job);
       tx.commit();
       setJobUri(job);
+
+      // Let the dispatcher know that there is new work
+      if (dispatchable)
+        triggerDispatch();
+
       return job;
     } catch (RollbackException e) {
       if (tx != null && tx.isActive()) {
@@ -529,10 +561,13 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       }
     }
 
+    this.dispatchInterval = dispatchInterval;
+
     // Stop the current scheduled executors so we can configure new ones
     if (scheduledExecutor != null) {
       scheduledExecutor.shutdown();
       scheduledExecutor = Executors.newScheduledThreadPool(2);
+      dispatchPending.set(false);
     }
 
     // Schedule the service heartbeat if the interval is > 0
@@ -545,7 +580,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
     // Schedule the job dispatching.
     if (dispatchInterval > 0) {
       logger.debug("Starting job dispatching at a custom interval of {}s", DEFAULT_DISPATCH_INTERVAL / 1000);
-      scheduledExecutor.scheduleWithFixedDelay(new JobDispatcher(), dispatchInterval, dispatchInterval,
+      scheduledExecutor.scheduleWithFixedDelay(new JobDispatcher(true), dispatchInterval, dispatchInterval,
               TimeUnit.MILLISECONDS);
     }
   }
@@ -582,6 +617,47 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#getJobs(java.util.List)
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Job> getJobs(List<Long> ids) throws ServiceRegistryException {
+    if (ids.isEmpty())
+      return new ArrayList<Job>();
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      Query query = em.createNamedQuery("Job.ids");
+      query.setParameter("ids", ids);
+      // Like getJob(), don't rely on cached jobs that might have been changed by other nodes in the cluster
+      query.setHint("eclipselink.refresh", "true");
+      List<Job> jobs = query.getResultList();
+      for (Job job : jobs) {
+        job.getArguments();
+        setJobUri(job);
+      }
+      return jobs;
+    } catch (Exception e) {
+      throw new ServiceRegistryException(e);
+    } finally {
+      if (em != null)
+        em.close();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#waitForJobs(java.util.List, long)
+   */
+  @Override
+  public List<Job> waitForJobs(List<Long> ids, long timeout) throws NotFoundException, ServiceRegistryException {
+    return jobCompletionNotifier.waitForJobs(this, ids, timeout);
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -620,6 +696,20 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
         updateServiceForFailover(job);
       }
 
+      // Jobs that are (re)queued or that free up capacity on their host are a reason to dispatch right away
+      if (oldJob.getStatus() != job.getStatus()) {
+        switch (job.getStatus()) {
+          case QUEUED:
+          case RESTART:
+          case FINISHED:
+          case FAILED:
+            triggerDispatch();
+            break;
+          default:
+            break;
+        }
+      }
+
       return jpaJob;
     } catch (PersistenceException e) {
       throw new ServiceRegistryException(e);
@@ -665,12 +755,18 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       if (fromDb == null) {
         throw new NoResultException();
       }
+      Status oldStatus = fromDb.getStatus();
+      String oldHost = fromDb.getProcessingHost();
       update(fromDb, (JaxbJob) job);
 
       em.merge(fromDb);
       tx.commit();
       ((JaxbJob) job).setVersion(fromDb.getVersion());
       setJobUri(job);
+      if (!TYPE_WORKFLOW.equals(fromDb.getJobType()))
+        dispatchSnapshot.updateLoad(oldHost, oldStatus, fromDb.getProcessingHost(), fromDb.getStatus());
+      if (fromDb.getStatus().isTerminated())
+        jobCompletionNotifier.jobTerminated(fromDb.getId());
       return job;
     } catch (PersistenceException e) {
       if (tx.isActive()) {
@@ -707,6 +803,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       fromDb.setWarningStateTrigger(registration.getWarningStateTrigger());
       fromDb.setErrorStateTrigger(registration.getErrorStateTrigger());
       tx.commit();
+      dispatchSnapshot.invalidate();
       servicesStatistics.updateService(registration);
       return registration;
     } catch (PersistenceException e) {
@@ -815,6 +912,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       }
       logger.info("Registering {} with a maximum load of {}", host, maxJobs);
       tx.commit();
+      dispatchSnapshot.invalidate();
       hostsStatistics.updateHost(hostRegistration);
     } catch (Exception e) {
       if (tx != null && tx.isActive()) {
@@ -853,6 +951,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       }
       logger.info("Unregistering {}", host, maxJobs);
       tx.commit();
+      dispatchSnapshot.invalidate();
       hostsStatistics.updateHost(existingHostRegistration);
     } catch (Exception e) {
       if (tx != null && tx.isActive()) {
@@ -896,6 +995,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
         servicesStatistics.updateService(registration);
       }
       tx.commit();
+      dispatchSnapshot.invalidate();
       hostsStatistics.updateHost(hostRegistration);
     } catch (NotFoundException e) {
       throw e;
@@ -938,6 +1038,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       }
       logger.info("Disabling {}", host);
       tx.commit();
+      dispatchSnapshot.invalidate();
       hostsStatistics.updateHost(hostRegistration);
     } catch (NotFoundException e) {
       throw e;
@@ -1040,6 +1141,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
         em.merge(registration);
       }
       tx.commit();
+      dispatchSnapshot.invalidate();
       hostsStatistics.updateHost(hostRegistration);
       servicesStatistics.updateService(registration);
       return registration;
@@ -1125,6 +1227,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       query.setParameter("serviceType", serviceType);
       @SuppressWarnings("unchecked")
       List<JobJpaImpl> unregisteredJobs = query.getResultList();
+      List<Long> failedJobs = new ArrayList<Long>();
       for (JobJpaImpl job : unregisteredJobs) {
         if (job.isDispatchable()) {
           em.refresh(job);
@@ -1148,10 +1251,14 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
         } else {
           logger.info("Marking lost job {} as failed", job);
           job.setStatus(Status.FAILED);
+          failedJobs.add(job.getId());
         }
         em.merge(job);
       }
       tx.commit();
+      for (Long id : failedJobs) {
+        jobCompletionNotifier.jobTerminated(id);
+      }
     } catch (Exception e) {
       if (tx != null && tx.isActive()) {
         tx.rollback();
@@ -1202,6 +1309,7 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
       reg.setMaintenanceMode(maintenance);
       em.merge(reg);
       tx.commit();
+      dispatchSnapshot.invalidate();
       hostsStatistics.updateHost(reg);
     } catch (RollbackException e) {
       if (tx != null && tx.isActive()) {
@@ -1371,6 +1479,36 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
 
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.serviceregistry.api.ServiceRegistry#getJobs(java.lang.String, java.lang.String, long,
+   *      int)
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<Job> getJobs(String type, String operation, long afterId, int limit) throws ServiceRegistryException {
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      Query query = em.createNamedQuery("Job.type.operation.page");
+      query.setParameter("serviceType", type);
+      query.setParameter("operation", operation);
+      query.setParameter("id", afterId);
+      query.setMaxResults(limit);
+      List<Job> jobs = query.getResultList();
+      for (Job job : jobs) {
+        setJobUri(job);
+      }
+      return jobs;
+    } catch (Exception e) {
+      throw new ServiceRegistryException(e);
+    } finally {
+      if (em != null)
+        em.close();
+    }
+  }
+
   /**
    * Gets jobs of all types that are in the {@value Status#QUEUED} state and are dispatchable.
    * 
@@ -2351,11 +2489,50 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
   }
 
   /**
-   * This dispatcher implementation will check for jobs in the QUEUED {@link #org.opencastproject.job.api.Job.Status}. If new jobs are found, the
-   * dispatcher will attempt to dispatch each job to the least loaded service.
+   * Schedules an immediate dispatching round, unless one is already pending. Bursts of newly queued jobs are coalesced
+   * into a single round by waiting {@link #DISPATCH_TRIGGER_DELAY} milliseconds before dispatching starts.
+   * <p>
+   * Jobs that are put back into the queue by the dispatcher itself do not trigger another round, otherwise a service
+   * refusing work would keep the dispatcher busy.
+   */
+  protected void triggerDispatch() {
+    if (dispatchInterval <= 0 || scheduledExecutor == null)
+      return;
+    if (Thread.holdsLock(dispatchLock))
+      return;
+    if (!dispatchPending.compareAndSet(false, true))
+      return;
+    try {
+      scheduledExecutor.schedule(new JobDispatcher(false), DISPATCH_TRIGGER_DELAY, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      logger.debug("Job dispatching has been shut down, not triggering a new dispatching round");
+      dispatchPending.set(false);
+    }
+  }
+
+  /**
+   * This dispatcher implementation will check for jobs in the QUEUED {@link #org.opencastproject.job.api.Job.Status}.
+   * If new jobs are found, the dispatcher will attempt to dispatch each job to the least loaded service.
+   * <p>
+   * Dispatching rounds are either run at a fixed interval, in which case the {@link DispatchSnapshot} of hosts, services
+   * and host loads is reloaded from the database, or they are triggered by jobs being queued, in which case the
+   * in-memory snapshot is used as long as it is valid.
    */
   class JobDispatcher implements Runnable {
 
+    /** Whether to reload the snapshot and the job statistics from the database */
+    private final boolean refresh;
+
+    /**
+     * Creates a new dispatcher.
+     * 
+     * @param refresh
+     *          <code>true</code> to reload the hosts, services and loads from the database prior to dispatching
+     */
+    JobDispatcher(boolean refresh) {
+      this.refresh = refresh;
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -2363,14 +2540,36 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
      */
     @Override
     public void run() {
+      if (!refresh)
+        dispatchPending.set(false);
+      synchronized (dispatchLock) {
+        dispatch();
+      }
+    }
+
+    /**
+     * Runs one round of dispatching.
+     */
+    private void dispatch() {
       EntityManager em = null;
+      long roundStart = System.currentTimeMillis();
+      int dispatched = 0;
       try {
         em = emf.createEntityManager();
         List<Job> jobsToDispatch = getDispatchableJobs(em);
         List<String> undispatchableJobTypes = new ArrayList<String>();
 
-        jobsStatistics.updateAvg(getAvgOperations(em));
-        jobsStatistics.updateJobCount(getCountPerHostService(em));
+        if (refresh) {
+          jobsStatistics.updateAvg(getAvgOperations(em));
+          jobsStatistics.updateJobCount(getCountPerHostService(em));
+        }
+
+        // Load hosts, services and loads once for the whole round rather than once per job
+        if (refresh || !dispatchSnapshot.isValid()) {
+          dispatchSnapshot.load(getServiceRegistrations(em), getHostRegistrations(em), getHostLoads(em, true));
+        }
+        List<ServiceRegistration> services = dispatchSnapshot.getServiceRegistrations();
+        List<HostRegistration> hosts = dispatchSnapshot.getHostRegistrations();
 
         for (Job job : jobsToDispatch) {
 
@@ -2410,22 +2609,16 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
           // Start dispatching
           try {
 
-            Map<String, Integer> hostLoads = getHostLoads(em, true);
-            List<ServiceRegistration> services = getServiceRegistrations(em);
-            List<HostRegistration> hosts = getHostRegistrations(em);
+            // The snapshot is kept current by the job updates, including the ones issued while dispatching
+            Map<String, Integer> hostLoads = dispatchSnapshot.getHostLoads();
             List<ServiceRegistration> candidateServices = null;
 
             // Depending on whether this running job is trying to reach out to other services or whether this is an
             // attempt to execute the next operation in a workflow, choose either from a limited or from the full list
             // of services
-            Job parentJob = null;
-            try {
-              parentJob = getJob(job.getParentJobId());
-            } catch (NotFoundException e) {
-              // That's ok
-            }
+            boolean hasParentJob = job instanceof JobJpaImpl && ((JobJpaImpl) job).getParentJob() != null;
 
-            if (parentJob == null || TYPE_WORKFLOW.equals(jobType)) {
+            if (!hasParentJob || TYPE_WORKFLOW.equals(jobType)) {
               logger.trace("Using limited list of services for dispatching of {} to a service of type '{}'", job,
                       jobType);
               candidateServices = getServiceRegistrationsWithCapacity(jobType, services, hosts, hostLoads);
@@ -2447,12 +2640,11 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
               continue;
             }
 
-            ServiceRegistryJpaImpl.logger.debug("Job {} dispatched to {}", job.getId(), hostAcceptingJob);
-            if (hostLoads.containsKey(hostAcceptingJob)) {
-              Integer previousServiceLoad = hostLoads.get(hostAcceptingJob);
-              hostLoads.put(hostAcceptingJob, ++previousServiceLoad);
-            } else {
-              hostLoads.put(hostAcceptingJob, 1);
+            if (hostAcceptingJob != null) {
+              ServiceRegistryJpaImpl.logger.debug("Job {} dispatched to {}", job.getId(), hostAcceptingJob);
+              if (job.getDateCreated() != null)
+                jobsStatistics.updateDispatchLatency(System.currentTimeMillis() - job.getDateCreated().getTime());
+              dispatched++;
             }
 
           } catch (ServiceRegistryException e) {
@@ -2463,6 +2655,9 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
             securityService.setOrganization(null);
           }
         }
+
+        jobsStatistics.updateDispatchRound(jobsToDispatch.size() - dispatched, dispatched,
+                System.currentTimeMillis() - roundStart);
       } catch (Throwable t) {
         ServiceRegistryJpaImpl.logger.warn("Error dispatching jobs", t);
       } finally {
@@ -2560,6 +2755,104 @@ public class ServiceRegistryJpaImpl implements ServiceRegistry, ManagedService {
 
   }
 
+  /**
+   * In-memory view of the host registrations, the service registrations and the number of jobs running on each host.
+   * The snapshot is loaded from the database by the dispatcher, kept current by the job updates that pass through this
+   * service registry and invalidated whenever a host or service registration changes.
+   */
+  static final class DispatchSnapshot {
+
+    /** The service registrations */
+    private List<ServiceRegistration> services = new ArrayList<ServiceRegistration>();
+
+    /** The host registrations */
+    private List<HostRegistration> hosts = new ArrayList<HostRegistration>();
+
+    /** The number of dispatching and running jobs per host */
+    private Map<String, Integer> loadByHost = new HashMap<String, Integer>();
+
+    /** Whether the snapshot reflects the current registrations */
+    private boolean valid = false;
+
+    /**
+     * Replaces the contents of this snapshot.
+     * 
+     * @param services
+     *          the service registrations
+     * @param hosts
+     *          the host registrations
+     * @param loadByHost
+     *          the number of jobs per host
+     */
+    synchronized void load(List<ServiceRegistration> services, List<HostRegistration> hosts,
+            Map<String, Integer> loadByHost) {
+      this.services = new ArrayList<ServiceRegistration>(services);
+      this.hosts = new ArrayList<HostRegistration>(hosts);
+      this.loadByHost = new HashMap<String, Integer>(loadByHost);
+      this.valid = true;
+    }
+
+    /**
+     * Marks the snapshot as outdated, so that it is reloaded prior to the next round of dispatching.
+     */
+    synchronized void invalidate() {
+      valid = false;
+    }
+
+    /**
+     * @return <code>true</code> if the snapshot has been loaded and not been invalidated since
+     */
+    synchronized boolean isValid() {
+      return valid;
+    }
+
+    /**
+     * @return the service registrations
+     */
+    synchronized List<ServiceRegistration> getServiceRegistrations() {
+      return services;
+    }
+
+    /**
+     * @return the host registrations
+     */
+    synchronized List<HostRegistration> getHostRegistrations() {
+      return hosts;
+    }
+
+    /**
+     * @return a copy of the current number of jobs per host
+     */
+    synchronized Map<String, Integer> getHostLoads() {
+      return new HashMap<String, Integer>(loadByHost);
+    }
+
+    /**
+     * Adjusts the host loads according to a job that has changed its status and processing host.
+     * 
+     * @param oldHost
+     *          the processing host before the update, may be <code>null</code>
+     * @param oldStatus
+     *          the status before the update
+     * @param newHost
+     *          the processing host after the update, may be <code>null</code>
+     * @param newStatus
+     *          the status after the update
+     */
+    synchronized void updateLoad(String oldHost, Status oldStatus, String newHost, Status newStatus) {
+      if (oldHost != null && JOB_STATUSES_INFLUENCING_LOAD_BALANCING.contains(oldStatus))
+        adjustLoad(oldHost, -1);
+      if (newHost != null && JOB_STATUSES_INFLUENCING_LOAD_BALANCING.contains(newStatus))
+        adjustLoad(newHost, 1);
+    }
+
+    private void adjustLoad(String host, int delta) {
+      Integer load = loadByHost.get(host);
+      loadByHost.put(host, Math.max(0, (load == null ? 0 : load) + delta));
+    }
+
+  }
+
   /**
    * Comparator that will sort service registrations depending on their capacity, wich is defined by the number of jobs
    * the service's host is already running. The lower that number, the bigger the capacity.
@@ -20,6 +20,7 @@ import static javax.servlet.http.HttpServletResponse.SC_CREATED;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.servlet.http.HttpServletResponse.SC_NO_CONTENT;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
@@ -50,6 +51,7 @@ import org.osgi.service.component.ComponentContext;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.FormParam;
@@ -73,6 +75,21 @@ import javax.ws.rs.core.Response.Status;
 @RestService(name = "serviceregistry", title = "Service Registry", notes = { "All paths above are relative to the REST endpoint base" }, abstractText = "Provides registration and management functions for servers and services in this matterhorn instance or cluster.")
 public class ServiceRegistryEndpoint {
 
+  /** The maximum time a request may wait for jobs to terminate, in miliseconds */
+  public static final long MAX_JOB_WAIT = 30000L;
+
+  /**
+   * The maximum number of requests waiting for jobs at the same time. Every waiting request holds on to a request
+   * thread, so further requests are turned away to keep threads available for all other requests.
+   */
+  public static final int MAX_CONCURRENT_JOB_WAITS = 50;
+
+  /** Seconds after which clients that have been turned away may try again to wait for jobs */
+  private static final int JOB_WAIT_RETRY_AFTER = 5;
+
+  /** Permits for the requests waiting for jobs */
+  private final Semaphore jobWaits = new Semaphore(MAX_CONCURRENT_JOB_WAITS);
+
   /** The remote service maanger */
   protected ServiceRegistry serviceRegistry = null;
 
@@ -444,11 +461,52 @@ public class ServiceRegistryEndpoint {
     }
   }
 
+  @GET
+  @Path("jobs/wait.xml")
+  @Produces(MediaType.TEXT_XML)
+  @RestQuery(name = "waitforjobs", description = "Waits until at least one of the jobs has terminated or the timeout has elapsed, and returns the terminated jobs. The waiting time is limited to "
+          + MAX_JOB_WAIT
+          + " miliseconds, so clients that want to wait longer need to call again. At most "
+          + MAX_CONCURRENT_JOB_WAITS
+          + " requests may wait at the same time.", returnDescription = "The terminated jobs as XML, an empty list if the timeout has elapsed", restParameters = {
+          @RestParameter(name = "id", isRequired = true, type = Type.STRING, description = "The job identifier, may be repeated"),
+          @RestParameter(name = "timeout", isRequired = false, type = Type.INTEGER, description = "The maximum time to wait in miliseconds") }, reponses = {
+          @RestResponse(responseCode = SC_OK, description = "Terminated jobs returned."),
+          @RestResponse(responseCode = SC_BAD_REQUEST, description = "No job identifier given."),
+          @RestResponse(responseCode = SC_NOT_FOUND, description = "One of the jobs does not exist."),
+          @RestResponse(responseCode = SC_SERVICE_UNAVAILABLE, description = "Too many requests are waiting for jobs, try again later.") })
+  public JaxbJobList waitForJobs(@QueryParam("id") List<Long> ids, @QueryParam("timeout") long timeout)
+          throws NotFoundException {
+    if (ids == null || ids.isEmpty())
+      throw new WebApplicationException(Status.BAD_REQUEST);
+    if (!jobWaits.tryAcquire()) {
+      throw new WebApplicationException(Response.status(Status.SERVICE_UNAVAILABLE)
+              .header("Retry-After", JOB_WAIT_RETRY_AFTER).build());
+    }
+    try {
+      long wait = timeout > 0 ? Math.min(timeout, MAX_JOB_WAIT) : MAX_JOB_WAIT;
+      return new JaxbJobList(serviceRegistry.waitForJobs(ids, wait));
+    } catch (ServiceRegistryException e) {
+      throw new WebApplicationException(e);
+    } finally {
+      jobWaits.release();
+    }
+  }
+
   @GET
   @Path("jobs.xml")
   @Produces(MediaType.TEXT_XML)
-  public JaxbJobList getJobsAsXml(@QueryParam("serviceType") String serviceType, @QueryParam("status") Job.Status status) {
+  public JaxbJobList getJobsAsXml(@QueryParam("serviceType") String serviceType, @QueryParam("status") Job.Status status,
+          @QueryParam("id") List<Long> ids, @QueryParam("operation") String operation,
+          @QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
     try {
+      if (ids != null && !ids.isEmpty())
+        return new JaxbJobList(serviceRegistry.getJobs(ids));
+      if (limit > 0) {
+        if (isBlank(serviceType) || isBlank(operation))
+          throw new WebApplicationException(Status.BAD_REQUEST);
+        return new JaxbJobList(serviceRegistry.getJobs(serviceType, operation, afterId, limit));
+      }
       return new JaxbJobList(serviceRegistry.getJobs(serviceType, status));
     } catch (ServiceRegistryException e) {
       throw new WebApplicationException(e);
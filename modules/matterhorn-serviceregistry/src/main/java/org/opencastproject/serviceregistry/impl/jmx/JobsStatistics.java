@@ -37,6 +37,13 @@ public class JobsStatistics extends NotificationBroadcasterSupport implements Jo
   private Map<String, Long> avgRunTimes = new HashMap<String, Long>();
   private Map<String, Long> avgQueueTimes = new HashMap<String, Long>();
 
+  // Dispatcher statistics
+  private volatile int dispatchQueueDepth = 0;
+  private volatile int lastDispatchRoundJobs = 0;
+  private volatile long lastDispatchRoundDuration = 0;
+  private long dispatchLatencyTotal = 0;
+  private long dispatchLatencyCount = 0;
+
   // Job Table runTime, queueTime
   private long sequenceNumber = 1;
   private final String hostName;
@@ -67,6 +74,33 @@ public class JobsStatistics extends NotificationBroadcasterSupport implements Jo
     sendNotification(JmxUtil.createUpdateNotification(this, sequenceNumber++, "Job updated"));
   }
 
+  /**
+   * Records the outcome of a round of job dispatching.
+   * 
+   * @param queueDepth
+   *          the number of dispatchable jobs that are left in the queue
+   * @param dispatchedJobs
+   *          the number of jobs that have been dispatched
+   * @param duration
+   *          the duration of the dispatching round in milliseconds
+   */
+  public void updateDispatchRound(int queueDepth, int dispatchedJobs, long duration) {
+    dispatchQueueDepth = queueDepth;
+    lastDispatchRoundJobs = dispatchedJobs;
+    lastDispatchRoundDuration = duration;
+  }
+
+  /**
+   * Records the time a job has spent in the queue until it was accepted by a service.
+   * 
+   * @param latency
+   *          the dispatch latency in milliseconds
+   */
+  public synchronized void updateDispatchLatency(long latency) {
+    dispatchLatencyTotal += latency;
+    dispatchLatencyCount++;
+  }
+
   @Override
   public MBeanNotificationInfo[] getNotificationInfo() {
     String[] types = new String[] { JmxUtil.MATTERHORN_UPDATE_NOTIFICATION };
@@ -261,6 +295,40 @@ public class JobsStatistics extends NotificationBroadcasterSupport implements Jo
     return toJobCountArray(hostName, Status.FAILED);
   }
 
+  /**
+   * @see org.opencastproject.serviceregistry.impl.jmx.JobsStatisticsMXBean#getDispatchQueueDepth()
+   */
+  @Override
+  public int getDispatchQueueDepth() {
+    return dispatchQueueDepth;
+  }
+
+  /**
+   * @see org.opencastproject.serviceregistry.impl.jmx.JobsStatisticsMXBean#getLastDispatchRoundJobCount()
+   */
+  @Override
+  public int getLastDispatchRoundJobCount() {
+    return lastDispatchRoundJobs;
+  }
+
+  /**
+   * @see org.opencastproject.serviceregistry.impl.jmx.JobsStatisticsMXBean#getLastDispatchRoundDuration()
+   */
+  @Override
+  public long getLastDispatchRoundDuration() {
+    return lastDispatchRoundDuration;
+  }
+
+  /**
+   * @see org.opencastproject.serviceregistry.impl.jmx.JobsStatisticsMXBean#getAverageDispatchLatency()
+   */
+  @Override
+  public synchronized long getAverageDispatchLatency() {
+    if (dispatchLatencyCount == 0)
+      return 0;
+    return dispatchLatencyTotal / dispatchLatencyCount;
+  }
+
   private int countJobs(String hostName, Status status) {
     int i = 0;
     for (Entry<Tuple3<String, String, Status>, Long> entry : jobCounts.entrySet()) {
@@ -174,4 +174,32 @@ public interface JobsStatisticsMXBean {
    */
   String[] getAverageJobQueueTime();
 
-}
\ No newline at end of file
+  /**
+   * Gets the number of dispatchable jobs that were left in the queue after the last round of dispatching
+   * 
+   * @return the number of queued jobs waiting to be dispatched
+   */
+  int getDispatchQueueDepth();
+
+  /**
+   * Gets the number of jobs that have been dispatched in the last round of dispatching
+   * 
+   * @return the number of dispatched jobs
+   */
+  int getLastDispatchRoundJobCount();
+
+  /**
+   * Gets the duration of the last round of dispatching
+   * 
+   * @return the duration in milliseconds
+   */
+  long getLastDispatchRoundDuration();
+
+  /**
+   * Gets the average time between a job's creation and its acceptance by a service
+   * 
+   * @return the average dispatch latency in milliseconds
+   */
+  long getAverageDispatchLatency();
+
+}
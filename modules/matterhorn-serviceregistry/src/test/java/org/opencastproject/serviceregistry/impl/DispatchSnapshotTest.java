@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.serviceregistry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.opencastproject.job.api.Job.Status;
+import org.opencastproject.serviceregistry.api.HostRegistration;
+import org.opencastproject.serviceregistry.api.ServiceRegistration;
+import org.opencastproject.serviceregistry.impl.ServiceRegistryJpaImpl.DispatchSnapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+public class DispatchSnapshotTest {
+
+  private static final String HOST_A = "http://host-a:8080";
+  private static final String HOST_B = "http://host-b:8080";
+
+  private DispatchSnapshot snapshot = null;
+
+  @Before
+  public void setUp() throws Exception {
+    Map<String, Integer> loads = new HashMap<String, Integer>();
+    loads.put(HOST_A, 1);
+    loads.put(HOST_B, 0);
+    snapshot = new DispatchSnapshot();
+    snapshot.load(new ArrayList<ServiceRegistration>(), new ArrayList<HostRegistration>(), loads);
+  }
+
+  @Test
+  public void testInvalidation() throws Exception {
+    assertTrue(snapshot.isValid());
+    snapshot.invalidate();
+    assertFalse(snapshot.isValid());
+  }
+
+  @Test
+  public void testDispatchingAndCompletion() throws Exception {
+    // A job is dispatched to host B
+    snapshot.updateLoad(null, Status.QUEUED, HOST_B, Status.DISPATCHING);
+    assertEquals(1, snapshot.getHostLoads().get(HOST_B).intValue());
+
+    // It starts running, which doesn't change the load
+    snapshot.updateLoad(HOST_B, Status.DISPATCHING, HOST_B, Status.RUNNING);
+    assertEquals(1, snapshot.getHostLoads().get(HOST_B).intValue());
+
+    // And finishes
+    snapshot.updateLoad(HOST_B, Status.RUNNING, HOST_B, Status.FINISHED);
+    assertEquals(0, snapshot.getHostLoads().get(HOST_B).intValue());
+    assertEquals(1, snapshot.getHostLoads().get(HOST_A).intValue());
+  }
+
+  @Test
+  public void testRedispatching() throws Exception {
+    // The job is moved from host A to host B while dispatching
+    snapshot.updateLoad(HOST_A, Status.DISPATCHING, HOST_B, Status.DISPATCHING);
+    assertEquals(0, snapshot.getHostLoads().get(HOST_A).intValue());
+    assertEquals(1, snapshot.getHostLoads().get(HOST_B).intValue());
+
+    // Loads never drop below zero
+    snapshot.updateLoad(HOST_A, Status.RUNNING, null, Status.QUEUED);
+    assertEquals(0, snapshot.getHostLoads().get(HOST_A).intValue());
+  }
+
+}
@@ -0,0 +1,498 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds a solr index from the source of truth of a service.
+ * <p>
+ * Items are read from the source in pages, ordered by their key. Each page starts after the last item of the previous
+ * one rather than at an offset, so items that are removed from the source while the rebuild runs don't shift the
+ * following pages. While the documents for one page are created on a pool of worker threads, the next page is read.
+ * The documents are written over the existing ones, so the index stays complete and usable while it is being rebuilt.
+ * Once all items have been written, documents that had been in the index before the rebuild started but were not
+ * written again are removed, provided that the source confirms their items are gone. If any item could not be indexed,
+ * these documents are kept, since they might belong to that item.
+ * <p>
+ * Subclasses provide the pages, turn each item into solr documents and write them through the service's index, so that
+ * the rebuild takes part in its locking and change notifications. The solr server is only used to read the identifiers
+ * of the documents that are in the index when the rebuild starts. Note that {@link #createDocuments(Object)} is
+ * called from the worker threads, so any thread bound state such as the security context needs to be set up there.
+ * 
+ * @param <A>
+ *          the type of the items in the source
+ */
+public abstract class SolrIndexRebuild<A> implements SolrIndexRebuildMXBean, Runnable {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(SolrIndexRebuild.class);
+
+  /** Configuration key for the number of threads creating documents during a rebuild */
+  public static final String PARALLELISM_KEY = "org.opencastproject.solr.rebuild.parallelism";
+
+  /** Configuration key for the number of items read from the source at once during a rebuild */
+  public static final String PAGE_SIZE_KEY = "org.opencastproject.solr.rebuild.page.size";
+
+  /** Default number of worker threads */
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  /** Default number of items read from the source at once */
+  public static final int DEFAULT_PAGE_SIZE = 100;
+
+  /** Number of identifiers loaded from the index at once */
+  private static final int ID_PAGE_SIZE = 1000;
+
+  /** The name of the index */
+  private final String indexName;
+
+  /** The index, used to look up the documents that are already there */
+  private final SolrServer solrServer;
+
+  /** The name of the unique key field */
+  private final String idField;
+
+  /** Number of worker threads */
+  private int parallelism = DEFAULT_PARALLELISM;
+
+  /** Number of items per page */
+  private int pageSize = DEFAULT_PAGE_SIZE;
+
+  /** Whether a rebuild is running */
+  private boolean running = false;
+
+  private final AtomicLong processed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private volatile long total = -1L;
+  private volatile long startTime = 0L;
+  private volatile long endTime = 0L;
+  private volatile String error = null;
+
+  /**
+   * Creates a rebuild of the given index.
+   * 
+   * @param indexName
+   *          the name of the index, used for logging and reporting
+   * @param solrServer
+   *          the index, used to look up the documents that are already there
+   * @param idField
+   *          the name of the unique key field
+   */
+  protected SolrIndexRebuild(String indexName, SolrServer solrServer, String idField) {
+    this.indexName = indexName;
+    this.solrServer = solrServer;
+    this.idField = idField;
+  }
+
+  /**
+   * Reads the number of worker threads and the page size from the bundle configuration.
+   * 
+   * @param bundleContext
+   *          the bundle context
+   */
+  public void configure(BundleContext bundleContext) {
+    parallelism = getConfiguredNumber(bundleContext, PARALLELISM_KEY, DEFAULT_PARALLELISM);
+    pageSize = getConfiguredNumber(bundleContext, PAGE_SIZE_KEY, DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * Reads a positive number from the bundle configuration.
+   */
+  private static int getConfiguredNumber(BundleContext bundleContext, String key, int defaultValue) {
+    String value = bundleContext.getProperty(key);
+    if (value == null || "".equals(value.trim()))
+      return defaultValue;
+    try {
+      int number = Integer.parseInt(value.trim());
+      if (number > 0)
+        return number;
+    } catch (NumberFormatException e) {
+      // Handled below
+    }
+    logger.warn("Invalid value '{}' for '{}', using {}", new Object[] { value, key, defaultValue });
+    return defaultValue;
+  }
+
+  /**
+   * Sets the number of worker threads creating the documents.
+   * 
+   * @param parallelism
+   *          the number of threads
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("Parallelism must be positive");
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Sets the number of items that are read from the source at once.
+   * 
+   * @param pageSize
+   *          the page size
+   */
+  public void setPageSize(int pageSize) {
+    if (pageSize < 1)
+      throw new IllegalArgumentException("Page size must be positive");
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Returns the number of items in the source, or <code>-1</code> if it can't be determined cheaply.
+   * 
+   * @return the number of items
+   * @throws Exception
+   *           if accessing the source fails
+   */
+  protected long countItems() throws Exception {
+    return -1L;
+  }
+
+  /**
+   * Reads a page of items from the source, ordered by their key. The page starts with the first item whose key is
+   * greater than the one of <code>last</code>. Returning less than <code>limit</code> items ends the rebuild.
+   * 
+   * @param last
+   *          the last item of the previous page, or <code>null</code> for the first page
+   * @param limit
+   *          the maximum number of items
+   * @return the items
+   * @throws Exception
+   *           if accessing the source fails
+   */
+  protected abstract List<A> loadItems(A last, int limit) throws Exception;
+
+  /**
+   * Returns those of the given document identifiers whose items are no longer in the source. Only these documents are
+   * removed, so documents of items that have been added to the source while the rebuild was running are kept.
+   * 
+   * @param ids
+   *          the identifiers of the documents that have not been written by the rebuild
+   * @return the identifiers of the documents to remove
+   * @throws Exception
+   *           if accessing the source fails
+   */
+  protected abstract List<String> getRemovedIds(List<String> ids) throws Exception;
+
+  /**
+   * Creates the solr documents for an item. This method is called from the worker threads.
+   * 
+   * @param item
+   *          the item
+   * @return the documents
+   * @throws Exception
+   *           if the documents can't be created
+   */
+  protected abstract List<SolrInputDocument> createDocuments(A item) throws Exception;
+
+  /**
+   * Writes and commits the documents that have been created for a page of items.
+   * 
+   * @param documents
+   *          the documents
+   * @throws Exception
+   *           if the documents can't be written
+   */
+  protected abstract void addDocuments(List<SolrInputDocument> documents) throws Exception;
+
+  /**
+   * Removes the documents that were in the index before the rebuild but have not been written by it, and commits.
+   * 
+   * @param ids
+   *          the document identifiers
+   * @throws Exception
+   *           if the documents can't be removed
+   */
+  protected abstract void deleteDocuments(List<String> ids) throws Exception;
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#start()
+   */
+  @Override
+  public boolean start() {
+    synchronized (this) {
+      if (running)
+        return false;
+      running = true;
+    }
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        rebuild();
+      }
+    }, "Rebuild of " + indexName + " index");
+    thread.setDaemon(true);
+    thread.start();
+    return true;
+  }
+
+  /**
+   * Rebuilds the index in the current thread, unless a rebuild is already running.
+   * 
+   * @see java.lang.Runnable#run()
+   */
+  @Override
+  public void run() {
+    synchronized (this) {
+      if (running)
+        return;
+      running = true;
+    }
+    rebuild();
+  }
+
+  /**
+   * Does the actual work. The caller must have set the running flag.
+   */
+  private void rebuild() {
+    processed.set(0L);
+    failed.set(0L);
+    total = -1L;
+    error = null;
+    startTime = System.currentTimeMillis();
+    endTime = 0L;
+    logger.info("Rebuilding the {} index using {} threads", indexName, parallelism);
+
+    ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+    try {
+      total = countItems();
+      Set<String> stale = loadIds();
+
+      List<A> page = loadItems(null, pageSize);
+      while (!page.isEmpty()) {
+        List<Future<List<SolrInputDocument>>> futures = new ArrayList<Future<List<SolrInputDocument>>>(page.size());
+        for (final A item : page) {
+          futures.add(workers.submit(new Callable<List<SolrInputDocument>>() {
+            @Override
+            public List<SolrInputDocument> call() throws Exception {
+              return createDocuments(item);
+            }
+          }));
+        }
+
+        // Read the next page while the workers are busy
+        boolean last = page.size() < pageSize;
+        List<A> next = last ? Collections.<A> emptyList() : loadItems(page.get(page.size() - 1), pageSize);
+
+        List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+        for (int i = 0; i < futures.size(); i++) {
+          try {
+            List<SolrInputDocument> itemDocuments = futures.get(i).get();
+            for (SolrInputDocument document : itemDocuments) {
+              Object id = document.getFieldValue(idField);
+              if (id != null)
+                stale.remove(id.toString());
+            }
+            documents.addAll(itemDocuments);
+            processed.incrementAndGet();
+          } catch (ExecutionException e) {
+            logger.warn("Unable to index {} in the {} index: {}", new Object[] { page.get(i), indexName,
+                    e.getCause() });
+            failed.incrementAndGet();
+          }
+        }
+        if (!documents.isEmpty())
+          addDocuments(documents);
+        page = next;
+      }
+
+      if (failed.get() > 0 && !stale.isEmpty()) {
+        logger.warn("Keeping {} documents in the {} index that have not been rebuilt, since {} items failed",
+                new Object[] { stale.size(), indexName, failed.get() });
+      } else if (!stale.isEmpty()) {
+        List<String> removed = getRemovedIds(new ArrayList<String>(stale));
+        if (removed.size() < stale.size())
+          logger.info("Keeping {} documents in the {} index whose items have been added during the rebuild",
+                  stale.size() - removed.size(), indexName);
+        if (!removed.isEmpty()) {
+          logger.info("Removing {} documents from the {} index that are no longer present", removed.size(), indexName);
+          deleteDocuments(removed);
+        }
+      }
+      logger.info("Finished rebuilding the {} index: {} items indexed, {} failed", new Object[] { indexName,
+              processed.get(), failed.get() });
+    } catch (Exception e) {
+      error = e.getMessage() != null ? e.getMessage() : e.toString();
+      logger.error("Rebuilding the {} index failed: {}", indexName, e);
+    } finally {
+      workers.shutdownNow();
+      endTime = System.currentTimeMillis();
+      synchronized (this) {
+        running = false;
+      }
+    }
+  }
+
+  /**
+   * Loads the identifiers of all documents that are currently in the index.
+   * 
+   * @return the identifiers
+   */
+  private Set<String> loadIds() throws Exception {
+    Set<String> ids = new HashSet<String>();
+    int start = 0;
+    while (true) {
+      SolrQuery query = new SolrQuery("*:*");
+      query.setFields(idField);
+      query.setStart(start);
+      query.setRows(ID_PAGE_SIZE);
+      QueryResponse response = solrServer.query(query);
+      for (SolrDocument doc : response.getResults()) {
+        Object id = doc.getFieldValue(idField);
+        if (id != null)
+          ids.add(id.toString());
+      }
+      start += response.getResults().size();
+      if (response.getResults().size() < ID_PAGE_SIZE || start >= response.getResults().getNumFound())
+        return ids;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#getIndexName()
+   */
+  @Override
+  public String getIndexName() {
+    return indexName;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#isRunning()
+   */
+  @Override
+  public synchronized boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#getTotal()
+   */
+  @Override
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#getProcessed()
+   */
+  @Override
+  public long getProcessed() {
+    return processed.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#getFailed()
+   */
+  @Override
+  public long getFailed() {
+    return failed.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#getThroughput()
+   */
+  @Override
+  public double getThroughput() {
+    if (startTime == 0L)
+      return 0.0;
+    long end = endTime > 0L ? endTime : System.currentTimeMillis();
+    long elapsed = Math.max(1L, end - startTime);
+    return processed.get() * 1000.0 / elapsed;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#getStartTime()
+   */
+  @Override
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#getEndTime()
+   */
+  @Override
+  public long getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuildMXBean#getError()
+   */
+  @Override
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * Returns a one line summary of the rebuild progress.
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(indexName).append(" index: ");
+    if (startTime == 0L)
+      return sb.append("not rebuilt").toString();
+    sb.append(isRunning() ? "rebuilding" : error != null ? "rebuild failed (" + error + ")" : "rebuilt");
+    sb.append(", ").append(processed.get());
+    if (total >= 0)
+      sb.append(" of ").append(total);
+    sb.append(" items indexed, ").append(failed.get()).append(" failed, ");
+    sb.append(String.format("%.1f", getThroughput())).append(" items/s");
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.solr;
+
+/**
+ * Progress of a solr index rebuild.
+ */
+public interface SolrIndexRebuildMXBean {
+
+  /**
+   * Returns the name of the index.
+   * 
+   * @return the index name
+   */
+  String getIndexName();
+
+  /**
+   * Returns <code>true</code> while the index is being rebuilt.
+   * 
+   * @return <code>true</code> if a rebuild is running
+   */
+  boolean isRunning();
+
+  /**
+   * Returns the number of items that are about to be indexed, or <code>-1</code> if the number is not known.
+   * 
+   * @return the number of items
+   */
+  long getTotal();
+
+  /**
+   * Returns the number of items that have been indexed so far.
+   * 
+   * @return the number of indexed items
+   */
+  long getProcessed();
+
+  /**
+   * Returns the number of items that could not be indexed.
+   * 
+   * @return the number of failed items
+   */
+  long getFailed();
+
+  /**
+   * Returns the number of items indexed per second.
+   * 
+   * @return the throughput
+   */
+  double getThroughput();
+
+  /**
+   * Returns the time the last rebuild was started, in milliseconds since the epoch, or <code>0</code> if the index has
+   * not been rebuilt yet.
+   * 
+   * @return the start time
+   */
+  long getStartTime();
+
+  /**
+   * Returns the time the last rebuild finished, in milliseconds since the epoch, or <code>0</code> if it has not
+   * finished yet.
+   * 
+   * @return the end time
+   */
+  long getEndTime();
+
+  /**
+   * Returns the error that caused the last rebuild to be aborted, or <code>null</code>.
+   * 
+   * @return the error message
+   */
+  String getError();
+
+  /**
+   * Starts rebuilding the index in the background.
+   * 
+   * @return <code>false</code> if a rebuild is already running
+   */
+  boolean start();
+
+}
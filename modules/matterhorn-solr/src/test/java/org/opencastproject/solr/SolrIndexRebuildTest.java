@@ -0,0 +1,194 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.solr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tests the rebuild of a solr index.
+ */
+public class SolrIndexRebuildTest {
+
+  /** The index, containing the documents a, b and c */
+  private SolrServer solrServer = null;
+
+  @Before
+  public void setUp() throws Exception {
+    SolrDocumentList results = new SolrDocumentList();
+    for (String id : Arrays.asList("a", "b", "c")) {
+      SolrDocument doc = new SolrDocument();
+      doc.setField("id", id);
+      results.add(doc);
+    }
+    results.setNumFound(results.size());
+    NamedList<Object> response = new NamedList<Object>();
+    response.add("response", results);
+    solrServer = EasyMock.createNiceMock(SolrServer.class);
+    EasyMock.expect(solrServer.query(EasyMock.<SolrParams> anyObject()))
+            .andReturn(new QueryResponse(response, solrServer)).anyTimes();
+    EasyMock.replay(solrServer);
+  }
+
+  @Test
+  public void testStaleDocumentsAreRemoved() throws Exception {
+    TestRebuild rebuild = new TestRebuild(Arrays.asList("a", "b", "d"), Collections.<String> emptySet());
+    rebuild.run();
+    assertNull(rebuild.getError());
+    assertEquals(3, rebuild.getProcessed());
+    assertEquals(0, rebuild.getFailed());
+    assertEquals(new TreeSet<String>(Arrays.asList("a", "b", "d")), rebuild.added);
+    assertEquals(Arrays.asList("c"), rebuild.deleted);
+  }
+
+  @Test
+  public void testFailedItemKeepsDocuments() throws Exception {
+    // b can't be indexed and c is no longer in the source
+    TestRebuild rebuild = new TestRebuild(Arrays.asList("a", "b"), Collections.singleton("b"));
+    rebuild.run();
+    assertNull(rebuild.getError());
+    assertEquals(1, rebuild.getProcessed());
+    assertEquals(1, rebuild.getFailed());
+    assertEquals(Collections.singleton("a"), rebuild.added);
+    // Neither the document of b nor the one of c must be removed, since c might have belonged to b
+    assertNull(rebuild.deleted);
+    assertFalse(rebuild.isRunning());
+  }
+
+  @Test
+  public void testItemRemovedDuringRebuild() throws Exception {
+    // a is removed from the source once the first page has been read, which must not make the rebuild skip b
+    TestRebuild rebuild = new TestRebuild(Arrays.asList("a", "b", "c"), Collections.<String> emptySet()) {
+      @Override
+      protected List<String> loadItems(String last, int limit) throws Exception {
+        if ("a".equals(last))
+          items.remove("a");
+        return super.loadItems(last, limit);
+      }
+    };
+    rebuild.run();
+    assertNull(rebuild.getError());
+    assertEquals(3, rebuild.getProcessed());
+    assertEquals(new TreeSet<String>(Arrays.asList("a", "b", "c")), rebuild.added);
+    assertNull(rebuild.deleted);
+  }
+
+  @Test
+  public void testItemAddedDuringRebuildIsKept() throws Exception {
+    // a is added to the source behind the pages that have been read already, so the rebuild doesn't write it
+    TestRebuild rebuild = new TestRebuild(Arrays.asList("b", "d"), Collections.<String> emptySet()) {
+      @Override
+      protected List<String> loadItems(String last, int limit) throws Exception {
+        if ("b".equals(last))
+          items.add(0, "a");
+        return super.loadItems(last, limit);
+      }
+    };
+    rebuild.run();
+    assertNull(rebuild.getError());
+    assertEquals(new TreeSet<String>(Arrays.asList("b", "d")), rebuild.added);
+    assertEquals(Arrays.asList("c"), rebuild.deleted);
+  }
+
+  /**
+   * A rebuild over a sorted list of identifiers, one document per identifier, written into memory.
+   */
+  private class TestRebuild extends SolrIndexRebuild<String> {
+
+    protected final List<String> items;
+
+    private final Set<String> failing;
+
+    private final Set<String> added = Collections.synchronizedSet(new TreeSet<String>());
+
+    private volatile List<String> deleted = null;
+
+    private TestRebuild(List<String> items, Set<String> failing) {
+      super("test", solrServer, "id");
+      this.items = Collections.synchronizedList(new ArrayList<String>(items));
+      this.failing = new HashSet<String>(failing);
+      setPageSize(1);
+      setParallelism(2);
+    }
+
+    @Override
+    protected long countItems() throws Exception {
+      return items.size();
+    }
+
+    @Override
+    protected List<String> loadItems(String last, int limit) throws Exception {
+      List<String> page = new ArrayList<String>();
+      synchronized (items) {
+        for (String item : items) {
+          if (page.size() < limit && (last == null || item.compareTo(last) > 0))
+            page.add(item);
+        }
+      }
+      return page;
+    }
+
+    @Override
+    protected List<String> getRemovedIds(List<String> ids) throws Exception {
+      List<String> removed = new ArrayList<String>(ids);
+      removed.removeAll(items);
+      return removed;
+    }
+
+    @Override
+    protected List<SolrInputDocument> createDocuments(String item) throws Exception {
+      if (failing.contains(item))
+        throw new IllegalStateException("Unable to index " + item);
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.setField("id", item);
+      return Collections.singletonList(doc);
+    }
+
+    @Override
+    protected void addDocuments(List<SolrInputDocument> documents) throws Exception {
+      for (SolrInputDocument doc : documents) {
+        added.add(doc.getFieldValue("id").toString());
+      }
+    }
+
+    @Override
+    protected void deleteDocuments(List<String> ids) throws Exception {
+      deleted = ids;
+    }
+
+  }
+
+}
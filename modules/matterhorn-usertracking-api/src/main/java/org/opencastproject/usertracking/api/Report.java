@@ -16,6 +16,7 @@
 package org.opencastproject.usertracking.api;
 
 import java.util.Calendar;
+import java.util.List;
 
 /**
  * A class that represents a report
@@ -128,4 +129,11 @@ public interface Report {
    */
   int getOffset();
 
+  /**
+   * Gets the report items
+   * 
+   * @return
+   */
+  List<ReportItem> getReportItems();
+
 }
@@ -18,6 +18,8 @@ package org.opencastproject.usertracking.api;
 import org.opencastproject.util.NotFoundException;
 
 import java.text.ParseException;
+import java.util.Date;
+import java.util.List;
 
 
 
@@ -50,6 +52,21 @@ public interface UserTrackingService {
    */
   UserAction addUserTrackingEvent(UserAction a) throws UserTrackingException;
 
+  /**
+   * Submits a footprint or tracking event to be added to the database. Depending on its configuration, the service
+   * either adds the user action right away or queues it and adds it in the background, together with other user
+   * actions. Footprints are merged with the previous footprint of the session as in
+   * {@link #addUserFootprint(UserAction)}.
+   * 
+   * @param a
+   *          The UserAction that will be added to the database
+   * @return the user action with its ID if it has been added right away, the user action without an ID if it has been
+   *         queued, or <code>null</code> if it has been dropped because the queue is full
+   * @throws UserTrackingException
+   *           if the user tracking service encounters an error
+   */
+  UserAction submitUserAction(UserAction a) throws UserTrackingException;
+
   /**
    * Returns annotations
    * 
@@ -206,6 +223,29 @@ public interface UserTrackingService {
    */
   Report getReport(int offset, int limit) throws UserTrackingException;
 
+  /**
+   * Returns the views and the number of played seconds of the given media packages, bucketed into consecutive
+   * intervals. The first interval starts at <code>from</code>, the last one is the first interval that ends at or after
+   * <code>to</code>. Each interval includes its start and excludes its end.
+   * 
+   * @param mediapackageIds
+   *          the media packages to report on
+   * @param from
+   *          the start of the first interval
+   * @param to
+   *          the end of the reported period
+   * @param interval
+   *          the length of an interval in seconds
+   * @return one report per interval, in chronological order, each with a report item for every media package that has
+   *         been viewed during the interval
+   * @throws UserTrackingException
+   *           if the user tracking service encounters an error
+   * @throws IllegalArgumentException
+   *           if the interval is not positive or the period is split into too many intervals
+   */
+  List<Report> getReports(List<String> mediapackageIds, Date from, Date to, long interval)
+          throws UserTrackingException;
+
   /**
    * Gets the summary of user activity for a given media package and type of activity.
    * 
@@ -130,4 +130,8 @@ public class ReportImpl implements Report {
   public int getLimit() {
     return limit;
   }
+
+  public List<ReportItem> getReportItems() {
+    return new ArrayList<ReportItem>(reportItems);
+  }
 }
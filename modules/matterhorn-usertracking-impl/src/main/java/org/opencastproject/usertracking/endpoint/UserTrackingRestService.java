@@ -15,8 +15,10 @@
  */
 package org.opencastproject.usertracking.endpoint;
 
+import static javax.servlet.http.HttpServletResponse.SC_ACCEPTED;
 import static javax.servlet.http.HttpServletResponse.SC_CREATED;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
 
 import org.opencastproject.rest.RestConstants;
 import org.opencastproject.security.api.SecurityService;
@@ -249,7 +251,10 @@ public class UserTrackingRestService {
           @RestParameter(name = "id", description = "The episode identifier", isRequired = true, type = Type.STRING),
           @RestParameter(name = "type", description = "The episode identifier", isRequired = true, type = Type.STRING),
           @RestParameter(name = "in", description = "The beginning of the time range", isRequired = false, type = Type.STRING),
-          @RestParameter(name = "out", description = "The end of the time range", isRequired = false, type = Type.STRING) }, reponses = { @RestResponse(responseCode = SC_CREATED, description = "An XML representation of the user action") })
+          @RestParameter(name = "out", description = "The end of the time range", isRequired = false, type = Type.STRING) }, reponses = {
+          @RestResponse(responseCode = SC_CREATED, description = "An XML representation of the user action"),
+          @RestResponse(responseCode = SC_ACCEPTED, description = "The user action has been queued"),
+          @RestResponse(responseCode = SC_SERVICE_UNAVAILABLE, description = "Too many user actions are waiting to be recorded") })
   public Response addFootprint(@FormParam("id") String mediapackageId, @FormParam("in") String inString,
           @FormParam("out") String outString, @FormParam("type") String type, @FormParam("playing") String isPlaying,
           @Context HttpServletRequest request) {
@@ -299,15 +304,19 @@ public class UserTrackingRestService {
     a.setUserIp(clientIP);
     
     try {
-      if ("FOOTPRINT".equals(type)) {
-        a = (UserActionImpl) usertrackingService.addUserFootprint(a);
-      } else {
-        a = (UserActionImpl) usertrackingService.addUserTrackingEvent(a);
-      }
+      a = (UserActionImpl) usertrackingService.submitUserAction(a);
     } catch (UserTrackingException e) {
       throw new WebApplicationException(e);
     }
 
+    // Too many user actions are waiting to be written
+    if (a == null)
+      throw new WebApplicationException(Status.SERVICE_UNAVAILABLE);
+
+    // The user action has been queued and does not have an identifier yet
+    if (a.getId() == null)
+      return Response.status(Status.ACCEPTED).build();
+
     URI uri;
     try {
       uri = new URI(UrlSupport.concat(new String[] { serverUrl, serviceUrl, "action", a.getId().toString(), ".xml" }));
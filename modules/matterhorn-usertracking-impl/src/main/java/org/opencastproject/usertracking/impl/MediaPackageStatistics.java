@@ -0,0 +1,114 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.usertracking.impl;
+
+import org.opencastproject.usertracking.api.Footprint;
+import org.opencastproject.usertracking.api.FootprintList;
+import org.opencastproject.usertracking.endpoint.FootprintImpl;
+import org.opencastproject.usertracking.endpoint.FootprintsListImpl;
+
+/**
+ * Aggregated viewing statistics of a single media package: the number of sessions that watched it and the footprint
+ * histogram, i.e. the number of footprints covering each second of the media package.
+ * <p>
+ * The histogram is kept as an array of differences, where a footprint from <code>inpoint</code> to
+ * <code>outpoint</code> increments the value at the inpoint and decrements the value at the outpoint. Adding a
+ * footprint therefore takes constant time, regardless of its length or the number of footprints already recorded.
+ */
+class MediaPackageStatistics {
+
+  /** The number of sessions */
+  private int views = 0;
+
+  /** The differences between the number of footprints covering a second and those covering the second before */
+  private int[] deltas = new int[16];
+
+  /** The largest outpoint seen, plus one */
+  private int length = 1;
+
+  /**
+   * Adds a session to the number of views.
+   */
+  synchronized void addView() {
+    views++;
+  }
+
+  /**
+   * Sets the number of views.
+   * 
+   * @param views
+   *          the number of sessions
+   */
+  synchronized void setViews(int views) {
+    this.views = views;
+  }
+
+  /**
+   * Returns the number of views.
+   * 
+   * @return the number of sessions
+   */
+  synchronized int getViews() {
+    return views;
+  }
+
+  /**
+   * Adds a footprint to the histogram.
+   * 
+   * @param inpoint
+   *          the first second of the footprint
+   * @param outpoint
+   *          the second after the last second of the footprint
+   */
+  synchronized void addFootprint(int inpoint, int outpoint) {
+    if (outpoint + 1 > length)
+      length = outpoint + 1;
+    if (length > deltas.length) {
+      int[] grown = new int[Math.max(length, deltas.length * 2)];
+      System.arraycopy(deltas, 0, grown, 0, deltas.length);
+      deltas = grown;
+    }
+    inpoint = Math.max(0, inpoint);
+    if (inpoint >= outpoint)
+      return;
+    deltas[inpoint]++;
+    deltas[outpoint]--;
+  }
+
+  /**
+   * Returns the footprints, i.e. a list of positions where the number of footprints covering the media package changes,
+   * starting with the first second and ending with the second after the last footprint.
+   * 
+   * @return the footprints
+   */
+  synchronized FootprintList getFootprints() {
+    FootprintList list = new FootprintsListImpl();
+    int current = 0;
+    int last = -1;
+    for (int i = 0; i < length; i++) {
+      current += deltas[i];
+      if (last != current) {
+        Footprint footprint = new FootprintImpl();
+        footprint.setPosition(i);
+        footprint.setViews(current);
+        list.add(footprint);
+      }
+      last = current;
+    }
+    return list;
+  }
+
+}
@@ -46,7 +46,10 @@ import javax.xml.bind.annotation.XmlType;
         @NamedQuery(name = "findUserActions", query = "SELECT a FROM UserAction a"),
         @NamedQuery(name = "countSessionsGroupByMediapackage", query = "SELECT a.mediapackageId, COUNT(distinct a.sessionId), SUM(a.length) FROM UserAction a GROUP BY a.mediapackageId"),
         @NamedQuery(name = "countSessionsGroupByMediapackageByIntervall", query = "SELECT a.mediapackageId, COUNT(distinct a.sessionId), SUM(a.length) FROM UserAction a WHERE :begin <= a.created AND a.created <= :end GROUP BY a.mediapackageId"),
+        @NamedQuery(name = "findSessionsOfMediapackagesByIntervall", query = "SELECT a.mediapackageId, a.sessionId, a.created, a.length FROM UserAction a WHERE a.mediapackageId IN :mediapackageIds AND :begin <= a.created AND a.created < :end"),
         @NamedQuery(name = "countSessionsOfMediapackage", query = "SELECT COUNT(distinct a.sessionId) FROM UserAction a WHERE a.mediapackageId = :mediapackageId"),
+        @NamedQuery(name = "countActionsOfSessionAndMediapackage", query = "SELECT COUNT(a) FROM UserAction a WHERE a.sessionId = :sessionId AND a.mediapackageId = :mediapackageId"),
+        @NamedQuery(name = "findFootprintIntervalsOfMediapackage", query = "SELECT a.inpoint, a.outpoint FROM UserAction a WHERE a.mediapackageId = :mediapackageId AND a.type = \'FOOTPRINT\'"),
         @NamedQuery(name = "findLastUserFootprintOfSession", query = "SELECT a FROM UserAction a  WHERE a.sessionId = :sessionId AND a.type = \'FOOTPRINT\'  ORDER BY a.created DESC"),
         @NamedQuery(name = "findLastUserActionsOfSession", query = "SELECT a FROM UserAction a  WHERE a.sessionId = :sessionId ORDER BY a.created DESC"),
         @NamedQuery(name = "findUserActionsByType", query = "SELECT a FROM UserAction a WHERE a.type = :type"),
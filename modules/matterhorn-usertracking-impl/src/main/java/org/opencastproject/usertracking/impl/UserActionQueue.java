@@ -0,0 +1,356 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.usertracking.impl;
+
+import org.opencastproject.usertracking.api.UserAction;
+import org.opencastproject.usertracking.impl.jmx.UserTrackingStatistics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded queue of user actions that are written to the database in the background.
+ * <p>
+ * A footprint that continues the queued footprint of the same session, i.e. starts where the queued one ends, is merged
+ * into the queued one instead of taking up another place in the queue. A background thread hands the queued actions to
+ * the user tracking service in batches as soon as either the batch size is reached or the oldest action has been
+ * waiting for the commit delay. Actions that arrive while the queue is full are dropped, so that viewers never have to
+ * wait for the database. A batch that could not be written is put back at the head of the queue and retried with an
+ * increasing delay, until it has failed {@link #MAX_ATTEMPTS} times or the queue is stopped.
+ */
+class UserActionQueue implements Runnable {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(UserActionQueue.class);
+
+  /** Time in milliseconds before the first retry of a failed batch */
+  static final long MIN_RETRY_DELAY = 1000L;
+
+  /** Maximum time in milliseconds between two retries of a failed batch */
+  static final long MAX_RETRY_DELAY = 60000L;
+
+  /** Number of attempts to write a batch before its user actions are dropped */
+  static final int MAX_ATTEMPTS = 5;
+
+  /** The service that writes the user actions */
+  private final UserTrackingServiceImpl service;
+
+  /** Maximum number of queued user actions */
+  private final int capacity;
+
+  /** Maximum number of user actions written at once */
+  private final int batchSize;
+
+  /** Maximum time in milliseconds that a user action is held back in order to fill up a batch */
+  private final long commitDelay;
+
+  /** The queue statistics */
+  private final UserTrackingStatistics statistics;
+
+  /** The queued user actions, in the order of their arrival */
+  private final LinkedList<Queued> pending = new LinkedList<Queued>();
+
+  /** The last queued footprint of each session */
+  private final Map<String, Queued> footprints = new HashMap<String, Queued>();
+
+  /** Number of user actions that are currently being written */
+  private int inFlight = 0;
+
+  /** Number of threads waiting for the queue to be flushed */
+  private int flushing = 0;
+
+  /** Whether user actions are dropped at the moment */
+  private boolean dropping = false;
+
+  /** Whether the queue accepts user actions */
+  private boolean running = false;
+
+  /** The thread writing the user actions */
+  private Thread worker = null;
+
+  /**
+   * Creates a new queue.
+   * 
+   * @param service
+   *          the user tracking service
+   * @param capacity
+   *          maximum number of queued user actions
+   * @param batchSize
+   *          maximum number of user actions per transaction
+   * @param commitDelay
+   *          maximum time in milliseconds a user action is held back
+   * @param statistics
+   *          the statistics to update
+   */
+  UserActionQueue(UserTrackingServiceImpl service, int capacity, int batchSize, long commitDelay,
+          UserTrackingStatistics statistics) {
+    if (capacity < 1 || batchSize < 1 || commitDelay < 0)
+      throw new IllegalArgumentException("Queue capacity and batch size must be positive, delay must not be negative");
+    this.service = service;
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.commitDelay = commitDelay;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Returns the maximum number of queued user actions.
+   * 
+   * @return the capacity
+   */
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the maximum number of user actions written at once.
+   * 
+   * @return the batch size
+   */
+  int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Starts the thread writing the user actions.
+   */
+  synchronized void start() {
+    if (running)
+      return;
+    running = true;
+    worker = new Thread(this, "User tracking writer");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Writes the queued user actions and stops the writer thread.
+   * 
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting for the writer
+   */
+  void stop() throws InterruptedException {
+    Thread t = null;
+    synchronized (this) {
+      if (!running)
+        return;
+      running = false;
+      t = worker;
+      notifyAll();
+    }
+    t.join();
+  }
+
+  /**
+   * Queues a user action.
+   * 
+   * @param action
+   *          the user action
+   * @return <code>true</code> if the action has been queued, <code>false</code> if it has been dropped
+   */
+  synchronized boolean offer(UserAction action) {
+    if (!running)
+      throw new IllegalStateException("The user action queue is not running");
+
+    if (UserTrackingServiceImpl.FOOTPRINT_KEY.equals(action.getType())) {
+      Queued last = footprints.get(action.getSessionId());
+      if (last != null && last.action.getMediapackageId().equals(action.getMediapackageId())
+              && last.action.getOutpoint() == action.getInpoint()) {
+        last.action.setOutpoint(action.getOutpoint());
+        statistics.merged();
+        return true;
+      }
+    }
+
+    if (pending.size() + inFlight >= capacity) {
+      statistics.dropped();
+      if (!dropping) {
+        logger.warn("User action queue is full, dropping user actions until the database catches up");
+        dropping = true;
+      }
+      return false;
+    } else if (dropping) {
+      logger.info("User action queue accepts user actions again");
+      dropping = false;
+    }
+
+    Queued queued = new Queued(action);
+    pending.add(queued);
+    if (UserTrackingServiceImpl.FOOTPRINT_KEY.equals(action.getType()))
+      footprints.put(action.getSessionId(), queued);
+    statistics.accepted();
+    statistics.queued(size());
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Returns the number of user actions that have not been written yet.
+   * 
+   * @return the number of queued user actions
+   */
+  synchronized int size() {
+    return pending.size() + inFlight;
+  }
+
+  /**
+   * Waits until all user actions that have been queued so far are written to the database.
+   * 
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting
+   */
+  synchronized void flush() throws InterruptedException {
+    flushing++;
+    try {
+      notifyAll();
+      while (!pending.isEmpty() || inFlight > 0)
+        wait();
+    } finally {
+      flushing--;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see java.lang.Runnable#run()
+   */
+  @Override
+  public void run() {
+    while (true) {
+      List<Queued> batch = null;
+      try {
+        batch = nextBatch();
+      } catch (InterruptedException e) {
+        logger.warn("User tracking writer interrupted with {} queued user actions", size());
+        return;
+      }
+      if (batch == null)
+        return;
+      List<UserAction> actions = new ArrayList<UserAction>(batch.size());
+      for (Queued queued : batch) {
+        actions.add(queued.action);
+      }
+      long oldest = actions.get(0).getCreated().getTime();
+      boolean written = false;
+      try {
+        service.writeUserActions(actions);
+        statistics.written(actions.size(), System.currentTimeMillis() - oldest);
+        written = true;
+      } catch (Throwable t) {
+        logger.warn("Error writing {} user actions: {}", actions.size(), t.getMessage());
+      } finally {
+        synchronized (this) {
+          if (!written)
+            retry(batch);
+          inFlight = 0;
+          statistics.queued(size());
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Puts a batch that could not be written back at the head of the queue, to be retried after a delay that doubles
+   * with every failed attempt. The user actions are dropped if the batch has failed too often or the queue is stopping.
+   * 
+   * @param failed
+   *          the batch that could not be written
+   */
+  private synchronized void retry(List<Queued> failed) {
+    int attempts = ++failed.get(0).attempts;
+    if (!running || attempts >= MAX_ATTEMPTS) {
+      statistics.failed(failed.size());
+      logger.error("Dropping {} user actions after {} failed attempts to write them", failed.size(), attempts);
+      return;
+    }
+    long delay = Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << (attempts - 1));
+    logger.info("Retrying to write {} user actions in {} ms", failed.size(), delay);
+    failed.get(0).notBefore = System.currentTimeMillis() + delay;
+    for (Queued queued : failed) {
+      queued.attempts = attempts;
+    }
+    pending.addAll(0, failed);
+  }
+
+  /**
+   * Waits for the next batch of user actions to become ready. A failed batch at the head of the queue holds back all
+   * user actions until it is due to be retried, unless the queue has been stopped.
+   * 
+   * @return the user actions or <code>null</code> if the queue has been stopped and there is nothing left to write
+   */
+  private synchronized List<Queued> nextBatch() throws InterruptedException {
+    while (true) {
+      while (running && pending.isEmpty())
+        wait();
+      if (pending.isEmpty())
+        return null;
+      long delay = pending.getFirst().notBefore - System.currentTimeMillis();
+      if (!running || delay <= 0)
+        break;
+      wait(delay);
+    }
+
+    // Give the batch a chance to fill up, unless the queue is being flushed or stopped
+    long deadline = pending.getFirst().queued + commitDelay;
+    long remaining = deadline - System.currentTimeMillis();
+    while (running && flushing == 0 && pending.size() < batchSize && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+
+    List<Queued> batch = new ArrayList<Queued>(Math.min(batchSize, pending.size()));
+    while (!pending.isEmpty() && batch.size() < batchSize) {
+      Queued queued = pending.removeFirst();
+      if (footprints.get(queued.action.getSessionId()) == queued)
+        footprints.remove(queued.action.getSessionId());
+      batch.add(queued);
+    }
+    inFlight = batch.size();
+    return batch;
+  }
+
+  /**
+   * A queued user action.
+   */
+  private static final class Queued {
+
+    /** The user action */
+    final UserAction action;
+
+    /** The time the action has been queued */
+    final long queued = System.currentTimeMillis();
+
+    /** The number of failed attempts to write the action */
+    int attempts = 0;
+
+    /** The time before which a failed action is not retried */
+    long notBefore = 0L;
+
+    Queued(UserAction action) {
+      this.action = action;
+    }
+
+  }
+
+}
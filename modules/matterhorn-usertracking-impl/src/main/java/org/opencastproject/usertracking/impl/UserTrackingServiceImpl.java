@@ -27,7 +27,9 @@ import org.opencastproject.usertracking.endpoint.FootprintImpl;
 import org.opencastproject.usertracking.endpoint.FootprintsListImpl;
 import org.opencastproject.usertracking.endpoint.ReportImpl;
 import org.opencastproject.usertracking.endpoint.ReportItemImpl;
+import org.opencastproject.usertracking.impl.jmx.UserTrackingStatistics;
 import org.opencastproject.util.NotFoundException;
+import org.opencastproject.util.jmx.JmxUtil;
 
 import org.apache.commons.lang.StringUtils;
 import org.osgi.service.cm.ConfigurationException;
@@ -37,16 +39,29 @@ import org.slf4j.LoggerFactory;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Dictionary;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.management.ObjectInstance;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
 import javax.persistence.Query;
 import javax.persistence.TemporalType;
 import javax.persistence.spi.PersistenceProvider;
@@ -60,10 +75,104 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
 
   public static final String FOOTPRINT_KEY = "FOOTPRINT";
 
+  /** Configuration key for the number of media packages whose statistics are kept in memory */
+  public static final String STATISTICS_CACHE_SIZE_KEY = "org.opencastproject.usertracking.statistics.cachesize";
+
+  /** Default number of media packages whose statistics are kept in memory */
+  public static final int DEFAULT_STATISTICS_CACHE_SIZE = 1000;
+
+  /** Number of locks guarding the statistics, each of them shared by a subset of the media packages */
+  private static final int STATISTICS_LOCKS = 64;
+
+  /** Configuration key for the number of user actions waiting to be written, 0 to write them right away */
+  public static final String QUEUE_SIZE_KEY = "org.opencastproject.usertracking.queue.size";
+
+  /** Default number of user actions waiting to be written */
+  public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+  /** Configuration key for the number of user actions written in one transaction */
+  public static final String QUEUE_BATCH_SIZE_KEY = "org.opencastproject.usertracking.queue.batchsize";
+
+  /** Default number of user actions written in one transaction */
+  public static final int DEFAULT_QUEUE_BATCH_SIZE = 100;
+
+  /** Maximum time in milliseconds that a queued user action is held back in order to fill up a batch */
+  private static final long QUEUE_COMMIT_DELAY = 1000L;
+
+  /** Number of sessions whose last footprint is remembered by the writer */
+  private static final int SESSION_CACHE_SIZE = 10000;
+
+  /** Maximum number of media packages passed to a single report query */
+  private static final int MAX_QUERY_MEDIAPACKAGES = 1000;
+
+  /** Maximum number of intervals that a report period may be split into */
+  public static final int MAX_REPORT_INTERVALS = 10000;
+
+  /** The JMX type of the queue statistics */
+  private static final String JMX_QUEUE_STATISTICS_TYPE = "UserTrackingStatistics";
+
   private static final Logger logger = LoggerFactory.getLogger(UserTrackingServiceImpl.class);
 
   private boolean detailedTracking = false;
 
+  /** Number of media packages whose statistics are kept in memory */
+  private volatile int statisticsCacheSize = DEFAULT_STATISTICS_CACHE_SIZE;
+
+  /** The views and footprints of the most recently used media packages */
+  private final Map<String, MediaPackageStatistics> statistics = new LinkedHashMap<String, MediaPackageStatistics>(
+          16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, MediaPackageStatistics> eldest) {
+      return size() > statisticsCacheSize;
+    }
+  };
+
+  /**
+   * Locks making sure that the statistics of a media package are not loaded from the database while user actions of
+   * that media package are being written. Writers share the lock, loading the statistics requires the exclusive lock.
+   */
+  private final ReadWriteLock[] statisticsLocks = new ReadWriteLock[STATISTICS_LOCKS];
+
+  /** The queue of user actions that are written in the background, or <code>null</code> to write them right away */
+  private volatile UserActionQueue queue = null;
+
+  /** The statistics of the queue */
+  private final UserTrackingStatistics queueStatistics = new UserTrackingStatistics();
+
+  /** The registered queue statistics */
+  private ObjectInstance registeredMXBean = null;
+
+  /** Makes sure that the batches of queued user actions are written one after the other */
+  private final Object writerLock = new Object();
+
+  /** The last footprint written by the queue, by session */
+  private final Map<String, UserAction> lastFootprints = createCache(SESSION_CACHE_SIZE);
+
+  /** The combinations of media package and session known to be in the database, as seen by the queue */
+  private final Map<String, Boolean> recordedSessions = createCache(SESSION_CACHE_SIZE);
+
+  public UserTrackingServiceImpl() {
+    for (int i = 0; i < statisticsLocks.length; i++) {
+      statisticsLocks[i] = new ReentrantReadWriteLock();
+    }
+  }
+
+  /**
+   * Creates a map that forgets about the least recently used entries once it holds <code>size</code> entries.
+   */
+  private static <V> Map<String, V> createCache(final int size) {
+    return new LinkedHashMap<String, V>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > size;
+      }
+    };
+  }
+
   /**
    * @param persistenceProvider
    *          the persistenceProvider to set
@@ -96,17 +205,69 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
   public void activate() {
     logger.debug("activate()");
     emf = persistenceProvider.createEntityManagerFactory("org.opencastproject.usertracking", persistenceProperties);
+    configureQueue(DEFAULT_QUEUE_SIZE, DEFAULT_QUEUE_BATCH_SIZE);
+    registeredMXBean = JmxUtil.registerMXBean(queueStatistics, JMX_QUEUE_STATISTICS_TYPE);
   }
 
   /**
    * Deactivation callback
    */
   public void destroy() {
+    configureQueue(0, DEFAULT_QUEUE_BATCH_SIZE);
+    if (registeredMXBean != null) {
+      JmxUtil.unregisterMXBean(registeredMXBean);
+      registeredMXBean = null;
+    }
     if (emf != null && emf.isOpen()) {
       emf.close();
     }
   }
 
+  /**
+   * Replaces the queue of user actions if its settings have changed. User actions that are still in the old queue are
+   * written before this method returns.
+   * 
+   * @param size
+   *          the maximum number of queued user actions, <code>0</code> to write user actions right away
+   * @param batchSize
+   *          the maximum number of user actions written in one transaction
+   */
+  private synchronized void configureQueue(int size, int batchSize) {
+    UserActionQueue old = queue;
+    if (old == null && size <= 0)
+      return;
+    if (old != null && old.getCapacity() == size && old.getBatchSize() == batchSize)
+      return;
+    if (size > 0) {
+      UserActionQueue q = new UserActionQueue(this, size, batchSize, QUEUE_COMMIT_DELAY, queueStatistics);
+      q.start();
+      queue = q;
+      logger.debug("Writing user actions in batches of {}, queueing up to {}", batchSize, size);
+    } else {
+      queue = null;
+    }
+    if (old != null) {
+      try {
+        old.stop();
+      } catch (InterruptedException e) {
+        logger.warn("Interrupted while writing the queued user actions");
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Waits until all user actions that have been queued so far are written to the database.
+   * 
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting
+   */
+  void flushQueue() throws InterruptedException {
+    UserActionQueue q = queue;
+    if (q != null)
+      q.flush();
+  }
+
   @Override
   public void updated(Dictionary props) throws ConfigurationException {
     if (props == null) {
@@ -118,15 +279,129 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
     if (val != null && String.class.isInstance(val)) {
       detailedTracking = Boolean.valueOf((String) val);
     }
+
+    statisticsCacheSize = getIntProperty(props, STATISTICS_CACHE_SIZE_KEY, DEFAULT_STATISTICS_CACHE_SIZE);
+    logger.debug("Keeping the statistics of up to {} media packages in memory", statisticsCacheSize);
+
+    int queueSize = getIntProperty(props, QUEUE_SIZE_KEY, DEFAULT_QUEUE_SIZE);
+    int queueBatchSize = getIntProperty(props, QUEUE_BATCH_SIZE_KEY, DEFAULT_QUEUE_BATCH_SIZE);
+    if (queueBatchSize < 1)
+      throw new ConfigurationException(QUEUE_BATCH_SIZE_KEY, "Must be positive: " + queueBatchSize);
+    configureQueue(queueSize, queueBatchSize);
+  }
+
+  /**
+   * Returns the value of an integer configuration property.
+   * 
+   * @param props
+   *          the configuration properties
+   * @param key
+   *          the property key
+   * @param defaultValue
+   *          the value to use if the property is not set
+   * @return the value
+   * @throws ConfigurationException
+   *           if the property is not a number
+   */
+  private static int getIntProperty(Dictionary props, String key, int defaultValue) throws ConfigurationException {
+    String value = StringUtils.trimToNull((String) props.get(key));
+    if (value == null)
+      return defaultValue;
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new ConfigurationException(key, "Not a number: " + value);
+    }
   }
 
   public int getViews(String mediapackageId) {
+    return getStatistics(mediapackageId).getViews();
+  }
+
+  /**
+   * Returns the lock guarding the statistics of a media package.
+   * 
+   * @param mediapackageId
+   *          the media package identifier
+   * @return the lock
+   */
+  private ReadWriteLock getStatisticsLock(String mediapackageId) {
+    return statisticsLocks[getStatisticsLockIndex(mediapackageId)];
+  }
+
+  /**
+   * Returns the index of the lock guarding the statistics of a media package.
+   */
+  private int getStatisticsLockIndex(String mediapackageId) {
+    int hash = mediapackageId == null ? 0 : mediapackageId.hashCode();
+    return (hash & Integer.MAX_VALUE) % statisticsLocks.length;
+  }
+
+  /**
+   * Returns the statistics of a media package if they are kept in memory.
+   * 
+   * @param mediapackageId
+   *          the media package identifier
+   * @return the statistics or <code>null</code>
+   */
+  private MediaPackageStatistics getCachedStatistics(String mediapackageId) {
+    synchronized (statistics) {
+      return statistics.get(mediapackageId);
+    }
+  }
+
+  /**
+   * Returns the statistics of a media package, loading them from the database if they are not kept in memory yet.
+   * 
+   * @param mediapackageId
+   *          the media package identifier
+   * @return the statistics
+   */
+  private MediaPackageStatistics getStatistics(String mediapackageId) {
+    MediaPackageStatistics stats = getCachedStatistics(mediapackageId);
+    if (stats != null)
+      return stats;
+
+    Lock lock = getStatisticsLock(mediapackageId).writeLock();
+    lock.lock();
+    try {
+      stats = getCachedStatistics(mediapackageId);
+      if (stats == null) {
+        stats = loadStatistics(mediapackageId);
+        synchronized (statistics) {
+          statistics.put(mediapackageId, stats);
+        }
+      }
+      return stats;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Aggregates the views and footprints of a media package from the user actions in the database.
+   * 
+   * @param mediapackageId
+   *          the media package identifier
+   * @return the statistics
+   */
+  private MediaPackageStatistics loadStatistics(String mediapackageId) {
+    MediaPackageStatistics stats = new MediaPackageStatistics();
     EntityManager em = null;
     try {
       em = emf.createEntityManager();
       Query q = em.createNamedQuery("countSessionsOfMediapackage");
       q.setParameter("mediapackageId", mediapackageId);
-      return ((Long) q.getSingleResult()).intValue();
+      stats.setViews(((Long) q.getSingleResult()).intValue());
+
+      q = em.createNamedQuery("findFootprintIntervalsOfMediapackage");
+      q.setParameter("mediapackageId", mediapackageId);
+      @SuppressWarnings("unchecked")
+      List<Object[]> intervals = q.getResultList();
+      for (Object[] interval : intervals) {
+        stats.addFootprint(((Number) interval[0]).intValue(), ((Number) interval[1]).intValue());
+      }
+      return stats;
     } finally {
       if (em != null && em.isOpen()) {
         em.close();
@@ -134,11 +409,193 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
     }
   }
 
+  /**
+   * Returns <code>true</code> if the session of the user action has not been recorded for the action's media package
+   * so far. The answer is only needed to update the in-memory statistics, so the database is not asked if there are
+   * none for the media package. Must be called while holding the statistics lock of the media package, so that the
+   * statistics are not loaded in between.
+   * 
+   * @param em
+   *          the entity manager
+   * @param a
+   *          the user action
+   * @return <code>true</code> if this is the first action of the session on the media package and the statistics of
+   *         the media package are kept in memory
+   */
+  private boolean isNewSession(EntityManager em, UserAction a) {
+    if (getCachedStatistics(a.getMediapackageId()) == null)
+      return false;
+    Query q = em.createNamedQuery("countActionsOfSessionAndMediapackage");
+    q.setParameter("sessionId", a.getSessionId());
+    q.setParameter("mediapackageId", a.getMediapackageId());
+    return ((Long) q.getSingleResult()).longValue() == 0;
+  }
+
+  /**
+   * Updates the in-memory statistics of a media package, if there are any, with a user action that has just been
+   * stored. Must be called while holding the statistics lock of the media package, so that the statistics are not
+   * loaded from the database in between storing the action and updating them.
+   * 
+   * @param mediapackageId
+   *          the media package identifier
+   * @param newSession
+   *          whether the action started a new session on the media package
+   * @param footprint
+   *          whether the action is a footprint
+   * @param inpoint
+   *          the inpoint of the action
+   * @param outpoint
+   *          the outpoint of the action
+   */
+  private void updateStatistics(String mediapackageId, boolean newSession, boolean footprint, int inpoint,
+          int outpoint) {
+    MediaPackageStatistics stats = getCachedStatistics(mediapackageId);
+    if (stats == null)
+      return;
+    if (newSession)
+      stats.addView();
+    if (footprint)
+      stats.addFootprint(inpoint, outpoint);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.usertracking.api.UserTrackingService#submitUserAction(org.opencastproject.usertracking.api.UserAction)
+   */
+  @Override
+  public UserAction submitUserAction(UserAction a) throws UserTrackingException {
+    UserActionQueue q = queue;
+    if (q != null) {
+      try {
+        return q.offer(a) ? a : null;
+      } catch (IllegalStateException e) {
+        logger.debug("User action queue has been stopped, writing the user action right away");
+      }
+    }
+    if (FOOTPRINT_KEY.equals(a.getType()))
+      return addUserFootprint(a);
+    else
+      return addUserTrackingEvent(a);
+  }
+
+  /**
+   * Writes a batch of queued user actions in one transaction. Footprints are merged with the last footprint of their
+   * session, as in {@link #addUserFootprint(UserAction)}, but the last footprints are remembered in between batches
+   * rather than looked up for each footprint.
+   * 
+   * @param actions
+   *          the user actions
+   * @throws UserTrackingException
+   *           if writing the user actions fails
+   */
+  void writeUserActions(List<UserAction> actions) throws UserTrackingException {
+    synchronized (writerLock) {
+      // Keep the statistics of the media packages from being loaded while the actions are written
+      SortedSet<Integer> lockIndexes = new TreeSet<Integer>();
+      for (UserAction a : actions) {
+        lockIndexes.add(getStatisticsLockIndex(a.getMediapackageId()));
+      }
+      List<Lock> locks = new ArrayList<Lock>(lockIndexes.size());
+      for (int index : lockIndexes) {
+        Lock lock = statisticsLocks[index].readLock();
+        lock.lock();
+        locks.add(lock);
+      }
+
+      EntityManager em = null;
+      EntityTransaction tx = null;
+      try {
+        em = emf.createEntityManager();
+        // Write everything at commit time, so that the inserts and updates can be batched
+        em.setFlushMode(FlushModeType.COMMIT);
+        tx = em.getTransaction();
+        tx.begin();
+        boolean[] newSessions = new boolean[actions.size()];
+        for (int i = 0; i < actions.size(); i++) {
+          UserAction a = actions.get(i);
+          boolean footprint = FOOTPRINT_KEY.equals(a.getType());
+          if (footprint) {
+            UserAction last = findLastFootprint(em, a.getSessionId());
+            if (last != null && last.getMediapackageId().equals(a.getMediapackageId())
+                    && last.getOutpoint() == a.getInpoint()) {
+              if (!em.contains(last))
+                last = em.find(UserActionImpl.class, last.getId());
+              if (last != null) {
+                last.setOutpoint(a.getOutpoint());
+                lastFootprints.put(a.getSessionId(), last);
+                continue;
+              }
+            }
+          }
+          newSessions[i] = isNewRecordedSession(em, a);
+          em.persist(a);
+          if (footprint)
+            lastFootprints.put(a.getSessionId(), a);
+        }
+        tx.commit();
+
+        for (int i = 0; i < actions.size(); i++) {
+          UserAction a = actions.get(i);
+          updateStatistics(a.getMediapackageId(), newSessions[i], FOOTPRINT_KEY.equals(a.getType()), a.getInpoint(),
+                  a.getOutpoint());
+        }
+      } catch (Exception e) {
+        if (tx != null && tx.isActive()) {
+          tx.rollback();
+        }
+        lastFootprints.clear();
+        recordedSessions.clear();
+        throw new UserTrackingException(e);
+      } finally {
+        if (em != null && em.isOpen()) {
+          em.close();
+        }
+        for (Lock lock : locks) {
+          lock.unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the last footprint of a session, looking it up in the database if the session has not been seen by the
+   * queue so far.
+   */
+  @SuppressWarnings("unchecked")
+  private UserAction findLastFootprint(EntityManager em, String sessionId) {
+    UserAction last = lastFootprints.get(sessionId);
+    if (last != null)
+      return last;
+    Query q = em.createNamedQuery("findLastUserFootprintOfSession");
+    q.setMaxResults(1);
+    q.setParameter("sessionId", sessionId);
+    List<UserAction> userActions = q.getResultList();
+    return userActions.isEmpty() ? null : userActions.get(0);
+  }
+
+  /**
+   * Returns <code>true</code> if the session of a queued user action has not been recorded for the action's media
+   * package so far, and remembers it as recorded.
+   */
+  private boolean isNewRecordedSession(EntityManager em, UserAction a) {
+    String key = a.getMediapackageId() + "/" + a.getSessionId();
+    if (recordedSessions.containsKey(key))
+      return false;
+    recordedSessions.put(key, Boolean.TRUE);
+    return isNewSession(em, a);
+  }
+
   @SuppressWarnings("unchecked")
   public UserAction addUserFootprint(UserAction a) throws UserTrackingException {
-    a.setType("FOOTPRINT");
+    a.setType(FOOTPRINT_KEY);
+    String mediapackageId = a.getMediapackageId();
+    int inpoint = a.getInpoint();
+    int outpoint = a.getOutpoint();
+    Lock lock = getStatisticsLock(mediapackageId).readLock();
     EntityManager em = null;
     EntityTransaction tx = null;
+    lock.lock();
     try {
       em = emf.createEntityManager();
       tx = em.getTransaction();
@@ -148,6 +605,7 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
       q.setParameter("sessionId", a.getSessionId());
       Collection<UserAction> userActions = q.getResultList();
 
+      boolean newSession = false;
       if (userActions.size() >= 1) {
         UserAction last = userActions.iterator().next();
         if (last.getMediapackageId().equals(a.getMediapackageId()) && last.getType().equals(a.getType())
@@ -156,12 +614,15 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
           a = last;
           a.setId(last.getId());
         } else {
+          newSession = isNewSession(em, a);
           em.persist(a);
         }
       } else {
+        newSession = isNewSession(em, a);
         em.persist(a);
       }
       tx.commit();
+      updateStatistics(mediapackageId, newSession, true, inpoint, outpoint);
       return a;
     } catch (Exception e) {
       if (tx != null && tx.isActive()) {
@@ -172,18 +633,24 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
       if (em != null && em.isOpen()) {
         em.close();
       }
+      lock.unlock();
     }
   }
 
   public UserAction addUserTrackingEvent(UserAction a) throws UserTrackingException {
+    Lock lock = getStatisticsLock(a.getMediapackageId()).readLock();
     EntityManager em = null;
     EntityTransaction tx = null;
+    lock.lock();
     try {
       em = emf.createEntityManager();
       tx = em.getTransaction();
       tx.begin();
+      boolean newSession = isNewSession(em, a);
       em.persist(a);
       tx.commit();
+      updateStatistics(a.getMediapackageId(), newSession, FOOTPRINT_KEY.equals(a.getType()), a.getInpoint(),
+              a.getOutpoint());
       return a;
     } catch (Exception e) {
       if (tx.isActive()) {
@@ -194,6 +661,7 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
       if (em != null && em.isOpen()) {
         em.close();
       }
+      lock.unlock();
     }
   }
 
@@ -601,17 +1069,98 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
     }
   }
   
-  public FootprintList getFootprints(String mediapackageId, String userId) {
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.usertracking.api.UserTrackingService#getReports(java.util.List, java.util.Date,
+   *      java.util.Date, long)
+   */
+  @Override
+  public List<Report> getReports(List<String> mediapackageIds, Date from, Date to, long interval) {
+    if (interval <= 0)
+      throw new IllegalArgumentException("The interval must be positive: " + interval);
+    long intervalMillis = interval * 1000L;
+    long intervalCount = Math.max(1, (to.getTime() - from.getTime() + intervalMillis - 1) / intervalMillis);
+    if (intervalCount > MAX_REPORT_INTERVALS)
+      throw new IllegalArgumentException("Too many intervals: " + intervalCount);
+    int intervals = (int) intervalCount;
+    Date end = new Date(from.getTime() + intervals * intervalMillis);
+
+    // The sessions and played seconds by interval and media package, collected in a single pass over the user actions
+    // of the whole period. JPQL lacks the date arithmetic that would be needed to group by interval in the database.
+    Map<Integer, Map<String, IntervalUsage>> usage = new HashMap<Integer, Map<String, IntervalUsage>>();
     EntityManager em = null;
     try {
       em = emf.createEntityManager();
-      Query q = null;
-      if (StringUtils.trimToNull(userId) == null) {
-        q = em.createNamedQuery("findUserActionsByTypeAndMediapackageIdOrderByOutpointDESC");
-      } else {
-        q = em.createNamedQuery("findUserActionsByTypeAndMediapackageIdByUserOrderByOutpointDESC");
-        q.setParameter("userid", userId);
+      for (int i = 0; i < mediapackageIds.size(); i += MAX_QUERY_MEDIAPACKAGES) {
+        Query q = em.createNamedQuery("findSessionsOfMediapackagesByIntervall");
+        q.setParameter("mediapackageIds",
+                mediapackageIds.subList(i, Math.min(i + MAX_QUERY_MEDIAPACKAGES, mediapackageIds.size())));
+        q.setParameter("begin", from, TemporalType.TIMESTAMP);
+        q.setParameter("end", end, TemporalType.TIMESTAMP);
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> result = q.getResultList();
+        for (Object[] a : result) {
+          int index = (int) ((((Date) a[2]).getTime() - from.getTime()) / intervalMillis);
+          if (index < 0 || index >= intervals)
+            continue;
+          Map<String, IntervalUsage> intervalUsage = usage.get(index);
+          if (intervalUsage == null) {
+            intervalUsage = new HashMap<String, IntervalUsage>();
+            usage.put(index, intervalUsage);
+          }
+          IntervalUsage mediapackageUsage = intervalUsage.get(a[0]);
+          if (mediapackageUsage == null) {
+            mediapackageUsage = new IntervalUsage();
+            intervalUsage.put((String) a[0], mediapackageUsage);
+          }
+          mediapackageUsage.sessions.add((String) a[1]);
+          mediapackageUsage.played += ((Number) a[3]).longValue();
+        }
       }
+    } finally {
+      if (em != null && em.isOpen()) {
+        em.close();
+      }
+    }
+
+    List<Report> reports = new ArrayList<Report>(intervals);
+    for (int i = 0; i < intervals; i++) {
+      Report report = new ReportImpl();
+      Calendar calBegin = new GregorianCalendar();
+      calBegin.setTimeInMillis(from.getTime() + i * intervalMillis);
+      Calendar calEnd = new GregorianCalendar();
+      calEnd.setTimeInMillis(from.getTime() + (i + 1) * intervalMillis);
+      report.setFrom(calBegin);
+      report.setTo(calEnd);
+      Map<String, IntervalUsage> intervalUsage = usage.get(i);
+      if (intervalUsage != null) {
+        for (String mediapackageId : mediapackageIds) {
+          IntervalUsage mediapackageUsage = intervalUsage.remove(mediapackageId);
+          if (mediapackageUsage == null)
+            continue;
+          ReportItem item = new ReportItemImpl();
+          item.setEpisodeId(mediapackageId);
+          item.setViews(mediapackageUsage.sessions.size());
+          item.setPlayed(mediapackageUsage.played);
+          report.add(item);
+        }
+      }
+      reports.add(report);
+    }
+    return reports;
+  }
+
+  public FootprintList getFootprints(String mediapackageId, String userId) {
+    if (StringUtils.trimToNull(userId) == null)
+      return getStatistics(mediapackageId).getFootprints();
+
+    EntityManager em = null;
+    try {
+      em = emf.createEntityManager();
+      Query q = em.createNamedQuery("findUserActionsByTypeAndMediapackageIdByUserOrderByOutpointDESC");
+      q.setParameter("userid", userId);
       q.setParameter("type", FOOTPRINT_KEY);
       q.setParameter("mediapackageId", mediapackageId);
       @SuppressWarnings("unchecked")
@@ -686,4 +1235,17 @@ public class UserTrackingServiceImpl implements UserTrackingService, ManagedServ
   public boolean getUserTrackingEnabled() {
     return detailedTracking;
   }
+
+  /**
+   * The usage of a media package during an interval.
+   */
+  private static final class IntervalUsage {
+
+    /** The sessions that have been active */
+    private final Set<String> sessions = new HashSet<String>();
+
+    /** The number of played seconds */
+    private long played = 0;
+
+  }
 }
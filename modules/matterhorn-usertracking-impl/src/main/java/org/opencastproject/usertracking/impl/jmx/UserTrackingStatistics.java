@@ -0,0 +1,114 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.usertracking.impl.jmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the user action queue.
+ */
+public class UserTrackingStatistics implements UserTrackingStatisticsMXBean {
+
+  private volatile int queued = 0;
+  private final AtomicLong accepted = new AtomicLong();
+  private final AtomicLong merged = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private volatile long lag = 0L;
+
+  /**
+   * @see org.opencastproject.usertracking.impl.jmx.UserTrackingStatisticsMXBean#getQueuedActions()
+   */
+  @Override
+  public int getQueuedActions() {
+    return queued;
+  }
+
+  /**
+   * @see org.opencastproject.usertracking.impl.jmx.UserTrackingStatisticsMXBean#getAcceptedActions()
+   */
+  @Override
+  public long getAcceptedActions() {
+    return accepted.get();
+  }
+
+  /**
+   * @see org.opencastproject.usertracking.impl.jmx.UserTrackingStatisticsMXBean#getMergedActions()
+   */
+  @Override
+  public long getMergedActions() {
+    return merged.get();
+  }
+
+  /**
+   * @see org.opencastproject.usertracking.impl.jmx.UserTrackingStatisticsMXBean#getDroppedActions()
+   */
+  @Override
+  public long getDroppedActions() {
+    return dropped.get();
+  }
+
+  /**
+   * @see org.opencastproject.usertracking.impl.jmx.UserTrackingStatisticsMXBean#getWrittenActions()
+   */
+  @Override
+  public long getWrittenActions() {
+    return written.get();
+  }
+
+  /**
+   * @see org.opencastproject.usertracking.impl.jmx.UserTrackingStatisticsMXBean#getFailedActions()
+   */
+  @Override
+  public long getFailedActions() {
+    return failed.get();
+  }
+
+  /**
+   * @see org.opencastproject.usertracking.impl.jmx.UserTrackingStatisticsMXBean#getLag()
+   */
+  @Override
+  public long getLag() {
+    return lag;
+  }
+
+  public void queued(int size) {
+    queued = size;
+  }
+
+  public void accepted() {
+    accepted.incrementAndGet();
+  }
+
+  public void merged() {
+    merged.incrementAndGet();
+  }
+
+  public void dropped() {
+    dropped.incrementAndGet();
+  }
+
+  public void written(int actions, long lag) {
+    written.addAndGet(actions);
+    this.lag = lag;
+  }
+
+  public void failed(int actions) {
+    failed.addAndGet(actions);
+  }
+
+}
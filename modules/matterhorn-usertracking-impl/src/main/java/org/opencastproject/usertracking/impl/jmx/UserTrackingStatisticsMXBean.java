@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.usertracking.impl.jmx;
+
+/**
+ * JMX Bean interface exposing the statistics of the user action queue.
+ */
+public interface UserTrackingStatisticsMXBean {
+
+  /**
+   * Gets the number of user actions waiting to be written
+   * 
+   * @return the number of user actions
+   */
+  int getQueuedActions();
+
+  /**
+   * Gets the number of user actions accepted into the queue
+   * 
+   * @return the number of user actions
+   */
+  long getAcceptedActions();
+
+  /**
+   * Gets the number of footprints that have been merged with a queued footprint of the same session
+   * 
+   * @return the number of footprints
+   */
+  long getMergedActions();
+
+  /**
+   * Gets the number of user actions dropped because the queue was full
+   * 
+   * @return the number of user actions
+   */
+  long getDroppedActions();
+
+  /**
+   * Gets the number of user actions written to the database
+   * 
+   * @return the number of user actions
+   */
+  long getWrittenActions();
+
+  /**
+   * Gets the number of user actions that could not be written to the database
+   * 
+   * @return the number of user actions
+   */
+  long getFailedActions();
+
+  /**
+   * Gets the time in milliseconds between the creation of the oldest action in the last batch and the batch being
+   * written
+   * 
+   * @return the lag in milliseconds
+   */
+  long getLag();
+
+}
@@ -66,7 +66,7 @@ public class UserTrackingRestServiceTest {
     EasyMock.expect(ua.getId()).andReturn(4L).anyTimes();
 
     UserTrackingService usertracking = EasyMock.createMock(UserTrackingService.class);
-    EasyMock.expect(usertracking.addUserFootprint(EasyMock.isA(UserAction.class))).andReturn(ua).anyTimes();
+    EasyMock.expect(usertracking.submitUserAction(EasyMock.isA(UserAction.class))).andReturn(ua).anyTimes();
 
     EasyMock.replay(security, bc, dict, context, ua, usertracking);
 
@@ -21,6 +21,7 @@ import org.opencastproject.usertracking.api.UserAction;
 import org.opencastproject.usertracking.api.UserActionList;
 import org.opencastproject.usertracking.api.UserSummary;
 import org.opencastproject.usertracking.api.UserSummaryList;
+import org.opencastproject.usertracking.api.UserTrackingException;
 
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 
@@ -34,17 +35,26 @@ import org.junit.Test;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class UserTrackingServiceImplTest {
   private ComboPooledDataSource pooledDataSource = null;
   private UserTrackingServiceImpl service = null;
 
+  /** Holds back the writing of queued user actions until it is opened, if set */
+  private volatile CountDownLatch writerGate = null;
+
+  /** The number of attempts to write queued user actions that are going to fail */
+  private final AtomicInteger writerFailures = new AtomicInteger();
+
   @Before
   public void setUp() throws Exception {
     // Set up the database
@@ -60,8 +70,23 @@ public class UserTrackingServiceImplTest {
     props.put("eclipselink.ddl-generation", "create-tables");
     props.put("eclipselink.ddl-generation.output-mode", "database");
 
-    // Set up the annotation service
-    service = new UserTrackingServiceImpl();
+    // Set up the annotation service, with a writer for queued user actions that the tests control
+    service = new UserTrackingServiceImpl() {
+      @Override
+      void writeUserActions(List<UserAction> actions) throws UserTrackingException {
+        CountDownLatch gate = writerGate;
+        if (gate != null) {
+          try {
+            gate.await();
+          } catch (InterruptedException e) {
+            throw new UserTrackingException(e);
+          }
+        }
+        if (writerFailures.getAndDecrement() > 0)
+          throw new UserTrackingException(new IllegalStateException("Simulated database failure"));
+        super.writeUserActions(actions);
+      }
+    };
     service.setPersistenceProvider(new PersistenceProvider());
     service.setPersistenceProperties(props);
     service.activate();
@@ -200,6 +225,196 @@ public class UserTrackingServiceImplTest {
     verifyFootprintViewsAndPositions(list, 2, 30, 0);
   }
 
+  /**
+   * Tests that the views and footprints maintained in memory match the ones aggregated from the database
+   * @throws Exception
+   */
+  @Test
+  public void testStatistics() throws Exception {
+    // Load the (empty) statistics, so that the following actions are added to them
+    Assert.assertEquals(0, service.getViews("mp"));
+    getFootprintList("mp", null, 1);
+
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session123", "mp", "me", "127.0.0.1", 10, 20);
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session123", "mp", "me", "127.0.0.1", 20, 30);
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session456", "mp", "you", "127.0.0.1", 15, 25);
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session456", "mp", "you", "127.0.0.1", 5, 10);
+    createAndVerifyUserAction("PLAY", "session789", "mp", "them", "127.0.0.1", 0, 0);
+    createAndVerifyUserAction("PAUSE", "session789", "mp", "them", "127.0.0.1", 0, 0);
+    createAndVerifyUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session123", "other", "me", "127.0.0.1", 0, 40);
+
+    Assert.assertEquals(3, service.getViews("mp"));
+    Assert.assertEquals(1, service.getViews("other"));
+    FootprintList list = getFootprintList("mp", null, 5);
+    verifyFootprintViewsAndPositions(list, 0, 0, 0);
+    verifyFootprintViewsAndPositions(list, 1, 5, 1);
+    verifyFootprintViewsAndPositions(list, 2, 15, 2);
+    verifyFootprintViewsAndPositions(list, 3, 25, 1);
+    verifyFootprintViewsAndPositions(list, 4, 30, 0);
+
+    // A second service has to aggregate the same statistics from the database
+    UserTrackingServiceImpl restarted = new UserTrackingServiceImpl();
+    restarted.setPersistenceProvider(new PersistenceProvider());
+    restarted.setPersistenceProperties(service.persistenceProperties);
+    restarted.activate();
+    try {
+      Assert.assertEquals(3, restarted.getViews("mp"));
+      Assert.assertEquals(1, restarted.getViews("other"));
+      FootprintList loaded = restarted.getFootprints("mp", null);
+      Assert.assertEquals(list.getTotal(), loaded.getTotal());
+      for (int i = 0; i < list.getTotal(); i++) {
+        Assert.assertEquals(list.getFootprints().get(i).getPosition(), loaded.getFootprints().get(i).getPosition());
+        Assert.assertEquals(list.getFootprints().get(i).getViews(), loaded.getFootprints().get(i).getViews());
+      }
+    } finally {
+      restarted.destroy();
+    }
+  }
+
+  /**
+   * Tests that queued user actions are merged and written in the background
+   * @throws Exception
+   */
+  @Test
+  public void testQueuedActions() throws Exception {
+    Assert.assertEquals(0, service.getViews("mp"));
+
+    for (int i = 0; i < 10; i++) {
+      UserAction action = createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session123", "mp", "me", "127.0.0.1",
+              i * 10, i * 10 + 10, new Date());
+      Assert.assertNull(service.submitUserAction(action).getId());
+    }
+    service.submitUserAction(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session456", "mp", "you",
+            "127.0.0.1", 50, 60, new Date()));
+    service.flushQueue();
+
+    verifyUserActionListsByTypeAndMediapackage(UserTrackingServiceImpl.FOOTPRINT_KEY, "mp", 2, 0, 10, 2);
+    Assert.assertEquals(2, service.getViews("mp"));
+    FootprintList list = getFootprintList("mp", null, 4);
+    verifyFootprintViewsAndPositions(list, 0, 0, 1);
+    verifyFootprintViewsAndPositions(list, 1, 50, 2);
+    verifyFootprintViewsAndPositions(list, 2, 60, 1);
+    verifyFootprintViewsAndPositions(list, 3, 100, 0);
+
+    // Footprints continuing a footprint written in an earlier batch are merged as well
+    service.submitUserAction(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session123", "mp", "me",
+            "127.0.0.1", 100, 110, new Date()));
+    service.submitUserAction(createUserAction("PLAY", "session789", "mp", "them", "127.0.0.1", 0, 0, new Date()));
+    service.flushQueue();
+
+    verifyUserActionListsByTypeAndMediapackage(UserTrackingServiceImpl.FOOTPRINT_KEY, "mp", 2, 0, 10, 2);
+    Assert.assertEquals(3, service.getViews("mp"));
+    list = getFootprintList("mp", null, 4);
+    verifyFootprintViewsAndPositions(list, 3, 110, 0);
+  }
+
+  /**
+   * Tests that a batch of queued user actions that could not be written is retried
+   * @throws Exception
+   */
+  @Test
+  public void testFailedBatchIsRetried() throws Exception {
+    writerFailures.set(2);
+    service.submitUserAction(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY, "session123", "mp", "me",
+            "127.0.0.1", 10, 20, new Date()));
+    service.submitUserAction(createUserAction("PLAY", "session456", "mp", "you", "127.0.0.1", 0, 0, new Date()));
+    service.flushQueue();
+    Assert.assertTrue(writerFailures.get() < 0);
+    Assert.assertEquals(2, service.getViews("mp"));
+    verifyUserActionListsByTypeAndMediapackage(UserTrackingServiceImpl.FOOTPRINT_KEY, "mp", 1, 0, 10, 1);
+  }
+
+  /**
+   * Tests that reports are split into intervals of the requested length
+   * @throws Exception
+   */
+  @Test
+  public void testIntervalReports() throws Exception {
+    long hour = 3600 * 1000L;
+    Date from = new Date(System.currentTimeMillis() - 10 * hour);
+    Date to = new Date(from.getTime() + 2 * hour + hour / 2);
+    addEvent("session1", "mp", 0, 10, new Date(from.getTime()));
+    addEvent("session1", "mp", 10, 20, new Date(from.getTime() + hour / 2));
+    addEvent("session2", "mp", 0, 5, new Date(from.getTime() + hour - 1));
+    addEvent("session2", "other", 0, 30, new Date(from.getTime() + hour));
+    addEvent("session3", "mp", 5, 25, new Date(from.getTime() + 2 * hour + 1));
+    addEvent("session4", "unrelated", 0, 10, new Date(from.getTime() + hour));
+    // Outside of the reported period
+    addEvent("session5", "mp", 0, 10, new Date(from.getTime() - 1));
+    addEvent("session5", "mp", 0, 10, new Date(from.getTime() + 3 * hour));
+
+    List<Report> reports = service.getReports(Arrays.asList("mp", "other"), from, to, 3600);
+    Assert.assertEquals(3, reports.size());
+
+    // The first hour: two sessions on mp
+    Report report = reports.get(0);
+    Assert.assertEquals(from.getTime(), report.getFrom().getTimeInMillis());
+    Assert.assertEquals(from.getTime() + hour, report.getTo().getTimeInMillis());
+    Assert.assertEquals(1, report.getReportItems().size());
+    Assert.assertEquals("mp", report.getReportItems().get(0).getEpisodeId());
+    Assert.assertEquals(2, report.getReportItems().get(0).getViews());
+    Assert.assertEquals(25, report.getReportItems().get(0).getPlayed());
+
+    // The second hour: only the other media package
+    report = reports.get(1);
+    Assert.assertEquals(1, report.getReportItems().size());
+    Assert.assertEquals("other", report.getReportItems().get(0).getEpisodeId());
+    Assert.assertEquals(1, report.getReportItems().get(0).getViews());
+    Assert.assertEquals(30, report.getReportItems().get(0).getPlayed());
+
+    // The third hour ends after the reported period
+    report = reports.get(2);
+    Assert.assertEquals(from.getTime() + 3 * hour, report.getTo().getTimeInMillis());
+    Assert.assertEquals(1, report.getViews());
+    Assert.assertEquals(20, report.getPlayed());
+
+    // A period shorter than the interval is reported as a single interval
+    Assert.assertEquals(1, service.getReports(Arrays.asList("mp"), from, from, 3600).size());
+
+    // A period cannot be split into arbitrarily many intervals
+    Date farAway = new Date(from.getTime() + (UserTrackingServiceImpl.MAX_REPORT_INTERVALS + 1) * 1000L);
+    try {
+      service.getReports(Arrays.asList("mp"), from, farAway, 1);
+      Assert.fail("The number of intervals must be limited");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private void addEvent(String sessionId, String mediapackageId, int inpoint, int outpoint, Date created)
+          throws Exception {
+    service.addUserTrackingEvent(createUserAction("PLAY", sessionId, mediapackageId, "me", "127.0.0.1", inpoint,
+            outpoint, created));
+  }
+
+  /**
+   * Tests that user actions are dropped while the queue is full
+   * @throws Exception
+   */
+  @Test
+  public void testFullQueue() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(UserTrackingServiceImpl.QUEUE_SIZE_KEY, "1");
+    service.updated(props);
+
+    // The first action takes up the only place in the queue until the writer is done with it
+    writerGate = new CountDownLatch(1);
+    Assert.assertNotNull(service.submitUserAction(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY,
+            "session123", "mp", "me", "127.0.0.1", 10, 20, new Date())));
+    Assert.assertNull(service.submitUserAction(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY,
+            "session456", "mp", "you", "127.0.0.1", 10, 20, new Date())));
+    writerGate.countDown();
+    service.flushQueue();
+    Assert.assertEquals(1, service.getViews("mp"));
+
+    // Without a queue, user actions are written right away
+    props.setProperty(UserTrackingServiceImpl.QUEUE_SIZE_KEY, "0");
+    service.updated(props);
+    Assert.assertNotNull(service.submitUserAction(createUserAction(UserTrackingServiceImpl.FOOTPRINT_KEY,
+            "session456", "mp", "you", "127.0.0.1", 10, 20, new Date())).getId());
+    Assert.assertEquals(2, service.getViews("mp"));
+  }
+
   /**
    * Tests basic user action lists and reports
    * @throws Exception
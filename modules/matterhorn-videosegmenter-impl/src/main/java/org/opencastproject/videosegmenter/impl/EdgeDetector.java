@@ -16,13 +16,24 @@
 package org.opencastproject.videosegmenter.impl;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This is an implementation of Canny's edge detection algorithm.
  * <p>
  * Original version of the code released to the public domain at
  * {@link "http://www.tomgibara.com/computer-vision/canny-edge-detector"}.
+ * <p>
+ * The working buffers are kept between calls to <code>process</code> and only reallocated when the size of the images
+ * or the kernel settings change. The detector is therefore not thread safe, but may split the convolution of a single
+ * image across the threads of an executor, see {@link #setExecutor(ExecutorService, int)}.
  */
 public class EdgeDetector {
 
@@ -53,6 +64,16 @@ public class EdgeDetector {
   private float[] xGradient;
   private float[] yGradient;
 
+  private float[] kernel;
+  private float[] diffKernel;
+  private int kwidth;
+
+  /** The executor used to process bands of rows in parallel, or <code>null</code> */
+  private ExecutorService executor = null;
+
+  /** The number of bands an image is split into */
+  private int bands = 1;
+
   /**
    * Constructs a new detector with default parameters.
    */
@@ -190,6 +211,22 @@ public class EdgeDetector {
     this.contrastNormalized = contrastNormalized;
   }
 
+  /**
+   * Splits the convolution of each image into <code>bands</code> bands of rows, which are processed by the executor.
+   * Passing <code>null</code> or a single band processes the images on the calling thread.
+   * 
+   * @param executor
+   *          the executor
+   * @param bands
+   *          the number of bands
+   */
+  public void setExecutor(ExecutorService executor, int bands) {
+    if (bands < 1)
+      throw new IllegalArgumentException("The number of bands must be positive");
+    this.executor = executor;
+    this.bands = bands;
+  }
+
   /**
    * Processes the input image and returns the resulting edge image.
    */
@@ -197,35 +234,100 @@ public class EdgeDetector {
     if (sourceImage == null)
       throw new IllegalStateException("No source image has been set");
 
-    width = sourceImage.getWidth();
-    height = sourceImage.getHeight();
-    picsize = width * height;
-
-    // Prepare data structures
-    data = new int[picsize];
-    magnitude = new int[picsize];
-    xConv = new float[picsize];
-    yConv = new float[picsize];
-    xGradient = new float[picsize];
-    yGradient = new float[picsize];
+    prepare(sourceImage.getWidth(), sourceImage.getHeight());
 
     // Create the luminance values
     readLuminance(sourceImage);
 
+    detectEdges();
+    thresholdEdges();
+
+    BufferedImage edgesImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    edgesImage.getWritableTile(0, 0).setDataElements(0, 0, width, height, data);
+
+    return edgesImage;
+  }
+
+  /**
+   * Detects the edges of an image given as a plane of luminance values in the range of <code>0</code> to
+   * <code>255</code>, stored row by row. The luminance values are left untouched.
+   * 
+   * @param luminance
+   *          the luminance values
+   * @param width
+   *          the width of the image
+   * @param height
+   *          the height of the image
+   * @param edges
+   *          the array receiving <code>1</code> for each edge pixel and <code>0</code> otherwise
+   */
+  public void process(int[] luminance, int width, int height, byte[] edges) {
+    if (luminance.length < width * height || edges.length < width * height)
+      throw new IllegalArgumentException("Buffers are too small for an image of " + width + "x" + height);
+    prepare(width, height);
+    System.arraycopy(luminance, 0, data, 0, picsize);
+    detectEdges();
+    for (int i = 0; i < picsize; i++) {
+      edges[i] = data[i] > 0 ? (byte) 1 : (byte) 0;
+    }
+  }
+
+  /**
+   * Makes sure the working buffers and the gaussian kernels match the image size and the current settings. Since parts
+   * of the buffers are not written by the convolution, they are cleared whenever the kernel width changes.
+   */
+  private void prepare(int width, int height) {
+    int size = width * height;
+    boolean resized = data == null || size != picsize;
+    this.width = width;
+    this.height = height;
+    this.picsize = size;
+    if (resized) {
+      data = new int[picsize];
+      magnitude = new int[picsize];
+      xConv = new float[picsize];
+      yConv = new float[picsize];
+      xGradient = new float[picsize];
+      yGradient = new float[picsize];
+    }
+
+    // Generate the gaussian convolution masks
+    float[] newKernel = new float[gaussianKernelWidth];
+    float[] newDiffKernel = new float[gaussianKernelWidth];
+    int newKwidth;
+    for (newKwidth = 0; newKwidth < gaussianKernelWidth; newKwidth++) {
+      float g1 = gaussian(newKwidth, gaussianKernelRadius);
+      if (g1 <= GAUSSIAN_CUT_OFF && newKwidth >= 2)
+        break;
+      float g2 = gaussian(newKwidth - 0.5f, gaussianKernelRadius);
+      float g3 = gaussian(newKwidth + 0.5f, gaussianKernelRadius);
+      newKernel[newKwidth] = (g1 + g2 + g3) / 3f / (2f * (float) Math.PI * gaussianKernelRadius * gaussianKernelRadius);
+      newDiffKernel[newKwidth] = g3 - g2;
+    }
+    if (!resized && (newKwidth != kwidth || !Arrays.equals(newKernel, kernel))) {
+      Arrays.fill(magnitude, 0);
+      Arrays.fill(xConv, 0f);
+      Arrays.fill(yConv, 0f);
+      Arrays.fill(xGradient, 0f);
+      Arrays.fill(yGradient, 0f);
+    }
+    kernel = newKernel;
+    diffKernel = newDiffKernel;
+    kwidth = newKwidth;
+  }
+
+  /**
+   * Runs the edge detection on the luminance values in <code>data</code>, leaving the edge intensities in there.
+   */
+  private void detectEdges() {
     // Adjust contrast if needed
     if (contrastNormalized)
       normalizeContrast();
 
-    computeGradients(gaussianKernelRadius, gaussianKernelWidth);
+    computeGradients();
     int low = Math.round(lowThreshold * MAGNITUDE_SCALE);
     int high = Math.round(highThreshold * MAGNITUDE_SCALE);
     performHysteresis(low, high);
-    thresholdEdges();
-
-    BufferedImage edgesImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-    edgesImage.getWritableTile(0, 0).setDataElements(0, 0, width, height, data);
-
-    return edgesImage;
   }
 
   // NOTE: The elements of the method below (specifically the technique for
@@ -239,81 +341,76 @@ public class EdgeDetector {
   // someone's intellectual property rights. If this concerns you feel free to
   // contact me for an alternative, though less efficient, implementation.
 
-  private void computeGradients(float kernelRadius, int kernelWidth) {
-
-    // generate the gaussian convolution masks
-    float[] kernel = new float[kernelWidth];
-    float[] diffKernel = new float[kernelWidth];
-    int kwidth;
-    for (kwidth = 0; kwidth < kernelWidth; kwidth++) {
-      float g1 = gaussian(kwidth, kernelRadius);
-      if (g1 <= GAUSSIAN_CUT_OFF && kwidth >= 2)
-        break;
-      float g2 = gaussian(kwidth - 0.5f, kernelRadius);
-      float g3 = gaussian(kwidth + 0.5f, kernelRadius);
-      kernel[kwidth] = (g1 + g2 + g3) / 3f / (2f * (float) Math.PI * kernelRadius * kernelRadius);
-      diffKernel[kwidth] = g3 - g2;
-    }
-
-    int initX = kwidth - 1;
-    int maxX = width - (kwidth - 1);
-    int initY = width * (kwidth - 1);
-    int maxY = width * (height - (kwidth - 1));
-
+  private void computeGradients() {
     // perform convolution in x and y directions
-    for (int x = initX; x < maxX; x++) {
-      for (int y = initY; y < maxY; y += width) {
-        int index = x + y;
-        float sumX = data[index] * kernel[0];
-        float sumY = sumX;
-        int xOffset = 1;
-        int yOffset = width;
-        for (; xOffset < kwidth;) {
-          sumY += kernel[xOffset] * (data[index - yOffset] + data[index + yOffset]);
-          sumX += kernel[xOffset] * (data[index - xOffset] + data[index + xOffset]);
-          yOffset += width;
-          xOffset++;
+    final int initX = kwidth - 1;
+    final int maxX = width - (kwidth - 1);
+    forEachRow(kwidth - 1, height - (kwidth - 1), new RowTask() {
+      @Override
+      public void run(int fromRow, int toRow) {
+        for (int y = fromRow * width; y < toRow * width; y += width) {
+          for (int x = initX; x < maxX; x++) {
+            int index = x + y;
+            float sumX = data[index] * kernel[0];
+            float sumY = sumX;
+            int xOffset = 1;
+            int yOffset = width;
+            for (; xOffset < kwidth;) {
+              sumY += kernel[xOffset] * (data[index - yOffset] + data[index + yOffset]);
+              sumX += kernel[xOffset] * (data[index - xOffset] + data[index + xOffset]);
+              yOffset += width;
+              xOffset++;
+            }
+
+            yConv[index] = sumY;
+            xConv[index] = sumX;
+          }
         }
-
-        yConv[index] = sumY;
-        xConv[index] = sumX;
-      }
-
-    }
-
-    for (int x = initX; x < maxX; x++) {
-      for (int y = initY; y < maxY; y += width) {
-        float sum = 0f;
-        int index = x + y;
-        for (int i = 1; i < kwidth; i++)
-          sum += diffKernel[i] * (yConv[index - i] - yConv[index + i]);
-
-        xGradient[index] = sum;
       }
-
-    }
-
-    for (int x = kwidth; x < width - kwidth; x++) {
-      for (int y = initY; y < maxY; y += width) {
-        float sum = 0.0f;
-        int index = x + y;
-        int yOffset = width;
-        for (int i = 1; i < kwidth; i++) {
-          sum += diffKernel[i] * (xConv[index - yOffset] - xConv[index + yOffset]);
-          yOffset += width;
+    });
+
+    // compute the gradients, which depend on the convolution of the neighboring rows
+    forEachRow(kwidth - 1, height - (kwidth - 1), new RowTask() {
+      @Override
+      public void run(int fromRow, int toRow) {
+        for (int y = fromRow * width; y < toRow * width; y += width) {
+          for (int x = initX; x < maxX; x++) {
+            float sum = 0f;
+            int index = x + y;
+            for (int i = 1; i < kwidth; i++)
+              sum += diffKernel[i] * (yConv[index - i] - yConv[index + i]);
+
+            xGradient[index] = sum;
+          }
+
+          for (int x = kwidth; x < width - kwidth; x++) {
+            float sum = 0.0f;
+            int index = x + y;
+            int yOffset = width;
+            for (int i = 1; i < kwidth; i++) {
+              sum += diffKernel[i] * (xConv[index - yOffset] - xConv[index + yOffset]);
+              yOffset += width;
+            }
+
+            yGradient[index] = sum;
+          }
         }
-
-        yGradient[index] = sum;
       }
+    });
 
-    }
+    forEachRow(kwidth, height - kwidth, new RowTask() {
+      @Override
+      public void run(int fromRow, int toRow) {
+        suppressNonMaxima(fromRow, toRow);
+      }
+    });
+  }
 
-    initX = kwidth;
-    maxX = width - kwidth;
-    initY = width * kwidth;
-    maxY = width * (height - kwidth);
-    for (int x = initX; x < maxX; x++) {
-      for (int y = initY; y < maxY; y += width) {
+  private void suppressNonMaxima(int fromRow, int toRow) {
+    int initX = kwidth;
+    int maxX = width - kwidth;
+    for (int y = fromRow * width; y < toRow * width; y += width) {
+      for (int x = initX; x < maxX; x++) {
         int index = x + y;
         int indexN = index - width;
         int indexS = index + width;
@@ -392,6 +489,59 @@ public class EdgeDetector {
     return (float) Math.exp(-(x * x) / (2f * sigma * sigma));
   }
 
+  /**
+   * Runs the task on the rows from <code>fromRow</code> (inclusive) to <code>toRow</code> (exclusive), either on the
+   * calling thread or split into bands that are processed by the executor. Returns once all rows have been processed.
+   */
+  private void forEachRow(int fromRow, int toRow, final RowTask task) {
+    int rows = toRow - fromRow;
+    if (rows <= 0)
+      return;
+    if (executor == null || bands < 2 || rows < bands) {
+      task.run(fromRow, toRow);
+      return;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bands);
+    int bandHeight = (rows + bands - 1) / bands;
+    for (int from = fromRow; from < toRow; from += bandHeight) {
+      final int bandStart = from;
+      final int bandEnd = Math.min(from + bandHeight, toRow);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          task.run(bandStart, bandEnd);
+          return null;
+        }
+      });
+    }
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (RejectedExecutionException e) {
+      // The executor has been shut down, continue on this thread
+      task.run(fromRow, toRow);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while detecting edges", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Error detecting edges", e.getCause());
+    }
+  }
+
+  /**
+   * Processing of a range of rows.
+   */
+  private interface RowTask {
+
+    /**
+     * Processes the rows from <code>fromRow</code> (inclusive) to <code>toRow</code> (exclusive).
+     */
+    void run(int fromRow, int toRow);
+
+  }
+
   private void performHysteresis(int low, int high) {
     // NOTE: this implementation reuses the data array to store both
     // luminance data from the image, and edge intensity from the processing.
@@ -46,6 +46,7 @@ import org.opencastproject.util.MimeTypes;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.videosegmenter.api.VideoSegmenterException;
 import org.opencastproject.videosegmenter.api.VideoSegmenterService;
+import org.opencastproject.videosegmenter.impl.jmf.EdgeFrame;
 import org.opencastproject.videosegmenter.impl.jmf.FrameGrabber;
 import org.opencastproject.videosegmenter.impl.jmf.ImageComparator;
 import org.opencastproject.videosegmenter.impl.jmf.ImageUtils;
@@ -70,6 +71,9 @@ import java.util.Dictionary;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.media.Buffer;
 import javax.media.Controller;
@@ -123,6 +127,18 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
   /** Default value for the number of pixels that may change between two frames without considering them different */
   public static final float DEFAULT_CHANGES_THRESHOLD = 0.05f; // 5% change
 
+  /** Name of the constant used to retreive the analysis width */
+  public static final String OPT_ANALYSIS_WIDTH = "analysiswidth";
+
+  /** Default value for the maximum width of the frames when looking for changes, matching the mjpeg encoding profile */
+  public static final int DEFAULT_ANALYSIS_WIDTH = 320;
+
+  /** Name of the constant used to retreive the number of analysis threads */
+  public static final String OPT_ANALYSIS_THREADS = "analysisthreads";
+
+  /** Default value for the number of threads that analyze a single frame */
+  public static final int DEFAULT_ANALYSIS_THREADS = 1;
+
   /** The expected mimetype of the resulting preview encoding */
   public static final MimeType MJPEG_MIMETYPE = MimeTypes.MJPEG;
 
@@ -135,6 +151,15 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
   /** The number of seconds that need to resemble until a scene is considered "stable" */
   protected int stabilityThreshold = DEFAULT_STABILITY_THRESHOLD;
 
+  /** The maximum width of the frames when looking for changes, 0 to use the full resolution */
+  protected int analysisWidth = DEFAULT_ANALYSIS_WIDTH;
+
+  /** The number of threads that analyze a single frame */
+  protected int analysisThreads = DEFAULT_ANALYSIS_THREADS;
+
+  /** The threads analyzing the frames if there is more than one thread per frame, shared by all segmentations */
+  protected ExecutorService analysisExecutor = null;
+
   /** Reference to the receipt service */
   protected ServiceRegistry serviceRegistry = null;
 
@@ -194,6 +219,56 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
         logger.warn("Found illegal value '{}' for videosegmenter's changes threshold", threshold);
       }
     }
+
+    // Analysis width
+    if (properties.get(OPT_ANALYSIS_WIDTH) != null) {
+      String width = (String) properties.get(OPT_ANALYSIS_WIDTH);
+      try {
+        analysisWidth = Integer.parseInt(width);
+        if (analysisWidth < 0)
+          throw new IllegalArgumentException();
+        logger.info("Analysis width set to {} pixels", analysisWidth);
+      } catch (Exception e) {
+        analysisWidth = DEFAULT_ANALYSIS_WIDTH;
+        logger.warn("Found illegal value '{}' for videosegmenter's analysis width", width);
+      }
+    }
+
+    // Analysis threads
+    if (properties.get(OPT_ANALYSIS_THREADS) != null) {
+      String threads = (String) properties.get(OPT_ANALYSIS_THREADS);
+      try {
+        analysisThreads = Integer.parseInt(threads);
+        if (analysisThreads < 1)
+          throw new IllegalArgumentException();
+        logger.info("Analysis threads set to {}", analysisThreads);
+      } catch (Exception e) {
+        analysisThreads = DEFAULT_ANALYSIS_THREADS;
+        logger.warn("Found illegal value '{}' for videosegmenter's analysis threads", threads);
+      }
+    }
+
+    // Segmentations that are still using the previous executor continue on their own thread once it is shut down
+    if (analysisExecutor != null)
+      analysisExecutor.shutdown();
+    analysisExecutor = analysisThreads > 1 ? Executors.newFixedThreadPool(analysisThreads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "videosegmenter-analysis");
+        thread.setDaemon(true);
+        return thread;
+      }
+    }) : null;
+  }
+
+  /**
+   * OSGi callback on component deactivation, stops the analysis threads.
+   */
+  protected void deactivate() {
+    if (analysisExecutor != null) {
+      analysisExecutor.shutdown();
+      analysisExecutor = null;
+    }
   }
 
   /**
@@ -413,12 +488,14 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
     boolean sceneChangeImminent = true;
     boolean luckyPunchRecovery = false;
     int segmentCount = 1;
-    BufferedImage previousImage = null;
-    BufferedImage lastStableImage = null;
+    EdgeFrame previousFrame = null;
+    EdgeFrame lastStableFrame = null;
     BlockingQueue<Buffer> bufferQueue = new ArrayBlockingQueue<Buffer>(stabilityThreshold + 1);
     long durationInSeconds = video.getMediaTime().getMediaDuration().getDurationInMilliseconds() / 1000;
     Segment contentSegment = video.getTemporalDecomposition().createSegment("segment-" + segmentCount);
     ImageComparator icomp = new ImageComparator(changesThreshold);
+    icomp.setAnalysisWidth(analysisWidth);
+    icomp.setExecutor(analysisExecutor, analysisThreads);
 
     // icomp.setStatistics(true);
     // String imagesPath = PathSupport.concat(new String[] {
@@ -435,9 +512,10 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
         throw new VideoSegmenterException("Unable to extract image at time " + t);
 
       logger.trace("Analyzing video at {} s", t);
+      EdgeFrame frame = icomp.getEdges(bufferedImage, t);
 
       // Compare the new image with our previous sample
-      boolean differsFromPreviousImage = icomp.isDifferent(previousImage, bufferedImage, t);
+      boolean differsFromPreviousImage = icomp.isDifferent(previousFrame, frame, t);
 
       // We found an image that is different compared to the previous one. Let's see if this image remains stable
       // for some time (STABILITY_THRESHOLD) so we can declare a new scene
@@ -448,13 +526,13 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
         // really start over an make sure we get the correct beginning of the new scene
         if (!sceneChangeImminent && t - lastStableImageTime > 1) {
           luckyPunchRecovery = true;
-          previousImage = lastStableImage;
+          previousFrame = lastStableFrame;
           bufferQueue.add(buf);
           t = lastStableImageTime;
         } else {
           lastStableImageTime = t - 1;
-          lastStableImage = previousImage;
-          previousImage = bufferedImage;
+          lastStableFrame = previousFrame;
+          previousFrame = frame;
           currentSceneStabilityCount = 1;
           t++;
         }
@@ -466,15 +544,15 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
         fillLookAheadBuffer(bufferQueue, buf, dsh);
         lastStableImageTime = t;
         t += stabilityThreshold;
-        previousImage = bufferedImage;
-        lastStableImage = bufferedImage;
+        previousFrame = frame;
+        lastStableFrame = frame;
       }
 
       // Seems to be the same image. If we have just recently detected a new scene, let's see if we are able to
       // confirm that this is scene is stable (>= STABILITY_THRESHOLD)
       else if (currentSceneStabilityCount < stabilityThreshold) {
         currentSceneStabilityCount++;
-        previousImage = bufferedImage;
+        previousFrame = frame;
         t++;
       }
 
@@ -497,8 +575,8 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
         // a processor can't seek, we need to store the buffers in between, in case we need to come back.
         fillLookAheadBuffer(bufferQueue, buf, dsh);
         t += stabilityThreshold;
-        previousImage = bufferedImage;
-        lastStableImage = bufferedImage;
+        previousFrame = frame;
+        lastStableFrame = frame;
         currentSceneStabilityCount++;
         sceneChangeImminent = false;
         logger.info("Found new scene at {} s", startOfSegment);
@@ -508,8 +586,8 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
       else if (sceneChangeImminent) {
         // We found a scene change by looking ahead. Now we want to get to the exact position
         lastStableImageTime = t;
-        previousImage = bufferedImage;
-        lastStableImage = bufferedImage;
+        previousFrame = frame;
+        lastStableFrame = frame;
         currentSceneStabilityCount++;
         t++;
       }
@@ -521,8 +599,8 @@ public class VideoSegmenterServiceImpl extends AbstractJobProducer implements Vi
         lastStableImageTime = t;
         fillLookAheadBuffer(bufferQueue, buf, dsh);
         t += stabilityThreshold;
-        lastStableImage = bufferedImage;
-        previousImage = bufferedImage;
+        lastStableFrame = frame;
+        previousFrame = frame;
       }
 
       if (luckyPunchRecovery) {
@@ -0,0 +1,108 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.videosegmenter.impl.jmf;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The edges of a video frame, as detected by the {@link ImageComparator} on a downscaled luminance plane of the frame.
+ */
+public final class EdgeFrame {
+
+  /** Width of the original frame */
+  private final int width;
+
+  /** Height of the original frame */
+  private final int height;
+
+  /** Width of the edge plane */
+  private final int planeWidth;
+
+  /** Height of the edge plane */
+  private final int planeHeight;
+
+  /** The edge plane, row by row, with <code>1</code> for edge pixels and <code>0</code> otherwise */
+  private final byte[] edges;
+
+  EdgeFrame(int width, int height, int planeWidth, int planeHeight, byte[] edges) {
+    this.width = width;
+    this.height = height;
+    this.planeWidth = planeWidth;
+    this.planeHeight = planeHeight;
+    this.edges = edges;
+  }
+
+  /**
+   * Returns the width of the original frame.
+   * 
+   * @return the width
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the original frame.
+   * 
+   * @return the height
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the width of the edge plane.
+   * 
+   * @return the plane width
+   */
+  public int getPlaneWidth() {
+    return planeWidth;
+  }
+
+  /**
+   * Returns the height of the edge plane.
+   * 
+   * @return the plane height
+   */
+  public int getPlaneHeight() {
+    return planeHeight;
+  }
+
+  /**
+   * Returns the edge plane. The array is not copied.
+   * 
+   * @return the edges
+   */
+  byte[] getEdges() {
+    return edges;
+  }
+
+  /**
+   * Returns an image of the edge plane with edge pixels in white and all other pixels in black.
+   * 
+   * @return the image
+   */
+  public BufferedImage toImage() {
+    int[] pixels = new int[edges.length];
+    for (int i = 0; i < edges.length; i++) {
+      pixels[i] = edges[i] != 0 ? -1 : 0xff000000;
+    }
+    BufferedImage image = new BufferedImage(planeWidth, planeHeight, BufferedImage.TYPE_INT_RGB);
+    image.getWritableTile(0, 0).setDataElements(0, 0, planeWidth, planeHeight, pixels);
+    return image;
+  }
+
+}
@@ -22,14 +22,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.concurrent.ExecutorService;
 
 import javax.imageio.ImageIO;
 
 /**
  * Utility class used to compare to images.
+ * <p>
+ * Images are compared by their edges, which are detected on a plane of luminance values. If the images are wider than
+ * the analysis width, the plane is downscaled by averaging blocks of pixels, which makes the comparison cost
+ * independent of the resolution of the video. The working buffers are reused from one image to the next, so a
+ * comparator must not be shared between threads.
  */
 public class ImageComparator {
 
@@ -54,6 +61,24 @@ public class ImageComparator {
   /** The temporary image repository */
   private File tempDir = null;
 
+  /** The maximum width of the luminance plane, or <code>0</code> to analyze images at their full resolution */
+  private int analysisWidth = 0;
+
+  /** The edge detector */
+  private final EdgeDetector edgeDetector;
+
+  /** The luminance plane */
+  private int[] luminance = new int[0];
+
+  /** The luminance sums of the current row of blocks */
+  private int[] blockSums = new int[0];
+
+  /** The pixels of the current row, as integers */
+  private int[] intRow = null;
+
+  /** The pixels of the current row, as bytes */
+  private byte[] byteRow = null;
+
   /**
    * Creates a new image comparator that will use <code>changesThreshold</code> as the threshold to decide whether two
    * images are different.
@@ -67,6 +92,41 @@ public class ImageComparator {
     this.changesThreshold = changesThreshold;
     percentageNf = NumberFormat.getPercentInstance();
     percentageNf.setMaximumFractionDigits(2);
+
+    // Configure the edge detector
+    edgeDetector = new EdgeDetector();
+    edgeDetector.setLowThreshold(2.5f);
+    edgeDetector.setHighThreshold(7.5f);
+    edgeDetector.setGaussianKernelRadius(2.0f);
+    edgeDetector.setGaussianKernelWidth(16);
+    // edgeDetector.setContrastNormalized(true);
+  }
+
+  /**
+   * Sets the maximum width of the luminance plane that is used to detect the edges. Wider images are downscaled by an
+   * integral factor, so the plane may end up to be slightly wider. Pass <code>0</code> to analyze the images at their
+   * full resolution.
+   * 
+   * @param analysisWidth
+   *          the analysis width in pixels
+   */
+  public void setAnalysisWidth(int analysisWidth) {
+    if (analysisWidth < 0)
+      throw new IllegalArgumentException("Analysis width must not be negative");
+    this.analysisWidth = analysisWidth;
+  }
+
+  /**
+   * Splits the edge detection of each image into <code>bands</code> bands, which are processed by the executor. Pass
+   * <code>null</code> or a single band to process the images on the calling thread.
+   * 
+   * @param executor
+   *          the executor
+   * @param bands
+   *          the number of bands
+   */
+  public void setExecutor(ExecutorService executor, int bands) {
+    edgeDetector.setExecutor(executor, bands);
   }
 
   /**
@@ -133,47 +193,81 @@ public class ImageComparator {
   }
 
   /**
-   * Returns <code>true</code> if <code>image</code> differs from <code>currentImage</code>. In order to be treated a
-   * different image, the <code>rgb</code> values of at least <code>changesThreshold</code> pixels must have changed.
-   * <p>
-   * Note that <code>image</code> might contain an altered version of the image, which will facilitate in the comparison
-   * next time when <code>image</code> is <code>currentImage</code>.
+   * Detects the edges of the image.
    * 
-   * @param previousImage
-   *          the previous image
    * @param image
-   *          the new image
+   *          the image
+   * @param timestamp
+   *          the image timestamp
+   * @return the edges
+   */
+  public EdgeFrame getEdges(BufferedImage image, long timestamp) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int factor = analysisWidth > 0 ? Math.max(1, width / analysisWidth) : 1;
+    int planeWidth = width / factor;
+    int planeHeight = height / factor;
+    int planeSize = planeWidth * planeHeight;
+
+    if (luminance.length < planeSize)
+      luminance = new int[planeSize];
+    readLuminance(image, factor, planeWidth, planeHeight);
+    byte[] edges = new byte[planeSize];
+    edgeDetector.process(luminance, planeWidth, planeHeight, edges);
+    EdgeFrame frame = new EdgeFrame(width, height, planeWidth, planeHeight, edges);
+
+    // Write the images to disk for debugging and verification purposes
+    if (tempDir != null) {
+      try {
+        FileUtils.forceMkdir(tempDir);
+        ImageIO.write(image, "jpg", new File(tempDir, "image-" + timestamp + ".jpg"));
+        ImageIO.write(frame.toImage(), "jpg", new File(tempDir, "image-" + timestamp + "-edged.jpg"));
+      } catch (IOException e) {
+        logger.warn("Error writing intermediary images to {}: {}", tempDir, e.getMessage());
+      }
+    }
+
+    return frame;
+  }
+
+  /**
+   * Returns <code>true</code> if <code>frame</code> differs from <code>previousFrame</code>. In order to be treated a
+   * different image, the edges of at least <code>changesThreshold</code> pixels must have changed.
+   * 
+   * @param previousFrame
+   *          the edges of the previous image
+   * @param frame
+   *          the edges of the new image
    * @param timestamp
    *          the image timestamp
    * 
    * @return <code>true</code> if the two images are different
    */
-  public boolean isDifferent(BufferedImage previousImage, BufferedImage image, long timestamp) {
+  public boolean isDifferent(EdgeFrame previousFrame, EdgeFrame frame, long timestamp) {
     boolean differsFromCurrentScene = false;
-    BufferedImage edgeImage = getEdgedImage(image);
-    
-    if (previousImage == null) {
+
+    if (previousFrame == null) {
       differsFromCurrentScene = true;
       logger.debug("First segment started");
-    } else if (previousImage.getWidth() != image.getWidth() || previousImage.getHeight() != image.getHeight()) {
+    } else if (previousFrame.getWidth() != frame.getWidth() || previousFrame.getHeight() != frame.getHeight()) {
       differsFromCurrentScene = true;
-      String currentResolution = previousImage.getWidth() + "x" + previousImage.getHeight();
-      String newResolution = image.getWidth() + "x" + image.getHeight();
+      String currentResolution = previousFrame.getWidth() + "x" + previousFrame.getHeight();
+      String newResolution = frame.getWidth() + "x" + frame.getHeight();
       logger.warn("Resolution change detected ({} -> {})", currentResolution, newResolution);
     } else {
-      int changes = 0;
-      long pixels = image.getWidth() * image.getHeight();
+      byte[] previousEdges = previousFrame.getEdges();
+      byte[] edges = frame.getEdges();
+      int pixels = frame.getPlaneWidth() * frame.getPlaneHeight();
       long changesThresholdPixels = (long) (pixels * changesThreshold);
 
-      imagecomparison: for (int x = 0; x < image.getWidth(); x++) {
-        for (int y = 0; y < image.getHeight(); y++) {
-          if (edgeImage.getRGB(x, y) != previousImage.getRGB(x, y)) {
-            changes++;
-            if (changes > changesThresholdPixels) {
-              differsFromCurrentScene = true;
-              if (!collectStatistics)
-                break imagecomparison;
-            }
+      int changes = 0;
+      for (int i = 0; i < pixels; i++) {
+        if (edges[i] != previousEdges[i]) {
+          changes++;
+          if (changes > changesThresholdPixels) {
+            differsFromCurrentScene = true;
+            if (!collectStatistics)
+              break;
           }
         }
       }
@@ -188,40 +282,78 @@ public class ImageComparator {
       totalChanges += percentage;
     }
 
-    // Write the images to disk for debugging and verification purposes
-    if (tempDir != null) {
-      try {
-        FileUtils.forceMkdir(tempDir);
-        ImageIO.write(image, "jpg", new File(tempDir, "image-" + timestamp + ".jpg"));
-        ImageIO.write(edgeImage, "jpg", new File(tempDir, "image-" + timestamp + "-edged.jpg"));
-      } catch (IOException e) {
-        logger.warn("Error writing intermediary images to {}" + tempDir);
-        e.printStackTrace();
-      }
-    }
+    return differsFromCurrentScene;
+  }
 
-    // Copy the resulting image for further reference to the original
-    image.getRaster().setRect(edgeImage.getData());
+  /**
+   * Reads the luminance plane of the image into {@link #luminance}, row by row. Each value of the plane is the average
+   * luminance of a block of <code>factor</code> by <code>factor</code> pixels.
+   */
+  private void readLuminance(BufferedImage image, int factor, int planeWidth, int planeHeight) {
+    int width = image.getWidth();
+    int type = image.getType();
+    Raster raster = image.getRaster();
+    int blockSize = factor * factor;
 
-    return differsFromCurrentScene;
+    if (blockSums.length < planeWidth)
+      blockSums = new int[planeWidth];
+    if (intRow == null || intRow.length < width)
+      intRow = new int[width];
+    if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_BYTE_GRAY)
+            && (byteRow == null || byteRow.length < width * 3))
+      byteRow = new byte[width * 3];
+
+    for (int planeRow = 0; planeRow < planeHeight; planeRow++) {
+      for (int y = planeRow * factor; y < (planeRow + 1) * factor; y++) {
+        if (type == BufferedImage.TYPE_3BYTE_BGR) {
+          // The data elements of a pixel are returned in band order, that is red, green and blue
+          byte[] pixels = (byte[]) raster.getDataElements(0, y, width, 1, byteRow);
+          for (int px = 0, offset = 0; px < planeWidth; px++) {
+            int sum = 0;
+            for (int end = offset + 3 * factor; offset < end; offset += 3) {
+              sum += luminance(pixels[offset] & 0xff, pixels[offset + 1] & 0xff, pixels[offset + 2] & 0xff);
+            }
+            blockSums[px] += sum;
+          }
+        } else if (type == BufferedImage.TYPE_BYTE_GRAY) {
+          byte[] pixels = (byte[]) raster.getDataElements(0, y, width, 1, byteRow);
+          for (int px = 0, x = 0; px < planeWidth; px++) {
+            int sum = 0;
+            for (int end = x + factor; x < end; x++) {
+              sum += pixels[x] & 0xff;
+            }
+            blockSums[px] += sum;
+          }
+        } else {
+          int[] pixels;
+          if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+            pixels = (int[]) raster.getDataElements(0, y, width, 1, intRow);
+          else
+            pixels = image.getRGB(0, y, width, 1, intRow, 0, width);
+          for (int px = 0, x = 0; px < planeWidth; px++) {
+            int sum = 0;
+            for (int end = x + factor; x < end; x++) {
+              int p = pixels[x];
+              sum += luminance((p & 0xff0000) >> 16, (p & 0xff00) >> 8, p & 0xff);
+            }
+            blockSums[px] += sum;
+          }
+        }
+      }
+
+      int offset = planeRow * planeWidth;
+      for (int x = 0; x < planeWidth; x++) {
+        luminance[offset + x] = (blockSums[x] + blockSize / 2) / blockSize;
+        blockSums[x] = 0;
+      }
+    }
   }
 
   /**
-   * Returns an image that is reduced to it's edges.
-   * 
-   * @param image
-   *          the image
-   * @return the edged image
+   * Returns the luminance of a pixel.
    */
-  private BufferedImage getEdgedImage(BufferedImage image) {
-    // Configure the edge detector
-    EdgeDetector edgeDetector = new EdgeDetector();
-    edgeDetector.setLowThreshold(2.5f);
-    edgeDetector.setHighThreshold(7.5f);
-    edgeDetector.setGaussianKernelRadius(2.0f);
-    edgeDetector.setGaussianKernelWidth(16);
-    // edgeDetector.setContrastNormalized(true);
-    return edgeDetector.process(image);
+  private static int luminance(int r, int g, int b) {
+    return Math.round(0.299f * r + 0.587f * g + 0.114f * b);
   }
 
 }
@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.videosegmenter.impl.jmf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests the edge based comparison of video frames.
+ */
+public class ImageComparatorTest {
+
+  @Test
+  public void testDownscaling() throws Exception {
+    ImageComparator comparator = new ImageComparator(0.05f);
+    comparator.setAnalysisWidth(320);
+    EdgeFrame frame = comparator.getEdges(createSlide(1280, 720, 100), 1);
+    assertEquals(1280, frame.getWidth());
+    assertEquals(720, frame.getHeight());
+    assertEquals(320, frame.getPlaneWidth());
+    assertEquals(180, frame.getPlaneHeight());
+
+    // Smaller frames are not scaled up
+    frame = comparator.getEdges(createSlide(160, 120, 10), 2);
+    assertEquals(160, frame.getPlaneWidth());
+    assertEquals(120, frame.getPlaneHeight());
+  }
+
+  @Test
+  public void testComparison() throws Exception {
+    ImageComparator comparator = new ImageComparator(0.01f);
+    comparator.setAnalysisWidth(320);
+    EdgeFrame first = comparator.getEdges(createSlide(640, 480, 100), 1);
+    EdgeFrame same = comparator.getEdges(createSlide(640, 480, 100), 2);
+    EdgeFrame other = comparator.getEdges(createSlide(640, 480, 300), 3);
+    assertTrue(comparator.isDifferent(null, first, 1));
+    assertFalse(comparator.isDifferent(first, same, 2));
+    assertTrue(comparator.isDifferent(same, other, 3));
+    assertTrue(comparator.isDifferent(other, comparator.getEdges(createSlide(320, 240, 100), 4), 4));
+  }
+
+  @Test
+  public void testParallelDetection() throws Exception {
+    BufferedImage slide = createSlide(640, 480, 100);
+    ImageComparator comparator = new ImageComparator(0.05f);
+    byte[] sequential = comparator.getEdges(slide, 1).getEdges();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      comparator.setExecutor(executor, 4);
+      assertArrayEquals(sequential, comparator.getEdges(slide, 1).getEdges());
+    } finally {
+      executor.shutdown();
+    }
+
+    // Falls back to the calling thread once the executor is gone
+    assertArrayEquals(sequential, comparator.getEdges(slide, 1).getEdges());
+  }
+
+  /**
+   * Creates an image that looks like a slide with a few lines of text, starting at <code>top</code>.
+   */
+  private static BufferedImage createSlide(int width, int height, int top) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics2D g = image.createGraphics();
+    g.setColor(Color.WHITE);
+    g.fillRect(0, 0, width, height);
+    g.setColor(Color.BLACK);
+    int lineHeight = height / 12;
+    for (int i = 0; i < 4; i++) {
+      g.fillRect(width / 8, top * height / 480 + i * 2 * lineHeight, width / 2 + i * width / 16, lineHeight);
+    }
+    g.dispose();
+    return image;
+  }
+
+}
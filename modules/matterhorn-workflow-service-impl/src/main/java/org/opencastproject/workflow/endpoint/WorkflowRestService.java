@@ -33,6 +33,7 @@ import org.opencastproject.rest.AbstractJobProducerEndpoint;
 import org.opencastproject.rest.RestConstants;
 import org.opencastproject.security.api.UnauthorizedException;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
+import org.opencastproject.solr.SolrIndexRebuildMXBean;
 import org.opencastproject.util.LocalHashMap;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.SolrUtils;
@@ -717,6 +718,35 @@ public class WorkflowRestService extends AbstractJobProducerEndpoint {
     return Response.ok(jsonArray.toJSONString()).header("Content-Type", MediaType.APPLICATION_JSON).build();
   }
 
+  @GET
+  @Path("reindex")
+  @Produces(MediaType.TEXT_PLAIN)
+  @RestQuery(name = "reindexstatus", description = "Returns the progress of the most recent rebuild of the workflow index.", returnDescription = "A one line summary of the rebuild progress", reponses = {
+          @RestResponse(responseCode = SC_OK, description = "The progress of the rebuild"),
+          @RestResponse(responseCode = HttpServletResponse.SC_SERVICE_UNAVAILABLE, description = "The workflow index is not available") })
+  public Response getReindexStatus() {
+    SolrIndexRebuildMXBean rebuild = ((WorkflowServiceImpl) service).getIndexRebuild();
+    if (rebuild == null)
+      return Response.status(Status.SERVICE_UNAVAILABLE).build();
+    return Response.ok(rebuild.toString()).build();
+  }
+
+  @POST
+  @Path("reindex")
+  @Produces(MediaType.TEXT_PLAIN)
+  @RestQuery(name = "reindex", description = "Rebuilds the workflow index from the workflow jobs in the background. The index remains usable while it is being rebuilt.", returnDescription = "A one line summary of the rebuild progress", reponses = {
+          @RestResponse(responseCode = HttpServletResponse.SC_ACCEPTED, description = "The rebuild has been started"),
+          @RestResponse(responseCode = HttpServletResponse.SC_CONFLICT, description = "A rebuild is already running"),
+          @RestResponse(responseCode = HttpServletResponse.SC_SERVICE_UNAVAILABLE, description = "The workflow index is not available") })
+  public Response reindex() {
+    SolrIndexRebuildMXBean rebuild = ((WorkflowServiceImpl) service).getIndexRebuild();
+    if (rebuild == null)
+      return Response.status(Status.SERVICE_UNAVAILABLE).build();
+    if (!rebuild.start())
+      return Response.status(Status.CONFLICT).entity(rebuild.toString()).build();
+    return Response.status(Status.ACCEPTED).entity(rebuild.toString()).build();
+  }
+
   @PUT
   @Path("/definition")
   @RestQuery(name = "updatedefinition", description = "Updates a workflow definition.", returnDescription = "A location headers containing the URL to the updated workflow definition.", restParameters = { @RestParameter(name = "workflowDefinition", isRequired = true, description = "The XML representation of the updated workflow definition.", type = TEXT) }, reponses = {
@@ -0,0 +1,191 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.workflow.impl;
+
+import org.opencastproject.job.api.Job;
+import org.opencastproject.security.api.Organization;
+import org.opencastproject.security.api.OrganizationDirectoryService;
+import org.opencastproject.security.api.SecurityService;
+import org.opencastproject.security.util.SecurityUtil;
+import org.opencastproject.serviceregistry.api.ServiceRegistry;
+import org.opencastproject.solr.SolrIndexRebuild;
+import org.opencastproject.util.JobUtil;
+import org.opencastproject.util.NotFoundException;
+import org.opencastproject.workflow.api.WorkflowInstance;
+import org.opencastproject.workflow.api.WorkflowParser;
+import org.opencastproject.workflow.api.WorkflowService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.solr.common.SolrInputDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Rebuilds the workflow index from the workflow jobs kept by the service registry.
+ * <p>
+ * The workflow jobs are read from the service registry page by page. Parsing the workflow instances, which is the
+ * expensive part, is left to the worker threads. Workflows keep running while the index is rebuilt, so the version of
+ * each job is remembered and documents of jobs that have been updated in the meantime are not written.
+ */
+class WorkflowIndexRebuild extends SolrIndexRebuild<Job> {
+
+  /** The logging facility */
+  private static final Logger logger = LoggerFactory.getLogger(WorkflowIndexRebuild.class);
+
+  /** The workflow index */
+  private final WorkflowServiceSolrIndex index;
+
+  /** The service registry */
+  private final ServiceRegistry serviceRegistry;
+
+  /** The organization directory */
+  private final OrganizationDirectoryService orgDirectory;
+
+  /** The security service */
+  private final SecurityService securityService;
+
+  /** The name of the system user */
+  private final String systemUserName;
+
+  /** The versions of the jobs that have been read but whose documents have not been written yet */
+  private final ConcurrentMap<Long, Long> versions = new ConcurrentHashMap<Long, Long>();
+
+  WorkflowIndexRebuild(WorkflowServiceSolrIndex index, ServiceRegistry serviceRegistry,
+          OrganizationDirectoryService orgDirectory, SecurityService securityService, String systemUserName) {
+    super("workflow", index.solrServer, WorkflowServiceSolrIndex.ID_KEY);
+    this.index = index;
+    this.serviceRegistry = serviceRegistry;
+    this.orgDirectory = orgDirectory;
+    this.securityService = securityService;
+    this.systemUserName = systemUserName;
+  }
+
+  /**
+   * {@inheritDoc} Jobs without a payload are skipped, reading on until the page is full or there are no more jobs.
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#loadItems(java.lang.Object, int)
+   */
+  @Override
+  protected List<Job> loadItems(Job last, int limit) throws Exception {
+    if (last == null)
+      versions.clear();
+    List<Job> page = new ArrayList<Job>(limit);
+    long afterId = last != null ? last.getId() : 0L;
+    while (page.size() < limit) {
+      int requested = limit - page.size();
+      List<Job> jobs = serviceRegistry.getJobs(WorkflowService.JOB_TYPE,
+              WorkflowServiceImpl.Operation.START_WORKFLOW.toString(), afterId, requested);
+      for (Job job : jobs) {
+        afterId = job.getId();
+        if (job.getPayload() == null) {
+          logger.warn("Skipping restoring of workflow {}: Payload is empty", job.getId());
+          continue;
+        }
+        versions.put(job.getId(), job.getVersion());
+        page.add(job);
+      }
+      if (jobs.size() < requested)
+        break;
+    }
+    return page;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#getRemovedIds(java.util.List)
+   */
+  @Override
+  protected List<String> getRemovedIds(List<String> ids) throws Exception {
+    List<String> removed = new ArrayList<String>();
+    for (String id : ids) {
+      try {
+        serviceRegistry.getJob(Long.parseLong(id));
+      } catch (NumberFormatException e) {
+        removed.add(id);
+      } catch (NotFoundException e) {
+        removed.add(id);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#createDocuments(java.lang.Object)
+   */
+  @Override
+  protected List<SolrInputDocument> createDocuments(Job job) throws Exception {
+    try {
+      WorkflowInstance instance = WorkflowParser.parseWorkflowInstance(job.getPayload());
+      Organization organization = orgDirectory.getOrganization(job.getOrganization());
+      securityService.setOrganization(organization);
+      securityService.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
+      return Collections.singletonList(index.createDocument(instance));
+    } catch (Exception e) {
+      // Make sure this job is not being dispatched anymore
+      if (JobUtil.isReadyToDispatch(job)) {
+        job.setStatus(Job.Status.CANCELED);
+        try {
+          serviceRegistry.updateJob(job);
+          logger.info("Canceled job {} because unable to restore", job);
+        } catch (Exception e1) {
+          logger.error("Error updating erroneous job {}: {}", job.getId(), e1.getMessage());
+        }
+      }
+      throw e;
+    } finally {
+      securityService.setOrganization(null);
+      securityService.setUser(null);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#addDocuments(java.util.List)
+   */
+  @Override
+  protected void addDocuments(List<SolrInputDocument> documents) throws Exception {
+    Map<Long, Long> documentVersions = new HashMap<Long, Long>();
+    for (SolrInputDocument doc : documents) {
+      Long id = Long.valueOf(doc.getFieldValue(WorkflowServiceSolrIndex.ID_KEY).toString());
+      Long version = versions.remove(id);
+      if (version != null)
+        documentVersions.put(id, version);
+    }
+    index.addDocuments(documents, documentVersions);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @see org.opencastproject.solr.SolrIndexRebuild#deleteDocuments(java.util.List)
+   */
+  @Override
+  protected void deleteDocuments(List<String> ids) throws Exception {
+    index.deleteDocuments(ids);
+  }
+
+}
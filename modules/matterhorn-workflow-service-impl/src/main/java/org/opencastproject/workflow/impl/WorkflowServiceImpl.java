@@ -47,6 +47,7 @@ import org.opencastproject.series.api.SeriesException;
 import org.opencastproject.series.api.SeriesService;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
 import org.opencastproject.serviceregistry.api.ServiceRegistryException;
+import org.opencastproject.solr.SolrIndexRebuildMXBean;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.jmx.JmxUtil;
 import org.opencastproject.workflow.api.ResumableWorkflowOperationHandler;
@@ -1107,8 +1108,12 @@ public class WorkflowServiceImpl implements WorkflowService, JobProducer, Manage
     }
 
     Job job = null;
+    boolean jobChanged = false;
     try {
       job = serviceRegistry.getJob(workflowInstance.getId());
+      Status originalStatus = job.getStatus();
+      boolean originalDispatchable = job.isDispatchable();
+      jobChanged = !xml.equals(job.getPayload());
       job.setPayload(xml);
 
       // Synchronize workflow and job state
@@ -1137,6 +1142,7 @@ public class WorkflowServiceImpl implements WorkflowService, JobProducer, Manage
         default:
           throw new IllegalStateException("Found a workflow state that is not handled");
       }
+      jobChanged |= originalStatus != job.getStatus() || originalDispatchable != job.isDispatchable();
     } catch (ServiceRegistryException e) {
       logger.error("Unable to read workflow job {} from service registry", workflowInstance.getId(), e);
       throw new WorkflowDatabaseException(e);
@@ -1145,10 +1151,16 @@ public class WorkflowServiceImpl implements WorkflowService, JobProducer, Manage
       throw new WorkflowDatabaseException(e);
     }
 
-    // Update both workflow and workflow job
+    // Update both workflow job and workflow index. The job is written first, since the index loads the workflow
+    // instances from the jobs. Unchanged jobs are not written, and the index skips unchanged documents. A job that did
+    // change is still written with the complete workflow xml, including the mediapackage, since remote workflow
+    // services, the workflow migration and the index rebuild all read the workflow from the job payload.
     try {
+      if (jobChanged)
+        serviceRegistry.updateJob(job);
+      else
+        logger.debug("Workflow {} has not changed, not updating its job", workflowInstance.getId());
       index(workflowInstance);
-      serviceRegistry.updateJob(job);
     } catch (ServiceRegistryException e) {
       logger.error(
               "Update of workflow job {} in the service registry failed, service registry and workflow index may be out of sync",
@@ -1167,7 +1179,7 @@ public class WorkflowServiceImpl implements WorkflowService, JobProducer, Manage
     workflowsStatistics.updateWorkflow(getBeanStatistics(), getHoldWorkflows());
 
     try {
-      WorkflowInstance clone = WorkflowParser.parseWorkflowInstance(WorkflowParser.toXml(workflowInstance));
+      WorkflowInstance clone = WorkflowParser.parseWorkflowInstance(xml);
       fireListeners(originalWorkflowInstance, clone);
     } catch (Exception e) {
       // Can't happen, since we are converting from an in-memory object
@@ -1945,6 +1957,17 @@ public class WorkflowServiceImpl implements WorkflowService, JobProducer, Manage
     this.index = index;
   }
 
+  /**
+   * Returns the rebuild of the workflow index.
+   * 
+   * @return the index rebuild, or <code>null</code> if the index cannot be rebuilt
+   */
+  public SolrIndexRebuildMXBean getIndexRebuild() {
+    if (index instanceof WorkflowServiceSolrIndex)
+      return ((WorkflowServiceSolrIndex) index).getIndexRebuild();
+    return null;
+  }
+
   /**
    * Sets the series service
    * 
@@ -33,12 +33,14 @@ import org.opencastproject.security.api.SecurityService;
 import org.opencastproject.security.api.User;
 import org.opencastproject.security.util.SecurityUtil;
 import org.opencastproject.serviceregistry.api.ServiceRegistry;
-import org.opencastproject.serviceregistry.api.ServiceRegistryException;
+import org.opencastproject.solr.SolrIndexRebuildMXBean;
 import org.opencastproject.solr.SolrServerFactory;
-import org.opencastproject.util.JobUtil;
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.ChecksumType;
 import org.opencastproject.util.NotFoundException;
 import org.opencastproject.util.PathSupport;
 import org.opencastproject.util.SolrUtils;
+import org.opencastproject.util.jmx.JmxUtil;
 import org.opencastproject.workflow.api.WorkflowDatabaseException;
 import org.opencastproject.workflow.api.WorkflowInstance;
 import org.opencastproject.workflow.api.WorkflowInstance.WorkflowState;
@@ -68,7 +70,8 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
-import org.osgi.framework.ServiceException;
+import org.apache.solr.common.SolrInputField;
+import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,16 +83,23 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import javax.management.ObjectInstance;
+
 /**
  * Provides data access to the workflow service through file storage in the workspace, indexed via solr.
+ * <p>
+ * The index only holds the fields needed to search for workflows. The workflow instances themselves are kept as the
+ * payload of the workflow jobs and are loaded from the service registry when they are returned from a query.
  */
 public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
 
@@ -132,9 +142,6 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
   /** The key in solr documents representing the workflow's current state */
   private static final String STATE_KEY = "state";
 
-  /** The key in solr documents representing the workflow as xml */
-  private static final String XML_KEY = "xml";
-
   /** The key in solr documents representing the workflow's contributors */
   private static final String CONTRIBUTOR_KEY = "contributor";
 
@@ -192,6 +199,35 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
   /** The thread pool to use in asynchronous indexing */
   protected ExecutorService indexingExecutor;
 
+  /** The type under which the index rebuild is registered with JMX */
+  public static final String JMX_INDEX_REBUILD_TYPE = "WorkflowIndexRebuild";
+
+  /** The bundle context, used to configure the index rebuild */
+  private BundleContext bundleContext = null;
+
+  /** Rebuilds the index from the workflow jobs */
+  private WorkflowIndexRebuild indexRebuild = null;
+
+  /** The index rebuild's JMX registration */
+  private ObjectInstance registeredMXBean = null;
+
+  /** The maximum number of document fingerprints that are kept to detect unchanged documents */
+  private static final int MAX_FINGERPRINTS = 10000;
+
+  /** Fingerprints of the most recently indexed documents, by workflow id */
+  private final Map<Long, String> fingerprints = Collections.synchronizedMap(new LinkedHashMap<Long, String>(16,
+          0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+      return size() > MAX_FINGERPRINTS;
+    }
+  });
+
+  /** Workflow instances waiting to be indexed asynchronously, by workflow id */
+  private final Map<Long, WorkflowInstance> pendingUpdates = new ConcurrentHashMap<Long, WorkflowInstance>();
+
   /**
    * Callback from the OSGi environment on component registration. The indexing behavior can be set using component
    * context properties. <code>synchronousIndexing=true|false</code> determines whether threads performing workflow
@@ -226,8 +262,10 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
       logger.debug("Workflows will be added to the search index asynchronously");
       indexingExecutor = Executors.newSingleThreadExecutor();
     }
+    bundleContext = cc.getBundleContext();
     String systemUserName = cc.getBundleContext().getProperty(SecurityUtil.PROPERTY_KEY_SYS_USER);
     activate(systemUserName);
+    registeredMXBean = JmxUtil.registerMXBean(indexRebuild, JMX_INDEX_REBUILD_TYPE);
   }
 
   private long count() throws WorkflowDatabaseException {
@@ -264,70 +302,25 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
       throw new IllegalStateException(e);
     }
 
+    indexRebuild = new WorkflowIndexRebuild(this, serviceRegistry, orgDirectory, securityService, systemUserName);
+    if (bundleContext != null)
+      indexRebuild.configure(bundleContext);
+
     if (instancesInSolr == 0) {
       logger.info("The workflow index is empty, looking for workflows to index");
-      // this may be a new index, so get all of the existing workflows and index them
-      List<Job> jobs = null;
-      try {
-        jobs = serviceRegistry.getJobs(WorkflowService.JOB_TYPE, null);
-        Iterator<Job> ji = jobs.iterator();
-        while (ji.hasNext()) {
-          Job job = ji.next();
-          if (!WorkflowServiceImpl.Operation.START_WORKFLOW.toString().equals(job.getOperation())) {
-            logger.debug("Removing unrelated job {} of type {}", job.getId(), job.getOperation());
-            ji.remove();
-          }
-        }
-      } catch (ServiceRegistryException e) {
-        logger.error("Unable to load the workflows jobs: {}", e.getMessage());
-        throw new ServiceException(e.getMessage());
-      }
-
-      if (jobs.size() > 0) {
-        logger.info("Populating the workflow index with {} workflows", jobs.size());
-        int errors = 0;
-        for (Job job : jobs) {
-          if (job.getPayload() == null) {
-            logger.warn("Skipping restoring of workflow {}: Payload is empty", job.getId());
-            continue;
-          }
-          WorkflowInstance instance = null;
-          boolean erroneousWorkflowJob = false;
-          try {
-            instance = WorkflowParser.parseWorkflowInstance(job.getPayload());
-            Organization organization = orgDirectory.getOrganization(job.getOrganization());
-            securityService.setOrganization(organization);
-            securityService.setUser(SecurityUtil.createSystemUser(systemUserName, organization));
-            index(instance);
-          } catch (WorkflowDatabaseException e) {
-            logger.warn("Skipping restoring of workflow {}: {}", instance.getId(), e.getMessage());
-            erroneousWorkflowJob = true;
-            errors++;
-          } catch (Throwable e) {
-            logger.warn("Skipping restoring of workflow {}: {}", instance.getId(), e.getMessage());
-            erroneousWorkflowJob = true;
-            errors++;
-          }
-
-          // Make sure this job is not being dispatched anymore
-          if (erroneousWorkflowJob && JobUtil.isReadyToDispatch(job)) {
-            job.setStatus(Job.Status.CANCELED);
-            try {
-              serviceRegistry.updateJob(job);
-              logger.info("Canceled job {} because unable to restore", job);
-            } catch (Exception e) {
-              logger.error("Error updating erroneous job {}: {}", job.getId(), e.getMessage());
-            }
-          }
-        }
-
-        if (errors > 0)
-          logger.warn("Skipped {} erroneous workflows while populating the index", errors);
-        logger.info("Finished populating the workflow search index");
-      }
+      indexRebuild.run();
     }
   }
 
+  /**
+   * Returns the rebuild of this index.
+   * 
+   * @return the index rebuild, or <code>null</code> if the index has not been activated
+   */
+  public SolrIndexRebuildMXBean getIndexRebuild() {
+    return indexRebuild;
+  }
+
   /**
    * Prepares the embedded solr environment.
    * 
@@ -374,6 +367,8 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
    * Shuts down the solr index.
    */
   public void deactivate() {
+    if (registeredMXBean != null)
+      JmxUtil.unregisterMXBean(registeredMXBean);
     SolrServerFactory.shutdown(solrServer);
   }
 
@@ -395,37 +390,83 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
     }
   }
 
+  /**
+   * Adds the workflow instance to the search index, unless the indexed fields have not changed since it was last
+   * indexed. When indexing asynchronously, only the most recent of the pending updates of a workflow is indexed.
+   * 
+   * @param instance
+   *          the workflow instance
+   * @throws WorkflowDatabaseException
+   *           if indexing synchronously fails
+   */
   public void index(final WorkflowInstance instance) throws WorkflowDatabaseException {
     if (synchronousIndexing) {
       try {
-        SolrInputDocument doc = createDocument(instance);
-        synchronized (solrServer) {
-          solrServer.add(doc);
-          solrServer.commit();
-        }
+        addDocument(instance, true);
       } catch (Exception e) {
         throw new WorkflowDatabaseException("Unable to index workflow", e);
       }
     } else {
+      if (pendingUpdates.put(instance.getId(), instance) != null) {
+        logger.debug("Replaced the pending index update of workflow {}", instance.getId());
+        return;
+      }
       indexingExecutor.submit(new Runnable() {
         public void run() {
+          WorkflowInstance latest = pendingUpdates.remove(instance.getId());
+          if (latest == null)
+            return;
           try {
-            SolrInputDocument doc = createDocument(instance);
-            synchronized (solrServer) {
-              solrServer.add(doc);
-              // Use solr's autoCommit feature instead of committing on each document addition.
-              // See http://opencast.jira.com/browse/MH-7040 and
-              // http://osdir.com/ml/solr-user.lucene.apache.org/2009-09/msg00744.html
-              // solrServer.commit();
-            }
+            // Use solr's autoCommit feature instead of committing on each document addition.
+            // See http://opencast.jira.com/browse/MH-7040 and
+            // http://osdir.com/ml/solr-user.lucene.apache.org/2009-09/msg00744.html
+            addDocument(latest, false);
           } catch (Exception e) {
-            WorkflowServiceSolrIndex.logger.warn("Unable to index {}: {}", instance, e);
+            WorkflowServiceSolrIndex.logger.warn("Unable to index {}: {}", latest, e);
           }
         }
       });
     }
   }
 
+  /**
+   * Adds the document of the workflow instance to solr if it differs from the one that has been indexed last.
+   * 
+   * @param instance
+   *          the workflow instance
+   * @param commit
+   *          whether to commit the document
+   */
+  private void addDocument(WorkflowInstance instance, boolean commit) throws Exception {
+    SolrInputDocument doc = createDocument(instance);
+    String fingerprint = fingerprint(doc);
+    if (fingerprint.equals(fingerprints.get(instance.getId()))) {
+      logger.debug("Indexed fields of workflow {} have not changed", instance.getId());
+      return;
+    }
+    synchronized (solrServer) {
+      solrServer.add(doc);
+      if (commit)
+        solrServer.commit();
+    }
+    fingerprints.put(instance.getId(), fingerprint);
+  }
+
+  /**
+   * Returns a fingerprint of the fields of the solr document.
+   * 
+   * @param doc
+   *          the solr document
+   * @return the fingerprint
+   */
+  private static String fingerprint(SolrInputDocument doc) throws IOException {
+    StringBuilder buf = new StringBuilder();
+    for (SolrInputField field : doc) {
+      buf.append(field.getName()).append('=').append(field.getValues()).append('\n');
+    }
+    return Checksum.createFor(ChecksumType.DEFAULT_TYPE, buf.toString()).getValue();
+  }
+
   /**
    * Adds the workflow instance to the search index.
    * 
@@ -439,8 +480,6 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
     doc.addField(ID_KEY, instance.getId());
     doc.addField(WORKFLOW_DEFINITION_KEY, instance.getTemplate());
     doc.addField(STATE_KEY, instance.getState().toString());
-    String xml = WorkflowParser.toXml(instance);
-    doc.addField(XML_KEY, xml);
 
     // index the current operation if there is one. If the workflow is finished, there is no current operation, so use a
     // constant
@@ -1030,11 +1069,23 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
       set.setStartPage(query.getStartPage());
       set.setSearchTime(searchTime);
 
-      // Iterate through the results
+      // Load the workflow instances from their jobs, all at once, and add them in the order of the results
+      List<Long> ids = new ArrayList<Long>(items.size());
       for (SolrDocument doc : items) {
-        String xml = (String) doc.get(XML_KEY);
+        ids.add(Long.parseLong(doc.getFieldValue(ID_KEY).toString()));
+      }
+      Map<Long, Job> jobs = new HashMap<Long, Job>();
+      for (Job job : serviceRegistry.getJobs(ids)) {
+        jobs.put(job.getId(), job);
+      }
+      for (Long id : ids) {
+        Job job = jobs.get(id);
+        if (job == null) {
+          logger.warn("Workflow {} is in the index but has no job in the service registry", id);
+          continue;
+        }
         try {
-          set.addItem(WorkflowParser.parseWorkflowInstance(xml));
+          set.addItem(WorkflowParser.parseWorkflowInstance(job.getPayload()));
         } catch (Exception e) {
           throw new IllegalStateException("can not parse workflow xml", e);
         }
@@ -1054,6 +1105,8 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
    */
   @Override
   public void remove(long id) throws WorkflowDatabaseException, NotFoundException {
+    pendingUpdates.remove(id);
+    fingerprints.remove(id);
     try {
       synchronized (solrServer) {
         solrServer.deleteById(Long.toString(id));
@@ -1064,6 +1117,72 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
     }
   }
 
+  /**
+   * Posts documents that have been created while the index is being rebuilt and commits them. Documents of workflows
+   * whose jobs have been updated or removed since they were read are skipped, since the workflow service indexes the
+   * newer state itself and the documents would set these workflows back. The jobs are checked while holding the lock
+   * on the solr server, so updates that are indexed later are written after the documents. The fingerprints of the
+   * affected workflows are dropped, so their next update is indexed in any case.
+   * 
+   * @param docs
+   *          the documents
+   * @param versions
+   *          the versions of the jobs the documents have been created from, by workflow identifier
+   * @throws WorkflowDatabaseException
+   *           if the documents can't be written
+   */
+  void addDocuments(List<SolrInputDocument> docs, Map<Long, Long> versions) throws WorkflowDatabaseException {
+    List<SolrInputDocument> current = new ArrayList<SolrInputDocument>(docs.size());
+    try {
+      synchronized (solrServer) {
+        Map<Long, Long> currentVersions = new HashMap<Long, Long>();
+        for (Job job : serviceRegistry.getJobs(new ArrayList<Long>(versions.keySet()))) {
+          currentVersions.put(job.getId(), job.getVersion());
+        }
+        for (SolrInputDocument doc : docs) {
+          Long id = Long.valueOf(doc.getFieldValue(ID_KEY).toString());
+          Long version = versions.get(id);
+          if (version != null && version.equals(currentVersions.get(id)))
+            current.add(doc);
+          else
+            logger.debug("Workflow {} has changed since it was read for the rebuild, not overwriting it", id);
+        }
+        if (!current.isEmpty()) {
+          solrServer.add(current);
+          solrServer.commit();
+        }
+      }
+    } catch (Exception e) {
+      throw new WorkflowDatabaseException(e);
+    } finally {
+      for (SolrInputDocument doc : current) {
+        fingerprints.remove(Long.valueOf(doc.getFieldValue(ID_KEY).toString()));
+      }
+    }
+  }
+
+  /**
+   * Removes documents from the index and commits.
+   * 
+   * @param ids
+   *          the workflow identifiers
+   * @throws WorkflowDatabaseException
+   *           if the documents can't be removed
+   */
+  void deleteDocuments(List<String> ids) throws WorkflowDatabaseException {
+    for (String id : ids) {
+      fingerprints.remove(Long.valueOf(id));
+    }
+    try {
+      synchronized (solrServer) {
+        solrServer.deleteById(ids);
+        solrServer.commit();
+      }
+    } catch (Exception e) {
+      throw new WorkflowDatabaseException(e);
+    }
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -1078,6 +1197,8 @@ public class WorkflowServiceSolrIndex implements WorkflowServiceIndex {
    * Clears the index of all workflow instances.
    */
   public void clear() throws WorkflowDatabaseException {
+    pendingUpdates.clear();
+    fingerprints.clear();
     try {
       synchronized (solrServer) {
         solrServer.deleteByQuery("*:*");
@@ -16,6 +16,7 @@
 package org.opencastproject.workflow.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.opencastproject.workflow.api.WorkflowService.READ_PERMISSION;
 
 import org.opencastproject.job.api.JaxbJob;
@@ -37,14 +38,25 @@ import org.opencastproject.workflow.api.WorkflowQuery;
 import org.opencastproject.workflow.api.WorkflowService;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.util.NamedList;
 import org.easymock.EasyMock;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Test cases for the implementation at {@link WorkflowServiceDaoSolrImpl}.
@@ -55,10 +67,14 @@ public class WorkflowServiceSolrIndexTest {
 
   private AccessControlList acl = new AccessControlList();
 
+  /** The security service */
+  private SecurityService securityService = null;
+
   @Before
+  @SuppressWarnings("unchecked")
   public void setUp() throws Exception {
     // security service
-    SecurityService securityService = EasyMock.createNiceMock(SecurityService.class);
+    securityService = EasyMock.createNiceMock(SecurityService.class);
     EasyMock.expect(securityService.getUser()).andReturn(SecurityServiceStub.DEFAULT_ORG_ADMIN).anyTimes();
     EasyMock.expect(securityService.getOrganization()).andReturn(new DefaultOrganization()).anyTimes();
     EasyMock.replay(securityService);
@@ -85,7 +101,10 @@ public class WorkflowServiceSolrIndexTest {
     ServiceRegistry serviceRegistry = EasyMock.createNiceMock(ServiceRegistry.class);
     EasyMock.expect(serviceRegistry.count(WorkflowService.JOB_TYPE, null)).andReturn(new Long(1));
     EasyMock.expect(serviceRegistry.getJobs(WorkflowService.JOB_TYPE, null)).andReturn(jobs);
-    EasyMock.expect(serviceRegistry.getJob(123)).andReturn(job);
+    EasyMock.expect(
+            serviceRegistry.getJobs(EasyMock.eq(WorkflowService.JOB_TYPE), (String) EasyMock.anyObject(),
+                    EasyMock.anyLong(), EasyMock.anyInt())).andReturn(new ArrayList<Job>()).anyTimes();
+    EasyMock.expect(serviceRegistry.getJobs((List<Long>) EasyMock.anyObject())).andReturn(jobs).anyTimes();
     EasyMock.replay(serviceRegistry);
 
     AuthorizationService authzService = EasyMock.createNiceMock(AuthorizationService.class);
@@ -179,4 +198,108 @@ public class WorkflowServiceSolrIndexTest {
     assertEquals(expected, solrQuery);
   }
 
+  /**
+   * Tests that a workflow is only written to the index again if its indexed fields have changed.
+   */
+  @Test
+  public void testUnchangedDocumentIsSkipped() throws Exception {
+    CountingSolrServer solrServer = new CountingSolrServer(dao.solrServer);
+    dao.solrServer = solrServer;
+    try {
+      WorkflowInstanceImpl workflow = createWorkflow(456, WorkflowState.RUNNING);
+      dao.index(workflow);
+      assertEquals(1, solrServer.getAdds());
+
+      dao.index(workflow);
+      assertEquals(1, solrServer.getAdds());
+
+      workflow.setState(WorkflowState.SUCCEEDED);
+      dao.index(workflow);
+      assertEquals(2, solrServer.getAdds());
+      assertEquals(1, dao.countWorkflowInstances(WorkflowState.SUCCEEDED, null));
+    } finally {
+      dao.solrServer = solrServer.delegate;
+    }
+  }
+
+  /**
+   * Tests that repeated asynchronous updates of a workflow that arrive before the first one has been indexed are
+   * written as one, with the latest state.
+   */
+  @Test
+  public void testPendingUpdatesAreCoalesced() throws Exception {
+    CountingSolrServer solrServer = new CountingSolrServer(dao.solrServer);
+    dao.solrServer = solrServer;
+    dao.synchronousIndexing = false;
+    dao.indexingExecutor = Executors.newSingleThreadExecutor();
+    try {
+      // Keep the indexing thread busy until all updates have been queued
+      final CountDownLatch queued = new CountDownLatch(1);
+      dao.indexingExecutor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          queued.await();
+          return null;
+        }
+      });
+      WorkflowInstanceImpl workflow = createWorkflow(456, WorkflowState.INSTANTIATED);
+      dao.index(workflow);
+      workflow = createWorkflow(456, WorkflowState.RUNNING);
+      dao.index(workflow);
+      workflow = createWorkflow(456, WorkflowState.SUCCEEDED);
+      dao.index(workflow);
+      queued.countDown();
+
+      dao.indexingExecutor.shutdown();
+      assertTrue(dao.indexingExecutor.awaitTermination(10, TimeUnit.SECONDS));
+      assertEquals(1, solrServer.getAdds());
+      solrServer.commit();
+      assertEquals(1, dao.countWorkflowInstances(WorkflowState.SUCCEEDED, null));
+      assertEquals(0, dao.countWorkflowInstances(WorkflowState.RUNNING, null));
+    } finally {
+      dao.indexingExecutor.shutdownNow();
+      dao.solrServer = solrServer.delegate;
+    }
+  }
+
+  private WorkflowInstanceImpl createWorkflow(long id, WorkflowState state) throws Exception {
+    WorkflowInstanceImpl workflow = new WorkflowInstanceImpl();
+    workflow.setId(id);
+    workflow.setCreator(securityService.getUser());
+    workflow.setOrganization(securityService.getOrganization());
+    workflow.setState(state);
+    workflow.setMediaPackage(MediaPackageBuilderFactory.newInstance().newMediaPackageBuilder().createNew());
+    return workflow;
+  }
+
+  /**
+   * Solr server that counts the requests adding documents and passes all requests on.
+   */
+  private static class CountingSolrServer extends SolrServer {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The solr server handling the requests */
+    private final SolrServer delegate;
+
+    /** The number of requests that added documents */
+    private final AtomicInteger adds = new AtomicInteger();
+
+    CountingSolrServer(SolrServer delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+      if (request instanceof UpdateRequest && ((UpdateRequest) request).getDocuments() != null)
+        adds.incrementAndGet();
+      return delegate.request(request);
+    }
+
+    int getAdds() {
+      return adds.get();
+    }
+
+  }
+
 }
@@ -0,0 +1,236 @@
+/**
+ *  Copyright 2009, 2010 The Regents of the University of California
+ *  Licensed under the Educational Community License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance
+ *  with the License. You may obtain a copy of the License at
+ *
+ *  http://www.osedu.org/licenses/ECL-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS"
+ *  BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ *  or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ *
+ */
+package org.opencastproject.workingfilerepository.impl;
+
+import org.opencastproject.util.Checksum;
+import org.opencastproject.util.FileSupport;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores the contents of the working file repository once per md5 digest. Files in the mediapackage and collection
+ * directories are hard links to these blobs, and every such link counts as a reference to the blob. A blob is removed
+ * as soon as its last reference has been released.
+ * <p>
+ * The reference counts are kept in memory and are rebuilt from the <code>.md5</code> files on startup. Since those
+ * files are written for every file in the repository, files that were added before deduplication had been enabled are
+ * counted as well. This may keep a blob longer than necessary, but never removes one that is still in use.
+ */
+class ContentAddressedStore {
+
+  /** The logger */
+  private static final Logger logger = LoggerFactory.getLogger(ContentAddressedStore.class);
+
+  /** Name of the directory that incoming files are written to before they are moved to their digest location */
+  private static final String INCOMING_DIR = "incoming";
+
+  /** The root directory of the store */
+  private final File root;
+
+  /** The directory holding files that are still being received */
+  private final File incoming;
+
+  /** Number of repository files referring to each blob */
+  private final Map<String, Integer> references = new HashMap<String, Integer>();
+
+  /**
+   * Creates a store located at <code>root</code>.
+   * 
+   * @param root
+   *          the root directory
+   * @throws IOException
+   *           if the directory structure can't be created
+   */
+  ContentAddressedStore(File root) throws IOException {
+    this.root = root;
+    this.incoming = new File(root, INCOMING_DIR);
+    FileUtils.forceMkdir(incoming);
+  }
+
+  /**
+   * Counts the references to the blobs from the md5 files found in the given directories and removes blobs that are no
+   * longer referenced, as well as leftovers from interrupted uploads.
+   * 
+   * @param directories
+   *          the directories containing the repository files
+   * @throws IOException
+   *           if reading an md5 file fails
+   */
+  synchronized void init(File... directories) throws IOException {
+    references.clear();
+    for (File directory : directories) {
+      if (!directory.isDirectory())
+        continue;
+      for (File md5File : FileUtils.listFiles(directory, new String[] { "md5" }, true)) {
+        String md5 = FileUtils.readFileToString(md5File, "utf-8").trim();
+        Integer count = references.get(md5);
+        references.put(md5, count == null ? 1 : count + 1);
+      }
+    }
+
+    FileUtils.cleanDirectory(incoming);
+    int removed = 0;
+    for (File blob : FileUtils.listFiles(root, null, true)) {
+      if (!references.containsKey(blob.getName()) && blob.delete())
+        removed++;
+    }
+    logger.info("Content addressed store at {} holds {} referenced files, removed {} unreferenced ones",
+            new Object[] { root, references.size(), removed });
+  }
+
+  /**
+   * Stores the contents of <code>in</code> and makes <code>target</code> refer to it. If a file with the same contents
+   * already exists in the store, no additional space is used.
+   * 
+   * @param in
+   *          the file contents
+   * @param target
+   *          the repository file
+   * @return the md5 digest of the contents
+   * @throws IOException
+   *           if writing the file or linking it to <code>target</code> fails
+   */
+  String put(InputStream in, File target) throws IOException {
+    File upload = File.createTempFile("upload", null, incoming);
+    OutputStream out = null;
+    String md5 = null;
+    try {
+      DigestInputStream dis = new DigestInputStream(in, createMd5Digest());
+      out = new FileOutputStream(upload);
+      IOUtils.copyLarge(dis, out);
+      out.close();
+      md5 = Checksum.convertToHex(dis.getMessageDigest().digest());
+
+      synchronized (this) {
+        File blob = getBlob(md5);
+        if (blob.isFile()) {
+          logger.debug("Content of {} is already present at {}", target, blob);
+        } else {
+          FileUtils.forceMkdir(blob.getParentFile());
+          if (!upload.renameTo(blob))
+            FileUtils.moveFile(upload, blob);
+        }
+        FileSupport.link(blob, target, true);
+        acquire(md5);
+      }
+      return md5;
+    } finally {
+      IOUtils.closeQuietly(out);
+      FileUtils.deleteQuietly(upload);
+    }
+  }
+
+  /**
+   * Registers an additional reference to the blob with the given digest. This is needed for repository files that are
+   * created as links to other repository files.
+   * 
+   * @param md5
+   *          the digest
+   */
+  synchronized void acquire(String md5) {
+    Integer count = references.get(md5);
+    references.put(md5, count == null ? 1 : count + 1);
+  }
+
+  /**
+   * Releases a reference to the blob with the given digest. The blob is removed once it is no longer referenced.
+   * 
+   * @param md5
+   *          the digest
+   */
+  synchronized void release(String md5) {
+    Integer count = references.get(md5);
+    if (count == null)
+      return;
+    if (count > 1) {
+      references.put(md5, count - 1);
+      return;
+    }
+    references.remove(md5);
+    File blob = getBlob(md5);
+    if (blob.isFile()) {
+      logger.debug("Removing unreferenced file {}", blob);
+      FileUtils.deleteQuietly(blob);
+      File parent = blob.getParentFile();
+      String[] siblings = parent.list();
+      if (siblings != null && siblings.length == 0)
+        parent.delete();
+    }
+  }
+
+  /**
+   * Returns the number of repository files referring to the blob with the given digest.
+   * 
+   * @param md5
+   *          the digest
+   * @return the reference count
+   */
+  synchronized int getReferenceCount(String md5) {
+    Integer count = references.get(md5);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Returns <code>true</code> if the store holds a blob with the given digest.
+   * 
+   * @param md5
+   *          the digest
+   * @return <code>true</code> if the blob exists
+   */
+  boolean contains(String md5) {
+    return getBlob(md5).isFile();
+  }
+
+  /**
+   * Returns the location of the blob with the given digest. Blobs are spread over subdirectories named after the first
+   * two characters of the digest.
+   * 
+   * @param md5
+   *          the digest
+   * @return the blob location
+   */
+  private File getBlob(String md5) {
+    return new File(new File(root, md5.substring(0, 2)), md5);
+  }
+
+  /**
+   * Creates a new md5 message digest.
+   * 
+   * @return the digest
+   */
+  private static MessageDigest createMd5Digest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Unable to create md5 message digest", e);
+    }
+  }
+
+}
@@ -69,6 +69,12 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     }
   };
 
+  /** Configuration key for enabling the content addressed, deduplicating storage layout */
+  public static final String DEDUPLICATION_KEY = "org.opencastproject.file.repo.deduplication";
+
+  /** Name of the directory holding the deduplicated file contents */
+  public static final String CONTENT_DIRECTORY = "content";
+
   /** Working file repository JMX type */
   private static final String JMX_WORKING_FILE_REPOSITORY_TYPE = "WorkingFileRepository";
 
@@ -90,6 +96,9 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
   /** The URL for the services provided by the working file repository */
   protected URI serviceUrl = null;
 
+  /** The store holding the file contents if deduplication is enabled */
+  protected ContentAddressedStore contentStore = null;
+
   /**
    * Activate the component
    */
@@ -136,6 +145,26 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
       throw e;
     }
 
+    // content addressed storage
+    if (Boolean.valueOf(StringUtils.trimToEmpty(cc.getBundleContext().getProperty(DEDUPLICATION_KEY)))) {
+      File contentDirectory = new File(rootDirectory, CONTENT_DIRECTORY);
+      FileUtils.forceMkdir(contentDirectory);
+      File srcFile = new File(contentDirectory, ".linktest");
+      File targetFile = new File(rootDirectory, ".linktest");
+      FileUtils.touch(srcFile);
+      boolean linkingSupported = FileSupport.supportsLinking(srcFile, targetFile);
+      FileUtils.deleteQuietly(srcFile);
+      FileUtils.deleteQuietly(targetFile);
+      if (linkingSupported) {
+        contentStore = new ContentAddressedStore(contentDirectory);
+        contentStore.init(new File(rootDirectory, MEDIAPACKAGE_PATH_PREFIX), new File(rootDirectory,
+                COLLECTION_PATH_PREFIX));
+        logger.info("Storing files in the working file repository once per content");
+      } else {
+        logger.warn("Deduplication requires hard links, which are not supported at {}", rootDirectory);
+      }
+    }
+
     registeredMXBean = JmxUtil.registerMXBean(workingFileRepositoryBean, JMX_WORKING_FILE_REPOSITORY_TYPE);
 
     logger.info(getDiskSpace());
@@ -160,6 +189,7 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
 
       File parentDirectory = f.getParentFile();
       logger.debug("Attempting to delete {}", parentDirectory.getAbsolutePath());
+      releaseContent(parentDirectory.listFiles(MD5_FINAME_FILTER));
       FileUtils.forceDelete(parentDirectory);
       File parentsParentDirectory = parentDirectory.getParentFile();
       if (parentsParentDirectory.isDirectory() && parentsParentDirectory.list().length == 0)
@@ -257,6 +287,7 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     File dir = getElementDirectory(mediaPackageID, mediaPackageElementID);
     if (dir.exists()) {
       // clear the directory
+      releaseContent(dir.listFiles(MD5_FINAME_FILTER));
       File[] filesToDelete = dir.listFiles();
       if (filesToDelete != null && filesToDelete.length > 0) {
         for (File fileToDelete : filesToDelete) {
@@ -270,6 +301,10 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
       FileUtils.forceMkdir(dir);
     }
     f = new File(dir, PathSupport.toSafeName(filename));
+    if (contentStore != null) {
+      putContent(f, in);
+      return getURI(mediaPackageID, mediaPackageElementID, filename);
+    }
     logger.debug("Attempting to write a file to {}", f.getAbsolutePath());
     FileOutputStream out = null;
     try {
@@ -383,6 +418,52 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     return new File(md5File.getParent(), md5File.getName().substring(0, md5File.getName().length() - 4));
   }
 
+  /**
+   * Stores the contents of <code>in</code> in the content addressed store, links it to <code>f</code> and writes the
+   * accompanying md5 file.
+   * 
+   * @param f
+   *          the repository file
+   * @param in
+   *          the file contents
+   * @throws IOException
+   *           if storing the contents fails
+   */
+  private void putContent(File f, InputStream in) throws IOException {
+    logger.debug("Attempting to store the contents of {} in {}", f.getAbsolutePath(), CONTENT_DIRECTORY);
+    String md5 = null;
+    try {
+      md5 = contentStore.put(in, f);
+      FileUtils.writeStringToFile(getMd5File(f), md5);
+    } catch (IOException e) {
+      if (md5 != null)
+        contentStore.release(md5);
+      FileUtils.deleteQuietly(getMd5File(f));
+      FileUtils.deleteQuietly(f);
+      throw e;
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Releases the references that the given md5 files hold to the content addressed store. This method has no effect if
+   * deduplication is disabled.
+   * 
+   * @param md5Files
+   *          the md5 files of the repository files that are about to be removed or replaced
+   * @throws IOException
+   *           if reading an md5 file fails
+   */
+  private void releaseContent(File... md5Files) throws IOException {
+    if (contentStore == null || md5Files == null)
+      return;
+    for (File md5File : md5Files) {
+      if (md5File.isFile())
+        contentStore.release(FileUtils.readFileToString(md5File, "utf-8").trim());
+    }
+  }
+
   protected void checkPathSafe(String id) {
     if (id == null)
       throw new NullPointerException("IDs can not be null");
@@ -557,6 +638,12 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
     checkPathSafe(fileName);
     File f = new File(PathSupport.concat(new String[] { rootDirectory, COLLECTION_PATH_PREFIX, collectionId,
             PathSupport.toSafeName(fileName) }));
+    if (contentStore != null) {
+      getCollectionDirectory(collectionId, true);
+      releaseContent(getMd5File(f));
+      putContent(f, in);
+      return getCollectionURI(collectionId, fileName);
+    }
     logger.debug("Attempting to write a file to {}", f.getAbsolutePath());
     FileOutputStream out = null;
     try {
@@ -569,7 +656,10 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
         }
         f.createNewFile();
       } else {
+        // The file may share its contents with others, so replace rather than overwrite it
         logger.debug("Attempting to overwrite the file at {}", f.getAbsolutePath());
+        FileUtils.forceDelete(f);
+        f.createNewFile();
       }
       out = new FileOutputStream(f);
 
@@ -629,13 +719,37 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
                 + "' : " + e);
       }
     }
-    File destFile;
+    File destFile = new File(destDir, PathSupport.toSafeName(toFileName));
+    File destMd5File = getMd5File(destFile);
+    if (destFile.exists()) {
+      // The file may share its contents with others, so replace rather than overwrite it
+      logger.debug("Replacing the file at {}", destFile.getAbsolutePath());
+      releaseContent(destMd5File);
+      FileUtils.forceDelete(destFile);
+      FileUtils.deleteQuietly(destMd5File);
+    }
+    String acquiredMd5 = null;
     try {
-      destFile = new File(destDir, PathSupport.toSafeName(toFileName));
       FileSupport.link(source, destFile);
-      createMd5(destFile);
-    } catch (Exception e) {
-      FileUtils.deleteDirectory(destDir);
+
+      // Both files share the same contents, so there is no need to calculate the hash again
+      File sourceMd5File = getMd5File(source);
+      if (sourceMd5File.isFile()) {
+        FileUtils.copyFile(sourceMd5File, destMd5File);
+        if (contentStore != null) {
+          String md5 = FileUtils.readFileToString(destMd5File, "utf-8").trim();
+          contentStore.acquire(md5);
+          acquiredMd5 = md5;
+        }
+      } else {
+        createMd5(destFile);
+      }
+    } catch (IOException e) {
+      if (acquiredMd5 != null)
+        contentStore.release(acquiredMd5);
+      FileUtils.deleteQuietly(destMd5File);
+      FileUtils.deleteQuietly(destFile);
+      throw e;
     }
     return getURI(toMediaPackage, toMediaPackageElement, toFileName);
   }
@@ -705,6 +819,7 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
       throw new IllegalStateException(f + " is not a regular file");
     if (!md5File.isFile())
       throw new IllegalStateException(md5File + " is not a regular file");
+    releaseContent(md5File);
     if (!md5File.delete())
       throw new IOException("MD5 hash " + md5File + " cannot be deleted");
     if (!f.delete())
@@ -792,7 +907,7 @@ public class WorkingFileRepositoryImpl implements WorkingFileRepository, PathMap
 
     // Check if there is a precalculated md5 hash
     File md5HashFile = getMd5File(file);
-    if (file.exists()) {
+    if (md5HashFile.exists()) {
       logger.trace("Reading precalculated hash for {} from {}", file, md5HashFile.getName());
       return FileUtils.readFileToString(md5HashFile, "utf-8");
     }
@@ -224,7 +224,7 @@ public class WorkingFileRepositoryRestEndpoint extends WorkingFileRepositoryImpl
     // Check the If-None-Match header first
     try {
       final String md5 = getMediaPackageElementDigest(mediaPackageID, mediaPackageElementID);
-      if (StringUtils.isNotBlank(ifNoneMatch) && md5.equals(ifNoneMatch)) {
+      if (matchesETag(ifNoneMatch, md5)) {
         return Response.notModified(md5).build();
       }
     } catch (IOException e) {
@@ -243,6 +243,27 @@ public class WorkingFileRepositoryRestEndpoint extends WorkingFileRepositoryImpl
     }
   }
 
+  /**
+   * Returns <code>true</code> if the value of an <code>If-None-Match</code> header matches the md5 of a file. The entity
+   * tags may be quoted, weak or given as a comma separated list.
+   * 
+   * @param ifNoneMatch
+   *          the header value
+   * @param md5
+   *          the md5 of the file
+   * @return <code>true</code> if the client's copy is up to date
+   */
+  static boolean matchesETag(String ifNoneMatch, String md5) {
+    if (StringUtils.isBlank(ifNoneMatch) || md5 == null)
+      return false;
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = StringUtils.removeStart(tag.trim(), "W/");
+      if ("*".equals(tag) || md5.equals(StringUtils.removeEnd(StringUtils.removeStart(tag, "\""), "\"")))
+        return true;
+    }
+    return false;
+  }
+
   /**
    * Determines the content type of an input stream. This method reads part of the stream, so it is typically best to
    * close the stream immediately after calling this method.
@@ -280,7 +301,7 @@ public class WorkingFileRepositoryRestEndpoint extends WorkingFileRepositoryImpl
     // Check the If-None-Match header first
     try {
       md5 = getMediaPackageElementDigest(mediaPackageID, mediaPackageElementID);
-      if (StringUtils.isNotBlank(ifNoneMatch) && md5.equals(ifNoneMatch)) {
+      if (matchesETag(ifNoneMatch, md5)) {
         return Response.notModified(md5).build();
       }
     } catch (IOException e) {
@@ -308,7 +329,7 @@ public class WorkingFileRepositoryRestEndpoint extends WorkingFileRepositoryImpl
       // No If-Non-Match header provided, or the file changed in the meantime
       try {
         return fileResponse(getFile(mediaPackageID, mediaPackageElementID),
-            mimeMap.getContentType(fileName), some(fileName)).tag(md5).build();
+            mimeMap.getContentType(fileName), some(fileName)).tag(md5).header("Accept-Ranges", "bytes").build();
       } catch (IllegalStateException e) {
         logger.error(e.getMessage());
         return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
@@ -322,11 +343,27 @@ public class WorkingFileRepositoryRestEndpoint extends WorkingFileRepositoryImpl
           @RestParameter(name = "collectionId", description = "the collection identifier", isRequired = true, type = STRING),
           @RestParameter(name = "fileName", description = "the file name", isRequired = true, type = STRING) }, reponses = {
           @RestResponse(responseCode = SC_OK, description = "File returned"),
+          @RestResponse(responseCode = SC_NOT_MODIFIED, description = "If file not modified"),
           @RestResponse(responseCode = SC_NOT_FOUND, description = "Not found") })
   public Response restGetFromCollection(@PathParam("collectionId") String collectionId,
-          @PathParam("fileName") String fileName) throws NotFoundException, IOException {
-    return fileResponse(getFileFromCollection(collectionId, fileName), mimeMap.getContentType(fileName), some(fileName))
-            .build();
+          @PathParam("fileName") String fileName, @HeaderParam("If-None-Match") String ifNoneMatch,
+          @HeaderParam("Range") String range) throws NotFoundException, IOException {
+    String md5 = null;
+    try {
+      md5 = getCollectionElementDigest(collectionId, fileName);
+      if (matchesETag(ifNoneMatch, md5)) {
+        return Response.notModified(md5).build();
+      }
+    } catch (IOException e) {
+      logger.warn("Error reading digest of {}/{}", collectionId, fileName);
+    }
+
+    File file = getFileFromCollection(collectionId, fileName);
+    if (StringUtils.isNotBlank(range)) {
+      return partialFileResponse(file, mimeMap.getContentType(fileName), some(fileName), range).tag(md5).build();
+    }
+    return fileResponse(file, mimeMap.getContentType(fileName), some(fileName)).tag(md5)
+            .header("Accept-Ranges", "bytes").build();
   }
 
   @GET
@@ -16,6 +16,7 @@
 
 package org.opencastproject.workingfilerepository.impl;
 
+import org.opencastproject.util.FileChannelOutput;
 import org.opencastproject.util.UrlSupport;
 
 import junit.framework.Assert;
@@ -28,6 +29,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URI;
@@ -117,6 +120,84 @@ public class WorkingFileRepositoryRestEndpointTest {
     }
   }
 
+  @Test
+  public void testSuffixRange() throws Exception {
+    putRangeFile();
+    Response response = endpoint.restGet("mp", "element1", "range.txt", null, "bytes=-3");
+    assertPartialContent(response, "bytes 7-9/10", "789");
+
+    // a suffix longer than the file asks for the whole file
+    response = endpoint.restGet("mp", "element1", "range.txt", null, "bytes=-20");
+    assertPartialContent(response, "bytes 0-9/10", "0123456789");
+  }
+
+  @Test
+  public void testRangeBeyondEndOfFile() throws Exception {
+    putRangeFile();
+    Response response = endpoint.restGet("mp", "element1", "range.txt", null, "bytes=5-100");
+    assertPartialContent(response, "bytes 5-9/10", "56789");
+
+    response = endpoint.restGet("mp", "element1", "range.txt", null, "bytes=3-");
+    assertPartialContent(response, "bytes 3-9/10", "3456789");
+
+    response = endpoint.restGet("mp", "element1", "range.txt", null, "bytes=10-");
+    Assert.assertEquals(416, response.getStatus());
+    Assert.assertEquals("bytes */10", response.getMetadata().getFirst("Content-Range"));
+    Assert.assertNull(response.getEntity());
+
+    response = endpoint.restGet("mp", "element1", "range.txt", null, "bytes=6-2");
+    Assert.assertEquals(416, response.getStatus());
+  }
+
+  @Test
+  public void testMalformedRange() throws Exception {
+    putRangeFile();
+    for (String range : new String[] { "bytes=a-b", "bytes=-", "bytes=1-x", "items=0-1" }) {
+      Response response = endpoint.restGet("mp", "element1", "range.txt", null, range);
+      assertFullContent(response);
+    }
+  }
+
+  @Test
+  public void testMultipleRanges() throws Exception {
+    putRangeFile();
+    Response response = endpoint.restGet("mp", "element1", "range.txt", null, "bytes=0-1,4-5");
+    assertFullContent(response);
+  }
+
+  @Test
+  public void testCollectionRange() throws Exception {
+    endpoint.putInCollection("collection", "range.txt", new ByteArrayInputStream("0123456789".getBytes("UTF-8")));
+    Response response = endpoint.restGetFromCollection("collection", "range.txt", null, "bytes=2-4");
+    assertPartialContent(response, "bytes 2-4/10", "234");
+
+    response = endpoint.restGetFromCollection("collection", "range.txt", null, "bytes=20-");
+    Assert.assertEquals(416, response.getStatus());
+  }
+
+  private void putRangeFile() throws Exception {
+    endpoint.put("mp", "element1", "range.txt", new ByteArrayInputStream("0123456789".getBytes("UTF-8")));
+  }
+
+  private static String read(Response response) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((FileChannelOutput) response.getEntity()).write(out);
+    return out.toString("UTF-8");
+  }
+
+  private static void assertPartialContent(Response response, String contentRange, String content) throws Exception {
+    Assert.assertEquals(206, response.getStatus());
+    Assert.assertEquals(contentRange, response.getMetadata().getFirst("Content-Range"));
+    Assert.assertEquals(Integer.toString(content.length()), response.getMetadata().getFirst("Content-Length"));
+    Assert.assertEquals(content, read(response));
+  }
+
+  private static void assertFullContent(Response response) throws Exception {
+    Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    Assert.assertNull(response.getMetadata().getFirst("Content-Range"));
+    Assert.assertEquals("0123456789", read(response));
+  }
+
   public void testEtag() throws Exception {
     String mediaPackageId = "mp";
     String dc = "element1";
@@ -23,6 +23,7 @@ import org.opencastproject.util.UrlSupport;
 
 import junit.framework.Assert;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.After;
@@ -183,4 +184,59 @@ public class WorkingFileRepositoryTest {
       IOUtils.closeQuietly(in);
     }
   }
+
+  @Test
+  public void testDeduplication() throws Exception {
+    repo.delete(mediaPackageID, mediaPackageElementID);
+    repo.deleteFromCollection(collectionId, filename);
+    repo.contentStore = new ContentAddressedStore(new File(repo.rootDirectory,
+            WorkingFileRepositoryImpl.CONTENT_DIRECTORY));
+
+    // Store the same file three times
+    InputStream in = null;
+    for (String id : new String[] { "first", "second" }) {
+      try {
+        in = getClass().getClassLoader().getResourceAsStream("opencast_header.gif");
+        repo.put(mediaPackageID, id, "opencast_header.gif", in);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    try {
+      in = getClass().getClassLoader().getResourceAsStream("opencast_header.gif");
+      repo.putInCollection(collectionId, filename, in);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+
+    // The contents are stored once and referenced three times
+    String md5 = repo.getMediaPackageElementDigest(mediaPackageID, "first");
+    Assert.assertEquals(md5, repo.getMediaPackageElementDigest(mediaPackageID, "second"));
+    Assert.assertTrue(repo.contentStore.contains(md5));
+    Assert.assertEquals(3, repo.contentStore.getReferenceCount(md5));
+
+    // Copies add a reference, too
+    repo.copyTo(collectionId, filename, "copied-mediapackage", "copied-element", "copy.gif");
+    Assert.assertEquals(4, repo.contentStore.getReferenceCount(md5));
+
+    // Copying onto an existing file replaces its reference
+    repo.copyTo(collectionId, filename, "copied-mediapackage", "copied-element", "copy.gif");
+    Assert.assertEquals(4, repo.contentStore.getReferenceCount(md5));
+
+    // The contents are kept until the last reference is gone
+    repo.delete(mediaPackageID, "first");
+    repo.deleteFromCollection(collectionId, filename);
+    repo.delete("copied-mediapackage", "copied-element");
+    Assert.assertEquals(1, repo.contentStore.getReferenceCount(md5));
+    try {
+      in = repo.get(mediaPackageID, "second");
+      Assert.assertEquals(md5, DigestUtils.md5Hex(in));
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    repo.delete(mediaPackageID, "second");
+    Assert.assertEquals(0, repo.contentStore.getReferenceCount(md5));
+    Assert.assertFalse(repo.contentStore.contains(md5));
+  }
+
 }
@@ -19,6 +19,7 @@ import static org.opencastproject.util.IoSupport.locked;
 import static org.opencastproject.util.data.functions.Misc.chuck;
 
 import org.opencastproject.security.api.TrustedHttpClient;
+import org.opencastproject.util.Checksum;
 import org.opencastproject.util.FileSupport;
 import org.opencastproject.util.IoSupport;
 import org.opencastproject.util.NotFoundException;
@@ -36,6 +37,9 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.params.BasicHttpParams;
@@ -49,8 +53,24 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import javax.management.ObjectInstance;
 import javax.servlet.http.HttpServletResponse;
@@ -72,6 +92,42 @@ public class WorkspaceImpl implements Workspace {
   /** Configuration key for the workspace root directory */
   public static final String WORKSPACE_ROOTDIR_KEY = "org.opencastproject.workspace.rootdir";
 
+  /** Configuration key for the number of connections used to download a large file in parallel */
+  public static final String DOWNLOAD_PARALLELISM_KEY = "org.opencastproject.workspace.download.parallelism";
+
+  /** Configuration key for the size in megabytes of the byte range segments that large files are downloaded in */
+  public static final String DOWNLOAD_SEGMENT_SIZE_KEY = "org.opencastproject.workspace.download.segment.size";
+
+  /** The default number of connections used to download a large file */
+  public static final int DEFAULT_DOWNLOAD_PARALLELISM = 4;
+
+  /** The default segment size in megabytes */
+  public static final long DEFAULT_DOWNLOAD_SEGMENT_SIZE = 64;
+
+  /** Initial wait time in milliseconds when the server is not ready to deliver a file */
+  private static final long MIN_NOT_READY_BACKOFF = 1000L;
+
+  /** Maximum wait time in milliseconds when the server is not ready to deliver a file */
+  private static final long MAX_NOT_READY_BACKOFF = 60000L;
+
+  /** Extension of the sidecar file holding the md5 of a workspace file */
+  private static final String MD5_EXTENSION = ".md5";
+
+  /** Extension of the partial file a segmented download is written to */
+  private static final String DOWNLOAD_EXTENSION = ".download";
+
+  /** Extension of the sidecar file recording the finished segments of a download */
+  private static final String PROGRESS_EXTENSION = ".segments";
+
+  /** Prefix of the headers that carry the security context of a request */
+  private static final String MATTERHORN_HEADER_PREFIX = "X-Opencast-Matterhorn-";
+
+  /** Size of the buffer used to copy a single segment */
+  private static final int SEGMENT_BUFFER_SIZE = 64 * 1024;
+
+  /** Entity tags that are md5 checksums */
+  private static final Pattern MD5_PATTERN = Pattern.compile("[0-9a-f]{32}");
+
   /** Workspace JMX type */
   private static final String JMX_WORKSPACE_TYPE = "Workspace";
 
@@ -86,6 +142,8 @@ public class WorkspaceImpl implements Workspace {
   protected long garbageCollectionPeriodInSeconds = -1;
   protected Timer garbageFileCollector;
   protected boolean linkingEnabled = false;
+  protected int downloadParallelism = DEFAULT_DOWNLOAD_PARALLELISM;
+  protected long downloadSegmentSize = DEFAULT_DOWNLOAD_SEGMENT_SIZE * 1024L * 1024L;
 
   protected TrustedHttpClient trustedHttpClient;
 
@@ -186,6 +244,29 @@ public class WorkspaceImpl implements Workspace {
       }
     }
 
+    // Parallel downloads of large files
+    if (cc != null && cc.getBundleContext().getProperty(DOWNLOAD_PARALLELISM_KEY) != null) {
+      String parallelism = cc.getBundleContext().getProperty(DOWNLOAD_PARALLELISM_KEY);
+      try {
+        downloadParallelism = Integer.parseInt(parallelism);
+      } catch (NumberFormatException e) {
+        logger.warn("Workspace download parallelism can not be set to {}. Please choose a valid number "
+                + "for the '" + DOWNLOAD_PARALLELISM_KEY + "' setting", parallelism);
+      }
+    }
+    if (cc != null && cc.getBundleContext().getProperty(DOWNLOAD_SEGMENT_SIZE_KEY) != null) {
+      String segmentSize = cc.getBundleContext().getProperty(DOWNLOAD_SEGMENT_SIZE_KEY);
+      try {
+        downloadSegmentSize = Long.parseLong(segmentSize) * 1024L * 1024L;
+        if (downloadSegmentSize <= 0)
+          throw new NumberFormatException();
+      } catch (NumberFormatException e) {
+        downloadSegmentSize = DEFAULT_DOWNLOAD_SEGMENT_SIZE * 1024L * 1024L;
+        logger.warn("Workspace download segment size can not be set to {}. Please choose a valid number "
+                + "for the '" + DOWNLOAD_SEGMENT_SIZE_KEY + "' setting", segmentSize);
+      }
+    }
+
     registeredMXBean = JmxUtil.registerMXBean(workspaceBean, JMX_WORKSPACE_TYPE);
   }
 
@@ -247,72 +328,297 @@ public class WorkspaceImpl implements Workspace {
     return locked(f, new Function<File, File>() {
       @Override
       public File apply(File file) {
-        InputStream in = null;
-        OutputStream out = null;
         HttpResponse response = null;
+        long backoff = MIN_NOT_READY_BACKOFF;
         try {
-          response = trustedHttpClient.execute(get);
-          if (HttpServletResponse.SC_NOT_FOUND == response.getStatusLine().getStatusCode()) {
-            throw new NotFoundException(uri + " does not exist");
-          } else if (HttpServletResponse.SC_NOT_MODIFIED == response.getStatusLine().getStatusCode()) {
-            logger.debug("{} has not been modified.", urlString);
-            return file;
-          } else if (HttpServletResponse.SC_ACCEPTED == response.getStatusLine().getStatusCode()) {
-            logger.debug("{} is not ready, try again in one minute.", urlString);
-            String token = response.getHeaders("token")[0].getValue();
-            get.setParams(new BasicHttpParams().setParameter("token", token));
-            Thread.sleep(60000);
-            while (true) {
-              response = trustedHttpClient.execute(get);
-              if (HttpServletResponse.SC_NOT_FOUND == response.getStatusLine().getStatusCode()) {
-                throw new NotFoundException(uri + " does not exist");
-              } else if (HttpServletResponse.SC_NOT_MODIFIED == response.getStatusLine().getStatusCode()) {
-                logger.debug("{} has not been modified.", urlString);
-                return file;
-              } else if (HttpServletResponse.SC_ACCEPTED == response.getStatusLine().getStatusCode()) {
-                logger.debug("{} is not ready, try again in one minute.", urlString);
-                Thread.sleep(60000);
-              } else if (HttpServletResponse.SC_OK == response.getStatusLine().getStatusCode()) {
-                logger.info("Downloading {} to {}", urlString, file.getAbsolutePath());
-                file.createNewFile();
-                in = response.getEntity().getContent();
-                out = new FileOutputStream(file);
-                IOUtils.copyLarge(in, out);
-                return file;
-              } else {
-                logger.warn("Received unexpected response status {} while trying to download from {}", response
-                        .getStatusLine().getStatusCode(), urlString);
-                FileUtils.deleteQuietly(file);
-                return chuck(new NotFoundException("Unexpected response status "
-                        + response.getStatusLine().getStatusCode()));
-              }
+          while (true) {
+            response = trustedHttpClient.execute(get);
+            int status = response.getStatusLine().getStatusCode();
+            if (HttpServletResponse.SC_NOT_FOUND == status) {
+              throw new NotFoundException(uri + " does not exist");
+            } else if (HttpServletResponse.SC_NOT_MODIFIED == status) {
+              logger.debug("{} has not been modified.", urlString);
+              return file;
+            } else if (HttpServletResponse.SC_ACCEPTED == status) {
+              Header token = response.getFirstHeader("token");
+              if (token != null)
+                get.setParams(new BasicHttpParams().setParameter("token", token.getValue()));
+              long delay = getRetryDelay(response, backoff);
+              logger.debug("{} is not ready, try again in {} seconds.", urlString, delay / 1000);
+              trustedHttpClient.close(response);
+              response = null;
+              Thread.sleep(delay);
+              backoff = Math.min(backoff * 2, MAX_NOT_READY_BACKOFF);
+            } else if (HttpServletResponse.SC_OK == status) {
+              logger.info("Downloading {} to {}", urlString, file.getAbsolutePath());
+              download(get, response, file);
+              return file;
+            } else {
+              logger.warn("Received unexpected response status {} while trying to download from {}", status,
+                      urlString);
+              FileUtils.deleteQuietly(file);
+              return chuck(new NotFoundException("Unexpected response status " + status));
             }
-          } else if (HttpServletResponse.SC_OK == response.getStatusLine().getStatusCode()) {
-            logger.info("Downloading {} to {}", urlString, file.getAbsolutePath());
-            file.createNewFile();
-            in = response.getEntity().getContent();
-            out = new FileOutputStream(file);
-            IOUtils.copyLarge(in, out);
-            return file;
-          } else {
-            logger.warn("Received unexpected response status {} while trying to download from {}", response
-                    .getStatusLine().getStatusCode(), urlString);
-            FileUtils.deleteQuietly(file);
-            return chuck(new NotFoundException("Unexpected response status " + response.getStatusLine().getStatusCode()));
           }
         } catch (Exception e) {
           logger.warn("Could not copy {} to {}: {}", new String[] { urlString, file.getAbsolutePath(), e.getMessage() });
           FileUtils.deleteQuietly(file);
+          deleteSidecar(file, MD5_EXTENSION);
           return chuck(new NotFoundException(e));
         } finally {
-          IOUtils.closeQuietly(in);
-          IOUtils.closeQuietly(out);
           trustedHttpClient.close(response);
         }
       }
     });
   }
 
+  /**
+   * Returns the number of milliseconds to wait before asking again for a file that the server answered with
+   * <code>202 Accepted</code>. A <code>Retry-After</code> header sent by the server takes precedence over the current
+   * backoff.
+   * 
+   * @param response
+   *          the <code>202 Accepted</code> response
+   * @param backoff
+   *          the current backoff in milliseconds
+   * @return the delay in milliseconds
+   */
+  private long getRetryDelay(HttpResponse response, long backoff) {
+    Header retryAfter = response.getFirstHeader("Retry-After");
+    if (retryAfter != null) {
+      try {
+        long seconds = Long.parseLong(retryAfter.getValue().trim());
+        return Math.min(Math.max(seconds * 1000, MIN_NOT_READY_BACKOFF), MAX_NOT_READY_BACKOFF);
+      } catch (NumberFormatException e) {
+        logger.debug("Ignoring non-numeric Retry-After header '{}'", retryAfter.getValue());
+      }
+    }
+    return backoff;
+  }
+
+  /**
+   * Writes the body of a <code>200 OK</code> response to <code>file</code>. Large files are fetched as a number of byte
+   * range segments in parallel if the server supports range requests, otherwise the response body is streamed to disk
+   * and its md5 is recorded on the way.
+   * 
+   * @param get
+   *          the request that lead to the response
+   * @param response
+   *          the response
+   * @param file
+   *          the workspace file
+   * @throws IOException
+   *           if downloading the file fails
+   * @throws InterruptedException
+   *           if the thread is interrupted while waiting for the segments to arrive
+   */
+  private void download(HttpGet get, HttpResponse response, File file) throws IOException, InterruptedException {
+    HttpEntity entity = response.getEntity();
+    long length = entity.getContentLength();
+    Header acceptRanges = response.getFirstHeader("Accept-Ranges");
+    boolean rangesSupported = acceptRanges != null && "bytes".equalsIgnoreCase(acceptRanges.getValue());
+
+    if (rangesSupported && downloadParallelism > 1 && length > downloadSegmentSize) {
+      // Don't read the body, the segments are requested separately
+      get.abort();
+      downloadSegments(get, getETag(response), length, file);
+      return;
+    }
+
+    InputStream in = null;
+    OutputStream out = null;
+    try {
+      MessageDigest digest = createMd5Digest();
+      file.createNewFile();
+      in = new DigestInputStream(entity.getContent(), digest);
+      out = new FileOutputStream(file);
+      IOUtils.copyLarge(in, out);
+      out.close();
+      writeMd5Sidecar(file, Checksum.convertToHex(digest.digest()));
+    } finally {
+      IOUtils.closeQuietly(in);
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Downloads <code>length</code> bytes from the location of <code>get</code> into <code>file</code> using parallel
+   * byte range requests. The segments are written into a preallocated, hidden download file next to the target, and
+   * every finished segment is recorded in a progress file. If a previous transfer of the same version of the file has
+   * been interrupted, only the missing segments are requested.
+   * 
+   * @param get
+   *          the original request
+   * @param etag
+   *          the entity tag of the file, or <code>null</code> if the server did not send one
+   * @param length
+   *          the file size in bytes
+   * @param file
+   *          the workspace file
+   * @throws IOException
+   *           if a segment cannot be downloaded
+   * @throws InterruptedException
+   *           if the thread is interrupted while waiting for the segments to arrive
+   */
+  private void downloadSegments(HttpGet get, String etag, long length, File file) throws IOException,
+          InterruptedException {
+    File download = getSidecar(file, DOWNLOAD_EXTENSION);
+    File progress = getSidecar(file, PROGRESS_EXTENSION);
+    int segmentCount = (int) ((length + downloadSegmentSize - 1) / downloadSegmentSize);
+
+    // Resuming is only safe if we know that the partial download is of the same version of the file
+    String version = length + " " + etag;
+    Set<Integer> finished = new HashSet<Integer>();
+    if (etag != null && download.isFile() && download.length() == length && progress.isFile()) {
+      List<String> lines = FileUtils.readLines(progress, "UTF-8");
+      if (lines.size() > 0 && version.equals(lines.get(0))) {
+        for (String line : lines.subList(1, lines.size())) {
+          if (StringUtils.isNotBlank(line))
+            finished.add(Integer.parseInt(line.trim()));
+        }
+      }
+    }
+    if (finished.isEmpty()) {
+      FileUtils.deleteQuietly(download);
+      FileUtils.writeStringToFile(progress, version + "\n", "UTF-8");
+    } else {
+      logger.info("Resuming download of {} with {} of {} segments in place", new Object[] { get.getURI(),
+              finished.size(), segmentCount });
+    }
+
+    // The security context of the current thread is not available to the download threads, so hand it over
+    List<Header> headers = new ArrayList<Header>();
+    for (Header header : get.getAllHeaders()) {
+      if (header.getName().startsWith(MATTERHORN_HEADER_PREFIX))
+        headers.add(header);
+    }
+
+    RandomAccessFile raf = new RandomAccessFile(download, "rw");
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(downloadParallelism, segmentCount
+            - finished.size()));
+    try {
+      raf.setLength(length);
+      List<Future<Void>> segments = new ArrayList<Future<Void>>();
+      for (int i = 0; i < segmentCount; i++) {
+        if (finished.contains(i))
+          continue;
+        long start = (long) i * downloadSegmentSize;
+        long end = Math.min(start + downloadSegmentSize, length) - 1;
+        segments.add(executor.submit(new SegmentDownload(get.getURI(), headers, i, start, end, raf.getChannel(),
+                progress)));
+      }
+      for (Future<Void> segment : segments) {
+        try {
+          segment.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException)
+            throw (IOException) e.getCause();
+          throw new IOException(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      IOUtils.closeQuietly(raf);
+    }
+
+    // All segments are in place
+    FileUtils.deleteQuietly(file);
+    FileUtils.moveFile(download, file);
+    FileUtils.deleteQuietly(progress);
+    if (etag != null && MD5_PATTERN.matcher(etag).matches())
+      writeMd5Sidecar(file, etag);
+  }
+
+  /**
+   * Downloads a single byte range of a file and writes it to its position in the download file.
+   */
+  private final class SegmentDownload implements Callable<Void> {
+
+    private final URI uri;
+    private final List<Header> headers;
+    private final int index;
+    private final long start;
+    private final long end;
+    private final FileChannel channel;
+    private final File progress;
+
+    SegmentDownload(URI uri, List<Header> headers, int index, long start, long end, FileChannel channel,
+            File progress) {
+      this.uri = uri;
+      this.headers = headers;
+      this.index = index;
+      this.start = start;
+      this.end = end;
+      this.channel = channel;
+      this.progress = progress;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public Void call() throws Exception {
+      HttpGet get = new HttpGet(uri);
+      for (Header header : headers)
+        get.setHeader(header);
+      get.setHeader("Range", "bytes=" + start + "-" + end);
+
+      HttpResponse response = null;
+      InputStream in = null;
+      try {
+        response = trustedHttpClient.execute(get);
+        int status = response.getStatusLine().getStatusCode();
+        if (HttpServletResponse.SC_PARTIAL_CONTENT != status)
+          throw new IOException("Unexpected response status " + status + " while downloading bytes " + start + "-"
+                  + end + " of " + uri);
+
+        in = response.getEntity().getContent();
+        byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+        long position = start;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+          while (bytes.hasRemaining())
+            position += channel.write(bytes, position);
+        }
+        if (position != end + 1)
+          throw new IOException("Received " + (position - start) + " instead of " + (end - start + 1) + " bytes of "
+                  + uri);
+
+        // Make sure the segment is on disk before it is recorded as finished
+        channel.force(false);
+        synchronized (progress) {
+          FileUtils.writeStringToFile(progress, index + "\n", "UTF-8", true);
+        }
+        logger.debug("Downloaded bytes {}-{} of {}", new Object[] { start, end, uri });
+        return null;
+      } finally {
+        IOUtils.closeQuietly(in);
+        trustedHttpClient.close(response);
+      }
+    }
+
+  }
+
+  /**
+   * Returns the entity tag of the response without the surrounding quotes.
+   * 
+   * @param response
+   *          the response
+   * @return the entity tag or <code>null</code> if the response does not contain one
+   */
+  private static String getETag(HttpResponse response) {
+    Header etag = response.getFirstHeader("ETag");
+    if (etag == null || StringUtils.isBlank(etag.getValue()))
+      return null;
+    String value = etag.getValue().trim();
+    if (value.startsWith("W/"))
+      return null;
+    return StringUtils.removeEnd(StringUtils.removeStart(value, "\""), "\"");
+  }
+
   /**
    * Returns the md5 of a file
    * 
@@ -332,13 +638,108 @@ public class WorkspaceImpl implements Workspace {
     if (!file.isFile())
       throw new IllegalArgumentException("File " + file.getAbsolutePath() + " can not be read");
 
+    String md5 = readMd5Sidecar(file);
+    if (md5 != null)
+      return md5;
+
     InputStream in = null;
     try {
       in = new FileInputStream(file);
-      return DigestUtils.md5Hex(in);
+      md5 = DigestUtils.md5Hex(in);
     } finally {
       IOUtils.closeQuietly(in);
     }
+    writeMd5Sidecar(file, md5);
+    return md5;
+  }
+
+  /**
+   * Returns the md5 that has been recorded for <code>file</code>, provided that the file has not been touched since.
+   * 
+   * @param file
+   *          the workspace file
+   * @return the md5 or <code>null</code> if there is no up to date md5 sidecar
+   */
+  private String readMd5Sidecar(File file) {
+    File sidecar = getSidecar(file, MD5_EXTENSION);
+    if (!sidecar.isFile())
+      return null;
+    try {
+      String[] fields = FileUtils.readFileToString(sidecar, "UTF-8").trim().split(" ");
+      if (fields.length == 3 && Long.parseLong(fields[1]) == file.length()
+              && Long.parseLong(fields[2]) == file.lastModified())
+        return fields[0];
+    } catch (Exception e) {
+      logger.debug("Ignoring unreadable md5 sidecar {}: {}", sidecar, e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Records the md5 of <code>file</code> along with the file's size and modification date in a hidden sidecar file.
+   * 
+   * @param file
+   *          the workspace file
+   * @param md5
+   *          the md5
+   */
+  private void writeMd5Sidecar(File file, String md5) {
+    File sidecar = getSidecar(file, MD5_EXTENSION);
+    try {
+      FileUtils.writeStringToFile(sidecar, md5 + " " + file.length() + " " + file.lastModified(), "UTF-8");
+    } catch (IOException e) {
+      logger.warn("Unable to record md5 of {}: {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the hidden sidecar file with the given extension that accompanies <code>file</code>.
+   * 
+   * @param file
+   *          the workspace file
+   * @param extension
+   *          the sidecar extension
+   * @return the sidecar file
+   */
+  private static File getSidecar(File file, String extension) {
+    return new File(file.getParentFile(), "." + file.getName() + extension);
+  }
+
+  /**
+   * Removes the sidecar file with the given extension, if there is one.
+   * 
+   * @param file
+   *          the workspace file
+   * @param extension
+   *          the sidecar extension
+   */
+  private static void deleteSidecar(File file, String extension) {
+    FileUtils.deleteQuietly(getSidecar(file, extension));
+  }
+
+  /**
+   * Removes all sidecar files that accompany <code>file</code>.
+   * 
+   * @param file
+   *          the workspace file
+   */
+  private static void deleteSidecars(File file) {
+    deleteSidecar(file, MD5_EXTENSION);
+    deleteSidecar(file, DOWNLOAD_EXTENSION);
+    deleteSidecar(file, PROGRESS_EXTENSION);
+  }
+
+  /**
+   * Creates a new md5 message digest.
+   * 
+   * @return the digest
+   */
+  private static MessageDigest createMd5Digest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
   }
 
   /**
@@ -373,6 +774,7 @@ public class WorkspaceImpl implements Workspace {
       synchronized (wsRoot) {
         File mpElementDir = f.getParentFile();
         FileUtils.forceDelete(f);
+        deleteSidecars(f);
         if (mpElementDir.isDirectory() && mpElementDir.list().length == 0)
           FileUtils.forceDelete(mpElementDir);
 
@@ -417,6 +819,7 @@ public class WorkspaceImpl implements Workspace {
     synchronized (wsRoot) {
       workspaceFile = getWorkspaceFile(uri, true);
       FileUtils.touch(workspaceFile);
+      deleteSidecars(workspaceFile);
     }
 
     // Try hard linking first and fall back to tee-ing to both the working file repository and the workspace
@@ -462,6 +865,7 @@ public class WorkspaceImpl implements Workspace {
       synchronized (wsRoot) {
         tempFile = getWorkspaceFile(uri, true);
         FileUtils.touch(tempFile);
+        deleteSidecars(tempFile);
         out = new FileOutputStream(tempFile);
       }
 
@@ -577,7 +981,9 @@ public class WorkspaceImpl implements Workspace {
       File copy = getWorkspaceFile(copyURI, true);
       FileUtils.forceMkdir(copy.getParentFile());
       FileUtils.deleteQuietly(copy);
+      deleteSidecars(copy);
       FileUtils.moveFile(original, copy);
+      deleteSidecars(original);
     }
 
     // Tell working file repository
@@ -610,6 +1016,7 @@ public class WorkspaceImpl implements Workspace {
             collectionId, fileName }));
     File collectionDir = f.getParentFile();
     FileUtils.deleteQuietly(f);
+    deleteSidecars(f);
     if (collectionDir.isDirectory() && collectionDir.list().length == 0)
       FileUtils.deleteDirectory(collectionDir);
   }
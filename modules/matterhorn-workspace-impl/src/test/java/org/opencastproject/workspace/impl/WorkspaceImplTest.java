@@ -23,13 +23,20 @@ import org.opencastproject.workingfilerepository.api.WorkingFileRepository;
 
 import junit.framework.Assert;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,8 +44,14 @@ import org.junit.Test;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -217,4 +230,177 @@ public class WorkspaceImplTest {
 
   }
 
+  @Test
+  public void testMd5Sidecar() throws Exception {
+    File file = new File(workspaceRoot, "md5test.txt");
+    FileUtils.writeStringToFile(file, "first version", "UTF-8");
+    String md5 = workspace.md5(file);
+    Assert.assertEquals(DigestUtils.md5Hex("first version"), md5);
+
+    // The md5 is recorded next to the file and reused
+    File sidecar = new File(workspaceRoot, ".md5test.txt.md5");
+    Assert.assertTrue(sidecar.isFile());
+    Assert.assertTrue(FileUtils.readFileToString(sidecar, "UTF-8").startsWith(md5));
+    Assert.assertEquals(md5, workspace.md5(file));
+
+    // Changing the file invalidates the sidecar
+    FileUtils.writeStringToFile(file, "second version, which is longer", "UTF-8");
+    Assert.assertEquals(DigestUtils.md5Hex("second version, which is longer"), workspace.md5(file));
+  }
+
+  @Test
+  public void testSegmentedDownload() throws Exception {
+    byte[] data = "0123456789".getBytes("UTF-8");
+    String etag = DigestUtils.md5Hex(data);
+    URI uri = new URI("http://localhost:8080/files/mediapackage/mp/track/video.mp4");
+    RangeServer server = setUpRangeServer(data, etag, 0);
+
+    File file = workspace.get(uri);
+    Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(file)));
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("bytes=0-3", "bytes=4-7", "bytes=8-9")),
+            new HashSet<String>(server.ranges));
+
+    // The partial download and its progress are gone, the entity tag has been recorded as the md5
+    Assert.assertFalse(new File(file.getParentFile(), ".video.mp4.download").exists());
+    Assert.assertFalse(new File(file.getParentFile(), ".video.mp4.segments").exists());
+    Assert.assertTrue(FileUtils.readFileToString(new File(file.getParentFile(), ".video.mp4.md5"), "UTF-8")
+            .startsWith(etag));
+  }
+
+  @Test
+  public void testResumeSegmentedDownload() throws Exception {
+    byte[] data = "0123456789".getBytes("UTF-8");
+    String etag = DigestUtils.md5Hex(data);
+    URI uri = new URI("http://localhost:8080/files/mediapackage/mp/track/video.mp4");
+    RangeServer server = setUpRangeServer(data, etag, 0);
+
+    // Leave a partial download behind that has the first segment in place
+    File file = workspace.getWorkspaceFile(uri, true);
+    File download = new File(file.getParentFile(), ".video.mp4.download");
+    RandomAccessFile raf = new RandomAccessFile(download, "rw");
+    try {
+      raf.setLength(data.length);
+      raf.write(data, 0, 4);
+    } finally {
+      raf.close();
+    }
+    File progress = new File(file.getParentFile(), ".video.mp4.segments");
+    FileUtils.writeStringToFile(progress, data.length + " " + etag + "\n0\n", "UTF-8");
+
+    Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(workspace.get(uri))));
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("bytes=4-7", "bytes=8-9")),
+            new HashSet<String>(server.ranges));
+    Assert.assertFalse(download.exists());
+    Assert.assertFalse(progress.exists());
+  }
+
+  @Test
+  public void testResumeChangedFile() throws Exception {
+    byte[] data = "0123456789".getBytes("UTF-8");
+    String etag = DigestUtils.md5Hex(data);
+    URI uri = new URI("http://localhost:8080/files/mediapackage/mp/track/video.mp4");
+    RangeServer server = setUpRangeServer(data, etag, 0);
+
+    // The partial download belongs to an older version of the file, so it must not be resumed
+    File file = workspace.getWorkspaceFile(uri, true);
+    File download = new File(file.getParentFile(), ".video.mp4.download");
+    FileUtils.writeStringToFile(download, "abcdefghij", "UTF-8");
+    File progress = new File(file.getParentFile(), ".video.mp4.segments");
+    FileUtils.writeStringToFile(progress, data.length + " " + DigestUtils.md5Hex("abcdefghij") + "\n0\n", "UTF-8");
+
+    Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(workspace.get(uri))));
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("bytes=0-3", "bytes=4-7", "bytes=8-9")),
+            new HashSet<String>(server.ranges));
+  }
+
+  @Test
+  public void testNotReadyBackoff() throws Exception {
+    byte[] data = "0123456789".getBytes("UTF-8");
+    URI uri = new URI("http://localhost:8080/files/mediapackage/mp/track/video.mp4");
+
+    // The server is not ready twice and does not support ranges
+    RangeServer server = setUpRangeServer(data, null, 2);
+
+    long start = System.currentTimeMillis();
+    File file = workspace.get(uri);
+    long waited = System.currentTimeMillis() - start;
+    Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(file)));
+    Assert.assertEquals(3, server.requests);
+
+    // One second after the first 202, twice as long after the second
+    Assert.assertTrue("Waited only " + waited + "ms", waited >= 3000);
+    Assert.assertTrue(server.ranges.isEmpty());
+  }
+
+  /**
+   * Sets up a workspace that downloads in segments of four bytes from a {@link RangeServer}.
+   */
+  private RangeServer setUpRangeServer(byte[] data, String etag, int notReady) throws Exception {
+    WorkingFileRepository repo = EasyMock.createNiceMock(WorkingFileRepository.class);
+    EasyMock.expect(repo.getBaseUri()).andReturn(new URI("http://localhost:8080/files")).anyTimes();
+    EasyMock.replay(repo);
+    workspace.setRepository(repo);
+
+    RangeServer server = new RangeServer(data, etag, notReady);
+    TrustedHttpClient httpClient = EasyMock.createNiceMock(TrustedHttpClient.class);
+    EasyMock.expect(httpClient.execute((HttpUriRequest) EasyMock.anyObject())).andAnswer(server).anyTimes();
+    EasyMock.replay(httpClient);
+    workspace.trustedHttpClient = httpClient;
+    workspace.downloadParallelism = 3;
+    workspace.downloadSegmentSize = 4;
+    return server;
+  }
+
+  /**
+   * Answers requests like a server that supports byte range requests if it has been given an entity tag, and that is
+   * not ready to deliver the file for the given number of requests.
+   */
+  private static final class RangeServer implements IAnswer<HttpResponse> {
+
+    private final byte[] data;
+    private final String etag;
+    private int notReady;
+    private int requests = 0;
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+    RangeServer(byte[] data, String etag, int notReady) {
+      this.data = data;
+      this.etag = etag;
+      this.notReady = notReady;
+    }
+
+    @Override
+    public HttpResponse answer() throws Throwable {
+      HttpUriRequest request = (HttpUriRequest) EasyMock.getCurrentArguments()[0];
+      Header range = request.getFirstHeader("Range");
+      if (range != null) {
+        ranges.add(range.getValue());
+        String[] bounds = range.getValue().substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = Integer.parseInt(bounds[1]);
+        return response(HttpServletResponse.SC_PARTIAL_CONTENT, Arrays.copyOfRange(data, start, end + 1));
+      }
+      synchronized (this) {
+        requests++;
+        if (notReady > 0) {
+          notReady--;
+          return response(HttpServletResponse.SC_ACCEPTED, new byte[0]);
+        }
+      }
+      HttpResponse response = response(HttpServletResponse.SC_OK, data);
+      if (etag != null) {
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", "\"" + etag + "\"");
+      }
+      return response;
+    }
+
+    private static HttpResponse response(int status, byte[] body) {
+      HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, status, null));
+      response.setEntity(new ByteArrayEntity(body));
+      return response;
+    }
+
+  }
+
 }